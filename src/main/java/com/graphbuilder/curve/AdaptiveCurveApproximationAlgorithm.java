@@ -0,0 +1,201 @@
+/*
+* Copyright (c) 2005, Graph Builder
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+* * Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+*
+* * Redistributions in binary form must reproduce the above copyright notice,
+* this list of conditions and the following disclaimer in the documentation
+* and/or other materials provided with the distribution.
+*
+* * Neither the name of Graph Builder nor the names of its contributors may be
+* used to endorse or promote products derived from this software without
+* specific prior written permission.
+
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+* FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+* DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+* SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+* OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+* OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.graphbuilder.curve;
+
+/**
+<p>The adaptive curve approximation algorithm is an alternative to the BinaryCurveApproximationAlgorithm that
+chooses the number of line segments of each section of a ParametricCurve before any points are generated.  The
+number of segments is computed from a bound on the second derivative of the section, so the points are evaluated
+at evenly spaced parametric values without any recursion or sample limit.
+
+<p>For a section that is a polynomial, the number of segments is given by Wang's formula,
+n = sqrt(d (d - 1) / 8 * max|B(i+2) - 2 B(i+1) + B(i)| / flatness), where B are the control-points of degree d of the
+Bezier form of the section, which guarantees that the distance between the curve and the line segments is less
+than the flatness.  Sections of degree <= 3 are written as a cubic Bezier curve using the end points and first
+derivatives, B0 = C(a), B1 = C(a) + h/3 C'(a), B2 = C(b) - h/3 C'(b), B3 = C(b) where h = b - a.  The BezierCurve and
+LagrangeCurve compute the Bezier form of any degree, and the BSpline bounds the second derivative using the de Boor
+points of the knot-span.  For sections that are not polynomials (or when no bound is known), the second derivative
+is sampled at evenly spaced values and a safety factor is applied, which gives a good estimate but not a guarantee.
+
+<p>Since the number of segments is known up front, the work can be divided between threads or the memory can
+be allocated ahead of time.
+
+@see com.graphbuilder.curve.BinaryCurveApproximationAlgorithm
+@see com.graphbuilder.curve.ParametricCurve#getPolynomialDegree()
+@see com.graphbuilder.curve.ParametricCurve#getSecondDerivativeBound(double, double, int)
+*/
+public final class AdaptiveCurveApproximationAlgorithm {
+
+	/**
+	The maximum number of segments used for a single section.
+	*/
+	public static final int MAX_SEGMENTS = 1 << 16;
+
+	private AdaptiveCurveApproximationAlgorithm() {}
+
+	/**
+	Appends the points of all sections of the curve to the multi-path.  The first point is of type MOVE_TO
+	unless the connect flag of the curve is true.  The flatness and the dimension are determined by the
+	multi-path.  This method can be used instead of the appendTo method of the curve.
+
+	@throws IllegalArgumentException If the curve cannot be evaluated.
+	*/
+	public static void appendTo(ParametricCurve pc, MultiPath mp) {
+		int n = mp.getDimension();
+		int numSections = pc.prepare(n);
+		double[] interval = new double[2];
+
+		for (int i = 0; i < numSections; i++) {
+			pc.selectSection(i, interval);
+
+			if (i == 0) {
+				double[] p = new double[n + 1];
+				p[n] = interval[0];
+				pc.eval(p);
+
+				if (pc.getConnect())
+					mp.lineTo(p);
+				else
+					mp.moveTo(p);
+			}
+
+			append(pc, interval[0], interval[1], mp, 1);
+		}
+	}
+
+	/**
+	Appends a sequence of points to the multi-path using the lineTo method exclusively.  The same as the genPts
+	method of the BinaryCurveApproximationAlgorithm, the first point appended is eval(t_min) and the last point
+	appended is eval(t_max).  The section of the curve that contains the interval must be selected.  If the
+	multi-path has a clip box and the interval lies outside of it, then only eval(t_max) is appended using the
+	moveTo method.
+
+	@throws IllegalArgumentException If t_min > t_max.
+	@see com.graphbuilder.curve.BinaryCurveApproximationAlgorithm#genPts(ParametricCurve, double, double, MultiPath)
+	*/
+	public static void genPts(ParametricCurve pc, double t_min, double t_max, MultiPath mp) {
+		if (t_min > t_max)
+			throw new IllegalArgumentException("t_min <= t_max required.");
+
+		append(pc, t_min, t_max, mp, 0);
+	}
+
+	/**
+	Returns the number of line segments required to approximate the interval [t_min, t_max] of the selected
+	section of the curve within the specified flatness.  The returned value is in the range [1, MAX_SEGMENTS].
+
+	@throws IllegalArgumentException If dimension <= 0, flatness <= 0 or t_min > t_max.
+	@throws RuntimeException If the second derivative bound is NaN or infinity.
+	*/
+	public static int getSegmentCount(ParametricCurve pc, double t_min, double t_max, int dimension, double flatness) {
+		if (dimension <= 0)
+			throw new IllegalArgumentException("dimension > 0 required");
+
+		if (!(flatness > 0))
+			throw new IllegalArgumentException("flatness > 0 required");
+
+		if (t_min > t_max)
+			throw new IllegalArgumentException("t_min <= t_max required.");
+
+		double h = t_max - t_min;
+
+		if (h == 0)
+			return 1;
+
+		double m = pc.getSecondDerivativeBound(t_min, t_max, dimension); // bound on |C''| * h^2
+
+		if (Double.isNaN(m)) {
+			// no bound is known, so sample the second derivative
+			int samples = 16;
+			double[] p = new double[dimension + 1];
+			double[] d2 = new double[dimension];
+			double max = 0;
+
+			for (int i = 0; i <= samples; i++) {
+				p[dimension] = t_min + h * i / samples;
+				pc.evalDerivatives(p, null, d2);
+
+				double a = 0;
+				for (int j = 0; j < dimension; j++)
+					a += d2[j] * d2[j];
+
+				if (!(a <= max)) max = a; // also keeps NaN
+			}
+
+			m = 1.25 * Math.sqrt(max) * h * h;
+		}
+
+		if (Double.isNaN(m) || Double.isInfinite(m)) {
+			String msg = "NaN or infinity resulted from calling the evalDerivatives method of the " +
+			pc.getClass().getName() + " class.";
+			throw new RuntimeException(msg);
+		}
+
+		double n = Math.ceil(Math.sqrt(m / (8 * flatness)));
+
+		if (n < 1) return 1;
+		if (n > MAX_SEGMENTS) return MAX_SEGMENTS;
+		return (int) n;
+	}
+
+	/**
+	Appends the points of the interval, starting with the point at the specified index.
+	*/
+	private static void append(ParametricCurve pc, double t_min, double t_max, MultiPath mp, int first) {
+		if (pc.cull(t_min, t_max, mp))
+			return;
+
+		int n = mp.getDimension();
+		int count = getSegmentCount(pc, t_min, t_max, n, mp.getFlatness());
+
+		double[] t = new double[count + 1];
+		for (int i = 0; i < count; i++)
+			t[i] = t_min + (t_max - t_min) * i / count;
+
+		t[count] = t_max;
+
+		double[] out = new double[(count + 1) * n];
+		pc.evalSection(t, count + 1, out, 0, n, 1, n);
+
+		mp.ensureCapacity(mp.getNumPoints() + count + 1);
+
+		for (int i = first; i <= count; i++) {
+			double[] p = new double[n + 1];
+
+			for (int j = 0; j < n; j++)
+				p[j] = out[i * n + j];
+
+			p[n] = t[i];
+			mp.lineTo(p);
+		}
+	}
+}
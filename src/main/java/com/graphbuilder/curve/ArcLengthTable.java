@@ -0,0 +1,363 @@
+/*
+* Copyright (c) 2005, Graph Builder
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+* * Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+*
+* * Redistributions in binary form must reproduce the above copyright notice,
+* this list of conditions and the following disclaimer in the documentation
+* and/or other materials provided with the distribution.
+*
+* * Neither the name of Graph Builder nor the names of its contributors may be
+* used to endorse or promote products derived from this software without
+* specific prior written permission.
+
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+* FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+* DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+* SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+* OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+* OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.graphbuilder.curve;
+
+/**
+<p>An arc-length table maps distances along a ParametricCurve to parametric values and back.  The table
+is built once using Gauss-Legendre quadrature over a fixed number of intervals per section of the curve.
+Looking up the parametric value of a distance is done with a binary search of the table followed by a
+few Newton iterations, which makes it possible to move along a curve at constant speed or to place
+markers at equal distances.
+
+<p>The parametric values used by this class are the same as the values used by the evalBatch method of
+the ParametricCurve, i.e. values in the range [0, 1] that cover the whole curve.
+
+<p>The table is a snapshot of the curve at the time it was created.  It can be kept and reused for as
+long as the curve and its control-points do not change.  Like the curves, the methods of this class are
+not synchronized.
+
+<p>The curve is prepared for evaluation when the table is created, and the lookups reuse the prepared
+state instead of preparing the curve each time.  The state is kept per thread by the curve, so the curve
+is prepared again the first time the table is used on another thread.  If the curve is evaluated by other
+code between lookups on the same thread (for example by its appendTo method), then the invalidate method
+must be called before the next lookup.
+
+@see #invalidate()
+
+@see com.graphbuilder.curve.ParametricCurve#evalBatch(double[], int, double[], int, int)
+*/
+public class ArcLengthTable {
+
+	// 5 point Gauss-Legendre nodes and weights over [-1, 1]
+	private static final double[] NODE = {
+		-0.9061798459386640, -0.5384693101056831, 0.0, 0.5384693101056831, 0.9061798459386640
+	};
+
+	private static final double[] WEIGHT = {
+		0.2369268850561891, 0.4786286704993665, 0.5688888888888889, 0.4786286704993665, 0.2369268850561891
+	};
+
+	private final ParametricCurve pc;
+	private final int dimension;
+	private final int numSections;
+	private final int intervals; // number of intervals per section
+	private final int numIntervals; // total number of intervals in the table
+	private final double[] interval; // the parametric interval of each section
+	private final double[] length; // length[k] is the distance at t = k / numIntervals
+
+	private final double[] p; // scratch point used for evaluation
+	private final double[] q; // scratch derivative used for evaluation
+	private final double[] iv = new double[2]; // scratch interval used for selecting sections
+	private int section = -1; // the section currently selected
+	private Thread preparedBy; // the thread the curve was prepared on, or null if it must be prepared again
+
+	/**
+	Creates an arc-length table with 8 intervals per section.
+
+	@see #ArcLengthTable(ParametricCurve, int, int)
+	*/
+	public ArcLengthTable(ParametricCurve pc, int dimension) {
+		this(pc, dimension, 8);
+	}
+
+	/**
+	Creates an arc-length table of the curve in the specified dimension.  Each section of the curve is
+	split into the specified number of intervals, and the length of each interval is computed using
+	Gauss-Legendre quadrature.
+
+	@throws IllegalArgumentException If the curve is null, dimension <= 0, intervals <= 0 or the curve
+	cannot be evaluated.
+	*/
+	public ArcLengthTable(ParametricCurve pc, int dimension, int intervals) {
+		if (pc == null)
+			throw new IllegalArgumentException("ParametricCurve cannot be null.");
+
+		if (dimension <= 0)
+			throw new IllegalArgumentException("dimension > 0 required");
+
+		if (intervals <= 0)
+			throw new IllegalArgumentException("intervals > 0 required");
+
+		this.pc = pc;
+		this.dimension = dimension;
+		this.intervals = intervals;
+
+		p = new double[dimension + 1];
+		q = new double[dimension];
+
+		numSections = pc.prepare(dimension);
+		preparedBy = Thread.currentThread();
+
+		if (numSections <= 0)
+			throw new IllegalArgumentException("curve has no sections");
+
+		numIntervals = numSections * intervals;
+		interval = new double[2 * numSections];
+		length = new double[numIntervals + 1];
+
+		for (int i = 0; i < numSections; i++) {
+			pc.selectSection(i, iv);
+			interval[2 * i] = iv[0];
+			interval[2 * i + 1] = iv[1];
+		}
+
+		for (int k = 0; k < numIntervals; k++) {
+			length[k + 1] = length[k] + integrate(k / intervals, (double) k / numIntervals, (double) (k + 1) / numIntervals);
+		}
+	}
+
+	/**
+	Returns the curve of this table.
+	*/
+	public ParametricCurve getCurve() {
+		return pc;
+	}
+
+	/**
+	Returns the dimension the table was created in.
+	*/
+	public int getDimension() {
+		return dimension;
+	}
+
+	/**
+	Makes the next lookup prepare the curve again.  This must be called if the curve has been evaluated by
+	other code since the last lookup on the current thread.  The lengths stored in the table are not
+	recomputed, so a new table must be created if the curve or its control-points have changed.
+	*/
+	public void invalidate() {
+		preparedBy = null;
+	}
+
+	/**
+	Returns the total length of the curve.
+	*/
+	public double getLength() {
+		return length[numIntervals];
+	}
+
+	/**
+	Returns the distance along the curve from t = 0 to the specified parametric value.
+
+	@throws IllegalArgumentException If t is not in the range [0, 1].
+	*/
+	public double getDistance(double t) {
+		checkT(t);
+		ensurePrepared();
+
+		int k = (int) (t * numIntervals);
+		if (k == numIntervals) return length[k];
+
+		return length[k] + integrate(k / intervals, (double) k / numIntervals, t);
+	}
+
+	/**
+	Returns the parametric value at the specified distance along the curve.  Distances outside the range
+	[0, getLength()] are clamped.
+	*/
+	public double getT(double s) {
+		ensurePrepared();
+		return findT(s);
+	}
+
+	/**
+	Computes the parametric values of the first count distances of the s array and stores them in the
+	t array.  This is faster than calling getT(double) once per value.
+
+	@see #getT(double)
+	*/
+	public void getT(double[] s, int count, double[] t) {
+		ensurePrepared();
+
+		for (int i = 0; i < count; i++)
+			t[i] = findT(s[i]);
+	}
+
+	/**
+	Appends points to the multi-path that are spaced the specified distance apart along the curve, starting
+	at the beginning of the curve.  The first point is of type MOVE_TO unless the connect flag of the curve
+	is true.  The end of the curve is only included if the length is a multiple of the spacing.
+
+	@throws IllegalArgumentException If spacing <= 0 or the dimension of the multi-path is greater than the
+	dimension of the table.
+	*/
+	public void appendTo(MultiPath mp, double spacing) {
+		if (!(spacing > 0))
+			throw new IllegalArgumentException("spacing > 0 required");
+
+		if (mp.getDimension() > dimension)
+			throw new IllegalArgumentException("multi-path dimension <= table dimension required");
+
+		ensurePrepared();
+
+		double total = getLength();
+		int n = (int) (total / spacing);
+
+		for (int i = 0; i <= n; i++) {
+			double[] d = new double[dimension + 1];
+			eval(findT(i * spacing), d);
+
+			if (i == 0 && !pc.getConnect())
+				mp.moveTo(d);
+			else
+				mp.lineTo(d);
+		}
+	}
+
+	private double findT(double s) {
+		if (!(s > 0)) return 0.0; // also handles NaN
+		if (s >= length[numIntervals]) return 1.0;
+
+		// binary search for the interval that contains s
+		int lo = 0;
+		int hi = numIntervals;
+
+		while (hi - lo > 1) {
+			int mid = (lo + hi) >>> 1;
+			if (length[mid] <= s)
+				lo = mid;
+			else
+				hi = mid;
+		}
+
+		double t0 = (double) lo / numIntervals;
+		double a = t0;
+		double b = (double) hi / numIntervals;
+		double d = length[hi] - length[lo];
+
+		if (d == 0) return a;
+
+		int index = lo / intervals;
+		double target = s - length[lo];
+		double t = a + (b - a) * (target / d);
+		double tol = 1e-12 * (length[numIntervals] + 1);
+
+		// Newton iterations, falling back to bisection when a step leaves the bracket [a, b]
+		for (int i = 0; i < 16; i++) {
+			double f = integrate(index, t0, t) - target;
+
+			if (Math.abs(f) <= tol) break;
+
+			if (f < 0) a = t;
+			else b = t;
+
+			double tn = t - f / speed(index, t);
+
+			if (!(tn > a && tn < b))
+				tn = (a + b) / 2;
+
+			t = tn;
+		}
+
+		return t;
+	}
+
+	/**
+	Returns the length of the curve between global parametric values t0 and t1, which must be in the same section.
+	*/
+	private double integrate(int index, double t0, double t1) {
+		double h = (t1 - t0) / 2;
+		double m = (t0 + t1) / 2;
+		double sum = 0;
+
+		for (int i = 0; i < NODE.length; i++)
+			sum += WEIGHT[i] * speed(index, m + h * NODE[i]);
+
+		return sum * h;
+	}
+
+	/**
+	Returns the speed of the curve with respect to the global parametric value t.
+	*/
+	private double speed(int index, double t) {
+		select(index);
+
+		double a = interval[2 * index];
+		double b = interval[2 * index + 1];
+		double c = numSections * (b - a); // du / dt
+		double u = a + (t * numSections - index) * (b - a);
+
+		p[dimension] = u;
+		pc.evalDerivatives(p, q, null);
+
+		double sum = 0;
+		for (int j = 0; j < dimension; j++)
+			sum += q[j] * q[j];
+
+		return Math.sqrt(sum) * c;
+	}
+
+	private void eval(double t, double[] d) {
+		int index = sectionOf(t);
+		select(index);
+
+		double a = interval[2 * index];
+		double b = interval[2 * index + 1];
+		evalSection(a + (t * numSections - index) * (b - a), d);
+	}
+
+	private void evalSection(double u, double[] d) {
+		for (int j = 0; j < dimension; j++)
+			d[j] = 0;
+
+		d[dimension] = u;
+		pc.eval(d);
+	}
+
+	private void select(int index) {
+		if (section != index) {
+			pc.selectSection(index, iv);
+			section = index;
+		}
+	}
+
+	private void ensurePrepared() {
+		Thread current = Thread.currentThread();
+
+		if (preparedBy != current) {
+			pc.prepare(dimension);
+			section = -1;
+			preparedBy = current;
+		}
+	}
+
+	private int sectionOf(double t) {
+		int index = (int) (t * numSections);
+		if (index >= numSections) index = numSections - 1;
+		return index;
+	}
+
+	private static void checkT(double t) {
+		if (!(t >= 0.0 && t <= 1.0))
+			throw new IllegalArgumentException("t in range [0, 1] required but: (t = " + t + ")");
+	}
+}
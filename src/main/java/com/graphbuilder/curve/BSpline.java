@@ -70,8 +70,10 @@ is uniform unclamped, the default interval is [grad * degree, 1 - grad * degree]
 gradient or the knot-span.  Specifying the knotVectorType as UNIFORM_CLAMPED or UNIFORM_UNCLAMPED
 means that the internal knot-vector will not be used.
 
-<p>Note: The computation required is O(2^degree) or exponential.  Increasing the degree by 1 means
-that twice as many computations are done.
+<p>The appendTo method generates the curve one knot-span at a time.  Within a knot-span only degree + 1
+basis-functions are non-zero, and they are computed using the Cox-de Boor recurrence, which requires
+O(degree^2) computations per point.  When no knot-span is selected, the eval method uses the N-function, which
+requires O(2^degree) computations for each control-point.
 */
 public class BSpline extends ParametricCurve {
 
@@ -90,6 +92,11 @@ public class BSpline extends ParametricCurve {
 		private int[] a = new int[0]; // counter used for the a-function values (required length >= degree)
 		private int[] c = new int[0]; // counter used for bit patterns (required length >= degree)
 		private double[] knot = new double[0]; // (required length >= numPts + degree)
+		private double[][] pts = new double[0][]; // control-point locations (required length >= numPts)
+		private double[] span = new double[0]; // section boundaries (required length >= numPts + degree + 2)
+		private double[] b = new double[0]; // basis-function values (required length >= degree)
+		private int numPts = 0;
+		private int knotSpan = -1; // knot-span of the selected section, -1 if none or outside the knot-vector
 	}
 
 	private ValueVector knotVector = new ValueVector(new double[] { 0, 0, 0, 0, 1, 1, 1, 1 }, 8);
@@ -105,16 +112,17 @@ public class BSpline extends ParametricCurve {
 	}
 
 	protected void eval(double[] p) {
+		if (evalSpan(p)) return;
+
 		int dim = p.length - 1;
 		double t = p[dim];
-		int numPts = gi.getGroupSize();
-		gi.set(0,0);
+		int numPts = sharedData.numPts;
 
 		for (int i = 0; i < numPts; i++) {
 			double w = N(t, i);
 			//double w = N(t, i, degree);
 
-			double[] loc = cp.getPoint(gi.next()).getLocation();
+			double[] loc = sharedData.pts[i];
 
 			for (int j = 0; j < dim; j++)
 				p[j] += (loc[j] * w); //pt[i][j] * w);
@@ -162,6 +170,13 @@ public class BSpline extends ParametricCurve {
 		return sampleLimit;
 	}
 
+	/**
+	Returns the degree.  The sections of the curve are the knot-spans, which are polynomials of the degree.
+	*/
+	protected int getPolynomialDegree() {
+		return degree - 1;
+	}
+
 	/**
 	Sets the sample-limit.  For more information on the sample-limit, see the
 	BinaryCurveApproximationAlgorithm class.  The default sample-limit is 1.
@@ -282,6 +297,46 @@ public class BSpline extends ParametricCurve {
 	If any of these requirements are not met, then IllegalArgumentException is thrown
 	*/
 	public void appendTo(MultiPath mp) {
+		appendTo(mp, (double[][]) null);
+	}
+
+	protected void appendTo(MultiPath mp, double[][] loc) {
+		int numSections = prepare(mp.getDimension(), loc);
+		double[] interval = new double[2];
+
+		for (int i = 0; i < numSections; i++) {
+			selectSection(i, interval);
+
+			if (i == 0) {
+				double[] p = new double[mp.getDimension() + 1];
+				p[mp.getDimension()] = interval[0];
+				eval(p);
+
+				if (connect)
+					mp.lineTo(p);
+				else
+					mp.moveTo(p);
+			}
+
+			BinaryCurveApproximationAlgorithm.genPts(this, interval[0], interval[1], mp);
+		}
+	}
+
+	/**
+	Sets up the knot-vector and returns the number of sections.  The sections are the pieces of the
+	interval between consecutive distinct knot-values.  The requirements are the same as the requirements
+	of the appendTo method.
+	*/
+	protected int prepare(int dimension) {
+		return prepare(dimension, null);
+	}
+
+	/**
+	The same as the prepare(int) method, using the locations of the control-points in loc if loc is not null.
+
+	@see com.graphbuilder.curve.Curve#location(double[][], int)
+	*/
+	int prepare(int dimension, double[][] loc) {
 		if (!gi.isInRange(0, cp.numPoints()))
 			throw new IllegalArgumentException("Group iterator not in range");
 
@@ -346,16 +401,387 @@ public class BSpline extends ParametricCurve {
 			sharedData.c = new int[2 * degree];
 		}
 
-		double[] p = new double[mp.getDimension() + 1];
-		p[mp.getDimension()] = t1;
-		eval(p);
+		if (sharedData.b.length < degree)
+			sharedData.b = new double[2 * degree];
+
+		if (sharedData.pts.length < numPts)
+			sharedData.pts = new double[2 * numPts][];
+
+		int[] index = gi.indices();
+		for (int i = 0; i < numPts; i++)
+			sharedData.pts[i] = location(loc, index[i]);
+
+		sharedData.numPts = numPts;
+		sharedData.knotSpan = -1;
+
+		if (sharedData.span.length < x + 2)
+			sharedData.span = new double[2 * (x + 2)];
+
+		int n = 0;
+		sharedData.span[0] = t1;
+
+		for (int i = 0; i < x; i++) {
+			double k = sharedData.knot[i];
+			if (k > sharedData.span[n] && k < t2)
+				sharedData.span[++n] = k;
+		}
+
+		sharedData.span[++n] = t2;
+
+		return n;
+	}
+
+	protected void selectSection(int index, double[] interval) {
+		double t1 = sharedData.span[index];
+		double t2 = sharedData.span[index + 1];
+
+		sharedData.knotSpan = knotSpan((t1 + t2) / 2);
+		interval[0] = t1;
+		interval[1] = t2;
+	}
+
+	/**
+	Stores the bounds of the control-points of the selected knot-span, which contain the knot-span, and returns
+	true.  Returns false if no knot-span is selected, the interval is not inside the knot-span, the basis-functions
+	of the knot-span do not sum to 1 or, for the rational curve, a weight of the control-points is not positive.
+	*/
+	protected boolean getHullBounds(double t_min, double t_max, double[] min, double[] max, int dimension) {
+		int s = sharedData.knotSpan;
+		if (s < 0) return false;
+
+		double[] knot = sharedData.knot;
+
+		if (t_min < knot[s] || t_max > knot[s + 1])
+			return false;
+
+		int first = s - degree + 1;
+		int last = first + degree;
+
+		if (first < 0 || last > sharedData.numPts)
+			return false;
+
+		double[] weight = weights();
+
+		if (weight != null) {
+			for (int i = first; i < last; i++) {
+				if (!(weight[i] > 0))
+					return false;
+			}
+		}
+
+		bounds(sharedData.pts, first, last, min, max, dimension);
+		return true;
+	}
+
+	/**
+	Returns the control-points of the interval [t_min, t_max] of the selected knot-span if the polynomial degree p is
+	greater than 3.  The i-th control-point is the blossom of the knot-span with p - i arguments t_min and i arguments
+	t_max, which is computed by the de Boor algorithm using those arguments in place of a single t.  Returns null if
+	the curve is rational, the interval is not inside the knot-span or the knot-span does not have p + 1
+	control-points.  The cubic Bezier form is used for degrees <= 3.
+	*/
+	protected double[][] getBezierPoints(double t_min, double t_max, int dimension) {
+		int p = getPolynomialDegree();
+		int s = sharedData.knotSpan;
+
+		if (p <= 3 || s < 0)
+			return super.getBezierPoints(t_min, t_max, dimension);
+
+		double[] knot = sharedData.knot;
+
+		if (weights() != null || t_min < knot[s] || t_max > knot[s + 1])
+			return null;
+
+		int first = s - p;
+
+		if (first < 0 || first + p >= sharedData.numPts)
+			return null;
+
+		double[][] pts = sharedData.pts;
+		double[][] b = new double[p + 1][dimension];
+		double[][] d = new double[p + 1][dimension];
+
+		for (int k = 0; k <= p; k++) {
+			for (int i = 0; i <= p; i++) {
+				for (int j = 0; j < dimension; j++)
+					d[i][j] = pts[first + i][j];
+			}
+
+			for (int r = 1; r <= p; r++) {
+				double u = r <= p - k ? t_min : t_max;
+
+				for (int i = p; i >= r; i--) {
+					int x = first + i;
+					double alpha = (u - knot[x]) / (knot[x + p + 1 - r] - knot[x]);
+
+					for (int j = 0; j < dimension; j++)
+						d[i][j] = (1 - alpha) * d[i-1][j] + alpha * d[i][j];
+				}
+			}
+
+			for (int j = 0; j < dimension; j++)
+				b[k][j] = d[p][j];
+		}
+
+		return b;
+	}
+
+	/**
+	Returns a bound on |C''(t)| * (t_max - t_min)^2 computed from the de Boor points of the selected knot-span if
+	the polynomial degree is greater than 3.  The second derivative of the knot-span is a B-spline whose control
+	points are the second differences of the de Boor points divided by knot differences, so its magnitude is bounded
+	by the largest of those control points.  Returns NaN if the interval is not inside the knot-span or the
+	knot-span does not have degree + 1 control-points.  The cubic Bezier form is used for degrees <= 3.
+	*/
+	protected double getSecondDerivativeBound(double t_min, double t_max, int dimension) {
+		int p = getPolynomialDegree();
+		int s = sharedData.knotSpan;
+
+		if (p <= 3 || s < 0)
+			return super.getSecondDerivativeBound(t_min, t_max, dimension);
 
-		if (connect)
-			mp.lineTo(p);
-		else
-			mp.moveTo(p);
+		double[] knot = sharedData.knot;
 
-		BinaryCurveApproximationAlgorithm.genPts(this, t1, t2, mp);
+		if (t_min < knot[s] || t_max > knot[s + 1])
+			return Double.NaN;
+
+		int first = s - p;
+
+		if (first < 0 || first + p >= sharedData.numPts)
+			return Double.NaN;
+
+		// control-points of the first derivative, q[i] = p (P[i+1] - P[i]) / (knot[i+p+1] - knot[i+1])
+		double[][] pts = sharedData.pts;
+		double[][] q = new double[p][dimension];
+
+		for (int i = 0; i < p; i++) {
+			int k = first + i;
+			double f = p / (knot[k + p + 1] - knot[k + 1]);
+
+			for (int j = 0; j < dimension; j++)
+				q[i][j] = f * (pts[k + 1][j] - pts[k][j]);
+		}
+
+		// control-points of the second derivative, (p - 1) (q[i+1] - q[i]) / (knot[i+p+1] - knot[i+2])
+		double max = 0;
+
+		for (int i = 0; i < p - 1; i++) {
+			int k = first + i;
+			double f = (p - 1) / (knot[k + p + 1] - knot[k + 2]);
+			double a = 0;
+
+			for (int j = 0; j < dimension; j++) {
+				double x = f * (q[i + 1][j] - q[i][j]);
+				a += x * x;
+			}
+
+			if (!(a <= max)) max = a; // also keeps NaN
+		}
+
+		double h = t_max - t_min;
+		return Math.sqrt(max) * h * h;
+	}
+
+	/**
+	Returns the index s of the last non-empty knot-span [knot[s], knot[s+1]] such that knot[s] <= t, or -1 if t
+	is outside of the knot-vector.
+	*/
+	private int knotSpan(double t) {
+		double[] knot = sharedData.knot;
+		int s = sharedData.numPts + degree - 2;
+
+		if (t < knot[0] || t > knot[s + 1])
+			return -1;
+
+		while (s >= 0 && (knot[s] > t || knot[s] == knot[s + 1]))
+			s--;
+
+		return s;
+	}
+
+	/**
+	Evaluates the point using the basis-functions of the selected knot-span.  Returns false if no knot-span
+	is selected or the parametric value is outside the selected knot-span, in which case p is not changed.
+	The same as the eval methods, the result is added to p for the non-rational curve and stored in p for the
+	rational curve.
+	*/
+	boolean evalSpan(double[] p) {
+		int s = sharedData.knotSpan;
+		if (s < 0) return false;
+
+		int dim = p.length - 1;
+		double t = p[dim];
+		double[] knot = sharedData.knot;
+
+		if (t < knot[s] || t > knot[s + 1])
+			return false;
+
+		double[] b = sharedData.b;
+		basis(t, s, b, null, null);
+
+		double[][] pts = sharedData.pts;
+		double[] weight = weights();
+		int first = s - degree + 1;
+		int lo = Math.max(0, -first);
+		int hi = Math.min(degree, sharedData.numPts - first);
+
+		if (weight == null) {
+			for (int j = 0; j < dim; j++) {
+				double d = 0;
+
+				for (int r = lo; r < hi; r++)
+					d += b[r] * pts[first + r][j];
+
+				p[j] += d;
+			}
+		}
+		else {
+			double sum = 0;
+
+			for (int r = lo; r < hi; r++) {
+				b[r] *= weight[first + r];
+				sum += b[r];
+			}
+
+			if (sum == 0) sum = 1;
+
+			for (int j = 0; j < dim; j++) {
+				double d = 0;
+
+				for (int r = lo; r < hi; r++)
+					d += b[r] * pts[first + r][j];
+
+				p[j] = d / sum;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	Returns the locations of the control-points stored by the prepare method.
+	*/
+	double[][] points() {
+		return sharedData.pts;
+	}
+
+	/**
+	Returns the weights of the control-points, or null if the curve is non-rational.  The weights are
+	used by the evalSection and evalDerivatives methods.
+	*/
+	double[] weights() {
+		return null;
+	}
+
+	protected void evalSection(double[] t, int count, double[] out, int offset, int stride, int dimStride, int dimension) {
+		int s = sharedData.knotSpan;
+
+		if (s < 0) {
+			for (int i = 0; i < count; i++) {
+				int k = offset + i * stride;
+				for (int j = 0; j < dimension; j++)
+					out[k + j * dimStride] = 0;
+			}
+			return;
+		}
+
+		double[][] pts = sharedData.pts;
+		double[] b = sharedData.b;
+		double[] weight = weights();
+
+		// only the basis-functions first .. first + degree - 1 are non-zero in the knot-span
+		int first = s - degree + 1;
+		int lo = Math.max(0, -first);
+		int hi = Math.min(degree, sharedData.numPts - first);
+
+		double[] w = new double[degree * count]; // basis values, stored by basis-function
+		double[] sum = null;
+
+		for (int i = 0; i < count; i++) {
+			basis(t[i], s, b, null, null);
+
+			for (int r = 0; r < degree; r++)
+				w[r * count + i] = b[r];
+		}
+
+		if (weight != null) {
+			sum = new double[count];
+
+			for (int r = lo; r < hi; r++) {
+				double a = weight[first + r];
+				for (int i = 0, m = r * count; i < count; i++, m++) {
+					w[m] *= a;
+					sum[i] += w[m];
+				}
+			}
+		}
+
+		double[] c = new double[degree]; // the coordinates of the control-points in one dimension
+		double[] row = new double[count];
+
+		for (int j = 0; j < dimension; j++) {
+			for (int r = lo; r < hi; r++)
+				c[r] = pts[first + r][j];
+
+			int k = offset + j * dimStride;
+			Kernels.combine(w, count, c, degree, row, out, k, stride);
+
+			if (sum != null) {
+				for (int i = 0; i < count; i++, k += stride) {
+					if (sum[i] != 0)
+						out[k] /= sum[i];
+				}
+			}
+		}
+	}
+
+	/**
+	Computes the values of the degree basis-functions that are non-zero in knot-span s using the
+	Cox-de Boor recurrence.  Index location r of the b array is the value of basis-function s - degree + 1 + r.
+	Basis-functions that do not exist are given the value 0.  If the b1 and b2 arrays are not null, then the
+	values of the basis-functions of 1 and 2 lower degrees are stored in them using the same index locations.
+	*/
+	private void basis(double t, int s, double[] b, double[] b1, double[] b2) {
+		double[] knot = sharedData.knot;
+		int last = sharedData.numPts + degree - 1; // index of the last knot
+		int p = degree - 1;
+
+		for (int r = 0; r < p; r++)
+			b[r] = 0;
+
+		b[p] = 1;
+
+		for (int q = 1; q <= p; q++) {
+			if (b1 != null && q == p)
+				System.arraycopy(b, 0, b1, 0, degree);
+
+			if (b2 != null && q == p - 1)
+				System.arraycopy(b, 0, b2, 0, degree);
+
+			for (int r = p - q; r <= p; r++) {
+				int i = s - p + r;
+
+				if (i < 0 || i + q + 1 > last) {
+					b[r] = 0;
+					continue;
+				}
+
+				double v = 0;
+				double d1 = knot[i+q] - knot[i];
+
+				if (d1 != 0)
+					v = (t - knot[i]) / d1 * b[r];
+
+				if (r < p) {
+					double d2 = knot[i+q+1] - knot[i+1];
+
+					if (d2 != 0)
+						v += (knot[i+q+1] - t) / d2 * b[r+1];
+				}
+
+				b[r] = v;
+			}
+		}
 	}
 
 	/**
@@ -455,6 +881,126 @@ public class BSpline extends ParametricCurve {
 		return d;
 	}
 
+	/**
+	Computes the derivatives of the basis-functions of degree q from the values of the basis-functions of degree q - 1
+	stored in the lower array, using the same index locations as the basis method.
+	*/
+	private void derivative(double[] lower, int q, int s, double[] out) {
+		double[] knot = sharedData.knot;
+		int last = sharedData.numPts + degree - 1; // index of the last knot
+		int p = degree - 1;
+
+		for (int r = 0; r <= p; r++) {
+			int i = s - p + r;
+
+			if (i < 0 || i + q + 1 > last) {
+				out[r] = 0;
+				continue;
+			}
+
+			double v = 0;
+			double d1 = knot[i+q] - knot[i];
+
+			if (d1 != 0)
+				v = lower[r] / d1;
+
+			if (r < p) {
+				double d2 = knot[i+q+1] - knot[i+1];
+
+				if (d2 != 0)
+					v -= lower[r+1] / d2;
+			}
+
+			out[r] = q * v;
+		}
+	}
+
+	protected void evalDerivatives(double[] p, double[] d1, double[] d2) {
+		int dim = p.length - 1;
+		double t = p[dim];
+
+		for (int j = 0; j < dim; j++) {
+			p[j] = 0;
+			if (d1 != null) d1[j] = 0;
+			if (d2 != null) d2[j] = 0;
+		}
+
+		// the selected knot-span is used at its end points so the one-sided derivatives are consistent
+		double[] knot = sharedData.knot;
+		int s = sharedData.knotSpan;
+
+		if (s < 0 || t < knot[s] || t > knot[s + 1])
+			s = knotSpan(t);
+
+		if (s < 0) return;
+
+		int deg = degree - 1;
+		double[] b = new double[degree];
+		double[] b1 = new double[degree];
+		double[] b2 = new double[degree];
+		double[] e1 = new double[degree];
+		double[] e2 = new double[degree];
+
+		basis(t, s, b, b1, b2);
+
+		if (deg >= 1)
+			derivative(b1, deg, s, e1);
+
+		if (deg >= 2) {
+			double[] f = new double[degree];
+			derivative(b2, deg - 1, s, f);
+			derivative(f, deg, s, e2);
+		}
+
+		double[][] pts = sharedData.pts;
+		double[] weight = weights();
+		int first = s - deg;
+		int lo = Math.max(0, -first);
+		int hi = Math.min(degree, sharedData.numPts - first);
+
+		// sums of the weights and their derivatives, which are 1, 0 and 0 for the non-rational curve
+		double w0 = 0;
+		double w1 = 0;
+		double w2 = 0;
+
+		if (weight == null) {
+			w0 = 1;
+		}
+		else {
+			for (int r = lo; r < hi; r++) {
+				double w = weight[first + r];
+				b[r] *= w;
+				e1[r] *= w;
+				e2[r] *= w;
+				w0 += b[r];
+				w1 += e1[r];
+				w2 += e2[r];
+			}
+
+			if (w0 == 0) w0 = 1;
+		}
+
+		for (int j = 0; j < dim; j++) {
+			double a0 = 0;
+			double a1 = 0;
+			double a2 = 0;
+
+			for (int r = lo; r < hi; r++) {
+				double q = pts[first + r][j];
+				a0 += q * b[r];
+				a1 += q * e1[r];
+				a2 += q * e2[r];
+			}
+
+			// quotient rule
+			double c0 = a0 / w0;
+			double c1 = (a1 - w1 * c0) / w0;
+			p[j] = c0;
+			if (d1 != null) d1[j] = c1;
+			if (d2 != null) d2[j] = (a2 - 2 * w1 * c1 - w2 * c0) / w0;
+		}
+	}
+
 	/*
 	The recursive implementation of the N-function (not used) is below.  In addition to being
 	slower, the recursive implementation of the N-function has another problem which relates to
@@ -495,5 +1041,13 @@ public class BSpline extends ParametricCurve {
 
 		if (sharedData.knot.length > 0)
 			sharedData.knot = new double[0];
+
+		if (sharedData.pts.length > 0) {
+			sharedData.pts = new double[0][];
+			sharedData.span = new double[0];
+		}
+
+		if (sharedData.b.length > 0)
+			sharedData.b = new double[0];
 	}
 }
@@ -65,6 +65,7 @@ public class BezierCurve extends ParametricCurve {
 		// The idea is that all Bezier curves can share the same array, which
 		// is more memory efficient than each Bezier curve having its own array.
 		private double[] a = new double[0];
+		private double[][] loc; // the locations used in place of the control-path, see appendTo(MultiPath, double[][])
 	}
 	
 
@@ -79,7 +80,8 @@ public class BezierCurve extends ParametricCurve {
 	public void eval(double[] p) {
 		double t = p[p.length - 1];
 
-		int numPts = gi.getGroupSize();
+		int[] index = gi.indices();
+		int numPts = index.length;
 
 		if (numPts > sharedData.a.length)
 			sharedData.a = new double[2 * numPts];
@@ -91,8 +93,6 @@ public class BezierCurve extends ParametricCurve {
 		for (int i = numPts - 2; i >= 0; i--)
 			sharedData.a[i] = sharedData.a[i+1] * one_minus_t;
 
-		gi.set(0, 0);
-
 		int i = 0;
 
 		while (i < numPts) {
@@ -105,7 +105,7 @@ public class BezierCurve extends ParametricCurve {
 			}
 			else {
 				double gravity = sharedData.a[i] * b * pt;
-				double[] d = cp.getPoint(gi.next()).getLocation();
+				double[] d = location(sharedData.loc, index[i]);
 
 				for (int j = 0; j < p.length - 1; j++)
 					p[j] = p[j] + d[j] * gravity;
@@ -120,6 +120,66 @@ public class BezierCurve extends ParametricCurve {
 		return sampleLimit;
 	}
 
+	/**
+	Returns the group size - 1.
+	*/
+	protected int getPolynomialDegree() {
+		return gi.getGroupSize() - 1;
+	}
+
+	/**
+	Returns the control-points of the interval [t_min, t_max] of this curve, which are computed by subdividing
+	the control-points of the curve using the de Casteljau algorithm.  This works for any degree.
+	*/
+	protected double[][] getBezierPoints(double t_min, double t_max, int dimension) {
+		int[] index = gi.indices();
+		int n = index.length;
+		double[][] b = new double[n][dimension];
+
+		for (int i = 0; i < n; i++) {
+			double[] d = location(sharedData.loc, index[i]);
+
+			for (int j = 0; j < dimension; j++)
+				b[i][j] = d[j];
+		}
+
+		if (t_max != 0) {
+			// [0, t_max], then [t_min / t_max, 1] of that
+			subdivide(b, n, t_max, true, dimension);
+			subdivide(b, n, t_min / t_max, false, dimension);
+		}
+		else {
+			// [t_min, 1], then [0, (t_max - t_min) / (1 - t_min)] of that
+			subdivide(b, n, t_min, false, dimension);
+			subdivide(b, n, (t_max - t_min) / (1 - t_min), true, dimension);
+		}
+
+		return b;
+	}
+
+	/**
+	Replaces the control-points with the control-points of the interval [0, t] if left is true, or [t, 1] if
+	left is false.  The value of t can be outside of [0, 1].
+	*/
+	private static void subdivide(double[][] b, int n, double t, boolean left, int dimension) {
+		double s = 1.0 - t;
+
+		for (int k = 1; k < n; k++) {
+			if (left) {
+				for (int i = n - 1; i >= k; i--) {
+					for (int j = 0; j < dimension; j++)
+						b[i][j] = s * b[i-1][j] + t * b[i][j];
+				}
+			}
+			else {
+				for (int i = 0; i < n - k; i++) {
+					for (int j = 0; j < dimension; j++)
+						b[i][j] = s * b[i][j] + t * b[i+1][j];
+				}
+			}
+		}
+	}
+
 	/**
 	Sets the sample-limit.  For more information on the sample-limit, see the
 	BinaryCurveApproximationAlgorithm class.  The default sample-limit is 1.
@@ -174,21 +234,191 @@ public class BezierCurve extends ParametricCurve {
 	The only requirement for this curve is the group-iterator must be in range or this method returns quietly.
 	*/
 	public void appendTo(MultiPath mp) {
-		if (!gi.isInRange(0, cp.numPoints()))
-			throw new IllegalArgumentException("group iterator not in range");;
+		appendTo(mp, (double[][]) null);
+	}
 
+	protected void appendTo(MultiPath mp, double[][] loc) {
 		int n = mp.getDimension();
+		prepare(n, loc);
+
+		try {
+			double[] d = new double[n + 1];
+			d[n] = t_min;
+			eval(d);
+
+			if (connect)
+				mp.lineTo(d);
+			else
+				mp.moveTo(d);
+
+			BinaryCurveApproximationAlgorithm.genPts(this, t_min, t_max, mp);
+		}
+		finally {
+			sharedData.loc = null;
+		}
+	}
+
+	protected int prepare(int dimension) {
+		return prepare(dimension, null);
+	}
+
+	private int prepare(int dimension, double[][] loc) {
+		if (!gi.isInRange(0, cp.numPoints()))
+			throw new IllegalArgumentException("group iterator not in range");
+
+		sharedData.loc = loc;
+		return 1;
+	}
+
+	/**
+	Stores the interval [t_min, t_max] since the Bezier curve has a single section.
+	*/
+	protected void selectSection(int index, double[] interval) {
+		interval[0] = t_min;
+		interval[1] = t_max;
+	}
+
+	/**
+	Stores the bounds of the control-points, which contain the curve over [0, 1], and returns true.  Intervals
+	that extend outside of [0, 1] are handled by the default implementation.
+	*/
+	protected boolean getHullBounds(double t_min, double t_max, double[] min, double[] max, int dimension) {
+		if (t_min < 0 || t_max > 1)
+			return super.getHullBounds(t_min, t_max, min, max, dimension);
+
+		int numPts = gi.getGroupSize();
+		double[][] pts = new double[numPts][];
+
+		int[] index = gi.indices();
+		for (int i = 0; i < numPts; i++)
+			pts[i] = location(sharedData.loc, index[i]);
+
+		bounds(pts, 0, numPts, min, max, dimension);
+		return true;
+	}
 
-		double[] d = new double[n + 1];
-		d[n] = t_min;
-		eval(d);
+	protected void evalSection(double[] t, int count, double[] out, int offset, int stride, int dimStride, int dimension) {
+		int numPts = gi.getGroupSize();
+		double[] c = new double[numPts]; // the nCr coefficients
+		double[] w = new double[numPts]; // the weight of each point at the current t
+		double[][] q = new double[numPts][];
+
+		int[] index = gi.indices();
+
+		for (int i = 0; i < numPts; i++) {
+			c[i] = pascalsTriangle.nCr(numPts - 1, i);
+
+			if (Double.isInfinite(c[i]) || Double.isNaN(c[i]))
+				c[i] = 0; // see the eval method
+
+			q[i] = location(sharedData.loc, index[i]);
+		}
+
+		double[] m = new double[numPts * count]; // the weights, stored by point
+
+		for (int k = 0; k < count; k++) {
+			double s = t[k];
+			double one_minus_s = 1.0 - s;
+
+			w[numPts - 1] = 1;
+
+			for (int i = numPts - 2; i >= 0; i--)
+				w[i] = w[i+1] * one_minus_s;
+
+			double b = 1.0;
+
+			for (int i = 0; i < numPts; i++) {
+				m[i * count + k] = w[i] * c[i] * b;
+				b *= s;
+			}
+		}
+
+		double[] e = new double[numPts]; // the coordinates of the points in one dimension
+		double[] row = new double[count];
 
-		if (connect)
-			mp.lineTo(d);
-		else
-			mp.moveTo(d);
+		for (int j = 0; j < dimension; j++) {
+			for (int i = 0; i < numPts; i++)
+				e[i] = q[i][j];
+
+			Kernels.combine(m, count, e, numPts, row, out, offset + j * dimStride, stride);
+		}
+	}
+
+	protected void evalDerivatives(double[] p, double[] d1, double[] d2) {
+		int n = p.length - 1;
+		double t = p[n];
+		int numPts = gi.getGroupSize();
+		int m = numPts - 1; // the degree
+		double[][] q = new double[numPts][];
+		double[] w = new double[numPts];
 
-		BinaryCurveApproximationAlgorithm.genPts(this, t_min, t_max, mp);
+		int[] index = gi.indices();
+
+		for (int i = 0; i < numPts; i++)
+			q[i] = location(sharedData.loc, index[i]);
+
+		bernstein(m, t, w);
+
+		for (int j = 0; j < n; j++) {
+			double sum = 0;
+
+			for (int i = 0; i <= m; i++)
+				sum += q[i][j] * w[i];
+
+			p[j] = sum;
+		}
+
+		// the derivatives are Bezier curves of the differences of the points (the hodographs)
+		if (d1 != null) {
+			if (m >= 1)
+				bernstein(m - 1, t, w);
+
+			for (int j = 0; j < n; j++) {
+				double sum = 0;
+
+				for (int i = 0; i < m; i++)
+					sum += (q[i+1][j] - q[i][j]) * w[i];
+
+				d1[j] = m * sum;
+			}
+		}
+
+		if (d2 != null) {
+			if (m >= 2)
+				bernstein(m - 2, t, w);
+
+			for (int j = 0; j < n; j++) {
+				double sum = 0;
+
+				for (int i = 0; i < m - 1; i++)
+					sum += (q[i+2][j] - 2 * q[i+1][j] + q[i][j]) * w[i];
+
+				d2[j] = m * (m - 1) * sum;
+			}
+		}
+	}
+
+	/**
+	Computes the Bernstein polynomials of degree m at t and stores them in index locations 0 .. m (inclusive).
+	*/
+	private void bernstein(int m, double t, double[] w) {
+		double one_minus_t = 1.0 - t;
+		w[m] = 1;
+
+		for (int i = m - 1; i >= 0; i--)
+			w[i] = w[i+1] * one_minus_t;
+
+		double b = 1.0;
+
+		for (int i = 0; i <= m; i++) {
+			double c = pascalsTriangle.nCr(m, i);
+
+			if (Double.isInfinite(c) || Double.isNaN(c))
+				c = 0; // see the eval method
+
+			w[i] = w[i] * b * c;
+			b = b * t;
+		}
 	}
 
 	public void resetMemory() {
@@ -62,8 +62,8 @@ sample limit both increase the number of points appended to the multi-path.
 
 <p>The idea of a sample limit is adequate for curves that generate points on the curve using a fixed number of
 control-points in sections.  Curves that have this property have a fixed number of inflection points per section.
-For example, the CubicBSpline generates itself in sections (considering 4 points at a time) but the BSpline with
-degree 3 only has one section.  For curves that do not have this property, the sample-limit can be specified.
+For example, the CubicBSpline generates itself in sections (considering 4 points at a time) and the BSpline
+generates itself one knot-span at a time.  For curves that do not have this property, the sample-limit can be specified.
 Note: As the sample limit is increased, it becomes more difficult to produce a point arrangement that causes a
 problem.
 
@@ -82,7 +82,8 @@ public final class BinaryCurveApproximationAlgorithm {
 	/**
 	Appends a sequence of points to the multi-path using the lineTo method exclusively.  The flatness and the
 	dimension of the curve are determined by the multi-path's flatness and dimension.  The sample limit is
-	determined by the parametric curve's sample limit.
+	determined by the parametric curve's sample limit.  If the multi-path has a clip box and the interval lies
+	outside of it, then only eval(t_max) is appended using the moveTo method.
 
 	@throws IllegalArgumentException If t_min > t_max.
 	*/
@@ -90,6 +91,9 @@ public final class BinaryCurveApproximationAlgorithm {
 		if (t_min > t_max)
 			throw new IllegalArgumentException("t_min <= t_max required.");
 
+		if (pc.cull(t_min, t_max, mp))
+			return;
+
 		int n = mp.getDimension();
 
 		double t1 = t_min;
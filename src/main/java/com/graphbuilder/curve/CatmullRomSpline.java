@@ -49,6 +49,7 @@ public class CatmullRomSpline extends ParametricCurve {
 
 	private static class SharedData {
 		private double[][] pt = new double[4][];
+		private double[][] pts = new double[0][]; // all the points specified by the group-iterator
 	}
 
 	public CatmullRomSpline(ControlPath cp, GroupIterator gi) {
@@ -76,20 +77,25 @@ public class CatmullRomSpline extends ParametricCurve {
 		return 1;
 	}
 
+	/**
+	Returns a value of 3.
+	*/
+	protected int getPolynomialDegree() {
+		return 3;
+	}
+
 	/**
 	The requirements for this curve are the group-iterator must be in-range and have a group size of at least 4.
 	If these requirements are not met then this method returns quietly.
 	*/
 	public void appendTo(MultiPath mp) {
-		if (!gi.isInRange(0, cp.numPoints()))
-			throw new IllegalArgumentException("Group iterator not in range");;
-		if (gi.getGroupSize() < 4)
-			throw new IllegalArgumentException("Group iterator size < 4");;
-
-		gi.set(0, 0);
+		appendTo(mp, (double[][]) null);
+	}
 
-		for (int i = 0; i < 4; i++)
-			sharedData.pt[i] = cp.getPoint(gi.next()).getLocation();
+	protected void appendTo(MultiPath mp, double[][] loc) {
+		int numSections = prepare(mp.getDimension(), loc);
+		double[] interval = new double[2];
+		selectSection(0, interval);
 
 		double[] d = new double[mp.getDimension() + 1];
 		eval(d);
@@ -99,23 +105,85 @@ public class CatmullRomSpline extends ParametricCurve {
 		else
 			mp.moveTo(d);
 
-		gi.set(0, 0);
+		for (int i = 0; i < numSections; i++) {
+			selectSection(i, interval);
+			BinaryCurveApproximationAlgorithm.genPts(this, 0.0, 1.0, mp);
+		}
+	}
+
+	/**
+	Returns the number of sections, which is the group size - 3.  The requirements are the same as the
+	requirements of the appendTo method.
+	*/
+	protected int prepare(int dimension) {
+		return prepare(dimension, null);
+	}
+
+	private int prepare(int dimension, double[][] loc) {
+		if (!gi.isInRange(0, cp.numPoints()))
+			throw new IllegalArgumentException("Group iterator not in range");
 
-		while (true) {
-			int index_i = gi.index_i();
-			int count_j = gi.count_j();
+		int n = gi.getGroupSize();
 
-			for (int i = 0; i < 4; i++) {
-				if (!gi.hasNext()) {
-					return;
-				}
-				sharedData.pt[i] = cp.getPoint(gi.next()).getLocation();
-			}
+		if (n < 4)
+			throw new IllegalArgumentException("Group iterator size < 4");
 
-			gi.set(index_i, count_j);
-			gi.next();
+		if (sharedData.pts.length < n)
+			sharedData.pts = new double[2 * n][];
 
-			BinaryCurveApproximationAlgorithm.genPts(this, 0.0, 1.0, mp);
+		int[] index = gi.indices();
+		for (int i = 0; i < n; i++)
+			sharedData.pts[i] = location(loc, index[i]);
+
+		return n - 3;
+	}
+
+	protected void selectSection(int index, double[] interval) {
+		for (int i = 0; i < 4; i++)
+			sharedData.pt[i] = sharedData.pts[index + i];
+
+		interval[0] = 0.0;
+		interval[1] = 1.0;
+	}
+
+	protected void evalSection(double[] t, int count, double[] out, int offset, int stride, int dimStride, int dimension) {
+		double[] c = new double[4];
+		double[] row = new double[count];
+
+		for (int j = 0; j < dimension; j++) {
+			powerForm(j, c);
+			Kernels.cubic(t, count, c[0], c[1], c[2], c[3], row, out, offset + j * dimStride, stride);
+		}
+	}
+
+	protected void evalDerivatives(double[] p, double[] d1, double[] d2) {
+		int n = p.length - 1;
+		double t = p[n];
+		double[] c = new double[4];
+
+		for (int j = 0; j < n; j++) {
+			powerForm(j, c);
+			Kernels.cubic(c, t, p, d1, d2, j);
 		}
 	}
+
+	/**
+	Stores the coefficients of the eval method in power form, c[0] + c[1]*t + c[2]*t^2 + c[3]*t^3, for dimension j.
+	*/
+	private void powerForm(int j, double[] c) {
+		double p0 = sharedData.pt[0][j];
+		double p1 = sharedData.pt[1][j];
+		double p2 = sharedData.pt[2][j];
+		double p3 = sharedData.pt[3][j];
+
+		c[0] = p1;
+		c[1] = 0.5 * (p2 - p0);
+		c[2] = 0.5 * (2 * (p0 + 2 * p2) - 5 * p1 - p3);
+		c[3] = 0.5 * (p3 - p0 + 3 * (p1 - p2));
+	}
+
+	public void resetMemory() {
+		if (sharedData.pts.length > 0)
+			sharedData.pts = new double[0][];
+	}
 }
@@ -86,6 +86,7 @@ public class CubicBSpline extends ParametricCurve {
 		private int section = 0;
 		private int numPoints = 0;
 		private double[][] pt = new double[4][];
+		private double[][] pts = new double[0][]; // all the points specified by the group-iterator
 		private double[] b = new double[4];
 	}
 
@@ -96,8 +97,18 @@ public class CubicBSpline extends ParametricCurve {
 	}
 
 	protected void eval(double[] p) {
+		basis(p[p.length - 1], sharedData.b);
 
-		double t = p[p.length - 1];
+		for (int i = 0; i < 4; i++) {
+			for (int j = 0; j < p.length - 1; j++)
+				p[j] = p[j] + sharedData.pt[i][j] * sharedData.b[i];
+		}
+	}
+
+	/**
+	Computes the values of the 4 basis functions of the current section at t.
+	*/
+	private void basis(double t, double[] b) {
 		double t2 = t * t;
 		double t3 = t2 * t;
 
@@ -106,81 +117,243 @@ public class CubicBSpline extends ParametricCurve {
 		double u3 = u2 * u;
 
 		if (sharedData.numPoints == 4) {
-			sharedData.b[0] = u2 * u;
-			sharedData.b[1] = 3 * u2 * t;
-			sharedData.b[2] = 3 * u * t2;
-			sharedData.b[3] = t3;
+			b[0] = u2 * u;
+			b[1] = 3 * u2 * t;
+			b[2] = 3 * u * t2;
+			b[3] = t3;
 		}
 		else if (sharedData.numPoints == 5) {
 			if (sharedData.section == 0) {
-				sharedData.b[0] = u3;
-				sharedData.b[1] = 7 * t3 / 4 - 9 * t2 / 2 + 3 * t;
-				sharedData.b[2] = -t3 + 3 * t2 / 2;
-				sharedData.b[3] = t3 / 4;
+				b[0] = u3;
+				b[1] = 7 * t3 / 4 - 9 * t2 / 2 + 3 * t;
+				b[2] = -t3 + 3 * t2 / 2;
+				b[3] = t3 / 4;
 			}
 			else {
-				sharedData.b[0] = u3 / 4;
-				sharedData.b[1] = -u3 + 3 * u2 / 2;
-				sharedData.b[2] = 7 * u3 / 4 - 9 * u2 / 2 + 3 * u;
-				sharedData.b[3] = t3;
+				b[0] = u3 / 4;
+				b[1] = -u3 + 3 * u2 / 2;
+				b[2] = 7 * u3 / 4 - 9 * u2 / 2 + 3 * u;
+				b[3] = t3;
 			}
 		}
 		else if (sharedData.numPoints == 6) {
 			if (sharedData.section == 0) {
-				sharedData.b[0] = u3;
-				sharedData.b[1] = 7 * t3 / 4 - 9 * t2 / 2 + 3 * t;
-				sharedData.b[2] = -11 * t3 / 12 + 3 * t2 / 2;
-				sharedData.b[3] = t3 / 6;
+				b[0] = u3;
+				b[1] = 7 * t3 / 4 - 9 * t2 / 2 + 3 * t;
+				b[2] = -11 * t3 / 12 + 3 * t2 / 2;
+				b[3] = t3 / 6;
 			}
 			else if (sharedData.section == 1) {
-				sharedData.b[0] = u3 / 4;
-				sharedData.b[1] = 7 * t3 / 12 - 5 * t2 / 4 + t / 4 + 7.0 / 12;
-				sharedData.b[2] = -7 * t3 / 12 + t2 / 2 + t / 2 + 1.0 / 6;
-				sharedData.b[3] = t3 / 4;
+				b[0] = u3 / 4;
+				b[1] = 7 * t3 / 12 - 5 * t2 / 4 + t / 4 + 7.0 / 12;
+				b[2] = -7 * t3 / 12 + t2 / 2 + t / 2 + 1.0 / 6;
+				b[3] = t3 / 4;
 			}
 			else {
-				sharedData.b[0] = u3 / 6;
-				sharedData.b[1] = -11 * u3 / 12 + 3 * u2 / 2;
-				sharedData.b[2] = 7 * u3 / 4 - 9 * u2 / 2 + 3 * u;
-				sharedData.b[3] = t3;
+				b[0] = u3 / 6;
+				b[1] = -11 * u3 / 12 + 3 * u2 / 2;
+				b[2] = 7 * u3 / 4 - 9 * u2 / 2 + 3 * u;
+				b[3] = t3;
 			}
 		}
 		else { // 7 and >= 8 have the same basis functions
 			if (sharedData.section == 0) {
-				sharedData.b[0] = u3;
-				sharedData.b[1] = 7 * t3 / 4 - 9 * t2 / 2 + 3 * t;
-				sharedData.b[2] = -11 * t3 / 12 + 3 * t2 / 2;
-				sharedData.b[3] = t3 / 6;
+				b[0] = u3;
+				b[1] = 7 * t3 / 4 - 9 * t2 / 2 + 3 * t;
+				b[2] = -11 * t3 / 12 + 3 * t2 / 2;
+				b[3] = t3 / 6;
 			}
 			else if (sharedData.section == 1) {
-				sharedData.b[0] = u3 / 4;
-				sharedData.b[1] = 7 * t3 / 12 - 5 * t2 / 4 + t / 4 + 7.0 / 12;
-				sharedData.b[2] = -t3 / 2 + t2 / 2 + t / 2 + 1.0 / 6;
-				sharedData.b[3] = t3 / 6;
+				b[0] = u3 / 4;
+				b[1] = 7 * t3 / 12 - 5 * t2 / 4 + t / 4 + 7.0 / 12;
+				b[2] = -t3 / 2 + t2 / 2 + t / 2 + 1.0 / 6;
+				b[3] = t3 / 6;
 			}
 			else if (sharedData.section == 2) { // if numPoints == 7 then section 2 gets skipped
-				sharedData.b[0] = u3 / 6;
-				sharedData.b[1] = t3 / 2 - t2 + 2.0 / 3;
-				sharedData.b[2] = (-t3 + t2 + t) / 2 + 1.0 / 6;
-				sharedData.b[3] = t3 / 6;
+				b[0] = u3 / 6;
+				b[1] = t3 / 2 - t2 + 2.0 / 3;
+				b[2] = (-t3 + t2 + t) / 2 + 1.0 / 6;
+				b[3] = t3 / 6;
 			}
 			else if (sharedData.section == 3) {
-				sharedData.b[0] = u3 / 6;
-				sharedData.b[1] = -u3 / 2 + u2 / 2 + u / 2 + 1.0 / 6;
-				sharedData.b[2] = 7 * u3 / 12 - 5 * u2 / 4 + u / 4 + 7.0 / 12;
-				sharedData.b[3] = t3 / 4;
+				b[0] = u3 / 6;
+				b[1] = -u3 / 2 + u2 / 2 + u / 2 + 1.0 / 6;
+				b[2] = 7 * u3 / 12 - 5 * u2 / 4 + u / 4 + 7.0 / 12;
+				b[3] = t3 / 4;
 			}
 			else {
-				sharedData.b[0] = u3 / 6;
-				sharedData.b[1] = -11 * u3 / 12 + 3 * u2 / 2;
-				sharedData.b[2] = 7 * u3 / 4 - 9 * u2 / 2 + 3 * u;
-				sharedData.b[3] = t3;
+				b[0] = u3 / 6;
+				b[1] = -11 * u3 / 12 + 3 * u2 / 2;
+				b[2] = 7 * u3 / 4 - 9 * u2 / 2 + 3 * u;
+				b[3] = t3;
 			}
 		}
+	}
 
-		for (int i = 0; i < 4; i++) {
-			for (int j = 0; j < p.length - 1; j++)
-				p[j] = p[j] + sharedData.pt[i][j] * sharedData.b[i];
+	protected void evalDerivatives(double[] p, double[] d1, double[] d2) {
+		int n = p.length - 1;
+		double t = p[n];
+		double[] b = new double[4];
+		double[] e1 = new double[4];
+		double[] e2 = new double[4];
+
+		basis(t, b);
+		basisDerivatives(t, e1, e2);
+
+		for (int j = 0; j < n; j++) {
+			double x = 0;
+			double y = 0;
+			double z = 0;
+
+			for (int i = 0; i < 4; i++) {
+				double q = sharedData.pt[i][j];
+				x += q * b[i];
+				y += q * e1[i];
+				z += q * e2[i];
+			}
+
+			p[j] = x;
+			if (d1 != null) d1[j] = y;
+			if (d2 != null) d2[j] = z;
+		}
+	}
+
+	/**
+	Computes the first and second derivatives of the basis functions of the basis method.  Basis functions that
+	are written in terms of u = 1 - t are differentiated using du/dt = -1.
+	*/
+	private void basisDerivatives(double t, double[] b1, double[] b2) {
+		double t2 = t * t;
+
+		double u = 1 - t;
+		double u2 = u * u;
+
+		if (sharedData.numPoints == 4) {
+			b1[0] = -3 * u2;
+			b1[1] = 3 * u2 - 6 * u * t;
+			b1[2] = 6 * u * t - 3 * t2;
+			b1[3] = 3 * t2;
+
+			b2[0] = 6 * u;
+			b2[1] = 6 * t - 12 * u;
+			b2[2] = 6 * u - 12 * t;
+			b2[3] = 6 * t;
+		}
+		else if (sharedData.numPoints == 5) {
+			if (sharedData.section == 0) {
+				b1[0] = -3 * u2;
+				b1[1] = 21 * t2 / 4 - 9 * t + 3;
+				b1[2] = -3 * t2 + 3 * t;
+				b1[3] = 3 * t2 / 4;
+
+				b2[0] = 6 * u;
+				b2[1] = 21 * t / 2 - 9;
+				b2[2] = -6 * t + 3;
+				b2[3] = 3 * t / 2;
+			}
+			else {
+				b1[0] = -3 * u2 / 4;
+				b1[1] = 3 * u2 - 3 * u;
+				b1[2] = -21 * u2 / 4 + 9 * u - 3;
+				b1[3] = 3 * t2;
+
+				b2[0] = 3 * u / 2;
+				b2[1] = -6 * u + 3;
+				b2[2] = 21 * u / 2 - 9;
+				b2[3] = 6 * t;
+			}
+		}
+		else if (sharedData.numPoints == 6) {
+			if (sharedData.section == 0) {
+				b1[0] = -3 * u2;
+				b1[1] = 21 * t2 / 4 - 9 * t + 3;
+				b1[2] = -11 * t2 / 4 + 3 * t;
+				b1[3] = t2 / 2;
+
+				b2[0] = 6 * u;
+				b2[1] = 21 * t / 2 - 9;
+				b2[2] = -11 * t / 2 + 3;
+				b2[3] = t;
+			}
+			else if (sharedData.section == 1) {
+				b1[0] = -3 * u2 / 4;
+				b1[1] = 7 * t2 / 4 - 5 * t / 2 + 1.0 / 4;
+				b1[2] = -7 * t2 / 4 + t + 1.0 / 2;
+				b1[3] = 3 * t2 / 4;
+
+				b2[0] = 3 * u / 2;
+				b2[1] = 7 * t / 2 - 5.0 / 2;
+				b2[2] = -7 * t / 2 + 1;
+				b2[3] = 3 * t / 2;
+			}
+			else {
+				b1[0] = -u2 / 2;
+				b1[1] = 11 * u2 / 4 - 3 * u;
+				b1[2] = -21 * u2 / 4 + 9 * u - 3;
+				b1[3] = 3 * t2;
+
+				b2[0] = u;
+				b2[1] = -11 * u / 2 + 3;
+				b2[2] = 21 * u / 2 - 9;
+				b2[3] = 6 * t;
+			}
+		}
+		else { // 7 and >= 8 have the same basis functions
+			if (sharedData.section == 0) {
+				b1[0] = -3 * u2;
+				b1[1] = 21 * t2 / 4 - 9 * t + 3;
+				b1[2] = -11 * t2 / 4 + 3 * t;
+				b1[3] = t2 / 2;
+
+				b2[0] = 6 * u;
+				b2[1] = 21 * t / 2 - 9;
+				b2[2] = -11 * t / 2 + 3;
+				b2[3] = t;
+			}
+			else if (sharedData.section == 1) {
+				b1[0] = -3 * u2 / 4;
+				b1[1] = 7 * t2 / 4 - 5 * t / 2 + 1.0 / 4;
+				b1[2] = -3 * t2 / 2 + t + 1.0 / 2;
+				b1[3] = t2 / 2;
+
+				b2[0] = 3 * u / 2;
+				b2[1] = 7 * t / 2 - 5.0 / 2;
+				b2[2] = -3 * t + 1;
+				b2[3] = t;
+			}
+			else if (sharedData.section == 2) {
+				b1[0] = -u2 / 2;
+				b1[1] = 3 * t2 / 2 - 2 * t;
+				b1[2] = (-3 * t2 + 2 * t + 1) / 2;
+				b1[3] = t2 / 2;
+
+				b2[0] = u;
+				b2[1] = 3 * t - 2;
+				b2[2] = -3 * t + 1;
+				b2[3] = t;
+			}
+			else if (sharedData.section == 3) {
+				b1[0] = -u2 / 2;
+				b1[1] = 3 * u2 / 2 - u - 1.0 / 2;
+				b1[2] = -7 * u2 / 4 + 5 * u / 2 - 1.0 / 4;
+				b1[3] = 3 * t2 / 4;
+
+				b2[0] = u;
+				b2[1] = -3 * u + 1;
+				b2[2] = 7 * u / 2 - 5.0 / 2;
+				b2[3] = 3 * t / 2;
+			}
+			else {
+				b1[0] = -u2 / 2;
+				b1[1] = 11 * u2 / 4 - 3 * u;
+				b1[2] = -21 * u2 / 4 + 9 * u - 3;
+				b1[3] = 3 * t2;
+
+				b2[0] = u;
+				b2[1] = -11 * u / 2 + 3;
+				b2[2] = 21 * u / 2 - 9;
+				b2[3] = 6 * t;
+			}
 		}
 	}
 
@@ -191,6 +364,13 @@ public class CubicBSpline extends ParametricCurve {
 		return 1;
 	}
 
+	/**
+	Returns a value of 3.
+	*/
+	protected int getPolynomialDegree() {
+		return 3;
+	}
+
 	/**
 	Sets the curve to start at the first control-point and end at the last control-point specified by
 	the group-iterator.
@@ -215,63 +395,104 @@ public class CubicBSpline extends ParametricCurve {
 	If these requirements are not met then this method throws IllegalArgumentException
 	*/
 	public void appendTo(MultiPath mp) {
+		appendTo(mp, (double[][]) null);
+	}
+
+	protected void appendTo(MultiPath mp, double[][] loc) {
+		int numSections = prepare(mp.getDimension(), loc);
+		double[] interval = new double[2];
+		selectSection(0, interval);
+
+		double[] d = new double[mp.getDimension() + 1];
+		eval(d);
+
+		if (connect)
+			mp.lineTo(d);
+		else
+			mp.moveTo(d);
+
+		for (int i = 0; i < numSections; i++) {
+			selectSection(i, interval);
+			BinaryCurveApproximationAlgorithm.genPts(this, 0.0, 1.0, mp);
+		}
+	}
+
+	/**
+	Returns the number of sections, which is the group size - 3.  The requirements are the same as the
+	requirements of the appendTo method.
+	*/
+	protected int prepare(int dimension) {
+		return prepare(dimension, null);
+	}
+
+	private int prepare(int dimension, double[][] loc) {
 		if (!gi.isInRange(0, cp.numPoints()))
 			throw new IllegalArgumentException("Group iterator not in range");
 		int n = gi.getGroupSize();
 		if (n < 4)
 			throw new IllegalArgumentException("Group iterator size < 4");
 
-		if (interpolateEndpoints) {
+		if (sharedData.pts.length < n)
+			sharedData.pts = new double[2 * n][];
+
+		int[] index = gi.indices();
+		for (int i = 0; i < n; i++)
+			sharedData.pts[i] = location(loc, index[i]);
+
+		if (interpolateEndpoints)
 			sharedData.numPoints = n;
-			sharedData.section = 0;
-		}
-		else {
+		else
 			sharedData.numPoints = -1; // defaults to numPoints >= 7 in the eval method
-			sharedData.section = 2;	// section doesn't change when interpolateEndpoints == false
-		}
 
-		gi.set(0, 0);
-		int index_i = 0;
-		int count_j = 0;
+		return n - 3;
+	}
 
+	protected void selectSection(int index, double[] interval) {
 		for (int i = 0; i < 4; i++)
-			sharedData.pt[i] = cp.getPoint(gi.next()).getLocation();
+			sharedData.pt[i] = sharedData.pts[index + i];
+
+		int n = sharedData.numPoints;
+
+		if (n < 0)
+			sharedData.section = 2; // section doesn't change when interpolateEndpoints == false
+		else if (n < 7 || index < 2)
+			sharedData.section = index;
+		else if (index == n - 5) // if numPoints == 7 then section 2 gets skipped
+			sharedData.section = 3;
+		else if (index == n - 4)
+			sharedData.section = 4;
+		else
+			sharedData.section = 2;
 
-		double[] d = new double[mp.getDimension() + 1];
-		eval(d);
+		interval[0] = 0.0;
+		interval[1] = 1.0;
+	}
 
-		if (connect)
-			mp.lineTo(d);
-		else
-			mp.moveTo(d);
+	protected void evalSection(double[] t, int count, double[] out, int offset, int stride, int dimStride, int dimension) {
+		double[] b = sharedData.b;
+		double[] w = new double[4 * count]; // basis values, stored by basis function
 
-		int j = 3;
+		for (int i = 0; i < count; i++) {
+			basis(t[i], b);
+			w[i] = b[0];
+			w[count + i] = b[1];
+			w[2 * count + i] = b[2];
+			w[3 * count + i] = b[3];
+		}
 
-		while (true) {
-			BinaryCurveApproximationAlgorithm.genPts(this, 0.0, 1.0, mp);
-			j++;
-			if (j == n) break;
-
-			gi.set(index_i, count_j);
-			gi.next();
-			index_i = gi.index_i();
-			count_j = gi.count_j();
-
-			for (int i = 0; i < 4; i++)
-				sharedData.pt[i] = cp.getPoint(gi.next()).getLocation();
-
-			if (interpolateEndpoints) {
-				if (n < 7) {
-					sharedData.section++;
-				}
-				else {
-					if (sharedData.section != 2)
-						sharedData.section++;
-
-					if (sharedData.section == 2 && j == n - 2)
-						sharedData.section++;
-				}
-			}
+		double[] c = new double[4];
+		double[] row = new double[count];
+
+		for (int j = 0; j < dimension; j++) {
+			for (int r = 0; r < 4; r++)
+				c[r] = sharedData.pt[r][j];
+
+			Kernels.combine(w, count, c, 4, row, out, offset + j * dimStride, stride);
 		}
 	}
+
+	public void resetMemory() {
+		if (sharedData.pts.length > 0)
+			sharedData.pts = new double[0][];
+	}
 }
@@ -31,6 +31,8 @@
 
 package com.graphbuilder.curve;
 
+import java.awt.geom.AffineTransform;
+
 /**
 <p>A Curve is an object that defines itself using mathematical equations and points of a
 control-path in a given dimension.  Classes that extend Curve must define the appendTo method.
@@ -180,6 +182,142 @@ public abstract class Curve {
 	*/
 	public abstract void appendTo(MultiPath mp);
 
+	/**
+	<p>Appends the curve to the multi-path after transforming the control-points by the specified affine matrix.
+	The flatness of the multi-path applies to the transformed curve, so when the matrix maps to device space the
+	flatness is measured in device units.  The curves of this package are affine-invariant, so the result is the
+	same as transforming the curve.  The one exception is a region of a curve where the basis-functions do not sum
+	to 1, such as a BSpline evaluated outside of its default interval.
+
+	<p>The matrix has n rows of n + 1 values stored row after row, where n is the dimension of the multi-path.
+	Row i holds the coefficients of dimension i of the transformed point, with the translation in the last column.
+	Dimensions of the control-points >= n are not changed.  Only the control-points specified by the group-iterator
+	are transformed, and neither the control-path nor the curve is modified, so the curve can be appended by other
+	threads at the same time.
+
+	<p>The transformed locations are passed to the appendTo(MultiPath, double[][]) method.  Curves that are not
+	defined by the locations of their control-points must override this method instead.
+
+	@throws IllegalArgumentException If the matrix is null or has length less than n * (n + 1).
+	@throws UnsupportedOperationException If the curve does not support transformed control-points.
+	@see #appendTo(MultiPath)
+	@see #appendTo(MultiPath, double[][])
+	*/
+	public void appendTo(MultiPath mp, double[] matrix) {
+		int n = mp.getDimension();
+
+		if (matrix == null || matrix.length < n * (n + 1))
+			throw new IllegalArgumentException("matrix.length >= n * (n + 1) required");
+
+		int numPoints = cp.numPoints();
+		double[][] loc = new double[numPoints][];
+
+		if (gi.isInRange(0, numPoints)) {
+			int[] index = gi.indices();
+
+			for (int i = 0; i < index.length; i++) {
+				int k = index[i];
+
+				if (loc[k] != null)
+					continue;
+
+				double[] d = cp.getPoint(k).getLocation();
+				double[] p = d.clone();
+
+				for (int r = 0, x = 0; r < n; r++, x++) {
+					double sum = 0;
+
+					for (int c = 0; c < n; c++)
+						sum += matrix[x++] * d[c];
+
+					p[r] = sum + matrix[x];
+				}
+
+				loc[k] = p;
+			}
+		}
+
+		appendTo(mp, loc);
+	}
+
+	/**
+	Appends the curve to the multi-path using loc[i] in place of the location of control-point i of the
+	control-path.  If loc is null then the locations of the control-path are used, the same as the
+	appendTo(MultiPath) method.  The curves of this package implement appendTo(MultiPath) by calling this method
+	with null.
+
+	The default implementation throws UnsupportedOperationException, since a curve that does not override this
+	method is not known to be defined by its control-points.
+
+	@throws UnsupportedOperationException If the curve does not support transformed control-points.
+	@see #appendTo(MultiPath, double[])
+	@see #location(double[][], int)
+	*/
+	protected void appendTo(MultiPath mp, double[][] loc) {
+		throw new UnsupportedOperationException(getClass().getName() + " does not support transformed control-points");
+	}
+
+	/**
+	Returns loc[index] if loc is not null, otherwise the location of the control-point at the specified index
+	of the control-path.
+
+	@see #appendTo(MultiPath, double[][])
+	*/
+	protected final double[] location(double[][] loc, int index) {
+		if (loc != null)
+			return loc[index];
+
+		return cp.getPoint(index).getLocation();
+	}
+
+	/**
+	Appends the curve to the shape multi-path after transforming the control-points by the specified affine
+	transform.  The transform is applied to the basis vectors of the shape multi-path and the other dimensions
+	are not changed.  Appending with the transform and then using the path-iterator without a transform avoids
+	transforming every point of the path.
+
+	@throws IllegalArgumentException If the transform is null.
+	@see #appendTo(MultiPath, double[])
+	@see com.graphbuilder.curve.ShapeMultiPath#getBasisVectors()
+	*/
+	public void appendTo(ShapeMultiPath mp, AffineTransform at) {
+		if (at == null)
+			throw new IllegalArgumentException("AffineTransform cannot be null.");
+
+		int n = mp.getDimension();
+		int[] b = mp.getBasisVectors();
+		double[] m = new double[n * (n + 1)];
+
+		for (int i = 0; i < n; i++)
+			m[i * (n + 1) + i] = 1;
+
+		double[] f = new double[6];
+		at.getMatrix(f);
+
+		int r0 = b[0] * (n + 1);
+		int r1 = b[1] * (n + 1);
+
+		m[r0 + b[0]] = f[0];
+		m[r0 + b[1]] = f[2];
+		m[r0 + n] = f[4];
+		m[r1 + b[0]] = f[1];
+		m[r1 + b[1]] = f[3];
+		m[r1 + n] = f[5];
+
+		appendTo(mp, m);
+	}
+
+	/**
+	Returns a checksum of the properties of the curve, other than the control-path and group-iterator, that change
+	the points the curve appends.  The FlatteningCache uses the checksum to detect stale flattenings.  The default
+	implementation returns 0, so changes to such properties require the cache to be invalidated.
+
+	@see com.graphbuilder.curve.FlatteningCache#invalidate(Curve)
+	*/
+	protected long stateChecksum() {
+		return 0;
+	}
+
 	/**
 	Resets the shared memory to the initial state.
 	*/
@@ -0,0 +1,387 @@
+/*
+* Copyright (c) 2005, Graph Builder
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+* * Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+*
+* * Redistributions in binary form must reproduce the above copyright notice,
+* this list of conditions and the following disclaimer in the documentation
+* and/or other materials provided with the distribution.
+*
+* * Neither the name of Graph Builder nor the names of its contributors may be
+* used to endorse or promote products derived from this software without
+* specific prior written permission.
+
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+* FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+* DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+* SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+* OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+* OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.graphbuilder.curve;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+<p>A Shape adapter for a parametric curve that describes the curve using quadratic and cubic Bezier segments
+instead of a flattened sequence of points.  The rasterizer and stroker of Java2D then work on a few control-points
+per section of the curve.
+
+<p>Sections that are polynomials of degree 3 or less are converted exactly.  Cubic sections become a single
+SEG_CUBICTO, quadratic sections a single SEG_QUADTO and linear sections a single SEG_LINETO.  The other sections,
+such as the sections of rational curves or high degree polynomials, are approximated by cubic segments fitted to
+samples of the section by least-squares.  A section is subdivided until the fitted segments are within the
+flatness of the curve.
+
+<p>The segments are computed the first time a method of the Shape interface is called and are kept until the
+checksum of the control-points, group and state of the curve changes, which is the same checksum the
+FlatteningCache uses, or a property of the shape is set.  Other changes to the curve, such as the degree or
+knot-vector, require the invalidate method to be called.  The toPath method always computes a new path.
+
+@see com.graphbuilder.curve.FlatteningCache
+
+@see com.graphbuilder.curve.ShapeMultiPath
+*/
+public class CurveShape implements Shape {
+
+	private static final int SAMPLES = 16;
+	private static final int MAX_DEPTH = 10;
+
+	private final ParametricCurve pc;
+	private int windingRule = PathIterator.WIND_EVEN_ODD;
+	private double flatness = 1.0;
+	private int ai0 = 0;
+	private int ai1 = 1;
+
+	private Path2D.Double path = null; // the segments used by the Shape methods, or null if not computed
+	private long checksum = 0;
+
+	/**
+	Constructs a shape for the specified curve.
+
+	@throws IllegalArgumentException If the curve is null.
+	*/
+	public CurveShape(ParametricCurve pc) {
+		if (pc == null)
+			throw new IllegalArgumentException("Curve cannot be null.");
+
+		this.pc = pc;
+	}
+
+	/**
+	Returns the curve of this shape.
+	*/
+	public ParametricCurve getCurve() {
+		return pc;
+	}
+
+	/**
+	The basis vectors specify which index of the points of the curve corresponds to the x-axis and which index
+	corresponds to the y-axis.  The value of the x-axis is at index location 0 and the value of the y-axis is at
+	index location 1.
+
+	@throws IllegalArgumentException If the axis values are less than 0.
+	@see #getBasisVectors()
+	*/
+	public void setBasisVectors(int[] b) {
+		int b0 = b[0];
+		int b1 = b[1];
+
+		if (b0 < 0 || b1 < 0)
+			throw new IllegalArgumentException("basis vectors must be >= 0");
+
+		ai0 = b0;
+		ai1 = b1;
+		invalidate();
+	}
+
+	/**
+	Returns a new integer array with the basis vectors.  The default basis vectors are {0, 1}.
+
+	@see #setBasisVectors(int[])
+	*/
+	public int[] getBasisVectors() {
+		return new int[] { ai0, ai1 };
+	}
+
+	/**
+	Returns the flatness.  The flatness is the maximum distance between an approximated section and the cubic
+	segments that replace it.  The flatness does not apply to the exact sections.  The default value is 1.0.
+
+	@see #setFlatness(double)
+	*/
+	public double getFlatness() {
+		return flatness;
+	}
+
+	/**
+	Sets the flatness.
+
+	@throws IllegalArgumentException If the flatness is <= 0.
+	@see #getFlatness()
+	*/
+	public void setFlatness(double f) {
+		if (f <= 0)
+			throw new IllegalArgumentException("flatness > 0 required");
+
+		flatness = f;
+		invalidate();
+	}
+
+	/**
+	Returns the value of the winding rule.  The default value is PathIterator.WIND_EVEN_ODD.
+
+	@see #setWindingRule(int)
+	*/
+	public int getWindingRule() {
+		return windingRule;
+	}
+
+	/**
+	Sets the winding rule.  The winding rule can either by PathIterator.WIND_EVEN_ODD or
+	PathIterator.WIND_NON_ZERO, otherwise an IllegalArgumentException is thrown.
+	*/
+	public void setWindingRule(int rule) {
+		if (rule != PathIterator.WIND_EVEN_ODD && rule != PathIterator.WIND_NON_ZERO)
+			throw new IllegalArgumentException("winding rule must be WIND_EVEN_ODD or WIND_NON_ZERO");
+
+		windingRule = rule;
+		invalidate();
+	}
+
+	/**
+	Discards the segments used by the methods of the Shape interface, so they are computed again the next time
+	they are needed.  This method must be called after changing a property of the curve that is not part of the
+	checksum, such as the degree or knot-vector.
+	*/
+	public synchronized void invalidate() {
+		path = null;
+	}
+
+	/**
+	Returns the segments used by the methods of the Shape interface, computing them if they have not been computed
+	yet or the checksum of the curve has changed.  The returned path must not be modified.
+	*/
+	private synchronized Path2D.Double path() {
+		long h = FlatteningCache.checksum(pc, Math.max(ai0, ai1) + 1);
+
+		if (path == null || h != checksum) {
+			path = toPath();
+			checksum = h;
+		}
+
+		return path;
+	}
+
+	/**
+	Returns a new path that contains the segments of the curve.
+	*/
+	public Path2D.Double toPath() {
+		Path2D.Double path = new Path2D.Double(windingRule);
+		appendTo(path);
+		return path;
+	}
+
+	/**
+	Appends the segments of the curve to the specified path.  The first point is appended using the lineTo method
+	if the connect flag of the curve is true and the path has a current point, otherwise the moveTo method is used.
+
+	@throws IllegalArgumentException If the curve cannot be evaluated.
+	*/
+	public void appendTo(Path2D path) {
+		int n = Math.max(ai0, ai1) + 1;
+		int numSections = pc.prepare(n);
+		int degree = pc.getPolynomialDegree();
+		double[] interval = new double[2];
+
+		double[] p = new double[n + 1];
+		double[] d = new double[n];
+		double[] q = new double[n + 1];
+		double[] e = new double[n];
+
+		for (int i = 0; i < numSections; i++) {
+			pc.selectSection(i, interval);
+			double t1 = interval[0];
+			double t2 = interval[1];
+
+			p[n] = t1;
+			pc.evalDerivatives(p, d, null);
+
+			if (i == 0) {
+				if (pc.getConnect() && path.getCurrentPoint() != null)
+					path.lineTo(p[ai0], p[ai1]);
+				else
+					path.moveTo(p[ai0], p[ai1]);
+			}
+
+			if (degree >= 0 && degree <= 3) {
+				q[n] = t2;
+				pc.evalDerivatives(q, e, null);
+				double h = t2 - t1;
+
+				if (degree <= 1)
+					path.lineTo(q[ai0], q[ai1]);
+				else if (degree == 2)
+					path.quadTo(p[ai0] + h / 2 * d[ai0], p[ai1] + h / 2 * d[ai1], q[ai0], q[ai1]);
+				else
+					path.curveTo(p[ai0] + h / 3 * d[ai0], p[ai1] + h / 3 * d[ai1],
+						q[ai0] - h / 3 * e[ai0], q[ai1] - h / 3 * e[ai1], q[ai0], q[ai1]);
+			}
+			else {
+				fit(path, t1, t2, p[ai0], p[ai1], 0, n);
+			}
+		}
+	}
+
+	/**
+	Appends cubic segments that approximate the interval [t1, t2] of the selected section.  The end points of
+	the segment are on the curve and the inner control-points minimize the squared distance to the samples of
+	the curve at the same parametric values.  If a sample is further than the flatness from the segment, then
+	the interval is split in half.
+	*/
+	private void fit(Path2D path, double t1, double t2, double x0, double y0, int depth, int n) {
+		int m = 2 * SAMPLES + 1; // the fit uses the odd samples, the even samples are only used to check the error
+		double[] x = new double[m + 1];
+		double[] y = new double[m + 1];
+		double[] p = new double[n + 1];
+
+		x[0] = x0;
+		y[0] = y0;
+
+		for (int i = 1; i <= m; i++) {
+			p[n] = t1 + (t2 - t1) * i / m;
+			eval(p);
+			x[i] = p[ai0];
+			y[i] = p[ai1];
+		}
+
+		double x3 = x[m];
+		double y3 = y[m];
+
+		double c11 = 0, c12 = 0, c22 = 0;
+		double rx1 = 0, ry1 = 0, rx2 = 0, ry2 = 0;
+
+		for (int i = 1; i < m; i += 2) {
+			double u = (double) i / m;
+			double v = 1 - u;
+			double b0 = v * v * v;
+			double b1 = 3 * u * v * v;
+			double b2 = 3 * u * u * v;
+			double b3 = u * u * u;
+
+			double rx = x[i] - b0 * x0 - b3 * x3;
+			double ry = y[i] - b0 * y0 - b3 * y3;
+
+			c11 += b1 * b1;
+			c12 += b1 * b2;
+			c22 += b2 * b2;
+			rx1 += b1 * rx;
+			ry1 += b1 * ry;
+			rx2 += b2 * rx;
+			ry2 += b2 * ry;
+		}
+
+		double det = c11 * c22 - c12 * c12;
+		double x1 = (c22 * rx1 - c12 * rx2) / det;
+		double y1 = (c22 * ry1 - c12 * ry2) / det;
+		double x2 = (c11 * rx2 - c12 * rx1) / det;
+		double y2 = (c11 * ry2 - c12 * ry1) / det;
+
+		double flatSq = flatness * flatness;
+		boolean ok = true;
+
+		for (int i = 1; i < m && ok; i++) {
+			double u = (double) i / m;
+			double v = 1 - u;
+			double bx = v * v * v * x0 + 3 * u * v * v * x1 + 3 * u * u * v * x2 + u * u * u * x3;
+			double by = v * v * v * y0 + 3 * u * v * v * y1 + 3 * u * u * v * y2 + u * u * u * y3;
+			double dx = bx - x[i];
+			double dy = by - y[i];
+			ok = dx * dx + dy * dy <= flatSq;
+		}
+
+		if (ok || depth == MAX_DEPTH) {
+			path.curveTo(x1, y1, x2, y2, x3, y3);
+			return;
+		}
+
+		double tm = (t1 + t2) / 2;
+		fit(path, t1, tm, x0, y0, depth + 1, n);
+
+		Point2D pt = path.getCurrentPoint();
+		fit(path, tm, t2, pt.getX(), pt.getY(), depth + 1, n);
+	}
+
+	private void eval(double[] p) {
+		for (int j = 0; j < p.length - 1; j++)
+			p[j] = 0;
+
+		pc.eval(p);
+	}
+
+	//---------------------------------------------------------------
+	// methods for Shape interface:
+
+	/**
+	Returns a path iterator over the segments of the curve.
+	*/
+	public PathIterator getPathIterator(AffineTransform at) {
+		return path().getPathIterator(at);
+	}
+
+	/**
+	Returns a path iterator over the flattened segments of the curve.
+	*/
+	public PathIterator getPathIterator(AffineTransform at, double flatness) {
+		return path().getPathIterator(at, flatness);
+	}
+
+	public Rectangle getBounds() {
+		return path().getBounds();
+	}
+
+	public Rectangle2D getBounds2D() {
+		return path().getBounds2D();
+	}
+
+	public boolean contains(double x, double y) {
+		return path().contains(x, y);
+	}
+
+	public boolean contains(Point2D p) {
+		return path().contains(p);
+	}
+
+	public boolean contains(double x, double y, double w, double h) {
+		return path().contains(x, y, w, h);
+	}
+
+	public boolean contains(Rectangle2D r) {
+		return path().contains(r);
+	}
+
+	public boolean intersects(double x, double y, double w, double h) {
+		return path().intersects(x, y, w, h);
+	}
+
+	public boolean intersects(Rectangle2D r) {
+		return path().intersects(r);
+	}
+}
@@ -0,0 +1,827 @@
+/*
+* Copyright (c) 2005, Graph Builder
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+* * Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+*
+* * Redistributions in binary form must reproduce the above copyright notice,
+* this list of conditions and the following disclaimer in the documentation
+* and/or other materials provided with the distribution.
+*
+* * Neither the name of Graph Builder nor the names of its contributors may be
+* used to endorse or promote products derived from this software without
+* specific prior written permission.
+
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+* FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+* DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+* SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+* OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+* OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.graphbuilder.curve;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import com.graphbuilder.math.*;
+import com.graphbuilder.math.func.Function;
+import com.graphbuilder.math.func.RandFunction;
+
+/**
+<p>A curve defined by one expression per dimension, e.g. x = r*cos(t), y = r*sin(t).  The expressions are
+evaluated at the parametric value t, which is the variable with the parameter name, over the interval
+[t_min, t_max].  Other variables of the expressions are constants of the curve, and their values must be set
+using the setValue method before the curve is appended.  The control-path and group-iterator are not used.
+
+<p>The expressions are compiled once, when the curve is constructed, using the ExpressionCompiler.
+Sub-expressions that occur more than once, in the same or in different expressions, are evaluated once per
+point and the result is used by all of them.  For example, the expressions r*cos(w*t) and r*sin(w*t) share
+w*t.  Only sub-expressions that do not contain rand() or functions that are not default functions are shared.
+
+<p>The derivatives used by the evalDerivatives method are computed using the ExpressionDifferentiator and are
+compiled the first time they are needed.  If the expressions have functions without a known derivative, then
+the finite differences of the ParametricCurve class are used instead.
+
+<p>The bounds of the curve over an interval of t are computed using the evalBounds method of the BoundExpression
+class, so the curve is skipped without evaluating any points if it lies outside the clip box of the multi-path.
+
+<p>The appendTo(MultiPath, double[]) method applies the matrix to the evaluated points, since the curve has no
+control-points to transform.
+
+<p>Changes to the expressions after the curve has been constructed have no effect.  Each thread evaluates the
+expressions with its own array of variable values, so the curve can be evaluated and appended by multiple threads
+at the same time, provided that the values of the constants and the interval are not changed meanwhile.
+
+@see com.graphbuilder.math.ExpressionCompiler
+@see com.graphbuilder.math.ExpressionDifferentiator
+@see com.graphbuilder.curve.BinaryCurveApproximationAlgorithm
+*/
+public class ExpressionCurve extends ParametricCurve {
+
+	private final Expression[] exprs;
+	private final String paramName;
+	private final FuncMap funcMap;
+	private final String[] constNames;
+	private final double[] constValues;
+	private final boolean[] constSet;
+
+	private final Program program;
+	private final BoundExpression[] bounded;
+	private volatile Program derivatives = null;
+	private volatile boolean derivativesFailed = false;
+
+	private double t_min = 0.0;
+	private double t_max = 1.0;
+	private int sampleLimit = 1;
+
+	/**
+	Creates a curve with one expression per dimension, where the parameter name is "t".
+
+	@see #ExpressionCurve(Expression[], String, FuncMap)
+	*/
+	public ExpressionCurve(Expression[] x, FuncMap f) {
+		this(x, "t", f);
+	}
+
+	/**
+	Creates a curve with one expression per dimension.  The FuncMap is used to compile the expressions, and can be
+	null if the expressions have no functions.
+
+	@throws IllegalArgumentException If the array, an expression or the parameter name is null, the array is empty,
+	or the expressions cannot be compiled.
+	@throws RuntimeException If the FuncMap does not support a function of an expression.
+	*/
+	public ExpressionCurve(Expression[] x, String paramName, FuncMap f) {
+		super(new ControlPath(), new GroupIterator("0", 1));
+
+		if (x == null || x.length == 0)
+			throw new IllegalArgumentException("at least one expression required");
+
+		if (paramName == null)
+			throw new IllegalArgumentException("parameter name cannot be null");
+
+		ArrayList<String> names = new ArrayList<String>();
+		exprs = new Expression[x.length];
+
+		for (int i = 0; i < x.length; i++) {
+			if (x[i] == null)
+				throw new IllegalArgumentException("expression cannot be null");
+
+			String[] arr = x[i].getVariableNames();
+
+			for (int j = 0; j < arr.length; j++) {
+				if (!arr[j].equals(paramName) && !names.contains(arr[j]))
+					names.add(arr[j]);
+			}
+
+			exprs[i] = ExpressionSimplifier.simplify(x[i]); // a copy, only used for the derivatives
+		}
+
+		this.paramName = paramName;
+		this.funcMap = f;
+		constNames = names.toArray(new String[names.size()]);
+		constValues = new double[constNames.length];
+		constSet = new boolean[constNames.length];
+		program = new Program(x, variableNames(), f);
+		bounded = new BoundExpression[x.length];
+
+		for (int i = 0; i < x.length; i++)
+			bounded[i] = BoundExpression.bind(x[i], variableNames(), f);
+	}
+
+	/**
+	Returns the names of the variables in the order of their slots, which is the parameter and then the constants.
+	*/
+	private String[] variableNames() {
+		String[] arr = new String[constNames.length + 1];
+		arr[0] = paramName;
+
+		for (int i = 0; i < constNames.length; i++)
+			arr[i + 1] = constNames[i];
+
+		return arr;
+	}
+
+	/**
+	Returns the number of expressions, i.e. the number of dimensions the curve defines.  Dimensions beyond this
+	number are 0.
+	*/
+	public int getNumExpressions() {
+		return exprs.length;
+	}
+
+	/**
+	Returns the name of the parametric variable.
+	*/
+	public String getParameterName() {
+		return paramName;
+	}
+
+	/**
+	Returns a new array with the names of the variables of the expressions other than the parameter.
+	*/
+	public String[] getConstantNames() {
+		String[] arr = new String[constNames.length];
+
+		for (int i = 0; i < arr.length; i++)
+			arr[i] = constNames[i];
+
+		return arr;
+	}
+
+	/**
+	Sets the value of a variable of the expressions other than the parameter.
+
+	@throws IllegalArgumentException If the name is not the name of such a variable.
+	@see #getConstantNames()
+	*/
+	public void setValue(String name, double value) {
+		int i = constIndex(name);
+		constValues[i] = value;
+		constSet[i] = true;
+	}
+
+	/**
+	Returns the value of a variable of the expressions other than the parameter.
+
+	@throws IllegalArgumentException If the name is not the name of such a variable.
+	*/
+	public double getValue(String name) {
+		return constValues[constIndex(name)];
+	}
+
+	private int constIndex(String name) {
+		for (int i = 0; i < constNames.length; i++)
+			if (constNames[i].equals(name))
+				return i;
+
+		throw new IllegalArgumentException("not a variable of the expressions: " + name);
+	}
+
+	public void eval(double[] p) {
+		int n = p.length - 1;
+		double[] v = program.begin(p[n], constValues);
+
+		for (int j = 0; j < n; j++)
+			p[j] = (j < exprs.length ? program.outputs[j].eval(v) : 0);
+	}
+
+	/**
+	Computes the derivatives from the compiled derivatives of the expressions.  If the expressions have functions
+	without a known derivative, then the default implementation is used.
+	*/
+	protected void evalDerivatives(double[] p, double[] d1, double[] d2) {
+		Program dp = derivatives();
+
+		if (dp == null) {
+			super.evalDerivatives(p, d1, d2);
+			return;
+		}
+
+		eval(p);
+
+		int n = p.length - 1;
+		int k = exprs.length;
+		double[] v = dp.begin(p[n], constValues);
+
+		for (int j = 0; j < n; j++) {
+			boolean b = j < k;
+
+			if (d1 != null)
+				d1[j] = (b ? dp.outputs[j].eval(v) : 0);
+
+			if (d2 != null)
+				d2[j] = (b ? dp.outputs[k + j].eval(v) : 0);
+		}
+	}
+
+	/**
+	Returns the compiled derivatives, or null if they are not known.  The derivatives are compiled by the first
+	thread that needs them, and published through a volatile field.
+	*/
+	private Program derivatives() {
+		Program dp = derivatives;
+
+		if (dp != null || derivativesFailed)
+			return dp;
+
+		synchronized (this) {
+			if (derivatives != null || derivativesFailed)
+				return derivatives;
+
+			int k = exprs.length;
+			Expression[] x = new Expression[2 * k];
+
+			try {
+				for (int i = 0; i < k; i++) {
+					x[i] = ExpressionDifferentiator.differentiate(exprs[i], paramName, funcMap);
+					x[k + i] = ExpressionDifferentiator.differentiate(x[i], paramName, funcMap);
+				}
+			} catch (IllegalArgumentException e) {
+				derivativesFailed = true;
+				return null;
+			}
+
+			derivatives = new Program(x, variableNames(), funcMap);
+			return derivatives;
+		}
+	}
+
+	public int getSampleLimit() {
+		return sampleLimit;
+	}
+
+	/**
+	Sets the sample-limit.  For more information on the sample-limit, see the
+	BinaryCurveApproximationAlgorithm class.  The default sample-limit is 1.
+
+	@throws IllegalArgumentException If sample-limit < 0.
+	@see com.graphbuilder.curve.BinaryCurveApproximationAlgorithm
+	@see #getSampleLimit()
+	*/
+	public void setSampleLimit(int limit) {
+		if (limit < 0)
+			throw new IllegalArgumentException("Sample-limit >= 0 required.");
+
+		sampleLimit = limit;
+	}
+
+	/**
+	Specifies the interval that the curve should define itself on.  The default interval is [0.0, 1.0].
+
+	@throws IllegalArgumentException If t_min > t_max.
+	@see #t_min()
+	@see #t_max()
+	*/
+	public void setInterval(double t_min, double t_max) {
+		if (t_min > t_max)
+			throw new IllegalArgumentException("t_min <= t_max required.");
+
+		this.t_min = t_min;
+		this.t_max = t_max;
+	}
+
+	/**
+	Returns the starting interval value.
+
+	@see #setInterval(double, double)
+	@see #t_max()
+	*/
+	public double t_min() {
+		return t_min;
+	}
+
+	/**
+	Returns the finishing interval value.
+
+	@see #setInterval(double, double)
+	@see #t_min()
+	*/
+	public double t_max() {
+		return t_max;
+	}
+
+	/**
+	The only requirement for this curve is that the values of all the constants have been set.
+
+	@throws IllegalArgumentException If the value of a constant has not been set.
+	*/
+	public void appendTo(MultiPath mp) {
+		checkValues();
+
+		int n = mp.getDimension();
+
+		double[] d = new double[n + 1];
+		d[n] = t_min;
+		eval(d);
+
+		if (connect)
+			mp.lineTo(d);
+		else
+			mp.moveTo(d);
+
+		BinaryCurveApproximationAlgorithm.genPts(this, t_min, t_max, mp);
+	}
+
+	/**
+	Appends the curve to the multi-path after transforming the evaluated points by the specified affine matrix.  The
+	matrix has the same layout as in the Curve class, and the flatness of the multi-path applies to the transformed
+	curve.  The bounds used to skip the curve when it lies outside the clip box of the multi-path are the transformed
+	bounds of the expressions.
+
+	@throws IllegalArgumentException If the matrix is null or has length less than n * (n + 1), or the value of a
+	constant has not been set.
+	@see com.graphbuilder.curve.Curve#appendTo(MultiPath, double[])
+	*/
+	public void appendTo(MultiPath mp, double[] matrix) {
+		int n = mp.getDimension();
+
+		if (matrix == null || matrix.length < n * (n + 1))
+			throw new IllegalArgumentException("matrix.length >= n * (n + 1) required");
+
+		checkValues();
+
+		Transformed c = new Transformed(this, matrix, n);
+		c.setConnect(connect);
+		c.appendTo(mp);
+	}
+
+	/**
+	Returns a checksum of the values of the constants, the interval and the sample-limit, which change the points
+	the curve appends without changing its control-path.
+	*/
+	protected long stateChecksum() {
+		long h = Double.doubleToLongBits(t_min);
+		h = 31 * h + Double.doubleToLongBits(t_max);
+		h = 31 * h + sampleLimit;
+
+		for (int i = 0; i < constValues.length; i++)
+			h = 31 * h + (constSet[i] ? Double.doubleToLongBits(constValues[i]) : 1);
+
+		return h;
+	}
+
+	protected int prepare(int dimension) {
+		checkValues();
+		return 1;
+	}
+
+	/**
+	Stores the interval [t_min, t_max] since the curve has a single section.
+	*/
+	protected void selectSection(int index, double[] interval) {
+		interval[0] = t_min;
+		interval[1] = t_max;
+	}
+
+	/**
+	Stores the bounds of the expressions over the interval [t_min, t_max], computed using interval arithmetic.
+	Returns false if the bounds of an expression are not known.
+
+	@see com.graphbuilder.math.BoundExpression#evalBounds(double[], double[], double[])
+	*/
+	protected boolean getHullBounds(double t_min, double t_max, double[] min, double[] max, int dimension) {
+		double[] lo = new double[constValues.length + 1];
+		double[] hi = new double[lo.length];
+		lo[0] = t_min;
+		hi[0] = t_max;
+
+		for (int i = 0; i < constValues.length; i++) {
+			lo[i + 1] = constValues[i];
+			hi[i + 1] = constValues[i];
+		}
+
+		double[] r = new double[2];
+
+		for (int j = 0; j < dimension; j++) {
+			if (j < bounded.length) {
+				bounded[j].evalBounds(lo, hi, r);
+
+				if (Double.isNaN(r[0]))
+					return false;
+
+				min[j] = r[0];
+				max[j] = r[1];
+			}
+			else {
+				min[j] = 0;
+				max[j] = 0;
+			}
+		}
+
+		return true;
+	}
+
+	private void checkValues() {
+		for (int i = 0; i < constNames.length; i++)
+			if (!constSet[i])
+				throw new IllegalArgumentException("variable value has not been set: " + constNames[i]);
+	}
+
+	/**
+	The expression curve with the evaluated points transformed by an affine matrix of n rows, where n is the dimension
+	of the multi-path.
+	*/
+	private static final class Transformed extends ParametricCurve {
+
+		private final ExpressionCurve curve;
+		private final double[] matrix;
+		private final int n;
+
+		private Transformed(ExpressionCurve curve, double[] matrix, int n) {
+			super(curve.cp, curve.gi);
+			this.curve = curve;
+			this.matrix = matrix;
+			this.n = n;
+		}
+
+		public void eval(double[] p) {
+			curve.eval(p);
+			transform(p, true);
+		}
+
+		protected void evalDerivatives(double[] p, double[] d1, double[] d2) {
+			curve.evalDerivatives(p, d1, d2);
+			transform(p, true);
+
+			if (d1 != null)
+				transform(d1, false);
+
+			if (d2 != null)
+				transform(d2, false);
+		}
+
+		/**
+		Replaces the first n values of the array with the transformed values.  The translation only applies to
+		points, not to derivatives.
+		*/
+		private void transform(double[] p, boolean translate) {
+			double[] q = new double[n];
+
+			for (int r = 0, x = 0; r < n; r++, x++) {
+				double sum = 0;
+
+				for (int c = 0; c < n; c++)
+					sum += matrix[x++] * p[c];
+
+				q[r] = (translate ? sum + matrix[x] : sum);
+			}
+
+			for (int r = 0; r < n; r++)
+				p[r] = q[r];
+		}
+
+		public int getSampleLimit() {
+			return curve.getSampleLimit();
+		}
+
+		protected int prepare(int dimension) {
+			return curve.prepare(dimension);
+		}
+
+		protected void selectSection(int index, double[] interval) {
+			curve.selectSection(index, interval);
+		}
+
+		/**
+		Stores the bounds of the transformed box of the expressions, where each row of the matrix takes its minimum
+		and maximum at corners of the box.
+		*/
+		protected boolean getHullBounds(double t_min, double t_max, double[] min, double[] max, int dimension) {
+			double[] a = new double[n];
+			double[] b = new double[n];
+
+			if (!curve.getHullBounds(t_min, t_max, a, b, n))
+				return false;
+
+			for (int r = 0, x = 0; r < n; r++, x++) {
+				double lo = 0;
+				double hi = 0;
+
+				for (int c = 0; c < n; c++) {
+					double m = matrix[x++];
+
+					if (m > 0) {
+						lo += m * a[c];
+						hi += m * b[c];
+					}
+					else if (m < 0) {
+						lo += m * b[c];
+						hi += m * a[c];
+					}
+				}
+
+				min[r] = lo + matrix[x];
+				max[r] = hi + matrix[x];
+			}
+
+			return true;
+		}
+
+		public void appendTo(MultiPath mp) {
+			double[] d = new double[n + 1];
+			d[n] = curve.t_min;
+			eval(d);
+
+			if (connect)
+				mp.lineTo(d);
+			else
+				mp.moveTo(d);
+
+			BinaryCurveApproximationAlgorithm.genPts(this, curve.t_min, curve.t_max, mp);
+		}
+	}
+
+	/**
+	The compiled form of a set of expressions.  The slots of the variables are the parameter, the constants and
+	then the shared sub-expressions, which are evaluated in order since a shared sub-expression can use the ones
+	before it.
+
+	<p>Equal sub-expressions are found by giving each node an id, where nodes of the same type, with the same
+	name, value or negation and the same ids of children, have the same id.  The ids are computed once per node,
+	bottom-up, so finding the shared sub-expressions takes time linear in the number of nodes.
+	*/
+	private static final class Program {
+
+		private final Evaluator[] shared;
+		private final Evaluator[] outputs;
+		private final ThreadLocal<double[]> values;
+
+		private final IdentityHashMap<Expression, Integer> ids = new IdentityHashMap<Expression, Integer>();
+		private final HashMap<String, Integer> idTable = new HashMap<String, Integer>();
+		private final HashMap<Integer, Integer> uses = new HashMap<Integer, Integer>();
+		private final HashMap<Integer, String> sharedNames = new HashMap<Integer, String>();
+		private final HashMap<Integer, Boolean> pure = new HashMap<Integer, Boolean>();
+		private final ArrayList<Expression> sharedExprs = new ArrayList<Expression>();
+		private final ArrayList<String> names = new ArrayList<String>();
+		private final FuncMap funcMap;
+
+		private Program(Expression[] x, String[] varNames, FuncMap f) {
+			funcMap = f;
+
+			for (int i = 0; i < varNames.length; i++)
+				names.add(varNames[i]);
+
+			for (int i = 0; i < x.length; i++)
+				count(x[i]);
+
+			Expression[] y = new Expression[x.length];
+
+			for (int i = 0; i < x.length; i++)
+				y[i] = rewrite(x[i]);
+
+			String[] arr = names.toArray(new String[names.size()]);
+			shared = new Evaluator[sharedExprs.size()];
+			outputs = new Evaluator[y.length];
+			final int size = arr.length;
+
+			values = new ThreadLocal<double[]>() {
+				protected double[] initialValue() {
+					return new double[size];
+				}
+			};
+
+			for (int i = 0; i < shared.length; i++)
+				shared[i] = ExpressionCompiler.compile(sharedExprs.get(i), arr, f);
+
+			for (int i = 0; i < outputs.length; i++)
+				outputs[i] = ExpressionCompiler.compile(y[i], arr, f);
+		}
+
+		/**
+		Stores the parameter and the constants, evaluates the shared sub-expressions and returns the array of values
+		the outputs are evaluated with.  The array belongs to the calling thread.
+		*/
+		private double[] begin(double t, double[] constValues) {
+			double[] v = values.get();
+			v[0] = t;
+			int k = 1;
+
+			for (int i = 0; i < constValues.length; i++)
+				v[k++] = constValues[i];
+
+			for (int i = 0; i < shared.length; i++)
+				v[k++] = shared[i].eval(v);
+
+			return v;
+		}
+
+		/**
+		Returns the id of the node, which is the same for all the nodes that are equal sub-expressions.  The key of
+		a node only holds the ids of its children, so its length does not depend on the size of the sub-expression.
+		*/
+		private int id(Expression x) {
+			Integer cached = ids.get(x);
+
+			if (cached != null)
+				return cached;
+
+			StringBuilder sb = new StringBuilder();
+
+			if (x instanceof ValNode) {
+				sb.append('v').append(((ValNode) x).getValue());
+			}
+			else if (x instanceof VarNode) {
+				VarNode v = (VarNode) x;
+				sb.append(v.getNegate() ? "-x" : "x").append(v.getName());
+			}
+			else if (x instanceof OpNode) {
+				OpNode o = (OpNode) x;
+				int a = id(o.getLeftChild());
+				int b = id(o.getRightChild());
+				sb.append(x.getClass().getName()).append('(').append(a).append(',').append(b).append(')');
+			}
+			else if (x instanceof FuncNode) {
+				FuncNode fn = (FuncNode) x;
+				sb.append(fn.getNegate() ? "-f" : "f").append(fn.getName()).append('(');
+
+				for (int i = 0; i < fn.numChildren(); i++)
+					sb.append(id(fn.child(i))).append(',');
+
+				sb.append(')');
+			}
+			else {
+				throw new IllegalArgumentException("unsupported node: " + (x == null ? null : x.getClass().getName()));
+			}
+
+			String key = sb.toString();
+			Integer id = idTable.get(key);
+
+			if (id == null) {
+				id = idTable.size();
+				idTable.put(key, id);
+			}
+
+			ids.put(x, id);
+			return id;
+		}
+
+		/**
+		Counts the number of times each sub-expression is used, where the children of a sub-expression are only
+		counted the first time the sub-expression is found.
+		*/
+		private void count(Expression x) {
+			if (!(x instanceof OpNode || x instanceof FuncNode))
+				return;
+
+			Integer key = id(x);
+			Integer n = uses.get(key);
+
+			if (n != null) {
+				uses.put(key, n + 1);
+				return;
+			}
+
+			uses.put(key, 1);
+
+			if (x instanceof OpNode) {
+				count(((OpNode) x).getLeftChild());
+				count(((OpNode) x).getRightChild());
+			}
+			else {
+				FuncNode fn = (FuncNode) x;
+				for (int i = 0; i < fn.numChildren(); i++)
+					count(fn.child(i));
+			}
+		}
+
+		/**
+		Returns a copy of the expression where the shared sub-expressions are replaced by variables.
+		*/
+		private Expression rewrite(Expression x) {
+			if (x instanceof ValNode)
+				return new ValNode(((ValNode) x).getValue());
+
+			if (x instanceof VarNode)
+				return new VarNode(((VarNode) x).getName(), ((VarNode) x).getNegate());
+
+			Integer key = id(x);
+			String name = sharedNames.get(key);
+
+			if (name != null)
+				return new VarNode(name, false);
+
+			Expression y;
+
+			if (x instanceof OpNode) {
+				OpNode o = (OpNode) x;
+				Expression a = rewrite(o.getLeftChild());
+				Expression b = rewrite(o.getRightChild());
+
+				if (x instanceof AddNode) y = new AddNode(a, b);
+				else if (x instanceof SubNode) y = new SubNode(a, b);
+				else if (x instanceof MultNode) y = new MultNode(a, b);
+				else if (x instanceof DivNode) y = new DivNode(a, b);
+				else if (x instanceof PowNode) y = new PowNode(a, b);
+				else throw new IllegalArgumentException("unsupported node: " + x.getClass().getName());
+			}
+			else if (x instanceof FuncNode) {
+				FuncNode fn = (FuncNode) x;
+				FuncNode g = new FuncNode(fn.getName(), fn.getNegate());
+
+				for (int i = 0; i < fn.numChildren(); i++)
+					g.add(rewrite(fn.child(i)));
+
+				y = g;
+			}
+			else {
+				throw new IllegalArgumentException("unsupported node: " + (x == null ? null : x.getClass().getName()));
+			}
+
+			if (uses.get(key) < 2 || !isPure(x))
+				return y;
+
+			name = "shared" + sharedExprs.size();
+
+			while (names.contains(name))
+				name = "_" + name;
+
+			names.add(name);
+			sharedNames.put(key, name);
+			sharedExprs.add(y);
+			return new VarNode(name, false);
+		}
+
+		/**
+		Returns true if the expression only has functions that the FuncMap maps to default functions other than
+		rand(), so evaluating it once gives the same result as evaluating it each time it is used.
+		*/
+		private boolean isPure(Expression x) {
+			if (!(x instanceof OpNode || x instanceof FuncNode))
+				return true;
+
+			Integer key = id(x);
+			Boolean b = pure.get(key);
+
+			if (b == null) {
+				b = computePure(x);
+				pure.put(key, b);
+			}
+
+			return b;
+		}
+
+		private boolean computePure(Expression x) {
+			if (x instanceof OpNode)
+				return isPure(((OpNode) x).getLeftChild()) && isPure(((OpNode) x).getRightChild());
+
+			FuncNode fn = (FuncNode) x;
+
+			if (funcMap == null)
+				return false;
+
+			Function f = funcMap.getFunction(fn.getName(), fn.numChildren());
+
+			if (f instanceof RandFunction || !isDefault(f))
+				return false;
+
+			for (int i = 0; i < fn.numChildren(); i++)
+				if (!isPure(fn.child(i)))
+					return false;
+
+			return true;
+		}
+
+		private static boolean isDefault(Function f) {
+			Function[] arr = FuncMap.getDefaultFunctions().getFunctions();
+
+			for (int i = 0; i < arr.length; i++)
+				if (arr[i].getClass() == f.getClass())
+					return true;
+
+			return false;
+		}
+	}
+}
@@ -0,0 +1,335 @@
+/*
+* Copyright (c) 2005, Graph Builder
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+* * Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+*
+* * Redistributions in binary form must reproduce the above copyright notice,
+* this list of conditions and the following disclaimer in the documentation
+* and/or other materials provided with the distribution.
+*
+* * Neither the name of Graph Builder nor the names of its contributors may be
+* used to endorse or promote products derived from this software without
+* specific prior written permission.
+
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+* FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+* DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+* SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+* OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+* OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.graphbuilder.curve;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+<p>A cache of curve flattenings for viewers that append the same curves at many different flatness values, such as
+when zooming.  The flatness values are rounded to a geometric series of levels, ratio^k for integer k, and a request
+is served by the coarsest level that still meets the requested flatness, i.e. the level with the largest flatness
+that is <= the requested flatness.  With the default ratio of 2, continuous zooming only creates a new flattening
+each time the flatness halves or doubles.
+
+<p>Each entry stores a checksum of the control-points and group of the curve, and of the value returned by the
+stateChecksum method of the curve.  If any of them change, the entry is recomputed the next time it is requested.
+Other properties of a curve, such as the degree or knot-vector, are not checked, so the invalidate method must be
+called when they are changed.
+
+<p>The entries are evicted in least-recently-used order when the estimated memory of the stored points exceeds the
+memory budget.  The number of hits, misses and evictions, and the memory usage are available as statistics.
+
+<p>The points of the flattenings are shared between the cache and the multi-paths the cache appends to, and must
+not be modified.  The methods of this class are synchronized.
+
+@see com.graphbuilder.curve.Curve#appendTo(MultiPath)
+*/
+public class FlatteningCache {
+
+	private final LinkedHashMap<Key, Entry> map = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	private final long budget;
+	private final double ratio;
+	private final double logRatio;
+
+	private long memory = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	Creates a cache with the specified memory budget in bytes and a level ratio of 2.
+
+	@throws IllegalArgumentException If the budget is < 0.
+	*/
+	public FlatteningCache(long budget) {
+		this(budget, 2.0);
+	}
+
+	/**
+	Creates a cache with the specified memory budget in bytes and level ratio.
+
+	@throws IllegalArgumentException If the budget is < 0 or the ratio is <= 1.
+	*/
+	public FlatteningCache(long budget, double ratio) {
+		if (budget < 0)
+			throw new IllegalArgumentException("budget >= 0 required");
+
+		if (!(ratio > 1))
+			throw new IllegalArgumentException("ratio > 1 required");
+
+		this.budget = budget;
+		this.ratio = ratio;
+		this.logRatio = Math.log(ratio);
+	}
+
+	/**
+	Returns the flatness of the level used for the specified flatness.
+
+	@throws IllegalArgumentException If the flatness is <= 0.
+	*/
+	public double getLevelFlatness(double flatness) {
+		return Math.pow(ratio, level(flatness));
+	}
+
+	/**
+	Returns the flattening of the curve in the specified dimension at the level of the specified flatness.  The
+	returned multi-path belongs to the cache and must not be modified.
+
+	@throws IllegalArgumentException If the flatness is <= 0, dimension <= 0 or the curve cannot be appended.
+	*/
+	public synchronized MultiPath get(Curve c, int dimension, double flatness) {
+		if (c == null)
+			throw new IllegalArgumentException("Curve cannot be null.");
+
+		if (dimension <= 0)
+			throw new IllegalArgumentException("dimension > 0 required");
+
+		int level = level(flatness);
+		long checksum = checksum(c, dimension);
+		Key key = new Key(c, dimension, level);
+		Entry e = map.get(key);
+
+		if (e != null && e.checksum == checksum) {
+			hits++;
+			return e.mp;
+		}
+
+		misses++;
+
+		MultiPath mp = new MultiPath(dimension);
+		mp.setFlatness(Math.pow(ratio, level));
+		c.appendTo(mp);
+		mp.trimArray();
+
+		if (e != null)
+			memory -= e.size;
+
+		e = new Entry(mp, checksum, sizeOf(mp));
+		map.put(key, e);
+		memory += e.size;
+
+		evict();
+
+		return mp;
+	}
+
+	/**
+	Appends the cached flattening of the curve to the multi-path, using the flatness and dimension of the multi-path.
+	The first point is of type MOVE_TO unless the connect flag of the curve is true.
+
+	@see #get(Curve, int, double)
+	*/
+	public void appendTo(Curve c, MultiPath mp) {
+		MultiPath src = get(c, mp.getDimension(), mp.getFlatness());
+		int n = src.getNumPoints();
+
+		mp.ensureCapacity(mp.getNumPoints() + n);
+
+		for (int i = 0; i < n; i++) {
+			if (i == 0 ? c.getConnect() : src.getType(i) == MultiPath.LINE_TO)
+				mp.lineTo(src.get(i));
+			else
+				mp.moveTo(src.get(i));
+		}
+	}
+
+	/**
+	Removes all entries of the specified curve.
+	*/
+	public synchronized void invalidate(Curve c) {
+		Iterator<Map.Entry<Key, Entry>> iter = map.entrySet().iterator();
+
+		while (iter.hasNext()) {
+			Map.Entry<Key, Entry> me = iter.next();
+
+			if (me.getKey().curve == c) {
+				memory -= me.getValue().size;
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	Removes all entries.  The statistics are not reset.
+	*/
+	public synchronized void clear() {
+		map.clear();
+		memory = 0;
+	}
+
+	/**
+	Returns the number of entries.
+	*/
+	public synchronized int size() {
+		return map.size();
+	}
+
+	/**
+	Returns the number of requests that were served by an existing entry.
+	*/
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	Returns the number of requests that required the curve to be appended.
+	*/
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	Returns the number of entries evicted to stay within the memory budget.
+	*/
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	Returns the estimated memory in bytes of the stored flattenings.
+	*/
+	public synchronized long getMemoryUsage() {
+		return memory;
+	}
+
+	/**
+	Returns the memory budget in bytes.
+	*/
+	public long getMemoryBudget() {
+		return budget;
+	}
+
+	private void evict() {
+		Iterator<Entry> iter = map.values().iterator();
+
+		while (memory > budget && iter.hasNext()) {
+			Entry e = iter.next();
+			memory -= e.size;
+			iter.remove();
+			evictions++;
+		}
+	}
+
+	private int level(double flatness) {
+		if (!(flatness > 0))
+			throw new IllegalArgumentException("flatness > 0 required");
+
+		// the small offset keeps exact powers of the ratio on their own level
+		return (int) Math.floor(Math.log(flatness) / logRatio + 1e-9);
+	}
+
+	/**
+	Estimates the memory of the points of the multi-path, assuming 8 byte references and 16 byte array headers.
+	*/
+	private static long sizeOf(MultiPath mp) {
+		long size = 64;
+		int n = mp.getNumPoints();
+
+		for (int i = 0; i < n; i++)
+			size += 16 + 16 + 8L * mp.get(i).length; // array references, array header and values
+
+		return size;
+	}
+
+	/**
+	Returns a checksum of the group, the locations of the control-points in the specified dimension and the state
+	of the curve.
+
+	@see com.graphbuilder.curve.Curve#stateChecksum()
+	*/
+	static long checksum(Curve c, int dimension) {
+		long h = 17;
+		GroupIterator gi = c.getGroupIterator();
+		int len = gi.getGroupLength();
+
+		for (int i = 0; i < len; i++)
+			h = mix(h, gi.getGroupValue(i));
+
+		ControlPath cp = c.getControlPath();
+		int numPoints = cp.numPoints();
+		h = mix(h, numPoints);
+
+		for (int i = 0; i < numPoints; i++) {
+			double[] loc = cp.getPoint(i).getLocation();
+			int n = Math.min(dimension, loc.length);
+
+			for (int j = 0; j < n; j++)
+				h = mix(h, Double.doubleToLongBits(loc[j]));
+		}
+
+		return mix(h, c.stateChecksum());
+	}
+
+	private static long mix(long h, long v) {
+		h ^= v;
+		h *= 0x9E3779B97F4A7C15L;
+		return h ^ (h >>> 29);
+	}
+
+	private static final class Key {
+
+		private final Curve curve;
+		private final int dimension;
+		private final int level;
+
+		private Key(Curve curve, int dimension, int level) {
+			this.curve = curve;
+			this.dimension = dimension;
+			this.level = level;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key k = (Key) o;
+			return curve == k.curve && dimension == k.dimension && level == k.level;
+		}
+
+		public int hashCode() {
+			return (System.identityHashCode(curve) * 31 + dimension) * 31 + level;
+		}
+	}
+
+	private static final class Entry {
+
+		private final MultiPath mp;
+		private final long checksum;
+		private final long size;
+
+		private Entry(MultiPath mp, long checksum, long size) {
+			this.mp = mp;
+			this.checksum = checksum;
+			this.size = size;
+		}
+	}
+}
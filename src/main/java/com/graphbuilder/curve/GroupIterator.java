@@ -31,8 +31,6 @@
 
 package com.graphbuilder.curve;
 
-import com.graphbuilder.math.*;
-
 /**
 <p>A GroupIterator allows a curve to choose the points from a control-path that the curve uses to
 define itself.  The subset of points to use is defined by a control-string.  The control-string is evaluated
@@ -102,6 +100,9 @@ public class GroupIterator {
 	protected int index_i = 0;
 	protected int count_j = 0;
 
+	private int[] index = null; // the values returned by next(), expanded from the group array
+	private int[] indexGroup = null; // the group array the index array was expanded from
+
 	/**
 	Constructs a group-iterator by parsing the control-string string according to the class description.
 
@@ -166,92 +167,12 @@ public class GroupIterator {
 
 	/**
 	Parses the specified control-string according to the class description and returns a group-array.  An
-	exception will be thrown if the control-string is invalid.
+	exception will be thrown if the control-string is invalid.  The control-string is compiled once into a
+	template with a slot for n, which is kept in a bounded cache shared by all group-iterators, so parsing the
+	same control-string for different values of n is cheap.
 	*/
 	public static int[] parseControlString(String controlString, int n) {
-		final String s = controlString;
-		final int sLength = s.length();
-
-		int numGroups = 1;
-		int b = 0;
-
-		for (int i = 0; i < sLength; i++) {
-			char c = s.charAt(i);
-
-			if (c == ',' && b == 0)
-				numGroups++;
-			else if (c == '(')
-				b++;
-			else if (c == ')')
-				b--;
-		}
-
-		if (b != 0)
-			throw new ControlStringParseException("round brackets do not balance");
-
-		int[] group = new int[2 * numGroups];
-		int j = 0;
-		int k = 0;
-		int colon = -1;
-
-		VarMap vm = new VarMap();
-		FuncMap fm = new FuncMap();
-		fm.loadDefaultFunctions();
-
-		for (int i = 0; i <= sLength; i++) {
-			char c = ' ';
-			if (i < sLength) c = s.charAt(i);
-
-			if (i == sLength || c == ',' && b == 0) {
-				
-				if (colon == -1) {
-					Expression x = setVariables(s, vm, n, j, i);
-					group[k] = (int) Math.round(x.eval(vm, fm));
-					group[k+1] = group[k];
-					k += 2;
-				}
-				else {
-					Expression x1 = setVariables(s, vm, n, j, colon);
-					group[k++] = (int) Math.round(x1.eval(vm, fm));
-
-					Expression x2 = setVariables(s, vm, n, colon + 1, i);
-					group[k++] = (int) Math.round(x2.eval(vm, fm));
-				}
-
-				j = i + 1;
-				colon = -1;
-			}
-			else if (c == '(')
-				b++;
-			else if (c == ')')
-				b--;
-			else if (c == ':')
-				colon = i;
-		}
-
-		return group;
-	}
-
-	private static Expression setVariables(String s, VarMap vm, int n, int j, int i) {
-		Expression x = null;
-
-		try {
-			x = ExpressionTree.parse(s.substring(j, i));
-		} catch (ExpressionParseException epe) {
-			throw new ControlStringParseException("error parsing expression", j, i, epe);
-		}
-
-		if (x == null)
-			throw new ControlStringParseException("control substring is empty", j, i);
-
-		String[] v = x.getVariableNames();
-
-		if (v.length > 1)
-			throw new ControlStringParseException("too many variables", j, i);
-		else if (v.length == 1)
-			vm.setValue(v[0], n);
-
-		return x;
+		return GroupTemplate.compile(controlString).instantiate(n);
 	}
 
 	/**
@@ -283,8 +204,102 @@ public class GroupIterator {
 
 	/**
 	Returns the total number of times next() can be called before hasNext() returns false starting from state 0, 0.
+	When the index-array is cached, the value is its length, so it is only computed when the groups change.
+
+	@see #copyIndexArray(int[])
+	@see #cachesIndexArray()
 	*/
 	public int getGroupSize() {
+		if (cachesIndexArray())
+			return indices().length;
+
+		return size(group);
+	}
+
+	/**
+	Copies the index-array into the specified array.  The index-array contains the values returned by next()
+	starting from state 0, 0, in order, and has a length equal to the group size.
+
+	@see #getGroupSize()
+	@throws IllegalArgumentException If the specified array is null or is shorter than the group size.
+	*/
+	public void copyIndexArray(int[] arr) {
+		if (arr == null)
+			throw new IllegalArgumentException("specified array cannot be null");
+
+		int[] a = indices();
+
+		if (arr.length < a.length)
+			throw new IllegalArgumentException("specified array is too small");
+
+		for (int i = 0; i < a.length; i++)
+			arr[i] = a[i];
+	}
+
+	/**
+	Returns true if the index-array is expanded from the group-array once and reused until the groups change,
+	or false if it is computed by calling next() each time it is needed.  The default implementation returns
+	true only if this object is exactly a GroupIterator.  Subclasses that do not override next() and that call
+	groupChanged() after modifying the values of the group-array can override this method to return true.
+
+	@see #groupChanged()
+	*/
+	protected boolean cachesIndexArray() {
+		return getClass() == GroupIterator.class;
+	}
+
+	/**
+	Returns the index-array, which contains the values returned by next() starting from state 0, 0.  Curves use
+	the index-array in their evaluation loops instead of calling next().  If the index-array is cached, then the
+	internal array is returned, expanding the group-array if it has not been expanded yet or has been replaced,
+	and the returned array must not be modified.  Otherwise, a new array is filled by calling next() group size
+	times starting from state 0, 0, after which the state of the iterator is restored.
+
+	@see #cachesIndexArray()
+	*/
+	int[] indices() {
+		if (!cachesIndexArray()) {
+			int[] arr = new int[size(group)];
+			int i = index_i;
+			int j = count_j;
+
+			set(0, 0);
+
+			for (int k = 0; k < arr.length; k++)
+				arr[k] = next();
+
+			this.index_i = i;
+			this.count_j = j;
+
+			return arr;
+		}
+
+		if (index == null || indexGroup != group) {
+			int[] arr = new int[size(group)];
+			int k = 0;
+
+			for (int i = 0; i < group.length; i += 2) {
+				int x = group[i];
+				int y = group[i+1];
+
+				if (x <= y) {
+					for (int j = x; j <= y; j++)
+						arr[k++] = j;
+				}
+				else {
+					for (int j = x; j >= y; j--)
+						arr[k++] = j;
+				}
+			}
+
+			index = arr;
+			indexGroup = group;
+		}
+
+		return index;
+	}
+
+	private static int size(int[] group) {
 		int size = 0;
 
 		for (int i = 0; i < group.length; i += 2) {
@@ -296,6 +311,16 @@ public class GroupIterator {
 		return size;
 	}
 
+	/**
+	Discards the cached index-array so that it is expanded again from the group-array.  Subclasses that cache
+	the index-array and modify the values of the group-array must call this method afterwards.  Replacing the
+	group-array is detected automatically.
+	*/
+	protected void groupChanged() {
+		index = null;
+		indexGroup = null;
+	}
+
 	/**
 	Copies the internal group-array into the specified array.
 
@@ -0,0 +1,300 @@
+/*
+* Copyright (c) 2005, Graph Builder
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+* * Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+*
+* * Redistributions in binary form must reproduce the above copyright notice,
+* this list of conditions and the following disclaimer in the documentation
+* and/or other materials provided with the distribution.
+*
+* * Neither the name of Graph Builder nor the names of its contributors may be
+* used to endorse or promote products derived from this software without
+* specific prior written permission.
+
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+* FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+* DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+* SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+* OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+* OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.graphbuilder.curve;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.graphbuilder.math.*;
+
+/**
+A compiled control-string.  Each expression of the control-string is parsed once, and the variable of the
+expression is a slot that is bound to n when the group-array is created.  Expressions of the form (a*n + b) / d,
+with integer a, b and d, are reduced to their integer coefficients, so creating the group-array only takes a few
+integer operations.  The other expressions are evaluated using their expression-tree.  The results are the same
+as evaluating the expression-trees and rounding.
+
+<p>Templates are interned in a bounded concurrent cache keyed by the control-string, so the curves that share a
+control-string share a template.
+
+@see com.graphbuilder.curve.GroupIterator#parseControlString(String, int)
+*/
+final class GroupTemplate {
+
+	private static final int MAX_CACHE_SIZE = 512;
+	private static final ConcurrentHashMap<String, GroupTemplate> cache = new ConcurrentHashMap<String, GroupTemplate>();
+
+	private static final long MAX_COEFFICIENT = 1L << 20;
+	private static final long MAX_CONSTANT = 1L << 40;
+
+	private static final FuncMap funcMap = FuncMap.getDefaultFunctions();
+
+	// per entry of the group-array: the result is (a * n + b) / d if x is null, otherwise x is evaluated
+	private final long[] a;
+	private final long[] b;
+	private final long[] d;
+	private final Expression[] x;
+	private final String[] var;
+	private final VarMap varMap = new VarMap();
+
+	private GroupTemplate(int length) {
+		a = new long[length];
+		b = new long[length];
+		d = new long[length];
+		x = new Expression[length];
+		var = new String[length];
+	}
+
+	/**
+	Returns the template of the control-string, compiling it if it is not in the cache.
+
+	@throws ControlStringParseException If the control-string is invalid.
+	*/
+	static GroupTemplate compile(String controlString) {
+		GroupTemplate t = cache.get(controlString);
+
+		if (t == null) {
+			t = parse(controlString);
+
+			if (cache.size() >= MAX_CACHE_SIZE) {
+				// evict an arbitrary entry to keep the cache bounded
+				Iterator<String> iter = cache.keySet().iterator();
+
+				if (iter.hasNext()) {
+					iter.next();
+					iter.remove();
+				}
+			}
+
+			GroupTemplate u = cache.putIfAbsent(controlString, t);
+			if (u != null) t = u;
+		}
+
+		return t;
+	}
+
+	/**
+	Creates the group-array for the specified value of n.
+	*/
+	int[] instantiate(int n) {
+		int[] group = new int[a.length];
+		boolean eval = false;
+
+		for (int i = 0; i < group.length; i++) {
+			if (x[i] != null) {
+				eval = true;
+				continue;
+			}
+
+			long v = a[i] * n + b[i];
+
+			if (d[i] != 1)
+				v = Math.round((double) v / d[i]);
+
+			group[i] = (int) v;
+		}
+
+		if (eval) {
+			synchronized (this) {
+				for (int i = 0; i < group.length; i++) {
+					if (x[i] == null) continue;
+
+					if (var[i] != null)
+						varMap.setValue(var[i], n);
+
+					group[i] = (int) Math.round(x[i].eval(varMap, funcMap));
+				}
+			}
+		}
+
+		return group;
+	}
+
+	private static GroupTemplate parse(String s) {
+		final int sLength = s.length();
+
+		int numGroups = 1;
+		int br = 0;
+
+		for (int i = 0; i < sLength; i++) {
+			char c = s.charAt(i);
+
+			if (c == ',' && br == 0)
+				numGroups++;
+			else if (c == '(')
+				br++;
+			else if (c == ')')
+				br--;
+		}
+
+		if (br != 0)
+			throw new ControlStringParseException("round brackets do not balance");
+
+		GroupTemplate t = new GroupTemplate(2 * numGroups);
+		int j = 0;
+		int k = 0;
+		int colon = -1;
+
+		for (int i = 0; i <= sLength; i++) {
+			char c = ' ';
+			if (i < sLength) c = s.charAt(i);
+
+			if (i == sLength || c == ',' && br == 0) {
+				if (colon == -1) {
+					t.set(k++, s, j, i);
+					t.copy(k - 1, k++);
+				}
+				else {
+					t.set(k++, s, j, colon);
+					t.set(k++, s, colon + 1, i);
+				}
+
+				j = i + 1;
+				colon = -1;
+			}
+			else if (c == '(')
+				br++;
+			else if (c == ')')
+				br--;
+			else if (c == ':')
+				colon = i;
+		}
+
+		return t;
+	}
+
+	private void set(int k, String s, int j, int i) {
+		Expression e = null;
+
+		try {
+			e = ExpressionTree.parse(s.substring(j, i));
+		} catch (ExpressionParseException epe) {
+			throw new ControlStringParseException("error parsing expression", j, i, epe);
+		}
+
+		if (e == null)
+			throw new ControlStringParseException("control substring is empty", j, i);
+
+		String[] v = e.getVariableNames();
+
+		if (v.length > 1)
+			throw new ControlStringParseException("too many variables", j, i);
+
+		String name = v.length == 1 ? v[0] : null;
+		long[] c = null;
+		long div = 1;
+
+		if (e instanceof DivNode) {
+			DivNode dn = (DivNode) e;
+			c = affine(dn.getLeftChild(), name);
+			long[] q = affine(dn.getRightChild(), name);
+
+			if (q == null || q[0] != 0 || q[1] == 0)
+				c = null;
+			else
+				div = q[1];
+		}
+		else {
+			c = affine(e, name);
+		}
+
+		if (c == null) {
+			x[k] = e;
+			var[k] = name;
+		}
+		else {
+			a[k] = c[0];
+			b[k] = c[1];
+			d[k] = div;
+		}
+	}
+
+	private void copy(int from, int to) {
+		a[to] = a[from];
+		b[to] = b[from];
+		d[to] = d[from];
+		x[to] = x[from];
+		var[to] = var[from];
+	}
+
+	/**
+	Returns the integer coefficients {a, b} such that the expression evaluates to exactly a * n + b for all int
+	values of n, or null if the expression is not of that form.  The bounds on the coefficients keep all
+	intermediate values of the evaluation exact.
+	*/
+	private static long[] affine(Expression e, String name) {
+		long[] c = null;
+
+		if (e instanceof ValNode) {
+			double v = ((ValNode) e).getValue();
+
+			if (v == Math.rint(v) && Math.abs(v) <= MAX_CONSTANT)
+				c = new long[] { 0, (long) v };
+		}
+		else if (e instanceof VarNode) {
+			VarNode vn = (VarNode) e;
+			c = new long[] { vn.getNegate() ? -1 : 1, 0 };
+		}
+		else if (e instanceof AddNode || e instanceof SubNode || e instanceof MultNode) {
+			OpNode op = (OpNode) e;
+			long[] l = affine(op.getLeftChild(), name);
+			long[] r = affine(op.getRightChild(), name);
+
+			if (l == null || r == null)
+				return null;
+
+			if (e instanceof AddNode)
+				c = new long[] { l[0] + r[0], l[1] + r[1] };
+			else if (e instanceof SubNode)
+				c = new long[] { l[0] - r[0], l[1] - r[1] };
+			else if (l[0] == 0)
+				c = new long[] { multiply(l[1], r[0]), multiply(l[1], r[1]) };
+			else if (r[0] == 0)
+				c = new long[] { multiply(l[0], r[1]), multiply(l[1], r[1]) };
+		}
+
+		if (c == null || Math.abs(c[0]) > MAX_COEFFICIENT || Math.abs(c[1]) > MAX_CONSTANT)
+			return null;
+
+		return c;
+	}
+
+	/**
+	Returns the product, or Long.MAX_VALUE if the product is out of range.
+	*/
+	private static long multiply(long p, long q) {
+		if (p != 0 && Math.abs(q) > Long.MAX_VALUE / Math.abs(p))
+			return Long.MAX_VALUE;
+
+		return p * q;
+	}
+}
@@ -0,0 +1,112 @@
+/*
+* Copyright (c) 2005, Graph Builder
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+* * Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+*
+* * Redistributions in binary form must reproduce the above copyright notice,
+* this list of conditions and the following disclaimer in the documentation
+* and/or other materials provided with the distribution.
+*
+* * Neither the name of Graph Builder nor the names of its contributors may be
+* used to endorse or promote products derived from this software without
+* specific prior written permission.
+
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+* FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+* DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+* SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+* OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+* OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.graphbuilder.curve;
+
+/**
+Static loops shared by the evalSection methods of the curves.  The loops are kept free of method
+calls and object references so the JIT compiler can unroll them.  Since the results are usually stored
+with a stride of the dimension, the loops compute them in a contiguous row, which is then copied to the
+output array.
+
+<p>When built with JDK 17 or later, the jar is a multi-release jar that contains a Java 17 version of this
+class (src/main/java17), which computes the rows with the Vector API if the jdk.incubator.vector module
+is available.
+*/
+final class Kernels {
+
+	private Kernels() {}
+
+	/**
+	Evaluates the cubic polynomial a + b*t + c*t^2 + d*t^3 at the first count values of the t array.  The
+	result for t[i] is stored in out[offset + i * stride].  The row array must have at least count elements,
+	and is used as scratch space if the stride is not 1.
+	*/
+	static void cubic(double[] t, int count, double a, double b, double c, double d, double[] row, double[] out, int offset, int stride) {
+		double[] r = (stride == 1 ? out : row);
+		int base = (stride == 1 ? offset : 0);
+
+		for (int i = 0; i < count; i++) {
+			double s = t[i];
+			r[base + i] = a + s * (b + s * (c + s * d));
+		}
+
+		if (stride != 1)
+			scatter(row, count, out, offset, stride);
+	}
+
+	/**
+	Evaluates the cubic polynomial c[0] + c[1]*t + c[2]*t^2 + c[3]*t^3 and its first and second derivatives at t,
+	storing the results in index location j of the p, d1 and d2 arrays.  The d1 and d2 arrays can be null.
+	*/
+	static void cubic(double[] c, double t, double[] p, double[] d1, double[] d2, int j) {
+		p[j] = c[0] + t * (c[1] + t * (c[2] + t * c[3]));
+
+		if (d1 != null)
+			d1[j] = c[1] + t * (2 * c[2] + 3 * t * c[3]);
+
+		if (d2 != null)
+			d2[j] = 2 * c[2] + 6 * t * c[3];
+	}
+
+	/**
+	Computes the linear combination c[0] * w[0 .. count - 1] + c[1] * w[count .. 2 * count - 1] + ... of
+	the first n rows of the w array, where each row holds count values.  The result for column i is stored
+	in out[offset + i * stride].  The row array must have at least count elements, and is used as scratch
+	space if the stride is not 1.
+	*/
+	static void combine(double[] w, int count, double[] c, int n, double[] row, double[] out, int offset, int stride) {
+		double[] s = (stride == 1 ? out : row);
+		int base = (stride == 1 ? offset : 0);
+
+		for (int i = 0; i < count; i++)
+			s[base + i] = 0;
+
+		for (int r = 0; r < n; r++) {
+			double a = c[r];
+			int m = r * count;
+
+			for (int i = 0; i < count; i++)
+				s[base + i] += a * w[m + i];
+		}
+
+		if (stride != 1)
+			scatter(row, count, out, offset, stride);
+	}
+
+	/**
+	Copies the first count values of the row array to out[offset], out[offset + stride], ...
+	*/
+	private static void scatter(double[] row, int count, double[] out, int offset, int stride) {
+		for (int i = 0, k = offset; i < count; i++, k += stride)
+			out[k] = row[i];
+	}
+}
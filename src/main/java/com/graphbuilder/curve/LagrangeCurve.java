@@ -77,6 +77,10 @@ public class LagrangeCurve extends ParametricCurve {
 	
 	private static class SharedData {
 		private double[][] pt = new double[0][];
+		private double[][] pts = new double[0][]; // all points of the group (required length >= group size)
+		private double[] knot = new double[0]; // (required length >= knotVector.size())
+		private int[] offset = new int[0]; // index of the first point of each section
+		private double[] interval = new double[0]; // parametric interval of each section
 	}
 
 	/**
@@ -197,6 +201,69 @@ public class LagrangeCurve extends ParametricCurve {
 		return 1;
 	}
 
+	/**
+	Returns the knot-vector size - 1.
+	*/
+	protected int getPolynomialDegree() {
+		return knotVector.size() - 1;
+	}
+
+	/**
+	Returns the control-points of the interval [t_min, t_max] of the selected section.  Each basis function is
+	a product of the linear factors g(t) = (t - knot[j]) / (knot[i] - knot[j]), so control-point k of the basis
+	function is the coefficient of z^k in the product of (g(t_min) + z g(t_max)) divided by (d choose k), where
+	d is the polynomial degree.
+	*/
+	protected double[][] getBezierPoints(double t_min, double t_max, int dimension) {
+		double[] knot = sharedData.knot;
+		double[][] pt = sharedData.pt;
+		int n = knotVector.size();
+		int d = n - 1;
+		double[][] b = new double[n][dimension];
+		double[] c = new double[n];
+
+		for (int r = 0; r < n; r++) {
+			c[0] = 1;
+			int m = 0; // number of factors multiplied into c
+
+			for (int j = 0; j < n; j++) {
+				double e = knot[r] - knot[j];
+				if (e != 0)
+					m = multiply(c, m, (t_min - knot[j]) / e, (t_max - knot[j]) / e);
+			}
+
+			// the basis function has fewer than d factors if knot-values repeat
+			while (m < d)
+				m = multiply(c, m, 1, 1);
+
+			double f = 1; // d choose k
+
+			for (int k = 0; k <= d; k++) {
+				double w = c[k] / f;
+
+				for (int j = 0; j < dimension; j++)
+					b[k][j] += w * pt[r][j];
+
+				f = f * (d - k) / (k + 1);
+			}
+		}
+
+		return b;
+	}
+
+	/**
+	Multiplies the polynomial c[0] + c[1] z + ... + c[m] z^m by (a + b z) and returns m + 1.
+	*/
+	private static int multiply(double[] c, int m, double a, double b) {
+		c[m + 1] = c[m] * b;
+
+		for (int k = m; k > 0; k--)
+			c[k] = c[k] * a + c[k-1] * b;
+
+		c[0] = c[0] * a;
+		return m + 1;
+	}
+
 	protected void eval(double[] p) {
 		double t = p[p.length - 1];
 
@@ -232,106 +299,209 @@ public class LagrangeCurve extends ParametricCurve {
 	to define itself.  If any of these requirements are not met, then this method returns quietly.
 	*/
 	public void appendTo(MultiPath mp) {
-		if (!gi.isInRange(0, cp.numPoints()))
-			throw new IllegalArgumentException("Group iterator not in range");
-		if (baseIndex + baseLength >= knotVector.size())
-			throw new IllegalArgumentException("baseIndex + baseLength >= knotVector.size");
+		appendTo(mp, (double[][]) null);
+	}
 
-		if (sharedData.pt.length < knotVector.size())
-			sharedData.pt = new double[2 * knotVector.size()][];
+	protected void appendTo(MultiPath mp, double[][] loc) {
+		int numSections = prepare(mp.getDimension(), loc);
+		double[] interval = new double[2];
 
-		gi.set(0, 0);
+		for (int i = 0; i < numSections; i++) {
+			selectSection(i, interval);
 
-		boolean b = false;
+			if (i == 0) {
+				double[] d = new double[mp.getDimension() + 1];
+				d[mp.getDimension()] = interval[0];
+				eval(d);
 
-		if (baseIndex != 0 && interpolateFirst) {
-			for (int i = 0; i < knotVector.size(); i++) {
-				if (!gi.hasNext())
-					throw new IllegalArgumentException("Group iterator ended early");
-				sharedData.pt[i] = cp.getPoint(gi.next()).getLocation();
+				if (connect)
+					mp.lineTo(d);
+				else
+					mp.moveTo(d);
 			}
 
-			b = doBCAA(mp, knotVector.get(0), knotVector.get(baseIndex), b);
+			BinaryCurveApproximationAlgorithm.genPts(this, interval[0], interval[1], mp);
 		}
+	}
+
+	/**
+	Returns the number of sections.  Each section is evaluated using knotVector.size() consecutive points,
+	where the first point of each section is baseLength points after the first point of the previous section.
+	If interpolateFirst or interpolateLast is true, then an extra section may be added at the start or end.
+	The requirements are the same as the requirements of the appendTo method.
+	*/
+	protected int prepare(int dimension) {
+		return prepare(dimension, null);
+	}
 
-		gi.set(0, 0);
+	private int prepare(int dimension, double[][] loc) {
+		if (!gi.isInRange(0, cp.numPoints()))
+			throw new IllegalArgumentException("Group iterator not in range");
 
-		int last_i = 0;
-		int last_j = 0;
+		int n = knotVector.size();
 
-		while (true) {
-			int temp_i = gi.index_i();
-			int temp_j = gi.count_j();
+		if (baseIndex + baseLength >= n)
+			throw new IllegalArgumentException("baseIndex + baseLength >= knotVector.size");
 
-			int index_i = 0;
-			int count_j = 0;
-			int i = 0;
+		if (sharedData.pt.length < n) {
+			sharedData.pt = new double[2 * n][];
+			sharedData.knot = new double[2 * n];
+		}
 
-			int j = 0;
-			for (; j < knotVector.size(); j++) {
-				if (i == baseLength) {
-					index_i = gi.index_i();
-					count_j = gi.count_j();
-				}
+		for (int i = 0; i < n; i++)
+			sharedData.knot[i] = knotVector.get(i);
 
-				if (!gi.hasNext()) break;
-				sharedData.pt[j] = cp.getPoint(gi.next()).getLocation();
-				i++;
-			}
+		int numPts = gi.getGroupSize();
 
-			if (j < knotVector.size()) {
-				break;
-			}
-			else {
-				gi.set(index_i, count_j);
-				last_i = temp_i;
-				last_j = temp_j;
-			}
+		if (sharedData.pts.length < numPts)
+			sharedData.pts = new double[2 * numPts][];
+
+		int[] index = gi.indices();
+		for (int i = 0; i < numPts; i++)
+			sharedData.pts[i] = location(loc, index[i]);
 
-			b = doBCAA(mp, knotVector.get(baseIndex), knotVector.get(baseIndex + baseLength), b);
+		int maxSections = numPts / baseLength + 2;
+
+		if (sharedData.offset.length < maxSections) {
+			sharedData.offset = new int[2 * maxSections];
+			sharedData.interval = new double[4 * maxSections];
 		}
 
-		if (baseIndex + baseLength < knotVector.size() - 1 && interpolateLast) {
-			gi.set(last_i, last_j);
+		int k = 0;
 
-			for (int i = 0; i < knotVector.size(); i++) {
-				if (!gi.hasNext()) {
-					System.out.println("not enough points to interpolate last");
-					return;
-				}
-				sharedData.pt[i] = cp.getPoint(gi.next()).getLocation();
-			}
+		if (baseIndex != 0 && interpolateFirst) {
+			if (numPts < n)
+				throw new IllegalArgumentException("Group iterator ended early");
 
-			doBCAA(mp, knotVector.get(baseIndex + baseLength), knotVector.get(knotVector.size() - 1), b);
+			k = addSection(k, 0, sharedData.knot[0], sharedData.knot[baseIndex]);
 		}
+
+		int last = 0;
+
+		for (int off = 0; off + n <= numPts; off += baseLength) {
+			k = addSection(k, off, sharedData.knot[baseIndex], sharedData.knot[baseIndex + baseLength]);
+			last = off;
+		}
+
+		if (baseIndex + baseLength < n - 1 && interpolateLast && last + n <= numPts)
+			k = addSection(k, last, sharedData.knot[baseIndex + baseLength], sharedData.knot[n - 1]);
+
+		return k;
 	}
 
-	private boolean doBCAA(MultiPath mp, double t1, double t2, boolean b) {
+	private int addSection(int k, int offset, double t1, double t2) {
+		sharedData.offset[k] = offset;
+
 		if (t2 < t1) {
 			double temp = t1;
 			t1 = t2;
 			t2 = temp;
 		}
 
-		if (!b) {
-			b = true;
-			double[] d = new double[mp.getDimension() + 1];
-			d[mp.getDimension()] = t1;
-			eval(d);
+		sharedData.interval[2 * k] = t1;
+		sharedData.interval[2 * k + 1] = t2;
+
+		return k + 1;
+	}
+
+	protected void selectSection(int index, double[] interval) {
+		int off = sharedData.offset[index];
+		int n = knotVector.size();
+
+		for (int i = 0; i < n; i++)
+			sharedData.pt[i] = sharedData.pts[off + i];
+
+		interval[0] = sharedData.interval[2 * index];
+		interval[1] = sharedData.interval[2 * index + 1];
+	}
+
+	protected void evalSection(double[] t, int count, double[] out, int offset, int stride, int dimStride, int dimension) {
+		double[] knot = sharedData.knot;
+		double[][] pt = sharedData.pt;
+		int n = knotVector.size();
+		double[] w = new double[n];
+
+		for (int i = 0; i < count; i++) {
+			double u = t[i];
+
+			for (int r = 0; r < n; r++) {
+				double d = 1.0;
+
+				for (int j = 0; j < n; j++) {
+					double e = knot[r] - knot[j];
+					if (e != 0)
+						d = d * ((u - knot[j]) / e);
+				}
+
+				w[r] = d;
+			}
+
+			int k = offset + i * stride;
+
+			for (int j = 0; j < dimension; j++) {
+				double d = 0;
+
+				for (int r = 0; r < n; r++)
+					d += pt[r][j] * w[r];
+
+				out[k + j * dimStride] = d;
+			}
+		}
+	}
+
+	protected void evalDerivatives(double[] p, double[] d1, double[] d2) {
+		int dim = p.length - 1;
+		double t = p[dim];
+		double[] knot = sharedData.knot;
+		double[][] pt = sharedData.pt;
+		int n = knotVector.size();
 
-			if (connect)
-				mp.lineTo(d);
-			else
-				mp.moveTo(d);
+		for (int j = 0; j < dim; j++) {
+			p[j] = 0;
+			if (d1 != null) d1[j] = 0;
+			if (d2 != null) d2[j] = 0;
 		}
 
-		BinaryCurveApproximationAlgorithm.genPts(this, t1, t2, mp);
+		for (int r = 0; r < n; r++) {
+			// the basis function is a product of linear factors, so the value and derivatives
+			// are accumulated one factor at a time using the product rule
+			double v = 1.0;
+			double v1 = 0.0;
+			double v2 = 0.0;
+
+			for (int j = 0; j < n; j++) {
+				double e = knot[r] - knot[j];
+				if (e != 0) {
+					double g = (t - knot[j]) / e;
+					double g1 = 1.0 / e;
+					v2 = v2 * g + 2 * v1 * g1;
+					v1 = v1 * g + v * g1;
+					v = v * g;
+				}
+			}
+
+			double[] q = pt[r];
 
-		return b;
+			for (int j = 0; j < dim; j++) {
+				p[j] += q[j] * v;
+				if (d1 != null) d1[j] += q[j] * v1;
+				if (d2 != null) d2[j] += q[j] * v2;
+			}
+		}
 	}
 
 	public void resetMemory() {
-		if (sharedData.pt.length > 0)
+		if (sharedData.pt.length > 0) {
 			sharedData.pt = new double[0][];
+			sharedData.knot = new double[0];
+		}
+
+		if (sharedData.pts.length > 0)
+			sharedData.pts = new double[0][];
+
+		if (sharedData.offset.length > 0) {
+			sharedData.offset = new int[0];
+			sharedData.interval = new double[0];
+		}
 	}
 }
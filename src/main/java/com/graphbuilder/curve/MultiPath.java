@@ -52,6 +52,9 @@ public class MultiPath {
 	private double flatness = 1.0;
 	private final int dimension;
 
+	private double[] clipMin = null;
+	private double[] clipMax = null;
+
 	/**
 	Constructs a multi-path specifying the minimum required dimension of each point appended
 	to this multi-path.
@@ -101,6 +104,82 @@ public class MultiPath {
 		flatness = f;
 	}
 
+	/**
+	Sets the clip box.  When a curve is appended, the sections of the curve that lie completely outside of the
+	clip box are appended as a single point of type MOVE_TO instead of being approximated, so only the visible
+	sections are refined.  A section is considered outside when the box that contains its control hull does not
+	intersect the clip box, so the clip box should include any margin required for the line width.  The values
+	are copied.  Specifying null for both arrays removes the clip box.
+
+	@throws IllegalArgumentException If only one of the arrays is null, the length of either array is less than
+	the dimension or min[i] > max[i] for some i < dimension.
+	@see #getClip(double[], double[])
+	*/
+	public void setClip(double[] min, double[] max) {
+		if (min == null && max == null) {
+			clipMin = null;
+			clipMax = null;
+			return;
+		}
+
+		if (min == null || max == null)
+			throw new IllegalArgumentException("both arrays must be null or non-null");
+
+		if (min.length < dimension || max.length < dimension)
+			throw new IllegalArgumentException("array length >= dimension required");
+
+		double[] a = new double[dimension];
+		double[] b = new double[dimension];
+
+		for (int j = 0; j < dimension; j++) {
+			if (!(min[j] <= max[j]))
+				throw new IllegalArgumentException("min[" + j + "] <= max[" + j + "] required");
+
+			a[j] = min[j];
+			b[j] = max[j];
+		}
+
+		clipMin = a;
+		clipMax = b;
+	}
+
+	/**
+	Stores the clip box in the min and max arrays and returns true, or returns false if there is no clip box, in
+	which case the arrays are not changed.
+
+	@throws IllegalArgumentException If the length of either array is less than the dimension.
+	@see #setClip(double[], double[])
+	*/
+	public boolean getClip(double[] min, double[] max) {
+		if (min.length < dimension || max.length < dimension)
+			throw new IllegalArgumentException("array length >= dimension required");
+
+		if (clipMin == null)
+			return false;
+
+		for (int j = 0; j < dimension; j++) {
+			min[j] = clipMin[j];
+			max[j] = clipMax[j];
+		}
+
+		return true;
+	}
+
+	/**
+	Returns true if there is a clip box and the box specified by the min and max arrays does not intersect it.
+	*/
+	boolean isOutsideClip(double[] min, double[] max) {
+		if (clipMin == null)
+			return false;
+
+		for (int j = 0; j < dimension; j++) {
+			if (max[j] < clipMin[j] || min[j] > clipMax[j])
+				return true;
+		}
+
+		return false;
+	}
+
 	/**
 	Returns a reference to the point at the specified index.
 
@@ -273,6 +352,42 @@ public class MultiPath {
 		size++;
 	}
 
+	/**
+	Computes the bounding box of the points.  When computing the bounding box, a point is considered if it is
+	of type LINE_TO or it is of type MOVE_TO and the next point is of type LINE_TO.  The minimum and maximum
+	values of each dimension are stored in the min and max arrays.  Returns false if there is not enough data
+	to define a bounding box.
+
+	@throws IllegalArgumentException If the length of either array is less than the dimension.
+	*/
+	public boolean getBounds(double[] min, double[] max) {
+		if (min.length < dimension || max.length < dimension)
+			throw new IllegalArgumentException("array length >= dimension required");
+
+		for (int j = 0; j < dimension; j++) {
+			min[j] = Double.MAX_VALUE;
+			max[j] = -Double.MAX_VALUE;
+		}
+
+		boolean defined = false;
+
+		for (int i = 0; i < size; i++) {
+			if (type[i] == MOVE_TO && (i == size - 1 || type[i+1] != LINE_TO))
+				continue;
+
+			double[] p = point[i];
+			defined = true;
+
+			for (int j = 0; j < dimension; j++) {
+				double v = p[j];
+				if (v < min[j]) min[j] = v;
+				if (v > max[j]) max[j] = v;
+			}
+		}
+
+		return defined;
+	}
+
 	/**
 	Computes the minimum distance^2 from the specified point to the line segments formed by the
 	points of this multi-path.  If the size counter is 0 then the value returned is Double.MAX_VALUE.
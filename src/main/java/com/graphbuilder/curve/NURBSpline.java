@@ -70,11 +70,14 @@ public class NURBSpline extends BSpline {
 	}
 
 	protected void eval(double[] p) {
+		if (evalSpan(p)) return;
+
 		int dim = p.length - 1;
 		double t = p[dim];
 		double sum2 = 0;
 
 		int numPts = gi.getGroupSize();
+		double[][] pts = points();
 
 		for (int i = 0; i < numPts; i++) {
 			sharedData.nw[i] = N(t, i) * sharedData.weight[i];
@@ -85,10 +88,9 @@ public class NURBSpline extends BSpline {
 
 		for (int i = 0; i < dim; i++) {
 			double sum1 = 0;
-			gi.set(0,0);
 
 			for (int j = 0; j < numPts; j++)
-				sum1 += sharedData.nw[j] * cp.getPoint(gi.next()).getLocation()[i];
+				sum1 += sharedData.nw[j] * pts[j][i];
 
 			p[i] = sum1 / sum2;
 		}
@@ -144,6 +146,14 @@ public class NURBSpline extends BSpline {
 	@see com.graphbuilder.curve.BSpline#appendTo(MultiPath)
 	*/
 	public void appendTo(MultiPath mp) {
+		super.appendTo(mp);
+	}
+
+	/**
+	Sets up the weights and the knot-vector and returns the number of sections.  The requirements are the
+	same as the requirements of the appendTo method.
+	*/
+	int prepare(int dimension, double[][] loc) {
 		if (!gi.isInRange(0, cp.numPoints()))
 			throw new IllegalArgumentException("Group iterator not in range");
 		int numPts = gi.getGroupSize();
@@ -168,7 +178,18 @@ public class NURBSpline extends BSpline {
 				sharedData.weight[i] = 1;
 		}
 
-		super.appendTo(mp);
+		return super.prepare(dimension, loc);
+	}
+
+	/**
+	Returns -1 since the sections of the curve are rational.
+	*/
+	protected int getPolynomialDegree() {
+		return -1;
+	}
+
+	double[] weights() {
+		return sharedData.weight;
 	}
 
 	public void resetMemory() {
@@ -212,11 +212,53 @@ d[11] = d // only used for closed cubic curves
 		return 1;
 	}
 
+	/**
+	Returns a value of 3.
+	*/
+	protected int getPolynomialDegree() {
+		return 3;
+	}
+
 	/**
 	The requirements for this curve are the group-iterator must be in-range and have a group size of at least 2.
 	If these requirements are not met then this method raises IllegalArgumentException
 	*/
 	public void appendTo(MultiPath mp) {
+		appendTo(mp, (double[][]) null);
+	}
+
+	protected void appendTo(MultiPath mp, double[][] loc) {
+		prepare(mp.getDimension(), loc);
+
+		final int n = gi.getGroupSize();
+
+		sharedData.ci = 0; // do not remove
+
+		double[] p = new double[mp.getDimension() + 1];
+		eval(p);
+
+		if (connect)
+			mp.lineTo(p);
+		else
+			mp.moveTo(p);
+
+		// Note: performing a ci++ or ci = ci + 1 results in funny behavior
+		for (int i = 0; i < n; i++) {
+			sharedData.ci = i;
+			BinaryCurveApproximationAlgorithm.genPts(this, 0.0, 1.0, mp);
+		}
+	}
+
+	/**
+	Solves the tri-diagonal matrix and returns the number of sections.  An open curve has a section
+	between each pair of consecutive points, and a closed curve has an additional section from the last
+	point back to the first point.  The requirements are the same as the requirements of the appendTo method.
+	*/
+	protected int prepare(int dim) {
+		return prepare(dim, null);
+	}
+
+	private int prepare(int dim, double[][] loc) {
 		if (!gi.isInRange(0, cp.numPoints()))
 			throw new IllegalArgumentException("Group iterator not in range");
 
@@ -224,8 +266,6 @@ d[11] = d // only used for closed cubic curves
 		if (n < 2)
 			throw new IllegalArgumentException("Group iterator size < 2");
 
-		int dim = mp.getDimension();
-
 		// make sure there is enough room
 		//-------------------------------------------------------
 		int x = 3 + 4 * dim + 1;
@@ -236,6 +276,9 @@ d[11] = d // only used for closed cubic curves
 			for (int i = 0; i < sharedData.data.length; i++)
 				temp[i] = sharedData.data[i];
 
+			for (int i = sharedData.data.length; i < x; i++)
+				temp[i] = new double[sharedData.pt.length];
+
 			sharedData.data = temp;
 		}
 
@@ -249,27 +292,52 @@ d[11] = d // only used for closed cubic curves
 		}
 		//-------------------------------------------------------
 
-		gi.set(0, 0);
+		int[] index = gi.indices();
 
 		for (int i = 0; i < n; i++)
-			sharedData.pt[i] = cp.getPoint(gi.next()).getLocation(); // assign the used points to pt
+			sharedData.pt[i] = location(loc, index[i]); // assign the used points to pt
 
 		precalc(n, dim, closed);
 
-		sharedData.ci = 0; // do not remove
+		if (closed)
+			return n;
 
-		double[] p = new double[dim + 1];
-		eval(p);
+		return n - 1;
+	}
 
-		if (connect)
-			mp.lineTo(p);
-		else
-			mp.moveTo(p);
+	protected void selectSection(int index, double[] interval) {
+		sharedData.ci = index;
+		interval[0] = 0.0;
+		interval[1] = 1.0;
+	}
 
-		// Note: performing a ci++ or ci = ci + 1 results in funny behavior
-		for (int i = 0; i < n; i++) {
-			sharedData.ci = i;
-			BinaryCurveApproximationAlgorithm.genPts(this, 0.0, 1.0, mp);
+	protected void evalSection(double[] t, int count, double[] out, int offset, int stride, int dimStride, int dimension) {
+		int ci = sharedData.ci;
+		int k = 0;
+		double[] row = new double[count];
+
+		for (int j = 0; j < dimension; j++) {
+			double a = sharedData.data[k++][ci];
+			double b = sharedData.data[k++][ci];
+			double c = sharedData.data[k++][ci];
+			double d = sharedData.data[k++][ci];
+
+			Kernels.cubic(t, count, a, b, c, d, row, out, offset + j * dimStride, stride);
+		}
+	}
+
+	protected void evalDerivatives(double[] p, double[] d1, double[] d2) {
+		int n = p.length - 1;
+		double t = p[n];
+		int ci = sharedData.ci;
+		double[] c = new double[4];
+		int k = 0;
+
+		for (int j = 0; j < n; j++) {
+			for (int i = 0; i < 4; i++)
+				c[i] = sharedData.data[k++][ci];
+
+			Kernels.cubic(c, t, p, d1, d2, j);
 		}
 	}
 
@@ -31,17 +31,42 @@
 
 package com.graphbuilder.curve;
 
+import com.graphbuilder.org.apache.harmony.awt.gl.Crossing;
+
 /**
-Curves that extend the ParametricCurve class are continuous and can use the
+<p>Curves that extend the ParametricCurve class are continuous and can use the
 BinaryCurveApproximationAlgorithm class to generate a sequence of points that
 approximate the curve.  Note: Approximate means a finite set of points that
 are <i>on</i> the curve, <u>not</u> close to the curve.
 
+<p>Most curves are made of one or more sections, where each section is evaluated over its own
+parametric interval.  For example, a CubicBSpline with n control-points has n - 3 sections, each
+evaluated over [0, 1].  The prepare and selectSection methods give access to the sections, and the
+evalBatch method uses them to evaluate a curve at many parametric values at once.
+
+<p>The first and second derivatives of a curve are computed by the evalDerivatives method.  The curves
+in the com.graphbuilder.curve package compute the derivatives analytically.  Curves that do not override
+the evalDerivatives method use finite differences of the eval method.
+
+@see #evalBatch(double[], int, double[], int, int)
+@see #evalDerivatives(double[], double[], double[])
 @see com.graphbuilder.curve.BinaryCurveApproximationAlgorithm
 @see com.graphbuilder.curve.Curve
 */
 public abstract class ParametricCurve extends Curve {
 
+	/**
+	Layout used by the evalBatch method where the coordinates of each point are stored next to
+	each other, i.e. x0, y0, x1, y1, x2, y2, ...
+	*/
+	public static final int INTERLEAVED = 0;
+
+	/**
+	Layout used by the evalBatch method where the values of each dimension are stored together,
+	i.e. x0, x1, x2, ..., y0, y1, y2, ...
+	*/
+	public static final int PLANAR = 1;
+
 	public ParametricCurve(ControlPath cp, GroupIterator gp) {
 		super(cp, gp);
 	}
@@ -57,9 +82,757 @@ public abstract class ParametricCurve extends Curve {
 	*/
 	protected abstract void eval(double[] p);
 
+	/**
+	Evaluates the point and the first and second derivatives of the curve at the parametric value stored in
+	the last index location of the p array.  The point is stored in p the same way as the eval method, except
+	that the values are always overwritten.  The derivatives are stored in index locations 0 .. p.length - 2
+	(inclusive) of the d1 and d2 arrays.  Either derivative array can be null if it is not required.  The same
+	preparation is required as for the eval method.
+
+	The default implementation uses central differences of the eval method.  Curves should override this
+	method to compute the derivatives analytically.
+	*/
+	protected void evalDerivatives(double[] p, double[] d1, double[] d2) {
+		int n = p.length - 1;
+		double t = p[n];
+		double h = 1e-4;
+
+		double[] a = new double[n + 1];
+		a[n] = t - h;
+		eval(a);
+
+		double[] b = new double[n + 1];
+		b[n] = t + h;
+		eval(b);
+
+		for (int i = 0; i < n; i++)
+			p[i] = 0;
+
+		eval(p);
+
+		for (int i = 0; i < n; i++) {
+			if (d1 != null)
+				d1[i] = (b[i] - a[i]) / (2 * h);
+
+			if (d2 != null)
+				d2[i] = (b[i] - 2 * p[i] + a[i]) / (h * h);
+		}
+	}
+
 	/**
 	The sample limit specifies how many additional subdivisions are done to ensure that there
 	are no missed pieces of the curve.  The sample limit must be >= 0.
 	*/
 	public abstract int getSampleLimit();
+
+	/**
+	Returns the degree of the polynomials the sections of this curve are made of, or -1 if the sections are not
+	polynomials or the degree is not known.  The default implementation returns -1.
+
+	@see com.graphbuilder.curve.AdaptiveCurveApproximationAlgorithm
+	*/
+	protected int getPolynomialDegree() {
+		return -1;
+	}
+
+	/**
+	Stores the bounds of a box that contains the interval [t_min, t_max] of the selected section in index
+	locations 0 .. dimension - 1 of the min and max arrays and returns true, or returns false if no such box is
+	known.  The box is used to skip the sections that lie outside the clip box of a multi-path.
+
+	The default implementation uses the control-points returned by the getBezierPoints method, which contain the
+	interval, and returns false if they are null.
+
+	@see #getBezierPoints(double, double, int)
+	@see com.graphbuilder.curve.MultiPath#setClip(double[], double[])
+	*/
+	protected boolean getHullBounds(double t_min, double t_max, double[] min, double[] max, int dimension) {
+		double[][] b = getBezierPoints(t_min, t_max, dimension);
+
+		if (b == null)
+			return false;
+
+		bounds(b, 0, b.length, min, max, dimension);
+		return true;
+	}
+
+	/**
+	Returns the control-points of a Bezier curve that is equal to the interval [t_min, t_max] of the selected
+	section, where the Bezier curve is evaluated over [0, 1], or null if the section is not a polynomial.  Only
+	the first dimension values of each control-point are used.
+
+	The default implementation returns the control-points of the cubic Bezier form of the interval, which are
+	computed from the end points and first derivatives, if the polynomial degree is in the range [0, 3], and
+	returns null otherwise.
+
+	@see #getPolynomialDegree()
+	*/
+	protected double[][] getBezierPoints(double t_min, double t_max, int dimension) {
+		int degree = getPolynomialDegree();
+
+		if (degree < 0 || degree > 3)
+			return null;
+
+		double h = (t_max - t_min) / 3;
+
+		double[] p = new double[dimension + 1];
+		double[] d1 = new double[dimension];
+		p[dimension] = t_min;
+		evalDerivatives(p, d1, null);
+
+		double[] q = new double[dimension + 1];
+		double[] e1 = new double[dimension];
+		q[dimension] = t_max;
+		evalDerivatives(q, e1, null);
+
+		double[][] b = new double[4][dimension];
+
+		for (int j = 0; j < dimension; j++) {
+			b[0][j] = p[j];
+			b[1][j] = p[j] + h * d1[j];
+			b[2][j] = q[j] - h * e1[j];
+			b[3][j] = q[j];
+		}
+
+		return b;
+	}
+
+	/**
+	Returns a bound on |C''(t)| * (t_max - t_min)^2 for the values of t in the interval [t_min, t_max] of the
+	selected section, where C is the section in the specified dimension, or NaN if no such bound is known.
+	The AdaptiveCurveApproximationAlgorithm uses the bound to compute the number of line segments of the
+	interval.
+
+	The default implementation applies Wang's formula, d (d - 1) * max|B(i+2) - 2 B(i+1) + B(i)|, to the
+	control-points B of degree d returned by the getBezierPoints method, and returns NaN if they are null.
+
+	@see #getBezierPoints(double, double, int)
+	@see com.graphbuilder.curve.AdaptiveCurveApproximationAlgorithm#getSegmentCount(ParametricCurve, double, double, int, double)
+	*/
+	protected double getSecondDerivativeBound(double t_min, double t_max, int dimension) {
+		double[][] b = getBezierPoints(t_min, t_max, dimension);
+
+		if (b == null)
+			return Double.NaN;
+
+		int d = b.length - 1;
+		double max = 0;
+
+		for (int i = 0; i < d - 1; i++) {
+			double a = 0;
+
+			for (int j = 0; j < dimension; j++) {
+				double x = b[i+2][j] - 2 * b[i+1][j] + b[i][j];
+				a += x * x;
+			}
+
+			if (!(a <= max)) max = a; // also keeps NaN
+		}
+
+		return d * (d - 1) * Math.sqrt(max);
+	}
+
+	/**
+	Stores the bounds of the specified points in the min and max arrays.
+	*/
+	static void bounds(double[][] pts, int first, int last, double[] min, double[] max, int dimension) {
+		for (int j = 0; j < dimension; j++) {
+			min[j] = Double.POSITIVE_INFINITY;
+			max[j] = Double.NEGATIVE_INFINITY;
+		}
+
+		for (int i = first; i < last; i++) {
+			double[] p = pts[i];
+
+			for (int j = 0; j < dimension; j++) {
+				if (p[j] < min[j]) min[j] = p[j];
+				if (p[j] > max[j]) max[j] = p[j];
+			}
+		}
+	}
+
+	/**
+	If the multi-path has a clip box and the interval [t_min, t_max] of the selected section lies outside of it,
+	then the point at t_max is appended as a point of type MOVE_TO and true is returned.  If the last point of
+	the multi-path is already of type MOVE_TO then it is replaced, so consecutive hidden sections result in a
+	single point.
+	*/
+	boolean cull(double t_min, double t_max, MultiPath mp) {
+		int n = mp.getDimension();
+		double[] min = new double[n];
+		double[] max = new double[n];
+
+		if (!mp.getClip(min, max) || !getHullBounds(t_min, t_max, min, max, n) || !mp.isOutsideClip(min, max))
+			return false;
+
+		double[] p = new double[n + 1];
+		p[n] = t_max;
+		eval(p);
+
+		int size = mp.getNumPoints();
+
+		if (size > 0 && mp.getType(size - 1) == MultiPath.MOVE_TO)
+			mp.set(size - 1, p);
+		else
+			mp.moveTo(p);
+
+		return true;
+	}
+
+	/**
+	Prepares the shared memory of this curve so that its sections can be selected and evaluated, and
+	returns the number of sections.  The requirements are the same as the requirements of the appendTo
+	method.  The default implementation does no preparation and returns 1.
+
+	@throws IllegalArgumentException If the curve cannot be evaluated.
+	@see #selectSection(int, double[])
+	*/
+	protected int prepare(int dimension) {
+		return 1;
+	}
+
+	/**
+	Makes the section at the specified index the section evaluated by the eval method, and stores the
+	parametric interval of the section in index locations 0 and 1 of the specified array.  The prepare
+	method must be called before this method.  The default implementation stores the interval [0, 1].
+
+	@see #prepare(int)
+	*/
+	protected void selectSection(int index, double[] interval) {
+		interval[0] = 0.0;
+		interval[1] = 1.0;
+	}
+
+	/**
+	Evaluates the selected section at the first count parametric values of the t array.  The value of
+	dimension j of point i is stored in out[offset + i * stride + j * dimStride].  The default
+	implementation calls the eval method once per point.  Curves override this method to evaluate a
+	whole section in a single loop.
+	*/
+	protected void evalSection(double[] t, int count, double[] out, int offset, int stride, int dimStride, int dimension) {
+		double[] p = new double[dimension + 1];
+
+		for (int i = 0; i < count; i++) {
+			for (int j = 0; j < dimension; j++)
+				p[j] = 0;
+
+			p[dimension] = t[i];
+			eval(p);
+
+			int k = offset + i * stride;
+			for (int j = 0; j < dimension; j++)
+				out[k + j * dimStride] = p[j];
+		}
+	}
+
+	/**
+	<p>Evaluates the curve at the first count values of the t array and stores the points in the out
+	array using either the INTERLEAVED or PLANAR layout.  The out array must have length of at least
+	count * dimension.
+
+	<p>The values of t are in the range [0, 1] and cover the whole curve.  When the curve has k sections,
+	the values [i / k, (i + 1) / k] are mapped linearly onto the parametric interval of section i.  For
+	example, t = 0.5 evaluates a curve with 3 sections at the middle of the second section.  Sorting the
+	values of t is not required, but sorted values avoid selecting the same section more than once.
+
+	@throws IllegalArgumentException If the layout is unknown, dimension <= 0, an array is too small, a value
+	of t is not in the range [0, 1] or the curve cannot be evaluated.
+	@see #INTERLEAVED
+	@see #PLANAR
+	*/
+	public void evalBatch(double[] t, int count, double[] out, int dimension, int layout) {
+		evalBatch(t, count, out, dimension, layout, 0);
+	}
+
+	/**
+	Same as the evalBatch(double[], int, double[], int, int) method, except that the specified derivative of the
+	curve is stored instead of the points.  The derivative is 0 for the points, 1 for the first derivative and 2 for
+	the second derivative.  The derivatives are with respect to the parametric values of the t array.
+
+	@throws IllegalArgumentException If the derivative is not 0, 1 or 2, or for any of the reasons of the
+	evalBatch(double[], int, double[], int, int) method.
+	@see #evalBatch(double[], int, double[], int, int)
+	*/
+	public void evalBatch(double[] t, int count, double[] out, int dimension, int layout, int derivative) {
+		if (derivative < 0 || derivative > 2)
+			throw new IllegalArgumentException("derivative must be 0, 1 or 2");
+
+		if (layout != INTERLEAVED && layout != PLANAR)
+			throw new IllegalArgumentException("unknown layout");
+
+		if (dimension <= 0)
+			throw new IllegalArgumentException("dimension > 0 required");
+
+		if (count < 0 || t.length < count)
+			throw new IllegalArgumentException("t.length >= count >= 0 required");
+
+		if (out.length < count * dimension)
+			throw new IllegalArgumentException("out.length >= count * dimension required");
+
+		if (count == 0) return;
+
+		int numSections = prepare(dimension);
+
+		if (numSections <= 0)
+			throw new IllegalArgumentException("curve has no sections");
+
+		int stride = dimension;
+		int dimStride = 1;
+
+		if (layout == PLANAR) {
+			stride = 1;
+			dimStride = count;
+		}
+
+		double[] interval = new double[2];
+		double[] u = new double[count];
+		int i = 0;
+
+		while (i < count) {
+			int index = sectionOf(t[i], numSections);
+			selectSection(index, interval);
+
+			double a = interval[0];
+			double b = interval[1] - interval[0];
+			int j = i;
+
+			// collect the run of values that fall into the selected section
+			do {
+				u[j - i] = a + (t[j] * numSections - index) * b;
+				j++;
+			} while (j < count && sectionOf(t[j], numSections) == index);
+
+			if (derivative == 0)
+				evalSection(u, j - i, out, i * stride, stride, dimStride, dimension);
+			else
+				evalSectionDerivative(u, j - i, derivative, Math.pow(numSections * b, derivative), out, i * stride, stride, dimStride, dimension);
+
+			i = j;
+		}
+	}
+
+	private void evalSectionDerivative(double[] t, int count, int derivative, double scale, double[] out, int offset, int stride, int dimStride, int dimension) {
+		double[] p = new double[dimension + 1];
+		double[] d = new double[dimension];
+
+		for (int i = 0; i < count; i++) {
+			p[dimension] = t[i];
+
+			if (derivative == 1)
+				evalDerivatives(p, d, null);
+			else
+				evalDerivatives(p, null, d);
+
+			int k = offset + i * stride;
+			for (int j = 0; j < dimension; j++)
+				out[k + j * dimStride] = d[j] * scale;
+		}
+	}
+
+	/**
+	Evaluates the point and the first and second derivatives of the curve at the specified parametric value.  The
+	parametric value is in the range [0, 1] and covers the whole curve, the same as the evalBatch method, and the
+	derivatives are with respect to this value.  The dimension is p.length.  The d1 and d2 arrays can be null, otherwise
+	they must have length >= p.length.
+
+	@throws IllegalArgumentException If t is not in the range [0, 1], p.length == 0, an array is too small or the
+	curve cannot be evaluated.
+	@see #evalBatch(double[], int, double[], int, int)
+	*/
+	public void evalDerivatives(double t, double[] p, double[] d1, double[] d2) {
+		int dimension = p.length;
+
+		if (dimension == 0)
+			throw new IllegalArgumentException("dimension > 0 required");
+
+		if (d1 != null && d1.length < dimension || d2 != null && d2.length < dimension)
+			throw new IllegalArgumentException("d1.length >= p.length and d2.length >= p.length required");
+
+		int numSections = prepare(dimension);
+
+		if (numSections <= 0)
+			throw new IllegalArgumentException("curve has no sections");
+
+		int index = sectionOf(t, numSections);
+		double[] interval = new double[2];
+		selectSection(index, interval);
+
+		double b = interval[1] - interval[0];
+		double[] q = new double[dimension + 1];
+		q[dimension] = interval[0] + (t * numSections - index) * b;
+		evalDerivatives(q, d1, d2);
+
+		for (int j = 0; j < dimension; j++)
+			p[j] = q[j];
+
+		double c = numSections * b; // derivative of the section parameter with respect to t
+
+		for (int j = 0; j < dimension; j++) {
+			if (d1 != null) d1[j] *= c;
+			if (d2 != null) d2[j] *= c * c;
+		}
+	}
+
+	/**
+	Computes the unit tangent of the curve at the specified parametric value and stores it in the specified
+	array.  The dimension is v.length.  If the derivative is zero, then the zero vector is stored.
+
+	@throws IllegalArgumentException For the same reasons as the evalDerivatives(double, double[], double[], double[]) method.
+	@see #evalDerivatives(double, double[], double[], double[])
+	*/
+	public void getTangent(double t, double[] v) {
+		evalDerivatives(t, new double[v.length], v, null);
+		normalize(v);
+	}
+
+	/**
+	Computes the unit normal of the curve at the specified parametric value and stores it in the specified array.
+	In 2 dimensions, the normal is the unit tangent rotated 90 degrees counter-clockwise.  In other dimensions,
+	the normal is the principal normal, which points towards the center of curvature, and is the zero vector where
+	the curvature is zero.
+
+	@throws IllegalArgumentException For the same reasons as the evalDerivatives(double, double[], double[], double[]) method.
+	@see #getTangent(double, double[])
+	*/
+	public void getNormal(double t, double[] v) {
+		int n = v.length;
+		double[] d1 = new double[n];
+		evalDerivatives(t, new double[n], d1, v);
+		normalize(d1);
+
+		if (n == 2) {
+			v[0] = -d1[1];
+			v[1] = d1[0];
+			return;
+		}
+
+		// remove the tangential component of the second derivative
+		double dot = 0;
+		for (int i = 0; i < n; i++)
+			dot += v[i] * d1[i];
+
+		for (int i = 0; i < n; i++)
+			v[i] -= dot * d1[i];
+
+		normalize(v);
+	}
+
+	/**
+	Returns the curvature of the curve at the specified parametric value.  In 2 dimensions the curvature is
+	signed, and is positive when the curve turns counter-clockwise.  In other dimensions the curvature is >= 0.
+	If the derivative is zero, then 0 is returned.
+
+	@throws IllegalArgumentException If dimension <= 0 or for the same reasons as the
+	evalDerivatives(double, double[], double[], double[]) method.
+	*/
+	public double getCurvature(double t, int dimension) {
+		if (dimension <= 0)
+			throw new IllegalArgumentException("dimension > 0 required");
+
+		double[] d1 = new double[dimension];
+		double[] d2 = new double[dimension];
+		evalDerivatives(t, new double[dimension], d1, d2);
+
+		double aa = 0;
+		double bb = 0;
+		double ab = 0;
+
+		for (int i = 0; i < dimension; i++) {
+			aa += d1[i] * d1[i];
+			bb += d2[i] * d2[i];
+			ab += d1[i] * d2[i];
+		}
+
+		if (aa == 0)
+			return 0;
+
+		double speed3 = aa * Math.sqrt(aa);
+
+		if (dimension == 2)
+			return (d1[0] * d2[1] - d1[1] * d2[0]) / speed3;
+
+		return Math.sqrt(Math.max(0, aa * bb - ab * ab)) / speed3;
+	}
+
+	/**
+	Computes the bounding box of the curve without approximating it, and stores the minimum and maximum values of
+	each dimension in the min and max arrays.  Returns false if the curve has no sections.
+
+	<p>The extreme values of each section are at the ends of the section or where a component of the first
+	derivative is zero.  For sections with a polynomial degree <= 4, the derivative is an exact cubic that is
+	solved with Crossing.solveCubic, so the box is tight.  For the other polynomial sections, the control-points
+	returned by the getBezierPoints method are subdivided where they extend past the values found so far, so the
+	box contains the section and is tight to within a relative tolerance of 1e-12.  For sections that are not
+	polynomials, the zeros of the derivative are located by sampling and refined by bisection, which is
+	approximate: a pair of zeros closer than the sample spacing can be missed, so the box may not contain the
+	section.  Clipping only uses the conservative getHullBounds method of the sections.
+
+	@throws IllegalArgumentException If dimension <= 0, the length of either array is less than the dimension
+	or the curve cannot be evaluated.
+	@see #getHullBounds(double[], double[], int)
+	*/
+	public boolean getBounds(double[] min, double[] max, int dimension) {
+		return getBounds(min, max, dimension, false);
+	}
+
+	/**
+	Computes a box that contains the curve using the convex hull property of the sections, and stores the minimum
+	and maximum values of each dimension in the min and max arrays.  The box is cheaper to compute than the box of
+	the getBounds method, but may be larger.  Sections without a known hull use the same computation as the
+	getBounds method, so the box is approximate for sections that are not polynomials and have no hull.  Returns
+	false if the curve has no sections.
+
+	@throws IllegalArgumentException If dimension <= 0, the length of either array is less than the dimension
+	or the curve cannot be evaluated.
+	@see #getBounds(double[], double[], int)
+	@see #getHullBounds(double, double, double[], double[], int)
+	*/
+	public boolean getHullBounds(double[] min, double[] max, int dimension) {
+		return getBounds(min, max, dimension, true);
+	}
+
+	private boolean getBounds(double[] min, double[] max, int dimension, boolean hull) {
+		if (dimension <= 0)
+			throw new IllegalArgumentException("dimension > 0 required");
+
+		if (min.length < dimension || max.length < dimension)
+			throw new IllegalArgumentException("array length >= dimension required");
+
+		for (int j = 0; j < dimension; j++) {
+			min[j] = Double.POSITIVE_INFINITY;
+			max[j] = Double.NEGATIVE_INFINITY;
+		}
+
+		int numSections = prepare(dimension);
+		double[] interval = new double[2];
+		double[] a = new double[dimension];
+		double[] b = new double[dimension];
+
+		for (int i = 0; i < numSections; i++) {
+			selectSection(i, interval);
+
+			if (hull && getHullBounds(interval[0], interval[1], a, b, dimension)) {
+				for (int j = 0; j < dimension; j++) {
+					if (a[j] < min[j]) min[j] = a[j];
+					if (b[j] > max[j]) max[j] = b[j];
+				}
+			}
+			else {
+				extrema(interval[0], interval[1], min, max, dimension);
+			}
+		}
+
+		return numSections > 0;
+	}
+
+	/**
+	Extends the min and max arrays to include the interval [t_min, t_max] of the selected section.
+	*/
+	private void extrema(double t_min, double t_max, double[] min, double[] max, int dimension) {
+		double h = t_max - t_min;
+		double[] p = new double[dimension + 1];
+
+		p[dimension] = t_min;
+		include(p, min, max);
+		p[dimension] = t_max;
+		include(p, min, max);
+
+		if (h == 0)
+			return;
+
+		int degree = getPolynomialDegree();
+		double[][] bezier;
+
+		if (degree >= 0 && degree <= 4) {
+			// the derivative is a polynomial of degree <= 3, so it is determined by 4 samples
+			double[][] v = new double[4][dimension];
+
+			for (int k = 0; k < 4; k++) {
+				p[dimension] = t_min + h * k / 3;
+				evalDerivatives(p, v[k], null);
+			}
+
+			double[] eqn = new double[4];
+			double[] res = new double[3];
+
+			for (int j = 0; j < dimension; j++) {
+				// forward differences with step 1/3, converted to the power basis of u in [0, 1]
+				double f0 = v[0][j];
+				double d1 = v[1][j] - f0;
+				double d2 = v[2][j] - 2 * v[1][j] + f0;
+				double d3 = v[3][j] - 3 * v[2][j] + 3 * v[1][j] - f0;
+
+				eqn[0] = f0;
+				eqn[1] = 3 * (d1 - d2 / 2 + d3 / 3);
+				eqn[2] = 9 * (d2 - d3) / 2;
+				eqn[3] = 27 * d3 / 6;
+
+				// leading coefficients that are round-off of lower degree derivatives make the roots unstable
+				double eps = 1e-10 * (Math.abs(eqn[0]) + Math.abs(eqn[1]) + Math.abs(eqn[2]) + Math.abs(eqn[3]));
+
+				if (Math.abs(eqn[3]) <= eps) {
+					eqn[3] = 0;
+
+					if (Math.abs(eqn[2]) <= eps)
+						eqn[2] = 0;
+				}
+
+				int count = Crossing.solveCubic(eqn, res);
+
+				for (int k = 0; k < count; k++) {
+					if (res[k] > 0 && res[k] < 1) {
+						p[dimension] = t_min + h * res[k];
+						include(p, min, max);
+					}
+				}
+			}
+		}
+		else if ((bezier = getBezierPoints(t_min, t_max, dimension)) != null) {
+			int n = bezier.length;
+			double[] c = new double[n];
+			double[] neg = new double[n];
+
+			for (int j = 0; j < dimension; j++) {
+				double tol = 0;
+
+				for (int i = 0; i < n; i++) {
+					c[i] = bezier[i][j];
+					neg[i] = -c[i];
+					tol = Math.max(tol, Math.abs(c[i]));
+				}
+
+				tol *= 1e-12;
+
+				double hi = maximum(c, Double.NEGATIVE_INFINITY, tol, 48);
+				double lo = -maximum(neg, Double.NEGATIVE_INFINITY, tol, 48);
+
+				if (lo < min[j]) min[j] = lo;
+				if (hi > max[j]) max[j] = hi;
+			}
+		}
+		else {
+			int samples = degree > 4 ? 4 * degree : 32;
+			double[][] v = new double[samples + 1][dimension];
+
+			for (int k = 0; k <= samples; k++) {
+				p[dimension] = t_min + h * k / samples;
+				evalDerivatives(p, v[k], null);
+			}
+
+			double[] d = new double[dimension];
+
+			for (int j = 0; j < dimension; j++) {
+				for (int k = 0; k < samples; k++) {
+					double a = v[k][j];
+					double b = v[k + 1][j];
+
+					if (a == 0 || a * b >= 0)
+						continue;
+
+					// bisection on the sign change of the j-th component of the derivative
+					double t1 = t_min + h * k / samples;
+					double t2 = t_min + h * (k + 1) / samples;
+
+					for (int r = 0; r < 60 && t1 < t2; r++) {
+						double m = (t1 + t2) / 2;
+						if (m == t1 || m == t2) break;
+
+						p[dimension] = m;
+						evalDerivatives(p, d, null);
+
+						if ((d[j] < 0) == (a < 0))
+							t1 = m;
+						else
+							t2 = m;
+					}
+
+					p[dimension] = (t1 + t2) / 2;
+					include(p, min, max);
+				}
+			}
+		}
+	}
+
+	/**
+	Returns the maximum of the Bezier polynomial with the coefficients c over [0, 1], or a value that is at most
+	tol larger, if it is larger than best, and returns best otherwise.  The coefficients contain the polynomial, so
+	the halves that cannot exceed best are skipped and the others are subdivided until the coefficients are within
+	tol of the end values or the depth is 0, in which case the largest coefficient is returned.
+	*/
+	private static double maximum(double[] c, double best, double tol, int depth) {
+		int n = c.length;
+		double top = Double.NEGATIVE_INFINITY;
+
+		for (int i = 0; i < n; i++)
+			if (c[i] > top) top = c[i];
+
+		if (c[0] > best) best = c[0];
+		if (c[n - 1] > best) best = c[n - 1];
+
+		if (top <= best)
+			return best;
+
+		if (top - best <= tol || depth == 0)
+			return top;
+
+		// de Casteljau subdivision at 1/2
+		double[] w = c.clone();
+		double[] left = new double[n];
+		double[] right = new double[n];
+		left[0] = w[0];
+		right[n - 1] = w[n - 1];
+
+		for (int k = 1; k < n; k++) {
+			for (int i = 0; i < n - k; i++)
+				w[i] = (w[i] + w[i + 1]) / 2;
+
+			left[k] = w[0];
+			right[n - 1 - k] = w[n - 1 - k];
+		}
+
+		best = maximum(left, best, tol, depth - 1);
+		return maximum(right, best, tol, depth - 1);
+	}
+
+	/**
+	Evaluates the point at the parametric value stored in the last index location of p and extends the min and
+	max arrays to include it.
+	*/
+	private void include(double[] p, double[] min, double[] max) {
+		int n = p.length - 1;
+
+		for (int j = 0; j < n; j++)
+			p[j] = 0;
+
+		eval(p);
+
+		for (int j = 0; j < n; j++) {
+			if (p[j] < min[j]) min[j] = p[j];
+			if (p[j] > max[j]) max[j] = p[j];
+		}
+	}
+
+	private static void normalize(double[] v) {
+		double d = 0;
+		for (int i = 0; i < v.length; i++)
+			d += v[i] * v[i];
+
+		if (d == 0) return;
+
+		d = Math.sqrt(d);
+		for (int i = 0; i < v.length; i++)
+			v[i] /= d;
+	}
+
+	private static int sectionOf(double t, int numSections) {
+		if (!(t >= 0.0 && t <= 1.0))
+			throw new IllegalArgumentException("t in range [0, 1] required but: (t = " + t + ")");
+
+		int index = (int) (t * numSections);
+
+		if (index == numSections)
+			index--;
+
+		return index;
+	}
 }
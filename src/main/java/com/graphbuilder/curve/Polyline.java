@@ -43,17 +43,21 @@ public class Polyline extends Curve {
 	}
 
 	public void appendTo(MultiPath mp) {
+		appendTo(mp, (double[][]) null);
+	}
+
+	protected void appendTo(MultiPath mp, double[][] loc) {
 		if (!gi.isInRange(0, cp.numPoints()))
 			throw new IllegalArgumentException("Group iterator not in range");
 
-		gi.set(0, 0);
+		int[] index = gi.indices();
 
 		if (connect)
-			mp.lineTo(cp.getPoint(gi.next()).getLocation());
+			mp.lineTo(location(loc, index[0]));
 		else
-			mp.moveTo(cp.getPoint(gi.next()).getLocation());
+			mp.moveTo(location(loc, index[0]));
 
-		while (gi.hasNext())
-			mp.lineTo(cp.getPoint(gi.next()).getLocation());
+		for (int i = 1; i < index.length; i++)
+			mp.lineTo(location(loc, index[i]));
 	}
 }
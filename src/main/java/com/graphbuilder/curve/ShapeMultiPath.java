@@ -110,6 +110,38 @@ public class ShapeMultiPath extends MultiPath implements Shape {
 		return new int[] { ai0, ai1 };
 	}
 
+	/**
+	Sets the clip box to the specified rectangle in the plane of the basis vectors.  The other dimensions are
+	not clipped.  The basis vectors are read when this method is called.  When a curve is appended using a
+	transform, the rectangle is in the transformed space, i.e. it is usually the visible region of the device.
+	Specifying null removes the clip box.
+
+	@see com.graphbuilder.curve.MultiPath#setClip(double[], double[])
+	@see com.graphbuilder.curve.Curve#appendTo(ShapeMultiPath, AffineTransform)
+	*/
+	public void setClip(Rectangle2D r) {
+		if (r == null) {
+			setClip(null, null);
+			return;
+		}
+
+		int dim = getDimension();
+		double[] min = new double[dim];
+		double[] max = new double[dim];
+
+		for (int j = 0; j < dim; j++) {
+			min[j] = Double.NEGATIVE_INFINITY;
+			max[j] = Double.POSITIVE_INFINITY;
+		}
+
+		min[ai0] = r.getMinX();
+		max[ai0] = r.getMaxX();
+		min[ai1] = r.getMinY();
+		max[ai1] = r.getMaxY();
+
+		setClip(min, max);
+	}
+
 	/**
 	Returns the minimum distance^2 from the specified point to the line segments of this multi-path.
 	*/
@@ -202,41 +234,14 @@ public class ShapeMultiPath extends MultiPath implements Shape {
 	returned if there is not enough data to define a bounding box.
 	*/
 	public Rectangle2D getBounds2D() {
-		int n = getNumPoints();
-
-		double x1 = Double.MAX_VALUE;
-		double y1 = Double.MAX_VALUE;
-		double x2 = -Double.MAX_VALUE;
-		double y2 = -Double.MAX_VALUE;
-
-		boolean defined = false;
-
-		for (int i = 0; i < n; i++) {
-			double[] p = get(i);
-
-			boolean b = false;
-
-			if (getType(i) == MultiPath.MOVE_TO) {
-				if (i < n - 1 && getType(i+1) == MultiPath.LINE_TO)
-					b = true;
-			}
-			else {
-				b = true;
-			}
-
-			if (b) {
-				defined = true;
-				if (p[ai0] < x1) x1 = p[ai0];
-				if (p[ai1] < y1) y1 = p[ai1];
-				if (p[ai0] > x2) x2 = p[ai0];
-				if (p[ai1] > y2) y2 = p[ai1];
-			}
-		}
+		int dim = getDimension();
+		double[] min = new double[dim];
+		double[] max = new double[dim];
 
-		if (!defined)
+		if (!getBounds(min, max))
 			return null;
 
-		return new Rectangle2D.Double(x1, y1, x2 - x1, y2 - y1);
+		return new Rectangle2D.Double(min[ai0], min[ai1], max[ai0] - min[ai0], max[ai1] - min[ai1]);
 	}
 
 
@@ -0,0 +1,87 @@
+/*
+* Copyright (c) 2005, Graph Builder
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+* * Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+*
+* * Redistributions in binary form must reproduce the above copyright notice,
+* this list of conditions and the following disclaimer in the documentation
+* and/or other materials provided with the distribution.
+*
+* * Neither the name of Graph Builder nor the names of its contributors may be
+* used to endorse or promote products derived from this software without
+* specific prior written permission.
+
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+* FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+* DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+* SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+* OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+* OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.graphbuilder.math;
+
+/**
+The arrays that hold the evaluated parameters of the functions that are being evaluated by a thread, one array
+per level of nesting.  An evaluation takes the array of the next level before it evaluates the parameters and
+gives it back after the function returns, so nested and recursive evaluations each use their own array.
+
+@see com.graphbuilder.math.FuncNode#eval(VarMap, FuncMap)
+@see com.graphbuilder.math.BoundExpression#eval(double[])
+*/
+final class ArgStack {
+
+	private static final ThreadLocal<ArgStack> CURRENT = new ThreadLocal<ArgStack>() {
+		protected ArgStack initialValue() {
+			return new ArgStack();
+		}
+	};
+
+	private double[][] arr = new double[8][];
+	private int depth = 0;
+
+	private ArgStack() {}
+
+	/**
+	Returns the stack of the current thread.
+	*/
+	static ArgStack current() {
+		return CURRENT.get();
+	}
+
+	/**
+	Returns the array of the next level, which has at least numParam elements.
+	*/
+	double[] push(int numParam) {
+		if (depth == arr.length) {
+			double[][] tmp = new double[2 * depth][];
+			for (int i = 0; i < depth; i++)
+				tmp[i] = arr[i];
+			arr = tmp;
+		}
+
+		double[] d = arr[depth];
+
+		if (d == null || d.length < numParam) {
+			d = new double[Math.max(numParam, 4)];
+			arr[depth] = d;
+		}
+
+		depth++;
+		return d;
+	}
+
+	void pop() {
+		depth--;
+	}
+}
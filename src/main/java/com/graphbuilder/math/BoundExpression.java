@@ -0,0 +1,745 @@
+/*
+* Copyright (c) 2005, Graph Builder
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+* * Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+*
+* * Redistributions in binary form must reproduce the above copyright notice,
+* this list of conditions and the following disclaimer in the documentation
+* and/or other materials provided with the distribution.
+*
+* * Neither the name of Graph Builder nor the names of its contributors may be
+* used to endorse or promote products derived from this software without
+* specific prior written permission.
+
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+* FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+* DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+* SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+* OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+* OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.graphbuilder.math;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.graphbuilder.math.func.Function;
+import com.graphbuilder.math.func.RandFunction;
+
+/**
+<p>An expression whose variables have been bound to slots, i.e. index locations of a double array, and whose
+functions have been resolved using a FuncMap.  The binding is done once by the bind method, so the evaluation
+does no string comparisons.  The same bound expression can be evaluated for any number of rows of values.
+
+<p>The eval(VarMap) method is an adapter for code that stores the values of the variables in a VarMap.  It
+looks up each bound variable once per call, instead of once per occurrence in the expression.
+
+<p>The eval(double[][], double[], int, int) method evaluates the expression for many rows at once, where the
+values of each variable are stored in a column, i.e. an array indexed by row.  The rows are processed in blocks
+of BLOCK_SIZE rows.  Each node of the expression is evaluated for all the rows of a block before the next node
+is, so the work is done by simple loops over arrays that are small enough to stay in the cache.  The
+evalParallel method splits the rows between the threads of a ForkJoinPool, using a seeded sequence for rand()
+so that the results do not depend on the number of threads.
+
+<p>The evalBounds method computes bounds of the results over intervals of values of the variables, using
+interval arithmetic.  The bounds can be used to skip the evaluation of regions where the expression cannot
+reach a range of interest, such as a viewport or zero.
+
+<p>The bound expression is a copy of the expression-tree, so changes to the tree after binding have no effect.
+The result of the evaluation is the same as the result of the eval method of the expression.  A bound expression
+can be evaluated by multiple threads at the same time, provided the functions it uses are thread-safe.
+
+@see com.graphbuilder.math.Expression#eval(VarMap, FuncMap)
+@see com.graphbuilder.math.ExpressionCompiler
+*/
+public final class BoundExpression implements Evaluator {
+
+	/**
+	The number of rows that the column evaluation processes at a time.
+	*/
+	public static final int BLOCK_SIZE = 256;
+
+	/**
+	The number of rows below which the evalParallel method does not split a range of rows.
+	*/
+	public static final int PARALLEL_THRESHOLD = 16 * BLOCK_SIZE;
+
+	private final Node root;
+	private final String[] varNames;
+	private final int numBuffers;
+	private final int numRand;
+
+	private BoundExpression(Node root, String[] varNames, int numRand) {
+		this.root = root;
+		this.varNames = varNames;
+		this.numBuffers = root.numBuffers();
+		this.numRand = numRand;
+	}
+
+	/**
+	Binds the variables of the expression to the index locations of their names in the array returned by the
+	getVariableNames method of the expression.
+
+	@see #bind(Expression, String[], FuncMap)
+	*/
+	public static BoundExpression bind(Expression x, FuncMap f) {
+		if (x == null)
+			throw new IllegalArgumentException("expression cannot be null");
+
+		return bind(x, x.getVariableNames(), f);
+	}
+
+	/**
+	Binds each variable of the expression to the index location of its name in the specified array, and resolves
+	the functions of the expression using the FuncMap.  The names are compared using the String.equals method.  The
+	FuncMap can be null if the expression has no functions.
+
+	@throws IllegalArgumentException If the expression or the array of names is null, a variable of the expression
+	is not in the array, the expression has functions and the FuncMap is null, or the expression contains a node
+	that is not part of this package.
+	@throws RuntimeException If the FuncMap does not support a function of the expression.
+	*/
+	public static BoundExpression bind(Expression x, String[] varNames, FuncMap f) {
+		if (x == null)
+			throw new IllegalArgumentException("expression cannot be null");
+
+		if (varNames == null)
+			throw new IllegalArgumentException("variable names cannot be null");
+
+		String[] names = new String[varNames.length];
+		for (int i = 0; i < names.length; i++)
+			names[i] = varNames[i];
+
+		int[] numRand = new int[1];
+		Node root = toNode(x, names, f, numRand);
+		return new BoundExpression(root, names, numRand[0]);
+	}
+
+	/**
+	Returns the result of evaluating the expression, where the value of each variable is at the index location
+	of its slot in the specified array.
+
+	@see #getSlot(String)
+	*/
+	public double eval(double[] values) {
+		return root.eval(values);
+	}
+
+	/**
+	Returns the result of evaluating the expression using the values of the variables in the VarMap.
+
+	@throws RuntimeException If the VarMap does not have a value for a bound variable.
+	*/
+	public double eval(VarMap v) {
+		double[] values = new double[varNames.length];
+
+		for (int i = 0; i < values.length; i++)
+			values[i] = v.getValue(varNames[i]);
+
+		return root.eval(values);
+	}
+
+	/**
+	Evaluates the expression for each row of the columns, storing the results in the specified array.  The number
+	of rows is the length of the results array.
+
+	@throws IllegalArgumentException If an array is null or too short.
+	@see #eval(double[][], double[], int, int)
+	*/
+	public void eval(double[][] columns, double[] results) {
+		if (results == null)
+			throw new IllegalArgumentException("results cannot be null");
+
+		eval(columns, results, 0, results.length);
+	}
+
+	/**
+	Evaluates the expression for the rows offset to offset + length - 1.  The value of the variable in slot s for
+	row r is columns[s][r], and the result for row r is stored in results[r].  The results are the same as the
+	results of calling eval(double[]) for each row.
+
+	@throws IllegalArgumentException If an array is null, there are fewer columns than slots, a column or the
+	results array has fewer than offset + length elements, or the offset or length is negative.
+	@see #getSlot(String)
+	*/
+	public void eval(double[][] columns, double[] results, int offset, int length) {
+		checkColumns(columns, results, offset, length);
+		evalRows(new Batch(columns, numBuffers, false, 0, numRand), results, offset, length);
+	}
+
+	/**
+	Evaluates the expression for the rows offset to offset + length - 1 in the same way as the
+	eval(double[][], double[], int, int) method, except that the rand() function returns values of a sequence
+	that is determined by the seed.  The value of the k-th rand() of the expression (counting from 0, left to
+	right) for row r is the value at position r * n + k of the SplitMix64 sequence of the seed, where n is the
+	number of rand() in the expression.  Thus the value only depends on the seed, the row and the position in
+	the expression, and not on how the rows are split into calls or between threads.
+
+	<p>A function is treated as rand() if it is a RandFunction that was bound with no parameters.
+
+	@throws IllegalArgumentException If an array is null, there are fewer columns than slots, a column or the
+	results array has fewer than offset + length elements, or the offset or length is negative.
+	@see #evalParallel(double[][], double[], long, ForkJoinPool)
+	*/
+	public void eval(double[][] columns, double[] results, int offset, int length, long seed) {
+		checkColumns(columns, results, offset, length);
+		evalRows(new Batch(columns, numBuffers, true, seed, numRand), results, offset, length);
+	}
+
+	/**
+	Evaluates the expression for each row of the columns using the threads of the ForkJoinPool.  The number of
+	rows is the length of the results array.  The rows are split into ranges of about PARALLEL_THRESHOLD rows,
+	and each range is evaluated with its own buffers.  The rand() function is seeded as described by the
+	eval(double[][], double[], int, int, long) method, so the results are the same as the results of that method,
+	regardless of the number of threads.  The functions of the expression must be thread-safe.  This method returns
+	after all the rows have been evaluated.
+
+	@throws IllegalArgumentException If an array or the pool is null, there are fewer columns than slots or a column
+	has fewer elements than the results array.
+	*/
+	public void evalParallel(double[][] columns, double[] results, long seed, ForkJoinPool pool) {
+		if (results == null)
+			throw new IllegalArgumentException("results cannot be null");
+
+		if (pool == null)
+			throw new IllegalArgumentException("pool cannot be null");
+
+		checkColumns(columns, results, 0, results.length);
+		pool.invoke(new RowTask(columns, results, 0, results.length, seed));
+	}
+
+	/**
+	Stores bounds of the results of evaluating the expression for all the values of the variables in the intervals
+	[min[s], max[s]], where s is the slot of a variable.  The lower bound is stored in bounds[0] and the upper bound
+	in bounds[1].  The bounds contain the result of every call to the eval methods with such values, including the
+	rounding errors, but are generally not the smallest such bounds.  The bounds of rand() are [0, 1].
+
+	<p>All the operators and default functions are supported.  The bounds of the periodic functions are computed
+	from their monotonic segments.  If no bounds are known, both bounds are NaN.  This is the case if the result can
+	be NaN for values in the intervals, e.g. sqrt(x) where x can be negative or 0 / x where x can be 0, and if the
+	expression has functions that are not default functions.
+
+	@throws IllegalArgumentException If an array is null, the min or max array has fewer elements than there are
+	slots, min[s] > max[s] for a slot, or the bounds array has fewer than 2 elements.
+	@see #getSlot(String)
+	*/
+	public void evalBounds(double[] min, double[] max, double[] bounds) {
+		if (min == null || max == null || bounds == null)
+			throw new IllegalArgumentException("arrays cannot be null");
+
+		if (min.length < varNames.length || max.length < varNames.length)
+			throw new IllegalArgumentException("min and max must have an element for each slot");
+
+		if (bounds.length < 2)
+			throw new IllegalArgumentException("bounds.length >= 2 required");
+
+		for (int i = 0; i < varNames.length; i++)
+			if (min[i] > max[i])
+				throw new IllegalArgumentException("min[" + i + "] > max[" + i + "]");
+
+		root.bounds(min, max, bounds);
+	}
+
+	private void checkColumns(double[][] columns, double[] results, int offset, int length) {
+		if (columns == null)
+			throw new IllegalArgumentException("columns cannot be null");
+
+		if (results == null)
+			throw new IllegalArgumentException("results cannot be null");
+
+		if (offset < 0 || length < 0)
+			throw new IllegalArgumentException("offset and length must be >= 0");
+
+		if (columns.length < varNames.length)
+			throw new IllegalArgumentException("columns.length < number of slots");
+
+		int end = offset + length;
+
+		if (results.length < end)
+			throw new IllegalArgumentException("results.length < offset + length");
+
+		for (int i = 0; i < varNames.length; i++) {
+			if (columns[i] == null || columns[i].length < end)
+				throw new IllegalArgumentException("column " + i + " has fewer than offset + length elements");
+		}
+	}
+
+	private void evalRows(Batch b, double[] results, int offset, int length) {
+		double[] out = new double[BLOCK_SIZE];
+		int end = offset + length;
+
+		for (int i = offset; i < end; i += BLOCK_SIZE) {
+			int n = Math.min(BLOCK_SIZE, end - i);
+			root.eval(b, i, n, out, 0);
+			System.arraycopy(out, 0, results, i, n);
+		}
+	}
+
+	private final class RowTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final double[][] columns;
+		private final double[] results;
+		private final int offset;
+		private final int length;
+		private final long seed;
+
+		private RowTask(double[][] columns, double[] results, int offset, int length, long seed) {
+			this.columns = columns;
+			this.results = results;
+			this.offset = offset;
+			this.length = length;
+			this.seed = seed;
+		}
+
+		protected void compute() {
+			if (length <= PARALLEL_THRESHOLD) {
+				evalRows(new Batch(columns, numBuffers, true, seed, numRand), results, offset, length);
+				return;
+			}
+
+			int half = length / 2;
+			invokeAll(new RowTask(columns, results, offset, half, seed),
+				new RowTask(columns, results, offset + half, length - half, seed));
+		}
+	}
+
+	/**
+	Returns the slot of the specified variable name, or -1 if the name is not bound.
+	*/
+	public int getSlot(String varName) {
+		for (int i = 0; i < varNames.length; i++)
+			if (varNames[i].equals(varName))
+				return i;
+
+		return -1;
+	}
+
+	/**
+	Returns a new array with the names of the variables, in the order of their slots.
+	*/
+	public String[] getVariableNames() {
+		String[] arr = new String[varNames.length];
+		for (int i = 0; i < arr.length; i++)
+			arr[i] = varNames[i];
+		return arr;
+	}
+
+	private static Node toNode(Expression x, String[] varNames, FuncMap f, int[] numRand) {
+		if (x instanceof ValNode)
+			return new Val(((ValNode) x).getValue());
+
+		if (x instanceof VarNode) {
+			VarNode v = (VarNode) x;
+
+			for (int i = 0; i < varNames.length; i++)
+				if (v.getName().equals(varNames[i]))
+					return new Var(i, v.getNegate());
+
+			throw new IllegalArgumentException("variable not bound: " + v.getName());
+		}
+
+		if (x instanceof OpNode) {
+			OpNode o = (OpNode) x;
+			Node a = toNode(o.getLeftChild(), varNames, f, numRand);
+			Node b = toNode(o.getRightChild(), varNames, f, numRand);
+
+			if (x instanceof AddNode) return new Op(Op.ADD, a, b);
+			if (x instanceof SubNode) return new Op(Op.SUB, a, b);
+			if (x instanceof MultNode) return new Op(Op.MULT, a, b);
+			if (x instanceof DivNode) return new Op(Op.DIV, a, b);
+			if (x instanceof PowNode) return new Op(Op.POW, a, b);
+		}
+		else if (x instanceof FuncNode) {
+			if (f == null)
+				throw new IllegalArgumentException("function map cannot be null");
+
+			FuncNode fn = (FuncNode) x;
+			Node[] args = new Node[fn.numChildren()];
+
+			for (int i = 0; i < args.length; i++)
+				args[i] = toNode(fn.child(i), varNames, f, numRand);
+
+			Function func = f.getFunction(fn.getName(), args.length);
+
+			if (func instanceof RandFunction && args.length == 0)
+				return new Rand(func, fn.getNegate(), numRand[0]++);
+
+			return new Func(func, args, fn.getNegate());
+		}
+
+		throw new IllegalArgumentException("unsupported node: " + (x == null ? null : x.getClass().getName()));
+	}
+
+	/**
+	The state of a column evaluation.  A Batch is only used by one thread.
+	*/
+	private static final class Batch {
+
+		private final double[][] columns;
+		private final double[][] tmp;
+		private final boolean seeded;
+		private final long seed;
+		private final int numRand;
+		private double[] args = new double[4];
+
+		private Batch(double[][] columns, int numBuffers, boolean seeded, long seed, int numRand) {
+			this.columns = columns;
+			this.tmp = new double[numBuffers][BLOCK_SIZE];
+			this.seeded = seeded;
+			this.seed = seed;
+			this.numRand = numRand;
+		}
+
+		/**
+		Returns an array with at least n elements for the parameters of a function.  The array is only used
+		while the rows of a node are passed to its function, after its children have been evaluated, so the
+		nodes of a batch can share it.
+		*/
+		private double[] args(int n) {
+			if (args.length < n)
+				args = new double[n];
+
+			return args;
+		}
+
+		/**
+		Returns the value at the specified position of the SplitMix64 sequence of the seed.
+		*/
+		private double random(long position) {
+			long z = seed + (position + 1) * 0x9E3779B97F4A7C15L;
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			z = z ^ (z >>> 31);
+			return (z >>> 11) * 0x1.0p-53;
+		}
+	}
+
+	private static abstract class Node {
+		abstract double eval(double[] v);
+
+		/**
+		Stores the results for the rows offset to offset + length - 1 in out[0] to out[length - 1].  The
+		buffers b.tmp[depth] onwards can be used for the results of the children.
+		*/
+		abstract void eval(Batch b, int offset, int length, double[] out, int depth);
+
+		/**
+		Returns the number of buffers the column evaluation of this node needs.
+		*/
+		abstract int numBuffers();
+
+		/**
+		Stores the bounds of the results over the intervals [min[s], max[s]] in r[0] and r[1].
+		*/
+		abstract void bounds(double[] min, double[] max, double[] r);
+	}
+
+	/**
+	Replaces the interval in r by the interval of the negated values.
+	*/
+	private static void negate(double[] r) {
+		double lo = r[0];
+		r[0] = -r[1];
+		r[1] = -lo;
+	}
+
+	private static final class Val extends Node {
+
+		private final double val;
+
+		private Val(double val) {
+			this.val = val;
+		}
+
+		double eval(double[] v) {
+			return val;
+		}
+
+		void eval(Batch b, int offset, int length, double[] out, int depth) {
+			for (int i = 0; i < length; i++)
+				out[i] = val;
+		}
+
+		int numBuffers() {
+			return 0;
+		}
+
+		void bounds(double[] min, double[] max, double[] r) {
+			if (Double.isNaN(val)) {
+				IntervalArithmetic.unknown(r);
+			}
+			else {
+				r[0] = val;
+				r[1] = val;
+			}
+		}
+	}
+
+	private static final class Var extends Node {
+
+		private final int slot;
+		private final boolean negate;
+
+		private Var(int slot, boolean negate) {
+			this.slot = slot;
+			this.negate = negate;
+		}
+
+		double eval(double[] v) {
+			double val = v[slot];
+
+			if (negate) val = -val;
+
+			return val;
+		}
+
+		void eval(Batch b, int offset, int length, double[] out, int depth) {
+			double[] c = b.columns[slot];
+
+			if (negate) {
+				for (int i = 0; i < length; i++)
+					out[i] = -c[offset + i];
+			}
+			else {
+				System.arraycopy(c, offset, out, 0, length);
+			}
+		}
+
+		int numBuffers() {
+			return 0;
+		}
+
+		void bounds(double[] min, double[] max, double[] r) {
+			if (Double.isNaN(min[slot]) || Double.isNaN(max[slot])) {
+				IntervalArithmetic.unknown(r);
+				return;
+			}
+
+			r[0] = min[slot];
+			r[1] = max[slot];
+
+			if (negate) BoundExpression.negate(r);
+		}
+	}
+
+	private static final class Op extends Node {
+
+		private static final int ADD = 0;
+		private static final int SUB = 1;
+		private static final int MULT = 2;
+		private static final int DIV = 3;
+		private static final int POW = 4;
+
+		private final int op;
+		private final Node left;
+		private final Node right;
+
+		private Op(int op, Node left, Node right) {
+			this.op = op;
+			this.left = left;
+			this.right = right;
+		}
+
+		double eval(double[] v) {
+			double a = left.eval(v);
+			double b = right.eval(v);
+
+			switch (op) {
+				case ADD: return a + b;
+				case SUB: return a - b;
+				case MULT: return a * b;
+				case DIV: return a / b;
+				default: return Math.pow(a, b);
+			}
+		}
+
+		void eval(Batch b, int offset, int length, double[] out, int depth) {
+			double[] r = b.tmp[depth];
+			left.eval(b, offset, length, out, depth);
+			right.eval(b, offset, length, r, depth + 1);
+
+			switch (op) {
+				case ADD:
+					for (int i = 0; i < length; i++)
+						out[i] = out[i] + r[i];
+					break;
+				case SUB:
+					for (int i = 0; i < length; i++)
+						out[i] = out[i] - r[i];
+					break;
+				case MULT:
+					for (int i = 0; i < length; i++)
+						out[i] = out[i] * r[i];
+					break;
+				case DIV:
+					for (int i = 0; i < length; i++)
+						out[i] = out[i] / r[i];
+					break;
+				default:
+					for (int i = 0; i < length; i++)
+						out[i] = Math.pow(out[i], r[i]);
+			}
+		}
+
+		int numBuffers() {
+			return Math.max(left.numBuffers(), 1 + right.numBuffers());
+		}
+
+		void bounds(double[] min, double[] max, double[] r) {
+			double[] s = new double[2];
+			left.bounds(min, max, r);
+			right.bounds(min, max, s);
+
+			switch (op) {
+				case ADD: IntervalArithmetic.add(r[0], r[1], s[0], s[1], r); break;
+				case SUB: IntervalArithmetic.sub(r[0], r[1], s[0], s[1], r); break;
+				case MULT: IntervalArithmetic.mult(r[0], r[1], s[0], s[1], r); break;
+				case DIV: IntervalArithmetic.div(r[0], r[1], s[0], s[1], r); break;
+				default: IntervalArithmetic.pow(r[0], r[1], s[0], s[1], r);
+			}
+		}
+	}
+
+	private static final class Func extends Node {
+
+		private final Function function;
+		private final Node[] args;
+		private final boolean negate;
+
+		private Func(Function function, Node[] args, boolean negate) {
+			this.function = function;
+			this.args = args;
+			this.negate = negate;
+		}
+
+		double eval(double[] v) {
+			int n = args.length;
+			ArgStack stack = ArgStack.current();
+			double[] d = stack.push(n);
+			double result;
+
+			try {
+				for (int i = 0; i < n; i++)
+					d[i] = args[i].eval(v);
+
+				result = function.of(d, n);
+			}
+			finally {
+				stack.pop();
+			}
+
+			if (negate) result = -result;
+
+			return result;
+		}
+
+		void eval(Batch b, int offset, int length, double[] out, int depth) {
+			int n = args.length;
+
+			for (int j = 0; j < n; j++)
+				args[j].eval(b, offset, length, b.tmp[depth + j], depth + n);
+
+			double[] d = b.args(n);
+
+			for (int i = 0; i < length; i++) {
+				for (int j = 0; j < n; j++)
+					d[j] = b.tmp[depth + j][i];
+
+				double result = function.of(d, n);
+
+				if (negate) result = -result;
+
+				out[i] = result;
+			}
+		}
+
+		int numBuffers() {
+			int max = 0;
+
+			for (int j = 0; j < args.length; j++)
+				max = Math.max(max, args[j].numBuffers());
+
+			return args.length + max;
+		}
+
+		void bounds(double[] min, double[] max, double[] r) {
+			int n = args.length;
+			double[] lo = new double[n];
+			double[] hi = new double[n];
+
+			for (int j = 0; j < n; j++) {
+				args[j].bounds(min, max, r);
+				lo[j] = r[0];
+				hi[j] = r[1];
+			}
+
+			IntervalArithmetic.func(function, lo, hi, n, r);
+
+			if (negate) BoundExpression.negate(r);
+		}
+	}
+
+	private static final class Rand extends Node {
+
+		private static final double[] NO_ARGS = new double[0];
+
+		private final Function function;
+		private final boolean negate;
+		private final int index;
+
+		private Rand(Function function, boolean negate, int index) {
+			this.function = function;
+			this.negate = negate;
+			this.index = index;
+		}
+
+		double eval(double[] v) {
+			double result = function.of(NO_ARGS, 0);
+
+			if (negate) result = -result;
+
+			return result;
+		}
+
+		void eval(Batch b, int offset, int length, double[] out, int depth) {
+			if (!b.seeded) {
+				for (int i = 0; i < length; i++)
+					out[i] = function.of(NO_ARGS, 0);
+			}
+			else {
+				long n = b.numRand;
+
+				for (int i = 0; i < length; i++)
+					out[i] = b.random((offset + i) * n + index);
+			}
+
+			if (negate) {
+				for (int i = 0; i < length; i++)
+					out[i] = -out[i];
+			}
+		}
+
+		int numBuffers() {
+			return 0;
+		}
+
+		void bounds(double[] min, double[] max, double[] r) {
+			IntervalArithmetic.func(function, new double[0], new double[0], 0, r);
+
+			if (negate) BoundExpression.negate(r);
+		}
+	}
+}
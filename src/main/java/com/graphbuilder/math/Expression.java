@@ -40,6 +40,10 @@ a VarMap or FuncMap respectively.  Expressions that consist entirely of OpNodes
 require a VarMap or FuncMap.  For Expressions that support children (OpNodes, FuncNodes), a child can
 only be accepted provided it currently has no parent, a cyclic reference is not formed, and it is
 non-null.
+
+<p>Evaluation does not modify the expression tree, so a tree can be evaluated by several threads at the same time
+provided the tree is not modified during the evaluation, and the VarMap, the FuncMap and the functions can be used
+by those threads.  The VarMap and FuncMap classes can be read by several threads as long as they are not modified.
 */
 public abstract class Expression {
 
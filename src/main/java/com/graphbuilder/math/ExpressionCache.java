@@ -0,0 +1,283 @@
+/*
+* Copyright (c) 2005, Graph Builder
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+* * Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+*
+* * Redistributions in binary form must reproduce the above copyright notice,
+* this list of conditions and the following disclaimer in the documentation
+* and/or other materials provided with the distribution.
+*
+* * Neither the name of Graph Builder nor the names of its contributors may be
+* used to endorse or promote products derived from this software without
+* specific prior written permission.
+
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+* FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+* DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+* SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+* OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+* OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.graphbuilder.math;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+<p>A cache of parsed expression strings for applications that parse the same strings many times.  The parse method
+returns the same result as ExpressionTree.parse, but a string that is already in the cache is not parsed again.
+
+<p>Expression-trees can be modified, so the cache keeps its own tree for each string and the parse method returns
+a new copy of it.  Copying a tree is much cheaper than parsing the string.  The copy belongs to the caller, and can
+be modified, simplified, bound or compiled.
+
+<p>The entries are evicted in least-recently-used order when the number of entries exceeds the maximum number
+of entries, or when the estimated memory of the entries exceeds the memory budget.  The number of hits, misses and
+evictions, and the memory usage are available as statistics.  Strings that cannot be parsed are not cached.
+
+<p>The methods of this class are thread-safe.  The strings are parsed and the trees are copied outside of the
+lock of the cache, so threads only wait for each other to look up and store entries.
+
+@see com.graphbuilder.math.ExpressionTree#parse(String)
+*/
+public class ExpressionCache {
+
+	private final LinkedHashMap<String, Entry> map = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private final int maxEntries;
+	private final long budget;
+
+	private long memory = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	Creates a cache with the specified maximum number of entries and no memory budget.
+
+	@throws IllegalArgumentException If the maximum number of entries is < 0.
+	*/
+	public ExpressionCache(int maxEntries) {
+		this(maxEntries, Long.MAX_VALUE);
+	}
+
+	/**
+	Creates a cache with the specified maximum number of entries and memory budget in bytes.
+
+	@throws IllegalArgumentException If the maximum number of entries or the budget is < 0.
+	*/
+	public ExpressionCache(int maxEntries, long budget) {
+		if (maxEntries < 0)
+			throw new IllegalArgumentException("maxEntries >= 0 required");
+
+		if (budget < 0)
+			throw new IllegalArgumentException("budget >= 0 required");
+
+		this.maxEntries = maxEntries;
+		this.budget = budget;
+	}
+
+	/**
+	Returns a new expression-tree that represents the expression string.  Returns null if the string is empty.
+
+	@throws ExpressionParseException If the string is invalid.
+	@see com.graphbuilder.math.ExpressionTree#parse(String)
+	*/
+	public Expression parse(String s) {
+		if (s == null)
+			throw new ExpressionParseException("Expression string cannot be null.", -1);
+
+		Entry e;
+
+		synchronized (this) {
+			e = map.get(s);
+
+			if (e != null)
+				hits++;
+			else
+				misses++;
+		}
+
+		if (e == null) {
+			Expression x = ExpressionTree.parse(s);
+
+			if (x == null)
+				return null;
+
+			e = new Entry(x, sizeOf(s, x));
+
+			synchronized (this) {
+				Entry old = map.put(s, e);
+
+				if (old != null)
+					memory -= old.size;
+
+				memory += e.size;
+				evict();
+			}
+		}
+
+		return copy(e.root);
+	}
+
+	/**
+	Removes the entry of the specified string, if there is one.
+	*/
+	public synchronized void remove(String s) {
+		Entry e = map.remove(s);
+
+		if (e != null)
+			memory -= e.size;
+	}
+
+	/**
+	Removes all entries.  The statistics are not reset.
+	*/
+	public synchronized void clear() {
+		map.clear();
+		memory = 0;
+	}
+
+	/**
+	Returns the number of entries.
+	*/
+	public synchronized int size() {
+		return map.size();
+	}
+
+	/**
+	Returns the number of calls to parse that were served by an existing entry.
+	*/
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	Returns the number of calls to parse that required the string to be parsed.
+	*/
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	Returns the number of entries evicted to stay within the maximum number of entries or the memory budget.
+	*/
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	Returns the estimated memory in bytes of the entries.
+	*/
+	public synchronized long getMemoryUsage() {
+		return memory;
+	}
+
+	/**
+	Returns the maximum number of entries.
+	*/
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	Returns the memory budget in bytes.
+	*/
+	public long getMemoryBudget() {
+		return budget;
+	}
+
+	private void evict() {
+		Iterator<Entry> iter = map.values().iterator();
+
+		while ((map.size() > maxEntries || memory > budget) && iter.hasNext()) {
+			Entry e = iter.next();
+			memory -= e.size;
+			iter.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	Estimates the memory of the string and the tree, assuming 8 byte references and 16 byte object headers.
+	*/
+	private static long sizeOf(String s, Expression x) {
+		return 64 + 2L * s.length() + sizeOf(x); // the string, the map entry and the tree
+	}
+
+	private static long sizeOf(Expression x) {
+		if (x instanceof OpNode) {
+			OpNode o = (OpNode) x;
+			return 40 + sizeOf(o.getLeftChild()) + sizeOf(o.getRightChild());
+		}
+
+		if (x instanceof FuncNode) {
+			FuncNode f = (FuncNode) x;
+			long size = 96 + 2L * f.getName().length() + 8L * f.numChildren();
+
+			for (int i = 0; i < f.numChildren(); i++)
+				size += sizeOf(f.child(i));
+
+			return size;
+		}
+
+		if (x instanceof VarNode)
+			return 80 + 2L * ((VarNode) x).getName().length();
+
+		return 32;
+	}
+
+	/**
+	Returns a copy of the expression-tree.
+	*/
+	private static Expression copy(Expression x) {
+		if (x instanceof ValNode)
+			return new ValNode(((ValNode) x).getValue());
+
+		if (x instanceof VarNode) {
+			VarNode v = (VarNode) x;
+			return new VarNode(v.getName(), v.getNegate());
+		}
+
+		if (x instanceof FuncNode) {
+			FuncNode f = (FuncNode) x;
+			FuncNode y = new FuncNode(f.getName(), f.getNegate());
+
+			for (int i = 0; i < f.numChildren(); i++)
+				y.add(copy(f.child(i)));
+
+			return y;
+		}
+
+		OpNode o = (OpNode) x;
+		Expression a = copy(o.getLeftChild());
+		Expression b = copy(o.getRightChild());
+
+		if (x instanceof AddNode) return new AddNode(a, b);
+		if (x instanceof SubNode) return new SubNode(a, b);
+		if (x instanceof MultNode) return new MultNode(a, b);
+		if (x instanceof DivNode) return new DivNode(a, b);
+		return new PowNode(a, b);
+	}
+
+	private static final class Entry {
+
+		private final Expression root;
+		private final long size;
+
+		private Entry(Expression root, long size) {
+			this.root = root;
+			this.size = size;
+		}
+	}
+}
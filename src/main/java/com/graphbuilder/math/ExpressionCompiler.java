@@ -0,0 +1,559 @@
+/*
+* Copyright (c) 2005, Graph Builder
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+* * Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+*
+* * Redistributions in binary form must reproduce the above copyright notice,
+* this list of conditions and the following disclaimer in the documentation
+* and/or other materials provided with the distribution.
+*
+* * Neither the name of Graph Builder nor the names of its contributors may be
+* used to endorse or promote products derived from this software without
+* specific prior written permission.
+
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+* FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+* DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+* SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+* OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+* OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.graphbuilder.math;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.graphbuilder.math.func.*;
+import com.graphbuilder.struc.Bag;
+
+/**
+<p>Compiles an expression-tree into a JVM class that implements the Evaluator interface.  The variables of the
+expression are bound to index locations of the double array passed to the eval method, and the functions are
+resolved once using a FuncMap.  The evaluation then does no name lookups and no virtual calls on the nodes of the
+tree, and the JIT compiler can optimize the generated code like any other method.
+
+<p>The default functions that are equivalent to a method of java.lang.Math (sin, cos, tan, asin, acos, atan, sqrt,
+exp, ln, log, lg, abs, ceil, floor, pow) are inlined as calls to that method, and e(), pi() and mod(x, y) are
+inlined as a constant and the remainder operator.  A function is only inlined if the FuncMap resolves its name to
+an instance of the default function class, so user functions that replace a default function are respected.  The
+other functions are called through the Function interface, with a new parameter array per call.  The result of
+the evaluation is the same as the result of the eval method of the expression.
+
+<p>The class is written using a small class-file writer and defined by its own class loader, so it can be garbage
+collected once the evaluator is no longer referenced.  Only facilities of the JDK are used.  The expression-tree is
+not referenced by the evaluator, so changes to the tree after compilation have no effect.
+
+@see com.graphbuilder.math.Evaluator
+@see com.graphbuilder.math.Expression#eval(VarMap, FuncMap)
+*/
+public final class ExpressionCompiler {
+
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	private static final String EVALUATOR = "com/graphbuilder/math/Evaluator";
+	private static final String FUNCTION = "com/graphbuilder/math/func/Function";
+	private static final String FUNCTIONS = "[L" + FUNCTION + ";";
+	private static final String MATH = "java/lang/Math";
+
+	private static final HashMap<Class<?>, String> mathMethods = new HashMap<Class<?>, String>();
+
+	static {
+		mathMethods.put(AbsFunction.class, "abs");
+		mathMethods.put(AcosFunction.class, "acos");
+		mathMethods.put(AsinFunction.class, "asin");
+		mathMethods.put(AtanFunction.class, "atan");
+		mathMethods.put(CeilFunction.class, "ceil");
+		mathMethods.put(CosFunction.class, "cos");
+		mathMethods.put(ExpFunction.class, "exp");
+		mathMethods.put(FloorFunction.class, "floor");
+		mathMethods.put(LnFunction.class, "log");
+		mathMethods.put(SinFunction.class, "sin");
+		mathMethods.put(SqrtFunction.class, "sqrt");
+		mathMethods.put(TanFunction.class, "tan");
+	}
+
+	private ExpressionCompiler() {}
+
+	/**
+	Compiles the expression, binding the variables to the index locations of their names in the array returned
+	by the getVariableNames method of the expression.
+
+	@see #compile(Expression, String[], FuncMap)
+	*/
+	public static Evaluator compile(Expression x, FuncMap f) {
+		if (x == null)
+			throw new IllegalArgumentException("expression cannot be null");
+
+		return compile(x, x.getVariableNames(), f);
+	}
+
+	/**
+	Compiles the expression, binding each variable to the index location of its name in the specified array.
+	The names are compared using the String.equals method.  The FuncMap is only used during the compilation and
+	can be null if the expression has no functions.
+
+	@throws IllegalArgumentException If the expression or the array of names is null, a variable of the expression
+	is not in the array, the expression has functions and the FuncMap is null, the expression contains a node
+	that is not part of this package or the expression is too large to compile.
+	@throws RuntimeException If the FuncMap does not support a function of the expression.
+	*/
+	public static Evaluator compile(Expression x, String[] varNames, FuncMap f) {
+		if (x == null)
+			throw new IllegalArgumentException("expression cannot be null");
+
+		if (varNames == null)
+			throw new IllegalArgumentException("variable names cannot be null");
+
+		String name = "com/graphbuilder/math/CompiledExpression" + counter.incrementAndGet();
+		Generator g = new Generator(varNames, f);
+		byte[] b = g.generate(x, name);
+
+		Loader loader = new Loader(ExpressionCompiler.class.getClassLoader());
+		Class<?> c = loader.define(name.replace('/', '.'), b);
+
+		Function[] functions = new Function[g.functions.size()];
+		for (int i = 0; i < functions.length; i++)
+			functions[i] = (Function) g.functions.get(i);
+
+		try {
+			return (Evaluator) c.getConstructor(Function[].class).newInstance((Object) functions);
+		} catch (Exception e) {
+			throw new RuntimeException("unable to create the evaluator: " + e);
+		}
+	}
+
+	private static final class Loader extends ClassLoader {
+
+		private Loader(ClassLoader parent) {
+			super(parent);
+		}
+
+		private Class<?> define(String name, byte[] b) {
+			return defineClass(name, b, 0, b.length);
+		}
+	}
+
+	/**
+	Writes the class-file of an evaluator.  The generated class is:
+
+	<pre>
+	public final class CompiledExpressionN implements Evaluator {
+		private final Function[] f;
+
+		public CompiledExpressionN(Function[] f) {
+			this.f = f;
+		}
+
+		public double eval(double[] v) {
+			return ...;
+		}
+	}
+	</pre>
+
+	The class-file version is 49, so the verifier does not require stack-map frames.  The generated code has
+	no branches.
+	*/
+	private static final class Generator {
+
+		private final String[] varNames;
+		private final FuncMap funcMap;
+		private final Bag functions = new Bag();
+
+		private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+		private final DataOutputStream pool = new DataOutputStream(poolBytes);
+		private final HashMap<String, Integer> poolIndex = new HashMap<String, Integer>();
+		private int poolCount = 1;
+
+		private ByteArrayOutputStream code = new ByteArrayOutputStream();
+		private int stack = 0;
+		private int maxStack = 0;
+
+		private String className = null;
+
+		private Generator(String[] varNames, FuncMap funcMap) {
+			this.varNames = varNames;
+			this.funcMap = funcMap;
+		}
+
+		private byte[] generate(Expression x, String name) {
+			className = name;
+
+			try {
+				int thisClass = classRef(name);
+				int superClass = classRef("java/lang/Object");
+				int evaluator = classRef(EVALUATOR);
+				int fieldName = utf8("f");
+				int fieldDesc = utf8(FUNCTIONS);
+				int codeName = utf8("Code");
+
+				// constructor
+				op(0x2a); // aload_0
+				op(0xb7); u2(methodRef("java/lang/Object", "<init>", "()V")); // invokespecial
+				op(0x2a); // aload_0
+				op(0x2b); // aload_1
+				op(0xb5); u2(fieldRef(name, "f", FUNCTIONS)); // putfield
+				op(0xb1); // return
+				byte[] init = code.toByteArray();
+				int initName = utf8("<init>");
+				int initDesc = utf8("(" + FUNCTIONS + ")V");
+
+				// eval method
+				code = new ByteArrayOutputStream();
+				stack = 0;
+				maxStack = 0;
+				emit(x);
+				op(0xaf); // dreturn
+				byte[] eval = code.toByteArray();
+				int evalMaxStack = maxStack;
+				int evalName = utf8("eval");
+				int evalDesc = utf8("([D)D");
+
+				if (eval.length > 65535 || poolCount > 65535)
+					throw new IllegalArgumentException("expression is too large to compile");
+
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(bytes);
+				out.writeInt(0xCAFEBABE);
+				out.writeShort(0); // minor version
+				out.writeShort(49); // major version
+				out.writeShort(poolCount);
+				pool.flush();
+				poolBytes.writeTo(out);
+				out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+				out.writeShort(thisClass);
+				out.writeShort(superClass);
+				out.writeShort(1);
+				out.writeShort(evaluator);
+
+				out.writeShort(1); // fields
+				out.writeShort(0x0002 | 0x0010); // private final
+				out.writeShort(fieldName);
+				out.writeShort(fieldDesc);
+				out.writeShort(0);
+
+				out.writeShort(2); // methods
+				writeMethod(out, initName, initDesc, codeName, init, 2);
+				writeMethod(out, evalName, evalDesc, codeName, eval, evalMaxStack);
+
+				out.writeShort(0); // class attributes
+				out.flush();
+				return bytes.toByteArray();
+			} catch (IOException e) {
+				throw new RuntimeException(e.toString()); // does not happen with byte array streams
+			}
+		}
+
+		private static void writeMethod(DataOutputStream out, int name, int desc, int codeName, byte[] code, int maxStack) throws IOException {
+			out.writeShort(0x0001); // public
+			out.writeShort(name);
+			out.writeShort(desc);
+			out.writeShort(1); // attributes
+			out.writeShort(codeName);
+			out.writeInt(12 + code.length);
+			out.writeShort(maxStack);
+			out.writeShort(2); // max locals: this and the parameter
+			out.writeInt(code.length);
+			out.write(code);
+			out.writeShort(0); // exception table
+			out.writeShort(0); // code attributes
+		}
+
+		/**
+		Emits the code that pushes the value of the expression onto the operand stack.
+		*/
+		private void emit(Expression x) throws IOException {
+			if (x instanceof ValNode) {
+				pushDouble(((ValNode) x).getValue());
+			}
+			else if (x instanceof VarNode) {
+				VarNode v = (VarNode) x;
+				int index = -1;
+
+				for (int i = 0; i < varNames.length && index == -1; i++)
+					if (v.getName().equals(varNames[i]))
+						index = i;
+
+				if (index == -1)
+					throw new IllegalArgumentException("variable not bound: " + v.getName());
+
+				op(0x2b); // aload_1
+				push(1);
+				pushInt(index);
+				op(0x31); // daload
+				push(-2 + 2);
+
+				if (v.getNegate())
+					op(0x77); // dneg
+			}
+			else if (x instanceof OpNode) {
+				OpNode o = (OpNode) x;
+				emit(o.getLeftChild());
+				emit(o.getRightChild());
+
+				if (x instanceof AddNode)
+					op(0x63); // dadd
+				else if (x instanceof SubNode)
+					op(0x67); // dsub
+				else if (x instanceof MultNode)
+					op(0x6b); // dmul
+				else if (x instanceof DivNode)
+					op(0x6f); // ddiv
+				else if (x instanceof PowNode)
+					invokeMath("pow", 2);
+				else
+					throw new IllegalArgumentException("unsupported node: " + x.getClass().getName());
+
+				push(-2);
+			}
+			else if (x instanceof FuncNode) {
+				emitFunction((FuncNode) x);
+
+				if (((FuncNode) x).getNegate())
+					op(0x77); // dneg
+			}
+			else {
+				throw new IllegalArgumentException("unsupported node: " + (x == null ? null : x.getClass().getName()));
+			}
+		}
+
+		private void emitFunction(FuncNode fn) throws IOException {
+			if (funcMap == null)
+				throw new IllegalArgumentException("function map cannot be null");
+
+			int n = fn.numChildren();
+			Function f = funcMap.getFunction(fn.getName(), n);
+			Class<?> c = f.getClass();
+			String m = mathMethods.get(c);
+
+			if (m != null && n == 1) {
+				emit(fn.child(0));
+				invokeMath(m, 1);
+			}
+			else if (c == PowFunction.class) {
+				emit(fn.child(0));
+				emit(fn.child(1));
+				invokeMath("pow", 2);
+				push(-2);
+			}
+			else if (c == ModFunction.class) {
+				emit(fn.child(0));
+				emit(fn.child(1));
+				op(0x73); // drem
+				push(-2);
+			}
+			else if (c == EFunction.class) {
+				pushDouble(Math.E);
+			}
+			else if (c == PiFunction.class) {
+				pushDouble(Math.PI);
+			}
+			else if (c == LgFunction.class) {
+				emit(fn.child(0));
+				invokeMath("log", 1);
+				pushDouble(Math.log(2));
+				op(0x6f); // ddiv
+				push(-2);
+			}
+			else if (c == LogFunction.class) {
+				emit(fn.child(0));
+				invokeMath("log", 1);
+
+				if (n == 1) {
+					pushDouble(Math.log(10));
+				}
+				else {
+					emit(fn.child(1));
+					invokeMath("log", 1);
+				}
+
+				op(0x6f); // ddiv
+				push(-2);
+			}
+			else {
+				int k = functions.size();
+				functions.add(f);
+
+				op(0x2a); // aload_0
+				push(1);
+				op(0xb4); u2(fieldRef(className, "f", FUNCTIONS)); // getfield
+				pushInt(k);
+				op(0x32); // aaload
+				push(-1);
+
+				pushInt(n);
+				op(0xbc); code.write(7); // newarray double
+
+				for (int i = 0; i < n; i++) {
+					op(0x59); // dup
+					push(1);
+					pushInt(i);
+					emit(fn.child(i));
+					op(0x52); // dastore
+					push(-4);
+				}
+
+				pushInt(n);
+				op(0xb9); u2(interfaceMethodRef(FUNCTION, "of", "([DI)D")); // invokeinterface
+				code.write(3);
+				code.write(0);
+				push(-3 + 2);
+			}
+		}
+
+		/**
+		Emits a call to the static method of java.lang.Math that takes the specified number of double parameters
+		and returns a double.  The stack depth is not changed for 1 parameter.
+		*/
+		private void invokeMath(String name, int numParam) throws IOException {
+			String desc = numParam == 1 ? "(D)D" : "(DD)D";
+			op(0xb8); u2(methodRef(MATH, name, desc)); // invokestatic
+		}
+
+		private void pushInt(int i) throws IOException {
+			if (i >= -1 && i <= 5)
+				op(0x03 + i); // iconst_<i>
+			else if (i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE) {
+				op(0x10); // bipush
+				code.write(i);
+			}
+			else if (i >= Short.MIN_VALUE && i <= Short.MAX_VALUE) {
+				op(0x11); // sipush
+				u2(i);
+			}
+			else {
+				op(0x13); // ldc_w
+				u2(integer(i));
+			}
+
+			push(1);
+		}
+
+		private void pushDouble(double d) throws IOException {
+			if (Double.doubleToRawLongBits(d) == 0L)
+				op(0x0e); // dconst_0
+			else if (d == 1.0)
+				op(0x0f); // dconst_1
+			else {
+				op(0x14); // ldc2_w
+				u2(doubleConst(d));
+			}
+
+			push(2);
+		}
+
+		private void push(int n) {
+			stack += n;
+			if (stack > maxStack)
+				maxStack = stack;
+		}
+
+		private void op(int opcode) {
+			code.write(opcode);
+		}
+
+		private void u2(int v) {
+			code.write(v >>> 8);
+			code.write(v);
+		}
+
+		//---------------------------------------------------------------
+		// constant pool
+
+		private int utf8(String s) throws IOException {
+			Integer i = poolIndex.get("1:" + s);
+			if (i != null) return i.intValue();
+
+			pool.writeByte(1);
+			pool.writeUTF(s);
+			return add("1:" + s, 1);
+		}
+
+		private int integer(int v) throws IOException {
+			Integer i = poolIndex.get("3:" + v);
+			if (i != null) return i.intValue();
+
+			pool.writeByte(3);
+			pool.writeInt(v);
+			return add("3:" + v, 1);
+		}
+
+		private int doubleConst(double d) throws IOException {
+			long bits = Double.doubleToRawLongBits(d);
+			Integer i = poolIndex.get("6:" + bits);
+			if (i != null) return i.intValue();
+
+			pool.writeByte(6);
+			pool.writeLong(bits);
+			return add("6:" + bits, 2);
+		}
+
+		private int classRef(String name) throws IOException {
+			Integer i = poolIndex.get("7:" + name);
+			if (i != null) return i.intValue();
+
+			int n = utf8(name);
+			pool.writeByte(7);
+			pool.writeShort(n);
+			return add("7:" + name, 1);
+		}
+
+		private int nameAndType(String name, String desc) throws IOException {
+			String key = "12:" + name + " " + desc;
+			Integer i = poolIndex.get(key);
+			if (i != null) return i.intValue();
+
+			int n = utf8(name);
+			int d = utf8(desc);
+			pool.writeByte(12);
+			pool.writeShort(n);
+			pool.writeShort(d);
+			return add(key, 1);
+		}
+
+		private int fieldRef(String owner, String name, String desc) throws IOException {
+			return memberRef(9, owner, name, desc);
+		}
+
+		private int methodRef(String owner, String name, String desc) throws IOException {
+			return memberRef(10, owner, name, desc);
+		}
+
+		private int interfaceMethodRef(String owner, String name, String desc) throws IOException {
+			return memberRef(11, owner, name, desc);
+		}
+
+		private int memberRef(int tag, String owner, String name, String desc) throws IOException {
+			String key = tag + ":" + owner + "." + name + " " + desc;
+			Integer i = poolIndex.get(key);
+			if (i != null) return i.intValue();
+
+			int c = classRef(owner);
+			int nt = nameAndType(name, desc);
+			pool.writeByte(tag);
+			pool.writeShort(c);
+			pool.writeShort(nt);
+			return add(key, 1);
+		}
+
+		private int add(String key, int size) {
+			int index = poolCount;
+			poolIndex.put(key, Integer.valueOf(index));
+			poolCount += size;
+			return index;
+		}
+	}
+}
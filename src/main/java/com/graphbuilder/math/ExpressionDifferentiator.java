@@ -0,0 +1,325 @@
+/*
+* Copyright (c) 2005, Graph Builder
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+* * Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+*
+* * Redistributions in binary form must reproduce the above copyright notice,
+* this list of conditions and the following disclaimer in the documentation
+* and/or other materials provided with the distribution.
+*
+* * Neither the name of Graph Builder nor the names of its contributors may be
+* used to endorse or promote products derived from this software without
+* specific prior written permission.
+
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+* FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+* DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+* SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+* OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+* OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.graphbuilder.math;
+
+import com.graphbuilder.math.func.*;
+
+/**
+<p>Symbolic differentiation of expression-trees.  The differentiate method returns a new expression-tree for the
+derivative of an expression with respect to a variable.  The tree that is passed in is not modified.  The
+derivative is simplified using the ExpressionSimplifier, so terms that do not depend on the variable are removed.
+
+<p>All operators are supported.  Functions are supported if the FuncMap maps their names to one of the default
+functions.  The derivatives of the default functions are:
+
+<ul>
+<li>sin, cos, tan, asin, acos, atan, sinh, cosh, tanh, asinh, acosh, atanh, sqrt, exp, ln, lg and log: the usual
+derivatives.  log(x, y) is differentiated as ln(x)/ln(y).</li>
+<li>abs(x): sign(x)</li>
+<li>pow(x, y): the same as x^y</li>
+<li>sum and avg: the sum and average of the derivatives of the parameters.</li>
+<li>mod(x, y): x' - y' * (x - mod(x, y)) / y</li>
+<li>ceil, floor, round, sign, fact and combin: 0, since these functions are constant between their steps.</li>
+</ul>
+
+<p>A function that is not listed, e.g. min, max or a function that is not a default function, is only supported if
+none of its parameters depend on the variable, in which case its derivative is 0.  Functions that the derivative
+needs, e.g. cos for the derivative of sin, must also be in the FuncMap, and are found by their class.
+
+<p>The derivative of x^y uses ln(x) when y depends on the variable, so it is only defined for x > 0, as the
+derivative of a function is only defined where the function is differentiable.
+
+@see com.graphbuilder.math.ExpressionSimplifier
+*/
+public final class ExpressionDifferentiator {
+
+	private final String varName;
+	private final FuncMap funcMap;
+
+	private ExpressionDifferentiator(String varName, FuncMap funcMap) {
+		this.varName = varName;
+		this.funcMap = funcMap;
+	}
+
+	/**
+	Returns the derivative of the expression with respect to the specified variable.  The variable names are compared
+	using the String.equals method.  The FuncMap can be null if the expression has no functions.
+
+	@throws IllegalArgumentException If the expression or variable name is null, the expression has functions and the
+	FuncMap is null, a function that depends on the variable has no known derivative, a function that the derivative
+	needs is not in the FuncMap, or the expression contains a node that is not part of this package.
+	@throws RuntimeException If the FuncMap does not support a function of the expression.
+	*/
+	public static Expression differentiate(Expression x, String varName, FuncMap f) {
+		if (x == null)
+			throw new IllegalArgumentException("expression cannot be null");
+
+		if (varName == null)
+			throw new IllegalArgumentException("variable name cannot be null");
+
+		Expression d = new ExpressionDifferentiator(varName, f).derive(x);
+
+		if (d == null)
+			return new ValNode(0);
+
+		return ExpressionSimplifier.simplify(d, f);
+	}
+
+	/**
+	Returns the derivative, or null if the derivative is 0 because the expression does not depend on the variable.
+	*/
+	private Expression derive(Expression x) {
+		if (x instanceof ValNode)
+			return null;
+
+		if (x instanceof VarNode) {
+			VarNode v = (VarNode) x;
+
+			if (!v.getName().equals(varName))
+				return null;
+
+			return new ValNode(v.getNegate() ? -1 : 1);
+		}
+
+		if (x instanceof OpNode) {
+			OpNode o = (OpNode) x;
+			Expression u = o.getLeftChild();
+			Expression v = o.getRightChild();
+			Expression du = derive(u);
+			Expression dv = derive(v);
+
+			if (du == null && dv == null)
+				return null;
+
+			if (x instanceof AddNode)
+				return (dv == null ? du : du == null ? dv : new AddNode(du, dv));
+
+			if (x instanceof SubNode)
+				return (dv == null ? du : du == null ? negate(dv) : new SubNode(du, dv));
+
+			if (x instanceof MultNode)
+				return sum(product(du, copy(v)), product(copy(u), dv));
+
+			if (x instanceof DivNode) {
+				if (dv == null)
+					return new DivNode(du, copy(v));
+
+				Expression n = product(copy(u), dv);
+				n = (du == null ? negate(n) : new SubNode(product(du, copy(v)), n));
+				return new DivNode(n, new PowNode(copy(v), new ValNode(2)));
+			}
+
+			if (x instanceof PowNode)
+				return pow(u, v, du, dv);
+		}
+		else if (x instanceof FuncNode) {
+			if (funcMap == null)
+				throw new IllegalArgumentException("function map cannot be null");
+
+			FuncNode fn = (FuncNode) x;
+			int n = fn.numChildren();
+			Expression[] d = new Expression[n];
+			boolean depends = false;
+
+			for (int i = 0; i < n; i++) {
+				d[i] = derive(fn.child(i));
+				depends = depends || d[i] != null;
+			}
+
+			if (!depends)
+				return null;
+
+			Expression result = derive(fn, funcMap.getFunction(fn.getName(), n), d);
+			return (fn.getNegate() && result != null ? negate(result) : result);
+		}
+
+		throw new IllegalArgumentException("unsupported node: " + (x == null ? null : x.getClass().getName()));
+	}
+
+	/**
+	Returns the derivative of a function that depends on the variable, ignoring the negate flag.
+	*/
+	private Expression derive(FuncNode fn, Function f, Expression[] d) {
+		Class<?> c = f.getClass();
+		int n = d.length;
+		Expression u = (n > 0 ? fn.child(0) : null);
+		Expression du = (n > 0 ? d[0] : null);
+
+		if (c == CeilFunction.class || c == FloorFunction.class || c == RoundFunction.class || c == SignFunction.class
+				|| c == FactFunction.class || c == CombinFunction.class)
+			return null;
+
+		if (c == SumFunction.class || c == AvgFunction.class) {
+			Expression s = null;
+
+			for (int i = 0; i < n; i++)
+				s = sum(s, d[i]);
+
+			return (c == AvgFunction.class ? new DivNode(s, new ValNode(n)) : s);
+		}
+
+		if (c == PowFunction.class)
+			return pow(u, fn.child(1), du, d[1]);
+
+		if (c == LogFunction.class && n == 2)
+			return derive(new DivNode(call(LnFunction.class, copy(u)), call(LnFunction.class, copy(fn.child(1)))));
+
+		if (c == ModFunction.class) {
+			if (d[1] == null)
+				return du;
+
+			Expression v = fn.child(1);
+			Expression mod = call(ModFunction.class, copy(u), copy(v));
+			Expression q = new DivNode(new SubNode(copy(u), mod), copy(v));
+			Expression t = product(d[1], q);
+			return (du == null ? negate(t) : new SubNode(du, t));
+		}
+
+		if (n != 1)
+			throw new IllegalArgumentException("no derivative of function: " + fn.getName());
+
+		Expression g; // the derivative of the function at u
+
+		if (c == SinFunction.class)
+			g = call(CosFunction.class, copy(u));
+		else if (c == CosFunction.class)
+			g = negate(call(SinFunction.class, copy(u)));
+		else if (c == TanFunction.class)
+			g = new DivNode(new ValNode(1), new PowNode(call(CosFunction.class, copy(u)), new ValNode(2)));
+		else if (c == AsinFunction.class)
+			g = new DivNode(new ValNode(1), call(SqrtFunction.class, new SubNode(new ValNode(1), square(u))));
+		else if (c == AcosFunction.class)
+			g = new DivNode(new ValNode(-1), call(SqrtFunction.class, new SubNode(new ValNode(1), square(u))));
+		else if (c == AtanFunction.class)
+			g = new DivNode(new ValNode(1), new AddNode(new ValNode(1), square(u)));
+		else if (c == SinhFunction.class)
+			g = call(CoshFunction.class, copy(u));
+		else if (c == CoshFunction.class)
+			g = call(SinhFunction.class, copy(u));
+		else if (c == TanhFunction.class)
+			g = new SubNode(new ValNode(1), new PowNode(call(TanhFunction.class, copy(u)), new ValNode(2)));
+		else if (c == AsinhFunction.class)
+			g = new DivNode(new ValNode(1), call(SqrtFunction.class, new AddNode(square(u), new ValNode(1))));
+		else if (c == AcoshFunction.class)
+			g = new DivNode(new ValNode(1), call(SqrtFunction.class, new SubNode(square(u), new ValNode(1))));
+		else if (c == AtanhFunction.class)
+			g = new DivNode(new ValNode(1), new SubNode(new ValNode(1), square(u)));
+		else if (c == SqrtFunction.class)
+			g = new DivNode(new ValNode(0.5), call(SqrtFunction.class, copy(u)));
+		else if (c == ExpFunction.class)
+			g = call(ExpFunction.class, copy(u));
+		else if (c == LnFunction.class)
+			g = new DivNode(new ValNode(1), copy(u));
+		else if (c == LgFunction.class)
+			g = new DivNode(new ValNode(1 / Math.log(2)), copy(u));
+		else if (c == LogFunction.class)
+			g = new DivNode(new ValNode(1 / Math.log(10)), copy(u));
+		else if (c == AbsFunction.class)
+			g = call(SignFunction.class, copy(u));
+		else
+			throw new IllegalArgumentException("no derivative of function: " + fn.getName());
+
+		return product(g, du);
+	}
+
+	/**
+	Returns the derivative of u^v, where du and dv are not both null.
+	*/
+	private Expression pow(Expression u, Expression v, Expression du, Expression dv) {
+		Expression uv = new PowNode(copy(u), copy(v));
+
+		if (dv == null) {
+			// v * u^(v - 1) * u'
+			Expression p = new PowNode(copy(u), new SubNode(copy(v), new ValNode(1)));
+			return product(new MultNode(copy(v), p), du);
+		}
+
+		// u^v * (v' * ln(u) + v * u' / u)
+		Expression s = product(dv, call(LnFunction.class, copy(u)));
+
+		if (du != null)
+			s = new AddNode(s, new DivNode(product(copy(v), du), copy(u)));
+
+		return new MultNode(uv, s);
+	}
+
+	/**
+	Returns a new FuncNode with the specified parameters, named by the name of a function of the specified class
+	in the FuncMap.
+	*/
+	private Expression call(Class<?> c, Expression... params) {
+		String[] names = funcMap.getFunctionNames();
+		Function[] funcs = funcMap.getFunctions();
+
+		for (int i = 0; i < funcs.length; i++) {
+			if (funcs[i].getClass() == c && funcs[i].acceptNumParam(params.length)) {
+				FuncNode fn = new FuncNode(names[i], false);
+
+				for (int j = 0; j < params.length; j++)
+					fn.add(params[j]);
+
+				return fn;
+			}
+		}
+
+		throw new IllegalArgumentException("function map has no " + c.getName());
+	}
+
+	private static Expression square(Expression u) {
+		return new PowNode(copy(u), new ValNode(2));
+	}
+
+	/**
+	Returns a product where a or b can be null, which represents 0.
+	*/
+	private static Expression product(Expression a, Expression b) {
+		return (a == null || b == null ? null : new MultNode(a, b));
+	}
+
+	/**
+	Returns a sum where a or b can be null, which represents 0.
+	*/
+	private static Expression sum(Expression a, Expression b) {
+		return (a == null ? b : b == null ? a : new AddNode(a, b));
+	}
+
+	private static Expression negate(Expression x) {
+		return new MultNode(new ValNode(-1), x);
+	}
+
+	/**
+	Returns a copy of the expression-tree.  The copy is simplified, which only changes the sign of some zero results.
+	*/
+	private static Expression copy(Expression x) {
+		return ExpressionSimplifier.simplify(x);
+	}
+}
@@ -0,0 +1,260 @@
+/*
+* Copyright (c) 2005, Graph Builder
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+* * Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+*
+* * Redistributions in binary form must reproduce the above copyright notice,
+* this list of conditions and the following disclaimer in the documentation
+* and/or other materials provided with the distribution.
+*
+* * Neither the name of Graph Builder nor the names of its contributors may be
+* used to endorse or promote products derived from this software without
+* specific prior written permission.
+
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+* FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+* DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+* SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+* OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+* OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.graphbuilder.math;
+
+import java.util.HashSet;
+
+import com.graphbuilder.math.func.Function;
+import com.graphbuilder.math.func.RandFunction;
+
+/**
+<p>Simplifies expression-trees.  The simplify method returns a new tree, the tree that is passed in is not
+modified.  The returned tree is made of the same node types as a parsed
+tree, so it can be evaluated, compiled or printed using the toString method.
+
+<p>The following changes are made, starting at the leaves of the tree:
+
+<ul>
+<li>An operator with two values is replaced by the value of the operation.  E.g. 2^4*x becomes 16*x</li>
+<li>A function with only values as parameters is replaced by its value, provided the FuncMap maps its name to one
+of the default functions other than rand().  E.g. pi() becomes 3.141592653589793</li>
+<li>x*1, 1*x, x/1, x+0, 0+x, x-0 and x^1 become x, and x^0 becomes 1.</li>
+<li>x^2 becomes x*x, if x is a variable.</li>
+<li>Negations are moved into the terms.  E.g. x*-1 becomes -x, x+-y becomes x-y, x--2 becomes x+2 and
+-x/-y becomes x/y.</li>
+</ul>
+
+<p>The result of evaluating the simplified tree is the same as the result of evaluating the original tree,
+except that the sign of a zero result can differ when x+0, 0+x, x-0 or 0-x is simplified, and that
+sub-expressions that are not needed (such as the x of x^0) are no longer evaluated.  Functions that are not
+default functions are never evaluated by this class, since they may not return the same value each time.
+
+@see com.graphbuilder.math.ExpressionTree
+@see com.graphbuilder.math.FuncMap#loadDefaultFunctions()
+*/
+public final class ExpressionSimplifier {
+
+	private static final HashSet<Class<?>> pure = new HashSet<Class<?>>();
+
+	static {
+		Function[] arr = FuncMap.getDefaultFunctions().getFunctions();
+
+		for (int i = 0; i < arr.length; i++) {
+			if (!(arr[i] instanceof RandFunction))
+				pure.add(arr[i].getClass());
+		}
+	}
+
+	private ExpressionSimplifier() {}
+
+	/**
+	Returns a simplified copy of the expression-tree.  No functions are evaluated.
+
+	@throws IllegalArgumentException If the expression is null or contains a node that is not a ValNode, VarNode,
+	FuncNode or one of the five OpNodes.
+	@see #simplify(Expression, FuncMap)
+	*/
+	public static Expression simplify(Expression x) {
+		return simplify(x, null);
+	}
+
+	/**
+	Returns a simplified copy of the expression-tree.  The FuncMap should be the FuncMap that the expression
+	is evaluated with.  It is used to find out which functions are default functions, and only those functions
+	are evaluated.  If the FuncMap is null then no functions are evaluated.
+
+	@throws IllegalArgumentException If the expression is null or contains a node that is not a ValNode, VarNode,
+	FuncNode or one of the five OpNodes.
+	@throws RuntimeException If the FuncMap does not support a function of the expression.
+	*/
+	public static Expression simplify(Expression x, FuncMap f) {
+		if (x == null)
+			throw new IllegalArgumentException("expression cannot be null");
+
+		return copy(x, f);
+	}
+
+	private static Expression copy(Expression x, FuncMap f) {
+		if (x instanceof ValNode)
+			return new ValNode(((ValNode) x).getValue());
+
+		if (x instanceof VarNode) {
+			VarNode v = (VarNode) x;
+			return new VarNode(v.getName(), v.getNegate());
+		}
+
+		if (x instanceof FuncNode) {
+			FuncNode fn = (FuncNode) x;
+			int n = fn.numChildren();
+			Expression[] args = new Expression[n];
+			boolean constant = true;
+
+			for (int i = 0; i < n; i++) {
+				args[i] = copy(fn.child(i), f);
+				constant = constant && args[i] instanceof ValNode;
+			}
+
+			if (f != null) {
+				Function func = f.getFunction(fn.getName(), n);
+
+				if (constant && pure.contains(func.getClass())) {
+					double[] d = new double[n];
+					for (int i = 0; i < n; i++)
+						d[i] = ((ValNode) args[i]).getValue();
+
+					double result = func.of(d, n);
+					if (fn.getNegate()) result = -result;
+					return new ValNode(result);
+				}
+			}
+
+			FuncNode y = new FuncNode(fn.getName(), fn.getNegate());
+			for (int i = 0; i < n; i++)
+				y.add(args[i]);
+			return y;
+		}
+
+		if (x instanceof OpNode) {
+			OpNode o = (OpNode) x;
+			Expression a = copy(o.getLeftChild(), f);
+			Expression b = copy(o.getRightChild(), f);
+
+			if (x instanceof AddNode) return add(a, b);
+			if (x instanceof SubNode) return sub(a, b);
+			if (x instanceof MultNode) return mult(a, b);
+			if (x instanceof DivNode) return div(a, b);
+			if (x instanceof PowNode) return pow(a, b);
+		}
+
+		throw new IllegalArgumentException("unsupported node: " + (x == null ? null : x.getClass().getName()));
+	}
+
+	private static Expression add(Expression a, Expression b) {
+		if (a instanceof ValNode && b instanceof ValNode)
+			return new ValNode(value(a) + value(b));
+
+		if (isValue(b, 0)) return a;
+		if (isValue(a, 0)) return b;
+
+		if (isNegated(b))
+			return new SubNode(a, negate(b));
+
+		return new AddNode(a, b);
+	}
+
+	private static Expression sub(Expression a, Expression b) {
+		if (a instanceof ValNode && b instanceof ValNode)
+			return new ValNode(value(a) - value(b));
+
+		if (isValue(b, 0)) return a;
+		if (isValue(a, 0) && b instanceof TermNode) return negate(b);
+
+		if (isNegated(b))
+			return new AddNode(a, negate(b));
+
+		return new SubNode(a, b);
+	}
+
+	private static Expression mult(Expression a, Expression b) {
+		if (a instanceof ValNode && b instanceof ValNode)
+			return new ValNode(value(a) * value(b));
+
+		if (isValue(b, 1)) return a;
+		if (isValue(a, 1)) return b;
+		if (isValue(b, -1) && a instanceof TermNode) return negate(a);
+		if (isValue(a, -1) && b instanceof TermNode) return negate(b);
+
+		if (isNegated(a) && isNegated(b))
+			return new MultNode(negate(a), negate(b));
+
+		return new MultNode(a, b);
+	}
+
+	private static Expression div(Expression a, Expression b) {
+		if (a instanceof ValNode && b instanceof ValNode)
+			return new ValNode(value(a) / value(b));
+
+		if (isValue(b, 1)) return a;
+		if (isValue(b, -1) && a instanceof TermNode) return negate(a);
+
+		if (isNegated(a) && isNegated(b))
+			return new DivNode(negate(a), negate(b));
+
+		return new DivNode(a, b);
+	}
+
+	private static Expression pow(Expression a, Expression b) {
+		if (a instanceof ValNode && b instanceof ValNode)
+			return new ValNode(Math.pow(value(a), value(b)));
+
+		if (isValue(b, 1)) return a;
+		if (isValue(b, 0)) return new ValNode(1);
+
+		if (isValue(b, 2) && a instanceof VarNode) {
+			VarNode v = (VarNode) a;
+			return new MultNode(a, new VarNode(v.getName(), v.getNegate()));
+		}
+
+		return new PowNode(a, b);
+	}
+
+	private static double value(Expression x) {
+		return ((ValNode) x).getValue();
+	}
+
+	private static boolean isValue(Expression x, double d) {
+		return x instanceof ValNode && value(x) == d;
+	}
+
+	/**
+	Returns true if the expression is a negative value or a negated term.
+	*/
+	private static boolean isNegated(Expression x) {
+		if (x instanceof ValNode)
+			return value(x) < 0;
+
+		return x instanceof TermNode && ((TermNode) x).getNegate();
+	}
+
+	/**
+	Returns the negation of a value or a term.  A term is negated in place, since it is a new node that has no
+	parent yet.
+	*/
+	private static Expression negate(Expression x) {
+		if (x instanceof ValNode)
+			return new ValNode(-value(x));
+
+		TermNode t = (TermNode) x;
+		t.setNegate(!t.getNegate());
+		return t;
+	}
+}
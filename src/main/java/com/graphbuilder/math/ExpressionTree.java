@@ -31,8 +31,6 @@
 
 package com.graphbuilder.math;
 
-import com.graphbuilder.struc.Stack;
-
 /**
 <p>Expression string parser.  The parser returns an Expression object which can be evaluated.
 
@@ -65,8 +63,14 @@ the beginning of the function parameters, otherwise the term is marked as a vari
 
 <p>Functions that accept more than one parameter will have the parameters separated by commas.  E.g.
 f(x,y).  Since the parameters of a function are also expressions, when a comma is detected that has
-exactly one unbalanced open bracket to the left, a recursive call is made passing in the substring.
-E.g. f(g(x,y),z), a recursive call will occur passing in the substring "g(x,y)".
+exactly one unbalanced open bracket to the left, the characters between the previous comma (or the open
+bracket of the function) and this comma are parsed as a separate expression.  E.g. f(g(x,y),z), the
+characters "g(x,y)" are parsed as the first parameter.
+
+<p>The parser does not call itself for the parameters of a function, and does not copy the parameters into
+new strings.  Instead, it keeps its own stack of the functions that are being parsed, so the length of an
+expression string and the level of nesting of functions and brackets are only limited by the available
+memory.  The matching close bracket of each open bracket is found once, before the parsing starts.
 
 <p>Miscellaneous Notes
 
@@ -77,72 +81,187 @@ E.g. f(g(x,y),z), a recursive call will occur passing in the substring "g(x,y)".
 <li>Constants can be represented as functions that take no parameters.  E.g. pi() or e()</li>
 <li>Round brackets '(' and ')' are the only brackets that have special meaning.</li>
 <li>The brackets in the expression must balance otherwise an ExpressionParseException is thrown.</li>
-<li>An ExpressionParseException is thrown in all cases where the expression string is invalid.</li>
+<li>An ExpressionParseException is thrown in all cases where the expression string is invalid.  The index of
+the exception is relative to the start of the parameter of the function that contains the error, or to the
+start of the expression string if the error is not in a parameter.</li>
 <li>All terms must be separated by an operator.  E.g. 2x is <b>not</b> valid, but 2*x is.</li>
 <li>In cases where simplification is possible, simplification is <b>not</b> done.  E.g. 2^4 is <b>not</b>
-simplified to 16.</li>
+simplified to 16.  The ExpressionSimplifier can be used to simplify the returned expression.</li>
 <li>Computerized scientific notation is supported for values.  E.g. 3.125e-4</li>
 <li>Scoped negations are not permitted. E.g. -(a) is <b>not</b> valid, but -1*(a) is.</li>
 </ul>
 
 @see com.graphbuilder.math.Expression
+@see com.graphbuilder.math.ExpressionSimplifier
 */
 public class ExpressionTree {
-        /* The maximum length limit for expression string */
-        private static int MAX_LENGTH = 10000;
 
 	private ExpressionTree() {}
 
 	/**
 	Returns an expression-tree that represents the expression string.  Returns null if the string is empty.
 
-	@throws ExpressionParseException If the string is invalid or too long.
+	@throws ExpressionParseException If the string is invalid.
 	*/
 	public static Expression parse(String s) {
+		return parse((CharSequence) s);
+	}
+
+	/**
+	Returns an expression-tree that represents the expression characters.  Returns null if there are no characters
+	other than whitespace.  The characters are only read while this method executes.
+
+	@throws ExpressionParseException If the characters are not a valid expression.
+	@see #parse(String)
+	*/
+	public static Expression parse(CharSequence s) {
 		if (s == null)
 			throw new ExpressionParseException("Expression string cannot be null.", -1);
 
-                // To reduce the chance of stack memory overflow from recursive parsing of long string */
-                if (s.length() > ExpressionTree.MAX_LENGTH)
-                        throw new ExpressionParseException("Expression string is too long.", -1);
+		int len = s.length();
+
+		// do not remove (required condition for functions with no parameters, e.g. Pi())
+		if (isBlank(s, 0, len))
+			return null;
+
+		int[] match = matchBrackets(s);
+		Frame[] frames = new Frame[8];
+		int numFrames = 1;
+		frames[0] = new Frame(0, len, 0);
+		Expression result = null;
+		boolean returned = false; // indicates result has been returned by the frame that was removed
+
+		while (true) {
+			Frame f = frames[numFrames - 1];
+
+			if (f.fn != null) {
+				if (returned) {
+					returned = false;
+					endParam(s, f, result);
+					continue;
+				}
+
+				int k = nextParamEnd(s, match, f.paramStart, f.end);
+
+				if (k == -1)
+					throw new ExpressionParseException("Missing function close bracket.", f.fnIndex - f.start + f.offset);
+
+				f.paramEnd = k;
+
+				if (isBlank(s, f.paramStart, k)) {
+					endParam(s, f, null);
+				}
+				else {
+					if (numFrames == frames.length) {
+						Frame[] tmp = new Frame[2 * numFrames];
+						for (int i = 0; i < numFrames; i++)
+							tmp[i] = frames[i];
+						frames = tmp;
+					}
+
+					frames[numFrames++] = new Frame(f.paramStart, k, f.paramStart - f.start);
+				}
+			}
+			else if (scan(s, f)) {
+				if (f.numOperands != f.numOps + 1)
+					throw new ExpressionParseException("Incomplete expression.", f.offset + f.end - f.start);
+
+				result = build(f.operands, 0, f.ops, 0, f.numOps);
+				frames[--numFrames] = null;
 
-		return build(s, 0);
+				if (numFrames == 0)
+					return result;
+
+				returned = true;
+			}
+		}
 	}
 
-	private static Expression build(String s, int indexErrorOffset) {
+	/**
+	The state of parsing the characters from start to end - 1, which is either the whole expression or a parameter
+	of a function.  The index of an error is relative to the start, plus the offset.
+	*/
+	private static final class Frame {
+
+		private final int start;
+		private final int end;
+		private final int offset;
+		private int i; // the index of the next character
+
+		private Expression[] operands = new Expression[8];
+		private int numOperands = 0;
+		private char[] ops = new char[8]; // contains open brackets ( and operators ^,*,/,+,-
+		private int numOps = 0;
+
+		private boolean term = true; // indicates a term should come next, not an operator
+		private boolean signed = false; // indicates if the current term has been signed
+		private boolean negate = false; // indicates if the sign of the current term is negated
+
+		private FuncNode fn = null; // the function whose parameters are being parsed
+		private int fnIndex = 0; // the index of the function name
+		private int paramStart = 0; // the index of the first character of the current parameter
+		private int paramEnd = 0; // the index of the comma or close bracket after the current parameter
+
+		private Frame(int start, int end, int offset) {
+			this.start = start;
+			this.end = end;
+			this.offset = offset;
+			this.i = start;
+		}
 
-		// do not remove (required condition for functions with no parameters, e.g. Pi())
-		if (s.trim().length() == 0)
-			return null;
+		private void push(Expression x) {
+			if (numOperands == operands.length) {
+				Expression[] tmp = new Expression[2 * numOperands];
+				for (int j = 0; j < numOperands; j++)
+					tmp[j] = operands[j];
+				operands = tmp;
+			}
 
-		Stack s1 = new Stack(); // contains expression nodes
-		Stack s2 = new Stack(); // contains open brackets ( and operators ^,*,/,+,-
+			operands[numOperands++] = x;
+		}
 
-		boolean term = true; // indicates a term should come next, not an operator
-		boolean signed = false; // indicates if the current term has been signed
-		boolean negate = false; // indicates if the sign of the current term is negated
+		private void push(char c) {
+			if (numOps == ops.length) {
+				char[] tmp = new char[2 * numOps];
+				for (int j = 0; j < numOps; j++)
+					tmp[j] = ops[j];
+				ops = tmp;
+			}
 
-		for (int i = 0; i < s.length(); i++) {
+			ops[numOps++] = c;
+		}
+	}
+
+	/**
+	Parses the characters of the frame until the end of the frame is reached, in which case true is returned,
+	or until a function is found, in which case false is returned.
+	*/
+	private static boolean scan(CharSequence s, Frame f) {
+		int start = f.start;
+		int end = f.end;
+		int indexErrorOffset = f.offset - start;
+
+		for (int i = f.i; i < end; i++) {
 			char c = s.charAt(i);
 
 			if (c == ' ' || c == '\t' || c == '\n')
 				continue;
 
-			if (term) {
+			if (f.term) {
 				if (c == '(') {
-					if (negate)
-						throw new ExpressionParseException("Open bracket found after negate.", i);
+					if (f.negate)
+						throw new ExpressionParseException("Open bracket found after negate.", i - start);
 
-					s2.push("(");
+					f.push('(');
 				}
-				else if (!signed && (c == '+' || c == '-')) {
-					signed = true;
-					if (c == '-') negate = true; // by default negate is false
+				else if (!f.signed && (c == '+' || c == '-')) {
+					f.signed = true;
+					if (c == '-') f.negate = true; // by default negate is false
 				}
 				else if (c >= '0' && c <= '9' || c == '.') {
 
 					int j = i + 1;
-					while (j < s.length()) {
+					while (j < end) {
 						c = s.charAt(j);
 						if (c >= '0' && c <= '9' || c == '.') j++;
 
@@ -150,7 +269,7 @@ public class ExpressionTree {
 						else if (c == 'e' || c == 'E') {
 							j++;
 
-							if (j < s.length()) {
+							if (j < end) {
 								c = s.charAt(j);
 
 								if (c != '+' && c != '-' && (c < '0' || c > '9'))
@@ -159,7 +278,7 @@ public class ExpressionTree {
 								j++;
 							}
 
-							while (j < s.length()) {
+							while (j < end) {
 								c = s.charAt(j);
 								if (c < '0' || c > '9')
 									break;
@@ -171,7 +290,7 @@ public class ExpressionTree {
 					}
 
 					double d = 0;
-					String _d = s.substring(i, j);
+					String _d = s.subSequence(i, j).toString();
 
 					try {
 						d = Double.parseDouble(_d);
@@ -179,84 +298,51 @@ public class ExpressionTree {
 						throw new ExpressionParseException("Improperly formatted value: " + _d, i + indexErrorOffset);
 					}
 
-					if (negate) d = -d;
-					s1.push(new ValNode(d));
+					if (f.negate) d = -d;
+					f.push(new ValNode(d));
 					i = j - 1;
 
-					negate = false;
-					term = false;
-					signed = false;
+					f.negate = false;
+					f.term = false;
+					f.signed = false;
 				}
 				else if (c != ',' && c != ')' && c != '^' && c != '*' && c != '/' && c != '+' && c != '-') {
 					int j = i + 1;
-					while (j < s.length()) {
+					while (j < end) {
 						c = s.charAt(j);
 						if (c != ',' && c != ' ' && c != '\t' && c != '\n' && c != '(' && c != ')' && c != '^' && c != '*' && c != '/' && c != '+' && c != '-')
 							j++;
 						else break;
 					}
 
-					if (j < s.length()) {
+					String name = s.subSequence(i, j).toString();
+
+					if (j < end) {
 						int k = j;
 						while (c == ' ' || c == '\t' || c == '\n') {
 							k++;
-							if (k == s.length()) break;
+							if (k == end) break;
 							c = s.charAt(k);
 						}
 
 						if (c == '(') {
-							FuncNode fn = new FuncNode(s.substring(i, j), negate);
-							int b = 1;
-							int kOld = k + 1;
-							while (b != 0) {
-								k++;
-
-								if (k >= s.length()) {
-									throw new ExpressionParseException("Missing function close bracket.", i + indexErrorOffset);
-								}
-
-								c = s.charAt(k);
-
-								if (c == ')') {
-									b--;
-								}
-								else if (c == '(') {
-									b++;
-								}
-								else if (c == ',' && b == 1) {
-									Expression o = build(s.substring(kOld, k), kOld);
-									if (o == null) {
-										throw new ExpressionParseException("Incomplete function.", kOld + indexErrorOffset);
-									}
-									fn.add(o);
-									kOld = k + 1;
-								}
-							}
-							Expression o = build(s.substring(kOld, k), kOld);
-							if (o == null) {
-								if (fn.numChildren() > 0) {
-									throw new ExpressionParseException("Incomplete function.", kOld + indexErrorOffset);
-								}
-							}
-							else {
-								fn.add(o);
-							}
-							s1.push(fn);
-							i = k;
-						}
-						else {
-							s1.push(new VarNode(s.substring(i, j), negate));
-							i = k - 1;
+							f.fn = new FuncNode(name, f.negate);
+							f.fnIndex = i;
+							f.paramStart = k + 1;
+							return false;
 						}
+
+						f.push(new VarNode(name, f.negate));
+						i = k - 1;
 					}
 					else {
-						s1.push(new VarNode(s.substring(i, j), negate));
+						f.push(new VarNode(name, f.negate));
 						i = j - 1;
 					}
 
-					negate = false;
-					term = false;
-					signed = false;
+					f.negate = false;
+					f.term = false;
+					f.signed = false;
 				}
 				else {
 					throw new ExpressionParseException("Unexpected character: " + String.valueOf(c), i + indexErrorOffset);
@@ -264,24 +350,28 @@ public class ExpressionTree {
 			}
 			else {
 				if (c == ')') {
-					Stack s3 = new Stack();
-					Stack s4 = new Stack();
-					while (true) {
-						if (s2.isEmpty()) {
-							throw new ExpressionParseException("Missing open bracket.", i + indexErrorOffset);
-						}
-						Object o = s2.pop();
-						if (o.equals("(")) break;
-						s3.addToTail(s1.pop());
-						s4.addToTail(o);
-					}
-					s3.addToTail(s1.pop());
+					int q = f.numOps - 1;
+
+					while (q >= 0 && f.ops[q] != '(')
+						q--;
+
+					if (q < 0)
+						throw new ExpressionParseException("Missing open bracket.", i + indexErrorOffset);
+
+					int numOp = f.numOps - q - 1;
+					int first = f.numOperands - numOp - 1;
+					Expression x = build(f.operands, first, f.ops, q + 1, numOp);
+
+					for (int j = first; j < f.numOperands; j++)
+						f.operands[j] = null;
 
-					s1.push(build(s3, s4));
+					f.numOperands = first;
+					f.numOps = q;
+					f.push(x);
 				}
 				else if (c == '^' || c == '*' || c == '/' || c == '+' || c == '-') {
-					term = true;
-					s2.push(String.valueOf(c));
+					f.term = true;
+					f.push(c);
 				}
 				else {
 					throw new ExpressionParseException("Expected operator or close bracket but found: " + String.valueOf(c), i + indexErrorOffset);
@@ -289,71 +379,140 @@ public class ExpressionTree {
 			}
 		}
 
-		if (s1.size() != s2.size() + 1) {
-			throw new ExpressionParseException("Incomplete expression.", indexErrorOffset + s.length());
+		f.i = end;
+		return true;
+	}
+
+	/**
+	Adds the parsed parameter to the function of the frame.  If the parameter is the last parameter then the
+	function is added to the operands of the frame.
+	*/
+	private static void endParam(CharSequence s, Frame f, Expression x) {
+		boolean last = (s.charAt(f.paramEnd) == ')');
+
+		if (x == null) {
+			if (!last || f.fn.numChildren() > 0)
+				throw new ExpressionParseException("Incomplete function.", f.paramStart - f.start + f.offset);
+		}
+		else {
+			f.fn.add(x);
 		}
 
-		return build(s1, s2);
+		if (last) {
+			f.push(f.fn);
+			f.fn = null;
+			f.i = f.paramEnd + 1;
+			f.negate = false;
+			f.term = false;
+			f.signed = false;
+		}
+		else {
+			f.paramStart = f.paramEnd + 1;
+		}
 	}
 
-	private static Expression build(Stack s1, Stack s2) {
-		Stack s3 = new Stack();
-		Stack s4 = new Stack();
+	/**
+	Returns the index of the comma or close bracket that ends the parameter of a function that starts at the
+	specified index, or -1 if the close bracket of the function is missing.  Brackets inside the parameter are
+	skipped using the array of matching brackets.
+	*/
+	private static int nextParamEnd(CharSequence s, int[] match, int i, int end) {
+		for (; i < end; i++) {
+			char c = s.charAt(i);
 
-		while (!s2.isEmpty()) {
-			Object o = s2.removeTail();
-			Object o1 = s1.removeTail();
-			Object o2 = s1.removeTail();
+			if (c == '(') {
+				if (match[i] == -1 || match[i] >= end)
+					return -1;
 
-			if (o.equals("^")) {
-				s1.addToTail(new PowNode((Expression) o1, (Expression) o2));
+				i = match[i];
 			}
-			else {
-				s1.addToTail(o2);
-				s4.push(o);
-				s3.push(o1);
+			else if (c == ',' || c == ')') {
+				return i;
 			}
 		}
 
-		s3.push(s1.pop());
+		return -1;
+	}
 
-		while (!s4.isEmpty()) {
-			Object o = s4.removeTail();
-			Object o1 = s3.removeTail();
-			Object o2 = s3.removeTail();
+	/**
+	Returns an array that contains the index of the matching close bracket at the index of each open bracket,
+	or -1 if the open bracket has no matching close bracket.
+	*/
+	private static int[] matchBrackets(CharSequence s) {
+		int len = s.length();
+		int[] match = new int[len];
+		int[] open = new int[8];
+		int numOpen = 0;
 
-			if (o.equals("*")) {
-				s3.addToTail(new MultNode((Expression) o1, (Expression) o2));
-			}
-			else if (o.equals("/")) {
-				s3.addToTail(new DivNode((Expression) o1, (Expression) o2));
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+
+			if (c == '(') {
+				if (numOpen == open.length) {
+					int[] tmp = new int[2 * numOpen];
+					for (int j = 0; j < numOpen; j++)
+						tmp[j] = open[j];
+					open = tmp;
+				}
+
+				match[i] = -1;
+				open[numOpen++] = i;
 			}
-			else {
-				s3.addToTail(o2);
-				s2.push(o);
-				s1.push(o1);
+			else if (c == ')' && numOpen > 0) {
+				match[open[--numOpen]] = i;
 			}
 		}
 
-		s1.push(s3.pop());
+		return match;
+	}
 
-		while (!s2.isEmpty()) {
-			Object o = s2.removeTail();
-			Object o1 = s1.removeTail();
-			Object o2 = s1.removeTail();
+	/**
+	Returns true if the characters from start to end - 1 are all whitespace, in the same sense as String.trim().
+	*/
+	private static boolean isBlank(CharSequence s, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (s.charAt(i) > ' ')
+				return false;
+		}
 
-			if (o.equals("+")) {
-				s1.addToTail(new AddNode((Expression) o1, (Expression) o2));
-			}
-			else if (o.equals("-")) {
-				s1.addToTail(new SubNode((Expression) o1, (Expression) o2));
-			}
-			else {
-				// should never happen
-				throw new ExpressionParseException("Unknown operator: " + o, -1);
+		return true;
+	}
+
+	/**
+	Builds the expression-tree of the operands x[first] to x[first + numOp] and the operators op[opFirst] to
+	op[opFirst + numOp - 1].  Exponents are applied first, then times and divide, then plus and minus.  Operators
+	of equal precedence are applied from left to right.  The arrays are used to store intermediate results.
+	*/
+	private static Expression build(Expression[] x, int first, char[] op, int opFirst, int numOp) {
+		for (int level = 0; level < 3; level++) {
+			int n = 0; // the number of operators that remain
+
+			for (int j = 0; j < numOp; j++) {
+				char o = op[opFirst + j];
+				Expression b = x[first + j + 1];
+
+				if (level == 0 && o == '^' || level == 1 && (o == '*' || o == '/') || level == 2) {
+					Expression a = x[first + n];
+
+					if (o == '^') a = new PowNode(a, b);
+					else if (o == '*') a = new MultNode(a, b);
+					else if (o == '/') a = new DivNode(a, b);
+					else if (o == '+') a = new AddNode(a, b);
+					else if (o == '-') a = new SubNode(a, b);
+					else throw new ExpressionParseException("Unknown operator: " + o, -1); // should never happen
+
+					x[first + n] = a;
+				}
+				else {
+					op[opFirst + n] = o;
+					n++;
+					x[first + n] = b;
+				}
 			}
+
+			numOp = n;
 		}
 
-		return (Expression) s1.pop();
+		return x[first];
 	}
 }
@@ -31,6 +31,8 @@
 
 package com.graphbuilder.math;
 
+import java.util.HashMap;
+
 import com.graphbuilder.math.func.*;
 
 /**
@@ -108,24 +110,69 @@ to take advantage of the many already implemented functions (see below).
 the String.equalsIgnoreCase method is used.  When case sensitivity is true, the String.equals method is used.  The
 matching does not include the parenthesis.  For example, when case sensitivity is false and the default functions have been
 loaded, then "RaNd", "rand", and "RAND" all map to the RandFunction().  By default, case sensitivity is false.
+
+<p>The names are kept in a hash table, so the cost of getFunction does not depend on the number of functions
+in the map.  A FuncNode remembers the function it obtained from a map and only looks it up again after the map
+has been modified.
 */
 public class FuncMap {
 
+	private static final FuncMap DEFAULT = new FuncMap();
+
+	static {
+		DEFAULT.putDefaultFunctions();
+		DEFAULT.readOnly = true;
+	}
+
 	private String[] name = new String[50];
 	private Function[] func = new Function[50];
 	private int numFunc = 0;
 	private boolean caseSensitive = false;
 
+	private HashMap<String, Integer> index = new HashMap<String, Integer>();
+	private boolean shared = false;
+	private boolean readOnly = false;
+	int version = 0;
+
 	public FuncMap() {}
 
 	public FuncMap(boolean caseSensitive) {
 		this.caseSensitive = caseSensitive;
 	}
 
+	/**
+	Returns the shared map of the default functions.  The map is built once, is not case sensitive and cannot
+	be modified, thus it can be used by many threads at the same time.  The functions of the map are the same
+	instances that are added to a map by the loadDefaultFunctions method.
+
+	@see #loadDefaultFunctions()
+	*/
+	public static FuncMap getDefaultFunctions() {
+		return DEFAULT;
+	}
+
 	/**
 	Adds the mappings for many common functions.  The names are specified in all lowercase letters.
+
+	<p>The function objects are shared with the map returned by getDefaultFunctions.  If this map is empty then
+	the tables of the default map are shared as well, and are only copied when this map is modified.
 	*/
 	public void loadDefaultFunctions() {
+		if (numFunc == 0 && !readOnly) {
+			name = DEFAULT.name;
+			func = DEFAULT.func;
+			numFunc = DEFAULT.numFunc;
+			index = DEFAULT.index;
+			shared = true;
+			version++;
+			return;
+		}
+
+		for (int i = 0; i < DEFAULT.numFunc; i++)
+			setFunction(DEFAULT.name[i], DEFAULT.func[i]);
+	}
+
+	private void putDefaultFunctions() {
 		// >= 0 parameters
 		setFunction("min", new MinFunction());
 		setFunction("max", new MaxFunction());
@@ -173,23 +220,79 @@ public class FuncMap {
 	}
 
 	/**
-	Returns a function based on the name and the specified number of parameters.
+	Returns a function based on the name and the specified number of parameters.  The name is found using
+	a hashed lookup and the function must accept the number of parameters.
 
 	@throws RuntimeException If no supporting function can be found.
 	*/
 	public Function getFunction(String funcName, int numParam) {
-		for (int i = 0; i < numFunc; i++) {
-			if (func[i].acceptNumParam(numParam) && (caseSensitive && name[i].equals(funcName) || !caseSensitive && name[i].equalsIgnoreCase(funcName)))
-				return func[i];
+		Integer i = (funcName == null ? null : index.get(key(funcName)));
+
+		if (i != null) {
+			Function f = func[i.intValue()];
+			if (f.acceptNumParam(numParam))
+				return f;
 		}
 
 		throw new RuntimeException("function not found: " + funcName + " " + numParam);
 	}
 
+	/**
+	Returns the key used to index the specified name.  When case sensitivity is false, each character is
+	mapped the same way the String.equalsIgnoreCase method compares characters.
+	*/
+	private String key(String funcName) {
+		if (caseSensitive)
+			return funcName;
+
+		char[] arr = null;
+
+		for (int i = 0; i < funcName.length(); i++) {
+			char c = funcName.charAt(i);
+			char k = Character.toLowerCase(Character.toUpperCase(c));
+
+			if (k != c) {
+				if (arr == null)
+					arr = funcName.toCharArray();
+				arr[i] = k;
+			}
+		}
+
+		return (arr == null ? funcName : new String(arr));
+	}
+
+	/**
+	Copies the tables if they are shared with another map, and records the modification.
+
+	@throws UnsupportedOperationException If this map is the shared map of the default functions.
+	*/
+	private void beforeChange() {
+		if (readOnly)
+			throw new UnsupportedOperationException("default function map cannot be modified");
+
+		if (shared) {
+			String[] tmp1 = new String[name.length];
+			Function[] tmp2 = new Function[tmp1.length];
+
+			for (int i = 0; i < numFunc; i++) {
+				tmp1[i] = name[i];
+				tmp2[i] = func[i];
+			}
+
+			name = tmp1;
+			func = tmp2;
+			index = new HashMap<String, Integer>(index);
+			shared = false;
+		}
+
+		version++;
+	}
+
 	/**
 	Assigns the name to map to the specified function.
 
 	@throws IllegalArgumentException If any of the parameters are null.
+	@throws UnsupportedOperationException If this map is the shared map of the default functions.
 	*/
 	public void setFunction(String funcName, Function f) {
 		if (funcName == null)
@@ -198,11 +301,14 @@ public class FuncMap {
 		if (f == null)
 			throw new IllegalArgumentException("function cannot be null");
 
-		for (int i = 0; i < numFunc; i++) {
-			if (caseSensitive && name[i].equals(funcName) || !caseSensitive && name[i].equalsIgnoreCase(funcName)) {
-				func[i] = f;
-				return;
-			}
+		beforeChange();
+
+		String k = key(funcName);
+		Integer j = index.get(k);
+
+		if (j != null) {
+			func[j.intValue()] = f;
+			return;
 		}
 
 		if (numFunc == name.length) {
@@ -220,6 +326,7 @@ public class FuncMap {
 
 		name[numFunc] = funcName;
 		func[numFunc] = f;
+		index.put(k, Integer.valueOf(numFunc));
 		numFunc++;
 	}
 
@@ -258,19 +365,28 @@ public class FuncMap {
 	/**
 	Removes the function-name and the associated function from the map.  Does nothing if the function-name
 	is not found.
+
+	@throws UnsupportedOperationException If this map is the shared map of the default functions.
 	*/
 	public void remove(String funcName) {
-		for (int i = 0; i < numFunc; i++) {
-			if (caseSensitive && name[i].equals(funcName) || !caseSensitive && name[i].equalsIgnoreCase(funcName)) {
-				for (int j = i + 1; j < numFunc; j++) {
-					name[j - 1] = name[j];
-					func[j - 1] = func[j];
-				}
-				numFunc--;
-				name[numFunc] = null;
-				func[numFunc] = null;
-				break;
-			}
+		if (readOnly)
+			throw new UnsupportedOperationException("default function map cannot be modified");
+
+		if (funcName == null || !index.containsKey(key(funcName)))
+			return;
+
+		beforeChange();
+
+		int i = index.remove(key(funcName)).intValue();
+
+		for (int j = i + 1; j < numFunc; j++) {
+			name[j - 1] = name[j];
+			func[j - 1] = func[j];
+			index.put(key(name[j - 1]), Integer.valueOf(j - 1));
 		}
+
+		numFunc--;
+		name[numFunc] = null;
+		func[numFunc] = null;
 	}
 }
@@ -31,6 +31,7 @@
 
 package com.graphbuilder.math;
 
+import com.graphbuilder.math.func.Function;
 import com.graphbuilder.struc.Bag;
 
 /**
@@ -39,7 +40,27 @@ A node of an expression tree that represents a function.  A FuncNode can have 0
 public class FuncNode extends TermNode {
 
 	private Bag bag = new Bag(1);
-	private double[] of = new double[1];
+	private Binding binding = null;
+
+	/**
+	The function last obtained from a FuncMap, along with what it was obtained for.  A new Binding is created
+	rather than modifying the fields, so a Binding that is read is always complete.
+	*/
+	private static final class Binding {
+		private final FuncMap map;
+		private final int version;
+		private final String name;
+		private final int numParam;
+		private final Function func;
+
+		private Binding(FuncMap map, String name, int numParam, Function func) {
+			this.map = map;
+			this.version = map.version;
+			this.name = name;
+			this.numParam = numParam;
+			this.func = func;
+		}
+	}
 
 	public FuncNode(String name, boolean negate) {
 		super(name, negate);
@@ -57,13 +78,7 @@ public class FuncNode extends TermNode {
 	*/
 	public void insert(Expression x, int i) {
 		checkBeforeAccept(x);
-		int oldCap = bag.getCapacity();
 		bag.insert(x, i);
-		int newCap = bag.getCapacity();
-
-		if (oldCap != newCap)
-			of = new double[newCap];
-
 		x.parent = this;
 	}
 
@@ -92,18 +107,40 @@ public class FuncNode extends TermNode {
 	}
 
 	/**
-	Evaluates each of the children, storing the result in an internal double array.  The FuncMap is
+	Evaluates each of the children, storing the result in a double array.  The FuncMap is
 	used to obtain a Function object based on the name of this FuncNode.  The function is passed
 	the double array and returns a result.  If negate is true, the result is negated.  The result
 	is then returned.  The numParam passed to the function is the number of children of this FuncNode.
+
+	<p>The Function obtained from the FuncMap is remembered, and is used again as long as the same FuncMap is
+	passed, the FuncMap has not been modified, and the name and the number of children are the same.
+
+	<p>The double array is not part of this node.  It is taken from a stack of arrays that belongs to the current
+	thread, so the same tree can be evaluated by several threads at the same time, and a function can evaluate
+	the tree that it is part of.  The array is only valid until the function returns.
 	*/
 	public double eval(VarMap v, FuncMap f) {
 		int numParam = bag.size();
-
-		for (int i = 0; i < numParam; i++)
-			of[i] = child(i).eval(v, f);
-
-		double result = f.getFunction(name, numParam).of(of, numParam);
+		ArgStack stack = ArgStack.current();
+		double[] d = stack.push(numParam);
+		double result;
+
+		try {
+			for (int i = 0; i < numParam; i++)
+				d[i] = child(i).eval(v, f);
+
+			Binding b = binding;
+
+			if (b == null || b.map != f || b.version != f.version || b.name != name || b.numParam != numParam) {
+				b = new Binding(f, name, numParam, f.getFunction(name, numParam));
+				binding = b;
+			}
+
+			result = b.func.of(d, numParam);
+		}
+		finally {
+			stack.pop();
+		}
 
 		if (negate) result = -result;
 
@@ -0,0 +1,471 @@
+/*
+* Copyright (c) 2005, Graph Builder
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+* * Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+*
+* * Redistributions in binary form must reproduce the above copyright notice,
+* this list of conditions and the following disclaimer in the documentation
+* and/or other materials provided with the distribution.
+*
+* * Neither the name of Graph Builder nor the names of its contributors may be
+* used to endorse or promote products derived from this software without
+* specific prior written permission.
+
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+* FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+* DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+* SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+* OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+* OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.graphbuilder.math;
+
+import com.graphbuilder.math.func.*;
+
+/**
+Interval versions of the operators and of the default functions, used by the evalBounds method of the
+BoundExpression class.  An interval is stored in a double array, where r[0] is the lower bound and r[1] is the
+upper bound.  An interval of NaN bounds means that no bounds are known.
+
+<p>The bounds contain the results that the eval method would compute, not just the mathematical results.  Most
+operators and functions are monotonic over each of a small number of segments, so their bounds are computed from
+the values at the ends of the segments.  The basic operators and the sqrt function are correctly rounded, and the
+Math functions are semi-monotonic, so no extra rounding is needed for them.  The results of the functions that
+are computed by a formula whose rounding errors may not be monotonic (asinh, cosh and tanh) are widened by a
+bound of those errors.
+*/
+final class IntervalArithmetic {
+
+	private IntervalArithmetic() {}
+
+	private static final double TWO_PI = 2 * Math.PI;
+	private static final double HALF_PI = Math.PI / 2;
+
+	/**
+	Beyond this magnitude the periodic functions are not split into their monotonic segments.
+	*/
+	private static final double PERIODIC_LIMIT = 1e6;
+
+	static void unknown(double[] r) {
+		r[0] = Double.NaN;
+		r[1] = Double.NaN;
+	}
+
+	private static void set(double lo, double hi, double[] r) {
+		if (Double.isNaN(lo) || Double.isNaN(hi)) {
+			unknown(r);
+			return;
+		}
+
+		r[0] = lo;
+		r[1] = hi;
+	}
+
+	/**
+	Stores the smallest interval that contains the two values.
+	*/
+	private static void span(double u, double v, double[] r) {
+		set(Math.min(u, v), Math.max(u, v), r);
+	}
+
+	static void add(double a0, double a1, double b0, double b1, double[] r) {
+		if ((a0 == Double.NEGATIVE_INFINITY && b1 == Double.POSITIVE_INFINITY)
+			|| (a1 == Double.POSITIVE_INFINITY && b0 == Double.NEGATIVE_INFINITY))
+			unknown(r); // infinity - infinity
+		else
+			set(a0 + b0, a1 + b1, r);
+	}
+
+	static void sub(double a0, double a1, double b0, double b1, double[] r) {
+		add(a0, a1, -b1, -b0, r);
+	}
+
+	static void mult(double a0, double a1, double b0, double b1, double[] r) {
+		if ((a0 <= 0 && a1 >= 0 && isInfinite(b0, b1)) || (b0 <= 0 && b1 >= 0 && isInfinite(a0, a1)))
+			unknown(r); // 0 * infinity
+		else
+			corners(a0 * b0, a0 * b1, a1 * b0, a1 * b1, r);
+	}
+
+	static void div(double a0, double a1, double b0, double b1, double[] r) {
+		if (Double.isNaN(a0) || Double.isNaN(a1) || Double.isNaN(b0) || Double.isNaN(b1)) {
+			unknown(r);
+			return;
+		}
+
+		if (b0 <= 0 && b1 >= 0) {
+			if ((a0 <= 0 && a1 >= 0) || (isInfinite(a0, a1) && isInfinite(b0, b1)))
+				unknown(r); // 0 / 0 or infinity / infinity
+			else
+				set(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, r);
+
+			return;
+		}
+
+		corners(a0 / b0, a0 / b1, a1 / b0, a1 / b1, r);
+	}
+
+	private static boolean isInfinite(double lo, double hi) {
+		return Double.isInfinite(lo) || Double.isInfinite(hi);
+	}
+
+	private static void corners(double u, double v, double w, double z, double[] r) {
+		if (Double.isNaN(u) || Double.isNaN(v) || Double.isNaN(w) || Double.isNaN(z)) {
+			unknown(r);
+			return;
+		}
+
+		r[0] = Math.min(Math.min(u, v), Math.min(w, z));
+		r[1] = Math.max(Math.max(u, v), Math.max(w, z));
+	}
+
+	/**
+	Bounds of Math.pow(x, y).  A negative base is only supported if the exponent is a single integer.
+	*/
+	static void pow(double a0, double a1, double b0, double b1, double[] r) {
+		if (Double.isNaN(a0) || Double.isNaN(b0)) {
+			unknown(r);
+			return;
+		}
+
+		if (b0 != b1) {
+			if (a0 < 0 || (a0 == 0 && 1 / a0 < 0)) // Math.pow(-0.0, y) can be negative
+				unknown(r);
+			else if (a0 <= 1 && a1 >= 1 && isInfinite(b0, b1)) // Math.pow(1, infinity) is NaN
+				unknown(r);
+			else // monotonic in each argument when the base is >= 0
+				corners(Math.pow(a0, b0), Math.pow(a0, b1), Math.pow(a1, b0), Math.pow(a1, b1), r);
+
+			return;
+		}
+
+		double y = b0;
+
+		if (y == 0) {
+			set(1, 1, r);
+			return;
+		}
+
+		if (Double.isInfinite(y)) {
+			unknown(r);
+			return;
+		}
+
+		double u = Math.pow(a0, y);
+		double v = Math.pow(a1, y);
+
+		if (y != Math.rint(y)) {
+			if (a0 < 0)
+				unknown(r);
+			else
+				span(u, v, r);
+
+			return;
+		}
+
+		if (a0 > 0 || a1 < 0) {
+			span(u, v, r); // monotonic on each side of 0
+			return;
+		}
+
+		boolean even = (y % 2 == 0);
+
+		if (y > 0) {
+			if (even)
+				set(0, Math.max(u, v), r);
+			else
+				set(u, v, r);
+		}
+		else {
+			if (even)
+				set(Math.min(u, v), Double.POSITIVE_INFINITY, r);
+			else
+				set(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, r);
+		}
+	}
+
+	/**
+	Stores the bounds of the function over the intervals [lo[i], hi[i]] of its parameters.  Functions that are not
+	default functions, i.e. whose class is not one of the classes of the func package, have unknown bounds.
+	*/
+	static void func(Function f, double[] lo, double[] hi, int n, double[] r) {
+		Class<?> c = f.getClass();
+
+		if (c == RandFunction.class) {
+			set(0, 1, r);
+			return;
+		}
+
+		boolean point = true;
+
+		for (int i = 0; i < n; i++) {
+			if (Double.isNaN(lo[i]) || Double.isNaN(hi[i])) {
+				unknown(r);
+				return;
+			}
+
+			if (Double.doubleToLongBits(lo[i]) != Double.doubleToLongBits(hi[i])) // -0.0 and 0.0 differ
+				point = false;
+		}
+
+		if (point && c.getPackage() == Function.class.getPackage()) {
+			double d = f.of(lo, n);
+			set(d, d, r);
+			return;
+		}
+
+		double a0 = (n > 0 ? lo[0] : 0);
+		double a1 = (n > 0 ? hi[0] : 0);
+
+		if (c == AbsFunction.class) {
+			if (a0 >= 0)
+				set(a0, a1, r);
+			else if (a1 <= 0)
+				set(-a1, -a0, r);
+			else
+				set(0, Math.max(-a0, a1), r);
+		}
+		else if (c == AcosFunction.class) {
+			if (a0 < -1 || a1 > 1)
+				unknown(r);
+			else
+				set(Math.acos(a1), Math.acos(a0), r);
+		}
+		else if (c == AsinFunction.class || c == AtanhFunction.class) {
+			if (a0 < -1 || a1 > 1)
+				unknown(r);
+			else
+				increasing(f, a0, a1, r);
+		}
+		else if (c == AcoshFunction.class) {
+			if (a0 < 1)
+				unknown(r);
+			else
+				increasing(f, a0, a1, r);
+		}
+		else if (c == SqrtFunction.class || c == LnFunction.class || c == LgFunction.class
+			|| (c == LogFunction.class && n == 1)) {
+			if (a0 < 0)
+				unknown(r);
+			else
+				increasing(f, a0, a1, r);
+		}
+		else if (c == LogFunction.class) {
+			if (a0 < 0 || lo[1] < 0) {
+				unknown(r);
+				return;
+			}
+
+			double[] s = new double[2];
+			s[0] = Math.log(lo[1]);
+			s[1] = Math.log(hi[1]);
+			set(Math.log(a0), Math.log(a1), r);
+
+			if (!Double.isNaN(r[0]))
+				div(r[0], r[1], s[0], s[1], r);
+		}
+		else if (c == AtanFunction.class || c == SinhFunction.class || c == ExpFunction.class
+			|| c == CeilFunction.class || c == FloorFunction.class || c == RoundFunction.class
+			|| c == SignFunction.class || c == FactFunction.class) {
+			increasing(f, a0, a1, r);
+		}
+		else if (c == AsinhFunction.class) {
+			set(asinh(f, a0), asinh(f, a1), r);
+			widen(r);
+
+			if (a0 < 0 && !Double.isNaN(r[0])) {
+				// for x < 0, x + sqrt(1 + x*x) cancels, with a relative error of up to about 5 * 2^-53 * (1 + x*x)
+				double e = 0x1.0p-50 * (1 + a0 * a0);
+
+				if (Double.isInfinite(e)) {
+					unknown(r);
+				}
+				else {
+					r[0] = (e >= 0.5 ? Double.NEGATIVE_INFINITY : r[0] - 2 * e);
+					r[1] += e;
+				}
+			}
+		}
+		else if (c == TanhFunction.class) {
+			increasing(f, a0, a1, r);
+			widen(r);
+		}
+		else if (c == CoshFunction.class) {
+			double u = f.of(new double[] { a0 }, 1);
+			double v = f.of(new double[] { a1 }, 1);
+
+			if (a0 < 0 && a1 > 0)
+				set(1, Math.max(u, v), r);
+			else
+				span(u, v, r);
+
+			widen(r);
+		}
+		else if (c == SinFunction.class) {
+			periodic(a0, a1, -HALF_PI, HALF_PI, Math.sin(a0), Math.sin(a1), r);
+		}
+		else if (c == CosFunction.class) {
+			periodic(a0, a1, Math.PI, 0, Math.cos(a0), Math.cos(a1), r);
+		}
+		else if (c == TanFunction.class) {
+			tan(a0, a1, r);
+		}
+		else if (c == PowFunction.class) {
+			pow(a0, a1, lo[1], hi[1], r);
+		}
+		else if (c == ModFunction.class) {
+			mod(a0, a1, lo[1], hi[1], r);
+		}
+		else if (c == MinFunction.class) {
+			double u = Double.MAX_VALUE;
+			double v = Double.MAX_VALUE;
+
+			for (int i = 0; i < n; i++) {
+				u = Math.min(u, lo[i]);
+				v = Math.min(v, hi[i]);
+			}
+
+			set(u, v, r);
+		}
+		else if (c == MaxFunction.class) {
+			double u = -Double.MAX_VALUE;
+			double v = -Double.MAX_VALUE;
+
+			for (int i = 0; i < n; i++) {
+				u = Math.max(u, lo[i]);
+				v = Math.max(v, hi[i]);
+			}
+
+			set(u, v, r);
+		}
+		else if (c == SumFunction.class || c == AvgFunction.class) {
+			double u = 0;
+			double v = 0;
+
+			for (int i = 0; i < n; i++) {
+				add(u, v, lo[i], hi[i], r);
+
+				if (Double.isNaN(r[0]))
+					return;
+
+				u = r[0];
+				v = r[1];
+			}
+
+			if (c == AvgFunction.class)
+				set(u / n, v / n, r);
+			else
+				set(u, v, r);
+		}
+		else if (c == CombinFunction.class) {
+			set(0, Double.POSITIVE_INFINITY, r);
+		}
+		else {
+			unknown(r);
+		}
+	}
+
+	/**
+	Stores the bounds of a function that is non-decreasing over [a0, a1].
+	*/
+	private static void increasing(Function f, double a0, double a1, double[] r) {
+		set(f.of(new double[] { a0 }, 1), f.of(new double[] { a1 }, 1), r);
+	}
+
+	/**
+	Returns the value of asinh(x) computed from the value for |x|, which has no cancellation.
+	*/
+	private static double asinh(Function f, double x) {
+		double d = f.of(new double[] { Math.abs(x) }, 1);
+		return (x < 0 ? -d : d);
+	}
+
+	/**
+	Widens the finite bounds by a small relative and absolute amount, to contain rounding errors that are not monotonic.
+	*/
+	private static void widen(double[] r) {
+		if (!Double.isInfinite(r[0])) r[0] -= 1e-12 * Math.abs(r[0]) + 1e-15;
+		if (!Double.isInfinite(r[1])) r[1] += 1e-12 * Math.abs(r[1]) + 1e-15;
+	}
+
+	/**
+	Stores the bounds of sin or cos over [a0, a1], given the values at the ends, where the minimum of the function
+	is at minAt + 2k*PI and the maximum is at maxAt + 2k*PI.  The function is monotonic between these points.
+	*/
+	private static void periodic(double a0, double a1, double minAt, double maxAt, double u, double v, double[] r) {
+		if (Double.isInfinite(a0) || Double.isInfinite(a1)) {
+			unknown(r);
+			return;
+		}
+
+		if (a1 - a0 >= TWO_PI || Math.abs(a0) > PERIODIC_LIMIT || Math.abs(a1) > PERIODIC_LIMIT) {
+			set(-1, 1, r);
+			return;
+		}
+
+		double lo = Math.min(u, v);
+		double hi = Math.max(u, v);
+
+		if (contains(a0, a1, minAt, TWO_PI)) lo = -1;
+		if (contains(a0, a1, maxAt, TWO_PI)) hi = 1;
+
+		set(lo, hi, r);
+	}
+
+	private static void tan(double a0, double a1, double[] r) {
+		if (Double.isInfinite(a0) || Double.isInfinite(a1)) {
+			unknown(r);
+			return;
+		}
+
+		if (a1 - a0 >= Math.PI || Math.abs(a0) > PERIODIC_LIMIT || Math.abs(a1) > PERIODIC_LIMIT
+			|| contains(a0, a1, HALF_PI, Math.PI)) {
+			set(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, r);
+			return;
+		}
+
+		set(Math.tan(a0), Math.tan(a1), r);
+	}
+
+	/**
+	Returns true if x + k * period is in [a0, a1] for some integer k.  Points that are within a small tolerance of
+	the interval are treated as inside, so the rounding errors can only make the bounds wider.
+	*/
+	private static boolean contains(double a0, double a1, double x, double period) {
+		double tol = 1e-9 * period;
+		double k = Math.ceil((a0 - x - tol) / period);
+		return x + k * period <= a1 + tol;
+	}
+
+	/**
+	Bounds of x % y, whose result has the sign of x and a magnitude that is less than the magnitude of y and not
+	greater than the magnitude of x.
+	*/
+	private static void mod(double a0, double a1, double b0, double b1, double[] r) {
+		if (Double.isInfinite(a0) || Double.isInfinite(a1) || (b0 <= 0 && b1 >= 0)) {
+			unknown(r);
+			return;
+		}
+
+		double m = Math.max(Math.abs(b0), Math.abs(b1));
+		double k = Math.min(Math.abs(b0), Math.abs(b1));
+
+		if ((a0 >= 0 && a1 < k) || (a1 <= 0 && -a0 < k)) {
+			set(a0, a1, r); // x % y == x
+			return;
+		}
+
+		set(a0 >= 0 ? 0 : Math.max(a0, -m), a1 <= 0 ? 0 : Math.min(a1, m), r);
+	}
+}
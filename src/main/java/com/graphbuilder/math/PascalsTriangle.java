@@ -42,8 +42,6 @@ public final class PascalsTriangle {
 			return new SharedData();
 		}
 	};
-	private final SharedData sharedData = SHARED_DATA.get();
-	
 	private static class SharedData {
 		private double[][] pt = new double[][] { {1} };
 	}
@@ -64,6 +62,8 @@ public final class PascalsTriangle {
 	public  double nCr(int n, int r) {
 		if (n < 0 || r < 0 || r > n) return 0;
 
+		SharedData sharedData = SHARED_DATA.get();
+
 		if (n >= sharedData.pt.length) {
 			int d = 2 * sharedData.pt.length;
 			double[][] pt2 = null;
@@ -103,6 +103,6 @@ public final class PascalsTriangle {
 	Resets the internal array to the initial state to free up memory.
 	*/
 	public  void reset() {
-		sharedData.pt = new double[][] { {1} };
+		SHARED_DATA.get().pt = new double[][] { {1} };
 	}
 }
@@ -31,10 +31,13 @@
 
 package com.graphbuilder.math.func;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
-The random function.
+The random function.  The values are obtained from the random number generator of the current thread, so
+threads that evaluate expressions at the same time do not wait for each other.
 
-@see java.lang.Math#random()
+@see java.util.concurrent.ThreadLocalRandom
 */
 public class RandFunction implements Function {
 
@@ -44,7 +47,7 @@ public class RandFunction implements Function {
 	Returns a random value in the range [0, 1) that does not depend on the input.
 	*/
 	public double of(double[] d, int numParam) {
-		return java.lang.Math.random();
+		return ThreadLocalRandom.current().nextDouble();
 	}
 
 	/**
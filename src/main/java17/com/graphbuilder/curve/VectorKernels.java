@@ -0,0 +1,92 @@
+/*
+* Copyright (c) 2005, Graph Builder
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions
+* are met:
+*
+* * Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+*
+* * Redistributions in binary form must reproduce the above copyright notice,
+* this list of conditions and the following disclaimer in the documentation
+* and/or other materials provided with the distribution.
+*
+* * Neither the name of Graph Builder nor the names of its contributors may be
+* used to endorse or promote products derived from this software without
+* specific prior written permission.
+
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+* DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+* FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+* DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+* SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+* CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+* OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+* OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.graphbuilder.curve;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+Vector API versions of the contiguous row loops of Kernels.  The lanes perform the same multiplications
+and additions in the same order as the scalar loops (no fused multiply-add), so the results are identical.
+The remaining elements that do not fill a whole vector are computed by scalar code.
+
+<p>This class is only loaded by the Java 17 version of Kernels, and only if the jdk.incubator.vector
+module is present.
+*/
+final class VectorKernels {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	private VectorKernels() {}
+
+	/**
+	Stores a + b*t[i] + c*t[i]^2 + d*t[i]^3 in r[base + i] for i in the range [0, count).
+	*/
+	static void cubic(double[] t, int count, double a, double b, double c, double d, double[] r, int base) {
+		int bound = SPECIES.loopBound(count);
+		int i = 0;
+
+		for (; i < bound; i += SPECIES.length()) {
+			DoubleVector s = DoubleVector.fromArray(SPECIES, t, i);
+			s.mul(d).add(c).mul(s).add(b).mul(s).add(a).intoArray(r, base + i);
+		}
+
+		for (; i < count; i++) {
+			double s = t[i];
+			r[base + i] = a + s * (b + s * (c + s * d));
+		}
+	}
+
+	/**
+	Stores c[0] * w[i] + c[1] * w[count + i] + ... + c[n - 1] * w[(n - 1) * count + i] in s[base + i] for
+	i in the range [0, count).
+	*/
+	static void combine(double[] w, int count, double[] c, int n, double[] s, int base) {
+		int bound = SPECIES.loopBound(count);
+
+		for (int i = 0; i < count; i++)
+			s[base + i] = 0;
+
+		for (int r = 0; r < n; r++) {
+			double a = c[r];
+			int m = r * count;
+			int i = 0;
+
+			for (; i < bound; i += SPECIES.length()) {
+				DoubleVector x = DoubleVector.fromArray(SPECIES, w, m + i);
+				DoubleVector.fromArray(SPECIES, s, base + i).add(x.mul(a)).intoArray(s, base + i);
+			}
+
+			for (; i < count; i++)
+				s[base + i] += a * w[m + i];
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package com.graphbuilder.curve;
+
+import com.graphbuilder.geom.PointFactory;
+
+/**
+Control-paths and curves shared by the tests of the curve package.
+*/
+final class CurveFixtures {
+
+	private CurveFixtures() {}
+
+	/**
+	Returns a control-path of 7 points with sharp turns and a loop near the end.
+	*/
+	static ControlPath createPath() {
+		ControlPath cp = new ControlPath();
+		cp.addPoint(PointFactory.create(0, 0));
+		cp.addPoint(PointFactory.create(50, 200));
+		cp.addPoint(PointFactory.create(150, -100));
+		cp.addPoint(PointFactory.create(200, 100));
+		cp.addPoint(PointFactory.create(300, 0));
+		cp.addPoint(PointFactory.create(250, -80));
+		cp.addPoint(PointFactory.create(260, 40));
+		return cp;
+	}
+
+	/**
+	Returns one curve of each type over the points of the control-path, including a closed natural cubic spline,
+	a quintic b-spline and Bezier curves of degree 3 and numPoints - 1.
+	*/
+	static ParametricCurve[] createCurves(ControlPath cp) {
+		GroupIterator gi = new GroupIterator("0:n-1", cp.numPoints());
+		GroupIterator gi4 = new GroupIterator("0:3", cp.numPoints());
+		NaturalCubicSpline closed = new NaturalCubicSpline(cp, gi);
+		closed.setClosed(true);
+		BSpline quintic = new BSpline(cp, gi);
+		quintic.setDegree(5);
+
+		return new ParametricCurve[] {
+			new BezierCurve(cp, gi4), new BSpline(cp, gi), quintic, new CubicBSpline(cp, gi),
+			new CatmullRomSpline(cp, gi), new CardinalSpline(cp, gi), new NaturalCubicSpline(cp, gi), closed,
+			new BezierCurve(cp, gi), new NURBSpline(cp, gi4), new LagrangeCurve(cp, gi)
+		};
+	}
+}
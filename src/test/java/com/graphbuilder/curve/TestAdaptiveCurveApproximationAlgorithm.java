@@ -0,0 +1,139 @@
+package com.graphbuilder.curve;
+
+import org.junit.*;
+
+import com.graphbuilder.geom.PointFactory;
+
+import static org.junit.Assert.*;
+
+
+public class TestAdaptiveCurveApproximationAlgorithm {
+
+	@Test
+	public void testFlatness() throws Exception {
+		double flatness = 0.25;
+
+		for (ParametricCurve c : CurveFixtures.createCurves(CurveFixtures.createPath())) {
+			ShapeMultiPath mp = new ShapeMultiPath();
+			mp.setFlatness(flatness);
+			AdaptiveCurveApproximationAlgorithm.appendTo(c, mp);
+
+			int count = 5000;
+			double[] t = new double[count + 1];
+			for (int i = 0; i <= count; i++)
+				t[i] = (double) i / count;
+
+			double[] out = new double[2 * (count + 1)];
+			c.evalBatch(t, count + 1, out, 2, ParametricCurve.INTERLEAVED);
+
+			String msg = c.getClass().getName();
+			assertEquals(msg, MultiPath.MOVE_TO, mp.getType(0));
+			assertEquals(msg, out[0], mp.get(0)[0], 1e-9);
+			assertEquals(msg, out[2 * count + 1], mp.get(mp.getNumPoints() - 1)[1], 1e-9);
+
+			for (int i = 0; i <= count; i++)
+				assertTrue(msg, mp.getDistSq(out[2 * i], out[2 * i + 1]) <= flatness * flatness * 1.0001);
+		}
+	}
+
+	@Test
+	public void testSegmentCount() throws Exception {
+		ControlPath cp = new ControlPath();
+		cp.addPoint(PointFactory.create(0, 0));
+		cp.addPoint(PointFactory.create(10, 0));
+		cp.addPoint(PointFactory.create(20, 0));
+		cp.addPoint(PointFactory.create(30, 0));
+		BezierCurve line = new BezierCurve(cp, new GroupIterator("0:n-1", cp.numPoints()));
+		line.prepare(2);
+
+		assertEquals(1, AdaptiveCurveApproximationAlgorithm.getSegmentCount(line, 0, 1, 2, 0.01));
+
+		// the largest second difference of the Bezier points is 200, so Wang's formula gives sqrt(6 / 8 * 200 / 1) = 12.2
+		cp.getPoint(1).setLocation(new double[] { 10, 100 });
+		assertEquals(13, AdaptiveCurveApproximationAlgorithm.getSegmentCount(line, 0, 1, 2, 1));
+	}
+
+	@Test
+	public void testHighDegreeBound() throws Exception {
+		ControlPath cp = CurveFixtures.createPath();
+		cp.addPoint(PointFactory.create(180, 90));
+		GroupIterator gi = new GroupIterator("0:n-1", cp.numPoints());
+
+		BezierCurve bezier = new BezierCurve(cp, gi);
+		BezierCurve extended = new BezierCurve(cp, gi);
+		extended.setInterval(-0.25, 1.5);
+		BSpline clamped = new BSpline(cp, gi);
+		clamped.setDegree(5);
+		BSpline unclamped = new BSpline(cp, gi);
+		unclamped.setDegree(4);
+		unclamped.setKnotVectorType(BSpline.UNIFORM_UNCLAMPED);
+		LagrangeCurve lagrange = new LagrangeCurve(cp, gi);
+		lagrange.setKnotVector(new ValueVector(new double[] { 0, 0.1, 0.3, 0.6, 0.8, 1 }, 6));
+		lagrange.setBaseIndex(2);
+		lagrange.setInterpolateFirst(true);
+
+		ParametricCurve[] curves = { bezier, extended, clamped, unclamped, lagrange };
+
+		for (ParametricCurve c : curves) {
+			String msg = c.getClass().getName();
+			assertTrue(msg, c.getPolynomialDegree() > 3);
+			double[] interval = new double[2];
+			int numSections = c.prepare(2);
+
+			for (int k = 0; k < numSections; k++) {
+				c.selectSection(k, interval);
+				double a = interval[0];
+				double b = interval[1];
+				if (c == extended) {
+					a = extended.t_min();
+					b = extended.t_max();
+				}
+
+				// the whole section and a piece of it
+				double[][] pieces = { { a, b }, { a + (b - a) / 3, a + (b - a) / 2 } };
+
+				for (double[] piece : pieces) {
+					double t0 = piece[0];
+					double h = piece[1] - t0;
+					if (h < 1e-12) continue; // rounding can leave a tiny section at the end of a knot-vector
+
+					double m = c.getSecondDerivativeBound(t0, piece[1], 2);
+					assertFalse(msg, Double.isNaN(m));
+
+					double[][] bp = c.getBezierPoints(t0, piece[1], 2);
+					double[] p = new double[3];
+					double[] d2 = new double[2];
+
+					for (int i = 0; i <= 200; i++) {
+						double u = i / 200.0;
+						p[2] = t0 + h * u;
+						c.evalDerivatives(p, null, d2);
+						assertTrue(msg, Math.hypot(d2[0], d2[1]) * h * h <= m * (1 + 1e-9) + 1e-9);
+
+						if (bp != null) {
+							double[] q = deCasteljau(bp, u);
+							assertEquals(msg, p[0], q[0], 1e-7);
+							assertEquals(msg, p[1], q[1], 1e-7);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static double[] deCasteljau(double[][] b, double u) {
+		int n = b.length;
+		double[][] w = new double[n][];
+		for (int i = 0; i < n; i++)
+			w[i] = b[i].clone();
+
+		for (int k = 1; k < n; k++) {
+			for (int i = 0; i < n - k; i++) {
+				for (int j = 0; j < w[i].length; j++)
+					w[i][j] = (1 - u) * w[i][j] + u * w[i+1][j];
+			}
+		}
+
+		return w[0];
+	}
+}
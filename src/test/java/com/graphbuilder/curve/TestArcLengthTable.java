@@ -0,0 +1,120 @@
+package com.graphbuilder.curve;
+
+import org.junit.*;
+
+import com.graphbuilder.geom.PointFactory;
+
+import static org.junit.Assert.*;
+
+
+public class TestArcLengthTable {
+
+	private static ControlPath createControlPath() {
+		ControlPath cp = new ControlPath();
+		cp.addPoint(PointFactory.create(0, 0));
+		cp.addPoint(PointFactory.create(50, 200));
+		cp.addPoint(PointFactory.create(150, -100));
+		cp.addPoint(PointFactory.create(200, 100));
+		cp.addPoint(PointFactory.create(300, 0));
+		cp.addPoint(PointFactory.create(250, -80));
+		return cp;
+	}
+
+	private static double polylineLength(ParametricCurve c, int n) {
+		double[] t = new double[n + 1];
+		for (int i = 0; i <= n; i++)
+			t[i] = (double) i / n;
+
+		double[] out = new double[2 * (n + 1)];
+		c.evalBatch(t, n + 1, out, 2, ParametricCurve.INTERLEAVED);
+
+		double len = 0;
+		for (int i = 0; i < n; i++)
+			len += Math.hypot(out[2 * i + 2] - out[2 * i], out[2 * i + 3] - out[2 * i + 1]);
+		return len;
+	}
+
+	@Test
+	public void testStraightLine() throws Exception {
+		ControlPath cp = new ControlPath();
+		cp.addPoint(PointFactory.create(0, 0));
+		cp.addPoint(PointFactory.create(30, 40));
+		BezierCurve c = new BezierCurve(cp, new GroupIterator("0:n-1", cp.numPoints()));
+
+		ArcLengthTable table = new ArcLengthTable(c, 2);
+		assertEquals(50, table.getLength(), 1e-6);
+		assertEquals(0.5, table.getT(25), 1e-9);
+		assertEquals(25, table.getDistance(0.5), 1e-6);
+	}
+
+	@Test
+	public void testLengthAndInverse() throws Exception {
+		ControlPath cp = createControlPath();
+		GroupIterator gi = new GroupIterator("0:n-1", cp.numPoints());
+		ParametricCurve[] curves = {
+			new BezierCurve(cp, gi), new BSpline(cp, gi), new CubicBSpline(cp, gi), new CatmullRomSpline(cp, gi),
+			new NaturalCubicSpline(cp, gi)
+		};
+
+		for (ParametricCurve c : curves) {
+			ArcLengthTable table = new ArcLengthTable(c, 2);
+			String msg = c.getClass().getName();
+			assertEquals(msg, polylineLength(c, 20000), table.getLength(), 1e-3);
+
+			for (int i = 0; i <= 20; i++) {
+				double t = i / 20.0;
+				assertEquals(msg, t, table.getT(table.getDistance(t)), 1e-7);
+			}
+		}
+	}
+
+	@Test
+	public void testEvenSpacing() throws Exception {
+		ControlPath cp = createControlPath();
+		CubicBSpline c = new CubicBSpline(cp, new GroupIterator("0:n-1", cp.numPoints()));
+		ArcLengthTable table = new ArcLengthTable(c, 2);
+
+		double spacing = table.getLength() / 50;
+		MultiPath mp = new MultiPath(2);
+		table.appendTo(mp, spacing * 0.999);
+
+		assertEquals(51, mp.getNumPoints());
+		assertEquals(MultiPath.MOVE_TO, mp.getType(0));
+
+		// chords of a smooth curve are slightly shorter than the arc they span
+		for (int i = 1; i < mp.getNumPoints(); i++) {
+			double[] a = mp.get(i - 1);
+			double[] b = mp.get(i);
+			double d = Math.hypot(b[0] - a[0], b[1] - a[1]);
+			assertTrue(d <= spacing * 0.999 + 1e-9);
+			assertTrue(d > spacing * 0.98);
+		}
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		ControlPath cp = createControlPath();
+		final CubicBSpline c = new CubicBSpline(cp, new GroupIterator("0:n-1", cp.numPoints()));
+		final ArcLengthTable table = new ArcLengthTable(c, 2);
+		final double s = table.getLength() / 10;
+		final double t = table.getT(s);
+
+		// appendTo selects the last section of the curve, so the table must prepare it again
+		c.appendTo(new MultiPath(2));
+		table.invalidate();
+		assertEquals(t, table.getT(s), 0);
+		assertEquals(s, table.getDistance(t), 1e-9);
+
+		// the curve is prepared again on another thread
+		final double[] result = new double[1];
+		Thread thread = new Thread() {
+			public void run() {
+				result[0] = table.getT(s);
+			}
+		};
+		thread.start();
+		thread.join();
+		assertEquals(t, result[0], 0);
+		assertEquals(t, table.getT(s), 0);
+	}
+}
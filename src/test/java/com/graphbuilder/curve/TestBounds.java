@@ -0,0 +1,187 @@
+package com.graphbuilder.curve;
+
+import org.junit.*;
+
+import com.graphbuilder.geom.PointFactory;
+
+import static org.junit.Assert.*;
+
+
+public class TestBounds {
+
+	@Test
+	public void testBounds() throws Exception {
+		for (ParametricCurve c : CurveFixtures.createCurves(CurveFixtures.createPath())) {
+			String msg = c.getClass().getName();
+
+			int count = 20000;
+			double[] t = new double[count + 1];
+			for (int i = 0; i <= count; i++)
+				t[i] = (double) i / count;
+
+			double[] out = new double[2 * (count + 1)];
+			c.evalBatch(t, count + 1, out, 2, ParametricCurve.INTERLEAVED);
+
+			double[] smin = { Double.MAX_VALUE, Double.MAX_VALUE };
+			double[] smax = { -Double.MAX_VALUE, -Double.MAX_VALUE };
+
+			for (int i = 0; i <= count; i++) {
+				for (int j = 0; j < 2; j++) {
+					smin[j] = Math.min(smin[j], out[2 * i + j]);
+					smax[j] = Math.max(smax[j], out[2 * i + j]);
+				}
+			}
+
+			double[] min = new double[2];
+			double[] max = new double[2];
+			assertTrue(msg, c.getBounds(min, max, 2));
+
+			double[] hmin = new double[2];
+			double[] hmax = new double[2];
+			assertTrue(msg, c.getHullBounds(hmin, hmax, 2));
+
+			for (int j = 0; j < 2; j++) {
+				assertEquals(msg, smin[j], min[j], 1e-3);
+				assertEquals(msg, smax[j], max[j], 1e-3);
+				assertTrue(msg, min[j] <= smin[j] + 1e-9);
+				assertTrue(msg, max[j] >= smax[j] - 1e-9);
+				assertTrue(msg, hmin[j] <= min[j] + 1e-9);
+				assertTrue(msg, hmax[j] >= max[j] - 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testQuadratic() throws Exception {
+		ControlPath cp = new ControlPath();
+		cp.addPoint(PointFactory.create(0, 0));
+		cp.addPoint(PointFactory.create(50, 100));
+		cp.addPoint(PointFactory.create(100, 0));
+		BezierCurve c = new BezierCurve(cp, new GroupIterator("0:n-1", cp.numPoints()));
+
+		double[] min = new double[2];
+		double[] max = new double[2];
+		c.getBounds(min, max, 2);
+		assertEquals(0, min[0], 1e-12);
+		assertEquals(100, max[0], 1e-12);
+		assertEquals(0, min[1], 1e-12);
+		assertEquals(50, max[1], 1e-12);
+
+		c.getHullBounds(min, max, 2);
+		assertEquals(100, max[1], 0);
+	}
+
+	private static ParametricCurve[] createHighDegreeCurves() {
+		ControlPath cp = new ControlPath();
+		for (int i = 0; i < 12; i++)
+			cp.addPoint(PointFactory.create(i * 30 + (i % 3) * 40, (i % 2 == 0 ? 100 : -100) + i * i));
+
+		GroupIterator gi = new GroupIterator("0:n-1", cp.numPoints());
+		BSpline quintic = new BSpline(cp, gi);
+		quintic.setDegree(5);
+		BSpline unclamped = new BSpline(cp, gi);
+		unclamped.setDegree(6);
+		unclamped.setKnotVectorType(BSpline.UNIFORM_UNCLAMPED);
+
+		return new ParametricCurve[] {
+			new BezierCurve(cp, gi), quintic, unclamped, new LagrangeCurve(cp, new GroupIterator("0:6", cp.numPoints()))
+		};
+	}
+
+	@Test
+	public void testBezierPoints() throws Exception {
+		double[] interval = new double[2];
+
+		for (ParametricCurve c : createHighDegreeCurves()) {
+			String msg = c.getClass().getName();
+			int numSections = c.prepare(2);
+
+			for (int i = 0; i < numSections; i++) {
+				c.selectSection(i, interval);
+				double h = interval[1] - interval[0];
+				if (h < 1e-12) continue;
+
+				double[][] b = c.getBezierPoints(interval[0], interval[1], 2);
+				assertNotNull(msg, b);
+				assertEquals(msg, c.getPolynomialDegree() + 1, b.length);
+
+				ControlPath bp = new ControlPath();
+				for (double[] q : b)
+					bp.addPoint(PointFactory.create(q[0], q[1]));
+
+				BezierCurve bc = new BezierCurve(bp, new GroupIterator("0:n-1", bp.numPoints()));
+				double[] hmin = new double[2];
+				double[] hmax = new double[2];
+				assertTrue(msg, c.getHullBounds(interval[0], interval[1], hmin, hmax, 2));
+
+				for (int k = 0; k <= 20; k++) {
+					double[] p = { 0, 0, interval[0] + h * k / 20 };
+					double[] q = { 0, 0, (double) k / 20 };
+					c.prepare(2);
+					c.selectSection(i, interval);
+					c.eval(p);
+					bc.eval(q);
+
+					for (int j = 0; j < 2; j++) {
+						assertEquals(msg, p[j], q[j], 1e-9);
+						assertTrue(msg, p[j] >= hmin[j] - 1e-9 && p[j] <= hmax[j] + 1e-9);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testHighDegreeBounds() throws Exception {
+		for (ParametricCurve c : createHighDegreeCurves()) {
+			String msg = c.getClass().getName();
+			double[] min = new double[2];
+			double[] max = new double[2];
+			assertTrue(msg, c.getBounds(min, max, 2));
+
+			for (int j = 0; j < 2; j++) {
+				assertEquals(msg, -extreme(c, j, -1), min[j], 1e-6);
+				assertEquals(msg, extreme(c, j, 1), max[j], 1e-6);
+			}
+		}
+	}
+
+	/**
+	Returns the largest value of sign * C(t)[j], located by a dense sample refined by golden-section search.
+	*/
+	private static double extreme(ParametricCurve c, int j, double sign) {
+		int count = 4000;
+		double[] t = new double[count + 1];
+		for (int i = 0; i <= count; i++)
+			t[i] = (double) i / count;
+
+		double[] out = new double[2 * (count + 1)];
+		c.evalBatch(t, count + 1, out, 2, ParametricCurve.INTERLEAVED);
+
+		int best = 0;
+		for (int i = 1; i <= count; i++)
+			if (sign * out[2 * i + j] > sign * out[2 * best + j]) best = i;
+
+		double a = t[Math.max(0, best - 1)];
+		double b = t[Math.min(count, best + 1)];
+		double g = (Math.sqrt(5) - 1) / 2;
+
+		for (int r = 0; r < 100; r++) {
+			double x1 = b - g * (b - a);
+			double x2 = a + g * (b - a);
+
+			if (value(c, x1, j, sign) < value(c, x2, j, sign))
+				a = x1;
+			else
+				b = x2;
+		}
+
+		return Math.max(sign * out[2 * best + j], value(c, (a + b) / 2, j, sign));
+	}
+
+	private static double value(ParametricCurve c, double t, int j, double sign) {
+		double[] out = new double[2];
+		c.evalBatch(new double[] { t }, 1, out, 2, ParametricCurve.INTERLEAVED);
+		return sign * out[j];
+	}
+}
@@ -0,0 +1,141 @@
+package com.graphbuilder.curve;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+
+import org.junit.*;
+
+import com.graphbuilder.geom.PointFactory;
+
+import static org.junit.Assert.*;
+
+
+public class TestClip {
+
+	private static ParametricCurve[] createCurves(ControlPath cp) {
+		GroupIterator gi = new GroupIterator("0:n-1", cp.numPoints());
+		BSpline quartic = new BSpline(cp, gi);
+		quartic.setDegree(4);
+
+		ValueVector w = new ValueVector();
+		for (int i = 0; i < cp.numPoints(); i++)
+			w.add(1 + i % 3);
+
+		NURBSpline nurbs = new NURBSpline(cp, gi);
+		nurbs.setWeightVector(w);
+
+		return new ParametricCurve[] {
+			new CubicBSpline(cp, gi), new CatmullRomSpline(cp, gi), new CardinalSpline(cp, gi),
+			new NaturalCubicSpline(cp, gi), new BSpline(cp, gi), quartic, nurbs
+		};
+	}
+
+	private static ControlPath createPath() {
+		ControlPath cp = new ControlPath();
+
+		for (int i = 0; i < 40; i++)
+			cp.addPoint(PointFactory.create(20 * i, i % 2 == 0 ? 0 : 60));
+
+		return cp;
+	}
+
+	@Test
+	public void testClip() throws Exception {
+		ControlPath cp = createPath();
+		double[] min = { 200, -1000 };
+		double[] max = { 260, 1000 };
+
+		for (ParametricCurve c : createCurves(cp)) {
+			String msg = c.getClass().getName();
+
+			MultiPath all = new MultiPath(2);
+			all.setFlatness(0.1);
+			c.appendTo(all);
+
+			MultiPath mp = new MultiPath(2);
+			mp.setFlatness(0.1);
+			mp.setClip(min, max);
+			c.appendTo(mp);
+
+			assertTrue(msg, mp.getNumPoints() < all.getNumPoints());
+
+			// the visible points are the same
+			int count = 0;
+			for (int i = 0; i < all.getNumPoints(); i++) {
+				double[] p = all.get(i);
+				if (p[0] < min[0] || p[0] > max[0]) continue;
+
+				count++;
+				boolean found = false;
+				for (int j = 0; j < mp.getNumPoints() && !found; j++)
+					found = mp.get(j)[0] == p[0] && mp.get(j)[1] == p[1] && mp.getType(j) == MultiPath.LINE_TO;
+
+				assertTrue(msg, found);
+			}
+
+			assertTrue(msg, count > 0);
+
+			// the hidden sections do not produce consecutive MOVE_TO points
+			for (int i = 1; i < mp.getNumPoints(); i++)
+				assertFalse(msg, mp.getType(i) == MultiPath.MOVE_TO && mp.getType(i - 1) == MultiPath.MOVE_TO);
+
+			MultiPath adaptive = new MultiPath(2);
+			adaptive.setClip(min, max);
+			AdaptiveCurveApproximationAlgorithm.appendTo(c, adaptive);
+			assertTrue(msg, adaptive.getNumPoints() < 200);
+		}
+	}
+
+	@Test
+	public void testBezier() throws Exception {
+		ControlPath cp = createPath();
+		BezierCurve c = new BezierCurve(cp, new GroupIterator("30:33", cp.numPoints()));
+
+		MultiPath mp = new MultiPath(2);
+		mp.setClip(new double[] { 0, 0 }, new double[] { 580, 100 });
+		c.appendTo(mp);
+
+		assertEquals(1, mp.getNumPoints());
+		assertEquals(660, mp.get(0)[0], 1e-9);
+
+		c.setInterval(-0.5, 1);
+		mp.setNumPoints(0);
+		c.appendTo(mp);
+		assertTrue(mp.getNumPoints() > 1);
+	}
+
+	@Test
+	public void testShapeClip() throws Exception {
+		ControlPath cp = createPath();
+		CubicBSpline c = new CubicBSpline(cp, new GroupIterator("0:n-1", cp.numPoints()));
+
+		AffineTransform at = new AffineTransform();
+		at.scale(2, 2);
+
+		ShapeMultiPath all = new ShapeMultiPath();
+		c.appendTo(all, at);
+
+		ShapeMultiPath smp = new ShapeMultiPath();
+		smp.setClip(new Rectangle2D.Double(400, 0, 100, 100));
+		c.appendTo(smp, at);
+
+		assertTrue(smp.getNumPoints() < all.getNumPoints() / 4);
+
+		Rectangle2D r = smp.getBounds2D();
+		assertTrue(r.getMinX() >= 360);
+		assertTrue(r.getMaxX() <= 560);
+
+		double[] min = new double[2];
+		double[] max = new double[2];
+		assertTrue(smp.getClip(min, max));
+		assertEquals(500, max[0], 0);
+
+		smp.setClip(null);
+		assertFalse(smp.getClip(min, max));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidClip() throws Exception {
+		new MultiPath(2).setClip(new double[] { 1, 0 }, new double[] { 0, 1 });
+	}
+}
@@ -0,0 +1,159 @@
+package com.graphbuilder.curve;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+
+import org.junit.*;
+
+import com.graphbuilder.geom.PointFactory;
+import com.graphbuilder.math.*;
+
+import static org.junit.Assert.*;
+
+
+public class TestCurveShape {
+
+	private static int[] countSegments(PathIterator iter) {
+		int[] count = new int[5];
+		double[] coords = new double[6];
+
+		for (; !iter.isDone(); iter.next())
+			count[iter.currentSegment(coords)]++;
+
+		return count;
+	}
+
+	/**
+	Checks that the curve is within the tolerance of the flattened shape.
+	*/
+	private static void assertClose(ParametricCurve c, CurveShape s, double tolerance) {
+		ShapeMultiPath mp = new ShapeMultiPath();
+		PathIterator iter = s.getPathIterator(null, 0.001);
+		double[] coords = new double[6];
+
+		for (; !iter.isDone(); iter.next()) {
+			if (iter.currentSegment(coords) == PathIterator.SEG_MOVETO)
+				mp.moveTo(new double[] { coords[0], coords[1] });
+			else
+				mp.lineTo(new double[] { coords[0], coords[1] });
+		}
+
+		int count = 2000;
+		double[] t = new double[count + 1];
+		for (int i = 0; i <= count; i++)
+			t[i] = (double) i / count;
+
+		double[] out = new double[2 * (count + 1)];
+		c.evalBatch(t, count + 1, out, 2, ParametricCurve.INTERLEAVED);
+
+		for (int i = 0; i <= count; i++) {
+			double d = Math.sqrt(mp.getDistSq(out[2 * i], out[2 * i + 1]));
+			assertTrue(c.getClass().getName() + " " + d, d <= tolerance);
+		}
+	}
+
+	@Test
+	public void testExact() throws Exception {
+		ControlPath cp = CurveFixtures.createPath();
+		GroupIterator gi = new GroupIterator("0:n-1", cp.numPoints());
+		ParametricCurve[] curves = {
+			new CubicBSpline(cp, gi), new CatmullRomSpline(cp, gi), new NaturalCubicSpline(cp, gi), new BSpline(cp, gi)
+		};
+
+		for (ParametricCurve c : curves) {
+			CurveShape s = new CurveShape(c);
+			int numSections = c.prepare(2);
+			int[] count = countSegments(s.getPathIterator(null));
+
+			assertEquals(1, count[PathIterator.SEG_MOVETO]);
+			assertEquals(numSections, count[PathIterator.SEG_CUBICTO]);
+			assertEquals(0, count[PathIterator.SEG_LINETO]);
+			assertClose(c, s, 0.01);
+		}
+
+		BezierCurve quad = new BezierCurve(cp, new GroupIterator("0:2", cp.numPoints()));
+		int[] count = countSegments(new CurveShape(quad).getPathIterator(null));
+		assertEquals(1, count[PathIterator.SEG_QUADTO]);
+		assertClose(quad, new CurveShape(quad), 0.01);
+
+		BSpline linear = new BSpline(cp, gi);
+		linear.setDegree(1);
+		count = countSegments(new CurveShape(linear).getPathIterator(null));
+		assertEquals(cp.numPoints() - 1, count[PathIterator.SEG_LINETO]);
+	}
+
+	@Test
+	public void testApproximated() throws Exception {
+		ControlPath cp = CurveFixtures.createPath();
+		GroupIterator gi = new GroupIterator("0:n-1", cp.numPoints());
+
+		BSpline quintic = new BSpline(cp, gi);
+		quintic.setDegree(5);
+
+		NURBSpline nurbs = new NURBSpline(cp, new GroupIterator("0:3", cp.numPoints()));
+		nurbs.getWeightVector().set(5, 1);
+
+		ParametricCurve[] curves = { quintic, nurbs, new BezierCurve(cp, gi), new LagrangeCurve(cp, gi) };
+
+		for (ParametricCurve c : curves) {
+			CurveShape s = new CurveShape(c);
+			s.setFlatness(0.25);
+
+			int[] count = countSegments(s.getPathIterator(null));
+			assertEquals(0, count[PathIterator.SEG_LINETO]);
+			assertTrue(count[PathIterator.SEG_CUBICTO] < 100);
+			assertClose(c, s, 0.25 + 0.01);
+		}
+	}
+
+	@Test
+	public void testShape() throws Exception {
+		ControlPath cp = new ControlPath();
+		cp.addPoint(PointFactory.create(10, 10));
+		cp.addPoint(PointFactory.create(10, 200));
+		cp.addPoint(PointFactory.create(290, 200));
+		cp.addPoint(PointFactory.create(290, 10));
+		CurveShape s = new CurveShape(new BezierCurve(cp, new GroupIterator("0:n-1", cp.numPoints())));
+
+		assertTrue(s.contains(100, 100));
+		assertFalse(s.contains(30, 180));
+		assertTrue(s.getBounds2D().getMaxY() >= 152.5);
+
+		Path2D path = s.toPath();
+		path.closePath();
+		assertTrue(path.contains(11, 11));
+	}
+
+	@Test
+	public void testCache() throws Exception {
+		ControlPath cp = CurveFixtures.createPath();
+		BSpline c = new BSpline(cp, new GroupIterator("0:n-1", cp.numPoints()));
+		CurveShape s = new CurveShape(c);
+
+		Rectangle2D r = s.getBounds2D();
+		assertEquals(r, s.getBounds2D());
+
+		// the checksum detects changes to the control-points
+		cp.getPoint(1).setLocation(new double[] { 50, 400 });
+		Rectangle2D moved = s.getBounds2D();
+		assertTrue(moved.getMaxY() > r.getMaxY());
+
+		// the degree is not part of the checksum
+		int numSegments = countSegments(s.getPathIterator(null))[PathIterator.SEG_CUBICTO];
+		c.setDegree(2);
+		assertEquals(numSegments, countSegments(s.getPathIterator(null))[PathIterator.SEG_CUBICTO]);
+		s.invalidate();
+		assertEquals(0, countSegments(s.getPathIterator(null))[PathIterator.SEG_CUBICTO]);
+
+		// the state of an expression curve is part of the checksum
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		ExpressionCurve e = new ExpressionCurve(new Expression[] { ExpressionTree.parse("r*t"), ExpressionTree.parse("r*t^2") }, fm);
+		e.setValue("r", 10);
+		CurveShape es = new CurveShape(e);
+		assertEquals(10, es.getBounds2D().getMaxX(), 1e-9);
+		e.setValue("r", 20);
+		assertEquals(20, es.getBounds2D().getMaxX(), 1e-9);
+	}
+}
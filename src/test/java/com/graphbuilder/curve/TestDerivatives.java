@@ -0,0 +1,112 @@
+package com.graphbuilder.curve;
+
+import org.junit.*;
+
+import com.graphbuilder.geom.PointFactory;
+
+import static org.junit.Assert.*;
+
+
+public class TestDerivatives {
+
+	private static ParametricCurve[] createCurves(int n) {
+		ControlPath cp = new ControlPath();
+		for (int i = 0; i < n; i++)
+			cp.addPoint(PointFactory.create(10 * i + (i * 13) % 7, (i * 37) % 11));
+
+		GroupIterator gi = new GroupIterator("0:n-1", n);
+		double[] w = new double[n];
+		for (int i = 0; i < n; i++)
+			w[i] = 1 + (i % 3) * 0.5;
+
+		NURBSpline nurbs = new NURBSpline(cp, gi);
+		nurbs.setWeightVector(new ValueVector(w, n));
+		BSpline quadratic = new BSpline(cp, gi);
+		quadratic.setDegree(2);
+		BSpline unclamped = new BSpline(cp, gi);
+		unclamped.setKnotVectorType(BSpline.UNIFORM_UNCLAMPED);
+		CubicBSpline cbs = new CubicBSpline(cp, gi);
+		cbs.setInterpolateEndpoints(true);
+		LagrangeCurve lagrange = new LagrangeCurve(cp, gi);
+		lagrange.setInterpolateFirst(true);
+		lagrange.setInterpolateLast(true);
+
+		return new ParametricCurve[] {
+			new BezierCurve(cp, gi), new BSpline(cp, gi), quadratic, unclamped, nurbs, cbs, new CubicBSpline(cp, gi),
+			new CatmullRomSpline(cp, gi), new CardinalSpline(cp, gi), new NaturalCubicSpline(cp, gi), lagrange
+		};
+	}
+
+	private static void check(ParametricCurve c, int n) {
+		int count = 41;
+		double h = 1e-5;
+		double[] t = new double[3 * count];
+
+		// the values are chosen so that the differences do not cross section boundaries
+		int k = 0;
+		for (int i = 0; i < count; i++) {
+			double s = (i + 0.37) / count;
+			t[k++] = s - h;
+			t[k++] = s;
+			t[k++] = s + h;
+		}
+
+		double[] p = new double[2 * 3 * count];
+		double[] d1 = new double[2 * 3 * count];
+		double[] d2 = new double[2 * 3 * count];
+		c.evalBatch(t, 3 * count, p, 2, ParametricCurve.INTERLEAVED, 0);
+		c.evalBatch(t, 3 * count, d1, 2, ParametricCurve.INTERLEAVED, 1);
+		c.evalBatch(t, 3 * count, d2, 2, ParametricCurve.INTERLEAVED, 2);
+
+		String msg = c.getClass().getName() + " n = " + n;
+
+		for (int i = 0; i < count; i++) {
+			for (int j = 0; j < 2; j++) {
+				double a = p[6 * i + j];
+				double b = p[6 * i + 2 + j];
+				double e = p[6 * i + 4 + j];
+				double scale = 1 + Math.abs(d1[6 * i + 2 + j]);
+				assertEquals(msg, (e - a) / (2 * h), d1[6 * i + 2 + j], 1e-4 * scale);
+				scale = 1 + Math.abs(d2[6 * i + 2 + j]);
+				assertEquals(msg, (d1[6 * i + 4 + j] - d1[6 * i + j]) / (2 * h), d2[6 * i + 2 + j], 1e-4 * scale);
+			}
+		}
+	}
+
+	@Test
+	public void testMatchesFiniteDifferences() throws Exception {
+		for (int n = 4; n <= 9; n++) {
+			for (ParametricCurve c : createCurves(n))
+				check(c, n);
+		}
+	}
+
+	@Test
+	public void testCircle() throws Exception {
+		// quarter circle of radius 10 as a rational quadratic
+		ControlPath cp = new ControlPath();
+		cp.addPoint(PointFactory.create(10, 0));
+		cp.addPoint(PointFactory.create(10, 10));
+		cp.addPoint(PointFactory.create(0, 10));
+
+		NURBSpline c = new NURBSpline(cp, new GroupIterator("0:n-1", cp.numPoints()));
+		c.setDegree(2);
+		c.setWeightVector(new ValueVector(new double[] { 1, Math.sqrt(0.5), 1 }, 3));
+
+		for (int i = 0; i <= 10; i++) {
+			double t = i / 10.0;
+			assertEquals(0.1, c.getCurvature(t, 2), 1e-9);
+
+			double[] v = new double[2];
+			double[] p = new double[2];
+			c.evalDerivatives(t, p, null, null);
+			c.getNormal(t, v);
+			assertEquals(-p[0] / 10, v[0], 1e-9);
+			assertEquals(-p[1] / 10, v[1], 1e-9);
+
+			c.getTangent(t, v);
+			assertEquals(-p[1] / 10, v[0], 1e-9);
+			assertEquals(p[0] / 10, v[1], 1e-9);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.graphbuilder.curve;
+
+import org.junit.*;
+
+import com.graphbuilder.geom.PointFactory;
+
+import static org.junit.Assert.*;
+
+
+public class TestEvalBatch {
+
+	private static ControlPath createControlPath(int n) {
+		ControlPath cp = new ControlPath();
+		for (int i = 0; i < n; i++)
+			cp.addPoint(PointFactory.create(10 * i, (i * 37) % 11));
+		return cp;
+	}
+
+	private static ParametricCurve[] createCurves(ControlPath cp) {
+		GroupIterator gi = new GroupIterator("0:n-1", cp.numPoints());
+		NURBSpline nurbs = new NURBSpline(cp, gi);
+		nurbs.setWeightVector(new ValueVector(new double[] { 1, 2, 0.5, 1, 3, 1, 1, 2 }, cp.numPoints()));
+		CubicBSpline cbs = new CubicBSpline(cp, gi);
+		cbs.setInterpolateEndpoints(true);
+		NaturalCubicSpline ncs = new NaturalCubicSpline(cp, gi);
+		ncs.setClosed(true);
+
+		return new ParametricCurve[] {
+			new BezierCurve(cp, gi), new BSpline(cp, gi), nurbs, cbs, new CatmullRomSpline(cp, gi),
+			new CardinalSpline(cp, gi), new NaturalCubicSpline(cp, gi), ncs, new LagrangeCurve(cp, gi)
+		};
+	}
+
+	@Test
+	public void testMatchesEval() throws Exception {
+		ControlPath cp = createControlPath(8);
+		int count = 201;
+		double[] t = new double[count];
+		for (int i = 0; i < count; i++)
+			t[i] = i / (count - 1.0);
+
+		for (ParametricCurve c : createCurves(cp)) {
+			double[] interleaved = new double[2 * count];
+			double[] planar = new double[2 * count];
+			c.evalBatch(t, count, interleaved, 2, ParametricCurve.INTERLEAVED);
+			c.evalBatch(t, count, planar, 2, ParametricCurve.PLANAR);
+
+			int n = c.prepare(2);
+			double[] interval = new double[2];
+
+			for (int i = 0; i < count; i++) {
+				int s = Math.min((int) (t[i] * n), n - 1);
+				c.selectSection(s, interval);
+
+				double[] p = new double[3];
+				p[2] = interval[0] + (t[i] * n - s) * (interval[1] - interval[0]);
+				c.eval(p);
+
+				String msg = c.getClass().getName() + " t = " + t[i];
+				assertEquals(msg, p[0], interleaved[2 * i], 1e-9);
+				assertEquals(msg, p[1], interleaved[2 * i + 1], 1e-9);
+				assertEquals(msg, p[0], planar[i], 1e-9);
+				assertEquals(msg, p[1], planar[count + i], 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testEndpoints() throws Exception {
+		ControlPath cp = createControlPath(8);
+		BezierCurve c = new BezierCurve(cp, new GroupIterator("0:n-1", cp.numPoints()));
+		double[] out = new double[4];
+		c.evalBatch(new double[] { 0, 1 }, 2, out, 2, ParametricCurve.INTERLEAVED);
+
+		assertArrayEquals(cp.getPoint(0).getLocation(), new double[] { out[0], out[1] }, 1e-9);
+		assertArrayEquals(cp.getPoint(7).getLocation(), new double[] { out[2], out[3] }, 1e-9);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOutOfRange() throws Exception {
+		ControlPath cp = createControlPath(8);
+		BezierCurve c = new BezierCurve(cp, new GroupIterator("0:n-1", cp.numPoints()));
+		c.evalBatch(new double[] { 1.5 }, 1, new double[2], 2, ParametricCurve.INTERLEAVED);
+	}
+}
@@ -0,0 +1,242 @@
+package com.graphbuilder.curve;
+
+import org.junit.*;
+
+import com.graphbuilder.math.*;
+import com.graphbuilder.math.func.*;
+
+import static org.junit.Assert.*;
+
+
+public class TestExpressionCurve {
+
+	private static ExpressionCurve circle(FuncMap fm) {
+		Expression[] x = { ExpressionTree.parse("r*cos(w*t)"), ExpressionTree.parse("r*sin(w*t)+t^2") };
+		ExpressionCurve c = new ExpressionCurve(x, fm);
+		c.setValue("r", 100);
+		c.setValue("w", 2 * Math.PI);
+		return c;
+	}
+
+	@Test
+	public void testEval() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		ExpressionCurve c = circle(fm);
+
+		assertArrayEquals(new String[] { "r", "w" }, c.getConstantNames());
+		assertEquals(2, c.getNumExpressions());
+
+		double[] p = new double[4];
+
+		for (int i = 0; i <= 10; i++) {
+			double t = i / 10.0;
+			p[3] = t;
+			c.eval(p);
+			assertEquals(100 * Math.cos(2 * Math.PI * t), p[0], 0);
+			assertEquals(100 * Math.sin(2 * Math.PI * t) + t * t, p[1], 0);
+			assertEquals(0, p[2], 0);
+		}
+	}
+
+	@Test
+	public void testAppend() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		ExpressionCurve c = circle(fm);
+		MultiPath mp = new MultiPath(2);
+		mp.setFlatness(0.5);
+		c.appendTo(mp);
+
+		assertTrue(mp.getNumPoints() > 20);
+		assertEquals(MultiPath.MOVE_TO, mp.getType(0));
+
+		for (int i = 0; i < mp.getNumPoints(); i++) {
+			double[] q = mp.get(i);
+			double t = q[2];
+			assertEquals(100 * Math.cos(2 * Math.PI * t), q[0], 1e-9);
+		}
+
+		double[] last = mp.get(mp.getNumPoints() - 1);
+		assertEquals(100, last[0], 1e-9);
+		assertEquals(1, last[1], 1e-9);
+
+		ExpressionCurve unset = new ExpressionCurve(new Expression[] { ExpressionTree.parse("a*t") }, fm);
+
+		try {
+			unset.appendTo(new MultiPath(2));
+			fail();
+		}
+		catch (IllegalArgumentException e) {}
+	}
+
+	@Test
+	public void testDerivatives() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		ExpressionCurve c = circle(fm);
+		double[] p = new double[2];
+		double[] d1 = new double[2];
+		double[] d2 = new double[2];
+		double w = 2 * Math.PI;
+
+		c.evalDerivatives(0.3, p, d1, d2);
+		assertEquals(-100 * w * Math.sin(w * 0.3), d1[0], 1e-9);
+		assertEquals(100 * w * Math.cos(w * 0.3) + 0.6, d1[1], 1e-9);
+		assertEquals(-100 * w * w * Math.cos(w * 0.3), d2[0], 1e-9);
+		assertEquals(-100 * w * w * Math.sin(w * 0.3) + 2, d2[1], 1e-9);
+
+		// a function without a derivative falls back to finite differences
+		fm.setFunction("f", new SinFunction() {});
+		ExpressionCurve g = new ExpressionCurve(new Expression[] { ExpressionTree.parse("f(s)"), ExpressionTree.parse("s") }, "s", fm);
+		g.evalDerivatives(0.5, p, d1, null);
+		assertEquals(Math.cos(0.5), d1[0], 1e-6);
+		assertEquals(1, d1[1], 1e-6);
+	}
+
+	@Test
+	public void testSharedRand() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		ExpressionCurve c = new ExpressionCurve(new Expression[] { ExpressionTree.parse("t+rand()"), ExpressionTree.parse("t+rand()") }, fm);
+		boolean different = false;
+		double[] p = new double[3];
+
+		for (int i = 0; i < 10; i++) {
+			p[2] = i;
+			c.eval(p);
+			different = different || p[0] != p[1];
+		}
+
+		assertTrue(different);
+	}
+
+	@Test
+	public void testHullBounds() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		ExpressionCurve c = circle(fm);
+		double[] min = new double[3];
+		double[] max = new double[3];
+
+		assertTrue(c.getHullBounds(min, max, 3));
+		assertEquals(-100, min[0], 1e-9);
+		assertEquals(100, max[0], 1e-9);
+		assertEquals(-100, min[1], 1e-9);
+		assertEquals(101, max[1], 1e-9);
+		assertEquals(0, min[2], 0);
+		assertEquals(0, max[2], 0);
+
+		MultiPath mp = new MultiPath(2);
+		mp.setClip(new double[] { 200, 200 }, new double[] { 300, 300 });
+		c.appendTo(mp);
+		assertEquals(1, mp.getNumPoints());
+		assertEquals(MultiPath.MOVE_TO, mp.getType(0));
+		assertEquals(100, mp.get(0)[0], 1e-9);
+		assertEquals(1, mp.get(0)[1], 1e-9);
+
+		// no bounds are known for functions that are not default functions
+		fm.setFunction("f", new SinFunction() {});
+		ExpressionCurve g = new ExpressionCurve(new Expression[] { ExpressionTree.parse("f(t)") }, fm);
+		assertFalse(g.getHullBounds(0, 1, min, max, 1));
+	}
+
+	private static ExpressionCurve unitCircle(FuncMap fm) {
+		Expression[] x = { ExpressionTree.parse("cos(t)*r"), ExpressionTree.parse("sin(t)*r") };
+		ExpressionCurve c = new ExpressionCurve(x, fm);
+		c.setValue("r", 1);
+		c.setInterval(0, Math.PI);
+		return c;
+	}
+
+	@Test
+	public void testAppendTransformed() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		ExpressionCurve c = unitCircle(fm);
+
+		MultiPath plain = new MultiPath(2);
+		plain.setFlatness(0.5);
+		c.appendTo(plain);
+
+		MultiPath mp = new MultiPath(2);
+		mp.setFlatness(0.5);
+		c.appendTo(mp, new double[] { 100, 0, 5, 0, 100, 7 });
+
+		// the flatness applies to the transformed curve, a half circle of radius 100
+		assertTrue(mp.getNumPoints() > plain.getNumPoints());
+		assertArrayEquals(new double[] { 105, 7, 0 }, mp.get(0), 1e-9);
+		assertArrayEquals(new double[] { -95, 7, Math.PI }, mp.get(mp.getNumPoints() - 1), 1e-9);
+
+		for (int i = 0; i < mp.getNumPoints(); i++) {
+			double[] q = mp.get(i);
+			assertEquals(100 * Math.cos(q[2]) + 5, q[0], 1e-9);
+			assertEquals(100 * Math.sin(q[2]) + 7, q[1], 1e-9);
+		}
+
+		// the transformed bounds are used for clipping
+		MultiPath clipped = new MultiPath(2);
+		clipped.setClip(new double[] { -200, -200 }, new double[] { -150, -150 });
+		c.appendTo(clipped, new double[] { 100, 0, 5, 0, 100, 7 });
+		assertEquals(1, clipped.getNumPoints());
+	}
+
+	@Test
+	public void testStateChecksum() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		ExpressionCurve c = unitCircle(fm);
+		FlatteningCache cache = new FlatteningCache(1 << 20);
+
+		MultiPath a = cache.get(c, 2, 0.01);
+		assertEquals(1, a.get(0)[0], 1e-9);
+		assertSame(a, cache.get(c, 2, 0.01));
+
+		c.setValue("r", 50);
+		MultiPath b = cache.get(c, 2, 0.01);
+		assertNotSame(a, b);
+		assertEquals(50, b.get(0)[0], 1e-9);
+
+		c.setInterval(Math.PI / 2, Math.PI);
+		MultiPath d = cache.get(c, 2, 0.01);
+		assertNotSame(b, d);
+		assertEquals(50, d.get(0)[1], 1e-9);
+	}
+
+	@Test
+	public void testThreads() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		final ExpressionCurve c = circle(fm);
+		final boolean[] failed = new boolean[1];
+		Thread[] threads = new Thread[4];
+
+		for (int k = 0; k < threads.length; k++) {
+			final double w = k + 1;
+
+			threads[k] = new Thread() {
+				public void run() {
+					double[] p = new double[3];
+					double[] d1 = new double[2];
+
+					for (int i = 0; i < 20000; i++) {
+						double t = (i % 100) / 100.0 * w;
+						p[2] = t;
+						c.evalDerivatives(p, d1, null);
+
+						if (p[0] != 100 * Math.cos(2 * Math.PI * t) || Math.abs(d1[0] + 200 * Math.PI * Math.sin(2 * Math.PI * t)) > 1e-9)
+							failed[0] = true;
+					}
+				}
+			};
+		}
+
+		for (Thread t : threads)
+			t.start();
+
+		for (Thread t : threads)
+			t.join();
+
+		assertFalse(failed[0]);
+	}
+}
@@ -0,0 +1,91 @@
+package com.graphbuilder.curve;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+
+public class TestFlatteningCache {
+
+	@Test
+	public void testHitsAndLevels() throws Exception {
+		ControlPath cp = CurveFixtures.createPath();
+		Curve c = new CubicBSpline(cp, new GroupIterator("0:n-1", cp.numPoints()));
+		FlatteningCache cache = new FlatteningCache(1 << 20);
+
+		assertEquals(1.0, cache.getLevelFlatness(1.0), 0);
+		assertEquals(1.0, cache.getLevelFlatness(1.9), 0);
+		assertEquals(0.25, cache.getLevelFlatness(0.3), 0);
+
+		MultiPath a = cache.get(c, 2, 1.2);
+		MultiPath b = cache.get(c, 2, 1.7);
+		assertSame(a, b);
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1.0, a.getFlatness(), 0);
+
+		MultiPath expected = new MultiPath(2);
+		expected.setFlatness(1.0);
+		c.appendTo(expected);
+		assertEquals(expected.getNumPoints(), a.getNumPoints());
+
+		MultiPath fine = cache.get(c, 2, 0.1);
+		assertNotSame(a, fine);
+		assertTrue(fine.getNumPoints() > a.getNumPoints());
+		assertEquals(2, cache.size());
+
+		MultiPath mp = new MultiPath(2);
+		mp.setFlatness(1.5);
+		cache.appendTo(c, mp);
+		assertEquals(a.getNumPoints(), mp.getNumPoints());
+		assertEquals(MultiPath.MOVE_TO, mp.getType(0));
+		assertEquals(2, cache.getHitCount());
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		ControlPath cp = CurveFixtures.createPath();
+		Curve c = new CubicBSpline(cp, new GroupIterator("0:n-1", cp.numPoints()));
+		FlatteningCache cache = new FlatteningCache(1 << 20);
+
+		MultiPath a = cache.get(c, 2, 1.0);
+		cp.getPoint(2).setLocation(new double[] { 150, 100 });
+		MultiPath b = cache.get(c, 2, 1.0);
+		assertNotSame(a, b);
+		assertEquals(2, cache.getMissCount());
+		assertEquals(1, cache.size());
+
+		assertSame(b, cache.get(c, 2, 1.0));
+		cache.invalidate(c);
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getMemoryUsage());
+		assertNotSame(b, cache.get(c, 2, 1.0));
+	}
+
+	@Test
+	public void testBudget() throws Exception {
+		ControlPath cp = CurveFixtures.createPath();
+		Curve c = new CubicBSpline(cp, new GroupIterator("0:n-1", cp.numPoints()));
+
+		FlatteningCache unbounded = new FlatteningCache(Long.MAX_VALUE);
+		unbounded.get(c, 2, 1.0);
+		long size = unbounded.getMemoryUsage();
+		assertTrue(size > 0);
+
+		FlatteningCache cache = new FlatteningCache(size);
+		cache.get(c, 2, 1.0);
+		assertEquals(size, cache.getMemoryUsage());
+		cache.get(c, 2, 0.01);
+		assertTrue(cache.getMemoryUsage() <= size);
+		assertTrue(cache.getEvictionCount() >= 1);
+
+		cache.get(c, 2, 1.0);
+		assertEquals(1, cache.size());
+		assertEquals(3, cache.getMissCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRatio() throws Exception {
+		new FlatteningCache(0, 1.0);
+	}
+}
@@ -0,0 +1,141 @@
+package com.graphbuilder.curve;
+
+import org.junit.*;
+
+import com.graphbuilder.geom.PointFactory;
+import com.graphbuilder.math.*;
+
+import static org.junit.Assert.*;
+
+
+public class TestGroupIterator {
+
+	@Test
+	public void testIndexArray() throws Exception {
+		GroupIterator gi = new GroupIterator("1:4,8:n/2,7:3,5", 21);
+		assertEquals(14, gi.getGroupSize());
+
+		int[] arr = new int[gi.getGroupSize()];
+		gi.copyIndexArray(arr);
+
+		int k = 0;
+		while (gi.hasNext())
+			assertEquals(arr[k++], gi.next());
+
+		assertEquals(arr.length, k);
+		assertArrayEquals(new int[] { 1, 2, 3, 4, 8, 9, 10, 11, 7, 6, 5, 4, 3, 5 }, arr);
+	}
+
+	@Test
+	public void testGroupChanged() throws Exception {
+		GroupIterator gi = new GroupIterator(new int[] { 1, 3 }) {
+			{
+				getGroupSize();
+				group[1] = 5;
+				groupChanged();
+			}
+
+			protected boolean cachesIndexArray() {
+				return true;
+			}
+		};
+
+		assertEquals(5, gi.getGroupSize());
+
+		GroupIterator gj = new GroupIterator(new int[] { 1, 3 }) {
+			{
+				getGroupSize();
+				group = new int[] { 4, 1 };
+			}
+
+			protected boolean cachesIndexArray() {
+				return true;
+			}
+		};
+
+		int[] arr = new int[4];
+		gj.copyIndexArray(arr);
+		assertArrayEquals(new int[] { 4, 3, 2, 1 }, arr);
+	}
+
+	@Test
+	public void testSubclass() throws Exception {
+		ControlPath cp = new ControlPath();
+		for (int i = 0; i < 6; i++)
+			cp.addPoint(PointFactory.create(i, i * i));
+
+		// next() is overridden and the group is modified without calling groupChanged()
+		GroupIterator gi = new GroupIterator(new int[] { 1, 3 }) {
+			public int next() {
+				return 6 - super.next();
+			}
+		};
+
+		assertEquals(3, gi.getGroupSize());
+		gi.group[1] = 2;
+		gi.set(2, 0);
+
+		int[] arr = new int[2];
+		gi.copyIndexArray(arr);
+		assertArrayEquals(new int[] { 5, 4 }, arr);
+		assertEquals(2, gi.index_i());
+
+		MultiPath mp = new MultiPath(2);
+		new Polyline(cp, gi).appendTo(mp);
+		assertEquals(2, mp.getNumPoints());
+		assertArrayEquals(new double[] { 5, 25 }, mp.get(0), 0);
+		assertArrayEquals(new double[] { 4, 16 }, mp.get(1), 0);
+	}
+
+	/**
+	Evaluates the expression the way the control-string parser did before it used templates.
+	*/
+	private static int eval(String s, int n) {
+		Expression x = ExpressionTree.parse(s);
+		VarMap vm = new VarMap();
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+
+		String[] v = x.getVariableNames();
+		if (v.length == 1)
+			vm.setValue(v[0], n);
+
+		return (int) Math.round(x.eval(vm, fm));
+	}
+
+	@Test
+	public void testTemplate() throws Exception {
+		String[] exprs = { "0", "n-1", "n/2", "(n+1)/3", "-n+5", "2*(n-1)-n/1", "k*3", "7/2", "-7/2",
+			"sqrt(n)", "n/2-1", "(n-1)/-4", "n^2", "max(n,10)", "1e3*n" };
+
+		for (String e : exprs) {
+			for (int n = -9; n <= 40; n++) {
+				int[] group = GroupIterator.parseControlString(e + ":" + e, n);
+				assertEquals(e + " " + n, eval(e, n), group[0]);
+				assertEquals(e + " " + n, eval(e, n), group[1]);
+			}
+		}
+
+		assertArrayEquals(new int[] { 0, 0, 0, 9, 9, 9 }, GroupIterator.parseControlString("0,0:n-1,n-1", 10));
+	}
+
+	@Test
+	public void testParseErrors() throws Exception {
+		try {
+			GroupIterator.parseControlString("0:n-1,n+m", 10);
+			fail();
+		}
+		catch (ControlStringParseException e) {
+			assertEquals(6, e.getFromIndex());
+			assertEquals(9, e.getToIndex());
+		}
+
+		try {
+			GroupIterator.parseControlString("0:(n", 10);
+			fail();
+		}
+		catch (ControlStringParseException e) {
+			assertEquals("round brackets do not balance", e.getDescription());
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package com.graphbuilder.curve;
+
+import java.awt.geom.Rectangle2D;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+
+public class TestKernels {
+
+	@Test
+	public void testCubic() throws Exception {
+		Random r = new Random(1);
+		int count = 37;
+		double[] t = new double[count];
+		for (int i = 0; i < count; i++)
+			t[i] = r.nextDouble();
+
+		for (int stride = 1; stride <= 3; stride += 2) {
+			double[] out = new double[stride * count + 2];
+			Arrays.fill(out, -7);
+			Kernels.cubic(t, count, 1, -2, 3, 0.5, new double[count], out, 1, stride);
+
+			for (int i = 0; i < count; i++) {
+				double s = t[i];
+				assertEquals(1 - 2 * s + 3 * s * s + 0.5 * s * s * s, out[1 + stride * i], 1e-12);
+			}
+
+			checkUntouched(out, count, 1, stride);
+		}
+	}
+
+	@Test
+	public void testCombine() throws Exception {
+		Random r = new Random(2);
+		int count = 29;
+		int n = 5;
+		double[] w = new double[n * count];
+		double[] c = new double[n];
+		for (int i = 0; i < w.length; i++)
+			w[i] = r.nextDouble();
+		for (int i = 0; i < n; i++)
+			c[i] = r.nextDouble() * 10 - 5;
+
+		for (int stride = 1; stride <= 2; stride++) {
+			double[] out = new double[stride * count + 3];
+			Arrays.fill(out, -7);
+			Kernels.combine(w, count, c, n, new double[count], out, 2, stride);
+
+			for (int i = 0; i < count; i++) {
+				double d = 0;
+				for (int k = 0; k < n; k++)
+					d += c[k] * w[k * count + i];
+				assertEquals(d, out[2 + stride * i], 1e-12);
+			}
+
+			checkUntouched(out, count, 2, stride);
+		}
+	}
+
+	/**
+	Compares the Vector API loops of the Java 17 version of Kernels with the scalar loops.  The results must
+	be identical for every count, including the counts that leave a scalar tail.  The test is skipped if
+	VectorKernels is not on the class path (built with an older JDK).
+	*/
+	@Test
+	public void testVectorKernels() throws Exception {
+		Class<?> vk;
+		try {
+			vk = Class.forName("com.graphbuilder.curve.VectorKernels");
+		}
+		catch (ClassNotFoundException e) {
+			vk = null;
+		}
+		Assume.assumeNotNull(vk);
+
+		Method cubic = vk.getDeclaredMethod("cubic", double[].class, int.class, double.class, double.class, double.class, double.class, double[].class, int.class);
+		Method combine = vk.getDeclaredMethod("combine", double[].class, int.class, double[].class, int.class, double[].class, int.class);
+		cubic.setAccessible(true);
+		combine.setAccessible(true);
+
+		Random r = new Random(3);
+		int n = 4;
+
+		for (int count = 0; count <= 40; count++) {
+			double[] t = new double[count];
+			double[] w = new double[n * count];
+			double[] c = new double[n];
+			for (int i = 0; i < count; i++)
+				t[i] = r.nextDouble();
+			for (int i = 0; i < w.length; i++)
+				w[i] = r.nextDouble() * 2 - 1;
+			for (int i = 0; i < n; i++)
+				c[i] = r.nextDouble() * 10 - 5;
+
+			double[] expected = new double[count + 3];
+			double[] actual = new double[count + 3];
+			Arrays.fill(expected, -7);
+			Arrays.fill(actual, -7);
+			Kernels.cubic(t, count, 0.3, -1.7, 2.9, 1e3, null, expected, 3, 1);
+			cubic.invoke(null, t, count, 0.3, -1.7, 2.9, 1e3, actual, 3);
+			assertArrayEquals(expected, actual, 0);
+
+			Arrays.fill(expected, -7);
+			Arrays.fill(actual, -7);
+			Kernels.combine(w, count, c, n, null, expected, 3, 1);
+			combine.invoke(null, w, count, c, n, actual, 3);
+			assertArrayEquals(expected, actual, 0);
+		}
+	}
+
+	/**
+	Checks that the elements of the array that are not results still have the fill value.
+	*/
+	private static void checkUntouched(double[] out, int count, int offset, int stride) {
+		for (int k = 0; k < out.length; k++) {
+			int i = (k - offset) / stride;
+			boolean result = k >= offset && (k - offset) % stride == 0 && i < count;
+
+			if (!result)
+				assertEquals(-7, out[k], 0);
+		}
+	}
+
+	@Test
+	public void testBounds() throws Exception {
+		ShapeMultiPath mp = new ShapeMultiPath();
+		mp.moveTo(new double[] { -100, -100 }); // ignored, not followed by LINE_TO
+		mp.moveTo(new double[] { 1, 5 });
+		mp.lineTo(new double[] { 3, -2 });
+		mp.lineTo(new double[] { -4, 2 });
+		mp.moveTo(new double[] { 100, 100 }); // ignored, last point
+
+		double[] min = new double[2];
+		double[] max = new double[2];
+		assertTrue(mp.getBounds(min, max));
+		assertArrayEquals(new double[] { -4, -2 }, min, 0);
+		assertArrayEquals(new double[] { 3, 5 }, max, 0);
+		assertEquals(new Rectangle2D.Double(-4, -2, 7, 7), mp.getBounds2D());
+
+		assertFalse(new MultiPath(2).getBounds(min, max));
+		assertNull(new ShapeMultiPath().getBounds2D());
+	}
+}
@@ -1,5 +1,7 @@
 package com.graphbuilder.curve;
 
+import java.awt.geom.AffineTransform;
+
 import org.junit.*;
 
 import com.graphbuilder.geom.PointFactory;
@@ -37,4 +39,96 @@ public class TestShapeMultiPath {
 		assertTrue(smp.contains(100, 100));
 		assertTrue(smp.contains(289, 11));
 	}
+
+	@Test
+	public void testAppendTransformed() throws Exception {
+		ControlPath cp = new ControlPath();
+		cp.addPoint(PointFactory.create(1, 1));
+		cp.addPoint(PointFactory.create(1, 20));
+		cp.addPoint(PointFactory.create(29, 20));
+		cp.addPoint(PointFactory.create(29, 1));
+		BezierCurve c = new BezierCurve(cp, new GroupIterator("0:n-1", cp.numPoints()));
+
+		AffineTransform at = new AffineTransform();
+		at.translate(50, -10);
+		at.rotate(0.3);
+		at.scale(10, 10);
+
+		ShapeMultiPath smp = new ShapeMultiPath();
+		c.appendTo(smp, at);
+
+		ShapeMultiPath plain = new ShapeMultiPath();
+		c.appendTo(plain);
+
+		// flatness applies after the transform, so more points are required
+		assertTrue(smp.getNumPoints() > plain.getNumPoints());
+		assertEquals(1, cp.getPoint(0).getLocation()[0], 0);
+
+		for (int i = 0; i < smp.getNumPoints(); i++) {
+			double[] p = smp.get(i);
+			double[] q = new double[3];
+			q[2] = p[2];
+			c.eval(q);
+			at.transform(q, 0, q, 0, 1);
+			assertEquals(q[0], p[0], 1e-9);
+			assertEquals(q[1], p[1], 1e-9);
+		}
+	}
+
+	@Test
+	public void testAppendScaled() throws Exception {
+		ControlPath cp = new ControlPath();
+		cp.addPoint(PointFactory.create(500, 500)); // not in the group
+		cp.addPoint(PointFactory.create(0, 0));
+		cp.addPoint(PointFactory.create(50, 200));
+		cp.addPoint(PointFactory.create(150, -100));
+		cp.addPoint(PointFactory.create(200, 100));
+		cp.addPoint(PointFactory.create(300, 0));
+		GroupIterator gi = new GroupIterator("1:5", cp.numPoints());
+
+		NURBSpline nurbs = new NURBSpline(cp, gi);
+		nurbs.setWeightVector(new ValueVector(new double[] { 1, 2, 0.5, 1, 3 }, 5));
+
+		Curve[] curves = {
+			new BezierCurve(cp, gi), new BSpline(cp, gi), nurbs, new CubicBSpline(cp, gi), new CatmullRomSpline(cp, gi),
+			new CardinalSpline(cp, gi), new NaturalCubicSpline(cp, gi), new LagrangeCurve(cp, gi), new Polyline(cp, gi)
+		};
+
+		// scaling by 2 is exact, so with twice the flatness the same points are generated
+		double[] matrix = { 2, 0, 0, 0, 2, 0 };
+
+		for (Curve c : curves) {
+			String msg = c.getClass().getName();
+			MultiPath plain = new MultiPath(2);
+			plain.setFlatness(0.5);
+			c.appendTo(plain);
+
+			MultiPath scaled = new MultiPath(2);
+			scaled.setFlatness(1.0);
+			c.appendTo(scaled, matrix);
+
+			assertEquals(msg, plain.getNumPoints(), scaled.getNumPoints());
+
+			for (int i = 0; i < plain.getNumPoints(); i++) {
+				assertEquals(msg, 2 * plain.get(i)[0], scaled.get(i)[0], 0);
+				assertEquals(msg, 2 * plain.get(i)[1], scaled.get(i)[1], 0);
+			}
+		}
+
+		assertEquals(500, cp.getPoint(0).getLocation()[0], 0);
+		assertEquals(50, cp.getPoint(2).getLocation()[0], 0);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testAppendTransformedUnsupported() throws Exception {
+		ControlPath cp = new ControlPath();
+		cp.addPoint(PointFactory.create(1, 1));
+		Curve c = new Curve(cp, new GroupIterator("0", 1)) {
+			public void appendTo(MultiPath mp) {
+				mp.moveTo(new double[] { 0, 0 });
+			}
+		};
+
+		c.appendTo(new MultiPath(2), new double[] { 1, 0, 0, 0, 1, 0 });
+	}
 }
@@ -0,0 +1,276 @@
+package com.graphbuilder.math;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.*;
+
+import com.graphbuilder.math.func.Function;
+import com.graphbuilder.math.func.SinFunction;
+
+import static org.junit.Assert.*;
+
+
+public class TestBoundExpression {
+
+	@Test
+	public void testEval() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+
+		String[] exprs = { "x+y*z", "-x^2-(y-z)/2", "-sin(x)*max(y,z,1)+sum(x,y)", "pi()*-y" };
+
+		for (String s : exprs) {
+			Expression x = ExpressionTree.parse(s);
+			BoundExpression b = BoundExpression.bind(x, new String[] { "z", "y", "x" }, fm);
+
+			for (int i = 0; i < 10; i++) {
+				VarMap vm = new VarMap();
+				vm.setValue("x", i * 0.7 - 3);
+				vm.setValue("y", i * 1.1);
+				vm.setValue("z", 2 - i);
+
+				double expected = x.eval(vm, fm);
+				assertEquals(s, expected, b.eval(new double[] { 2 - i, i * 1.1, i * 0.7 - 3 }), 0);
+				assertEquals(s, expected, b.eval(vm), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testColumns() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+
+		String[] exprs = { "x+y*z", "-x^2-(y-z)/2", "-sin(x)*max(y,z,1)+sum(x,y)-log(abs(x)+1,2)", "pi()*-y", "3", "-z" };
+		int rows = 3 * BoundExpression.BLOCK_SIZE + 17;
+		double[][] columns = new double[3][rows];
+
+		for (int i = 0; i < rows; i++) {
+			columns[0][i] = 2 - i;
+			columns[1][i] = i * 1.1;
+			columns[2][i] = i * 0.7 - 3;
+		}
+
+		for (String s : exprs) {
+			BoundExpression b = BoundExpression.bind(ExpressionTree.parse(s), new String[] { "z", "y", "x" }, fm);
+			double[] results = new double[rows];
+			b.eval(columns, results);
+
+			for (int i = 0; i < rows; i++)
+				assertEquals(s, b.eval(new double[] { columns[0][i], columns[1][i], columns[2][i] }), results[i], 0);
+
+			double[] part = new double[rows];
+			b.eval(columns, part, 5, 300);
+			assertEquals(0, part[4], 0);
+			assertEquals(results[5], part[5], 0);
+			assertEquals(results[304], part[304], 0);
+			assertEquals(0, part[305], 0);
+		}
+
+		BoundExpression b = BoundExpression.bind(ExpressionTree.parse("x"), null);
+
+		try {
+			b.eval(new double[1][10], new double[11]);
+			fail();
+		}
+		catch (IllegalArgumentException e) {}
+
+		try {
+			b.eval(new double[0][], new double[1]);
+			fail();
+		}
+		catch (IllegalArgumentException e) {}
+	}
+
+	@Test
+	public void testParallel() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+
+		int rows = 5 * BoundExpression.PARALLEL_THRESHOLD + 3;
+		double[][] columns = new double[2][rows];
+
+		for (int i = 0; i < rows; i++) {
+			columns[0][i] = i * 0.01;
+			columns[1][i] = Math.sqrt(i);
+		}
+
+		BoundExpression b = BoundExpression.bind(ExpressionTree.parse("x*rand()-sin(y)+combin(7,3)*-rand()"), new String[] { "x", "y" }, fm);
+
+		double[] expected = new double[rows];
+		b.eval(columns, expected, 0, rows, 42);
+
+		double[] split = new double[rows];
+		b.eval(columns, split, 0, 1000, 42);
+		b.eval(columns, split, 1000, rows - 1000, 42);
+		assertArrayEquals(expected, split, 0);
+
+		for (int threads = 1; threads <= 4; threads++) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			double[] results = new double[rows];
+			b.evalParallel(columns, results, 42, pool);
+			pool.shutdown();
+			assertArrayEquals(expected, results, 0);
+		}
+
+		double[] other = new double[rows];
+		b.eval(columns, other, 0, rows, 43);
+		assertFalse(other[10] == expected[10]);
+
+		BoundExpression r = BoundExpression.bind(ExpressionTree.parse("rand()"), fm);
+		double[] values = new double[rows];
+		r.eval(new double[0][], values, 0, rows, 7);
+		double sum = 0;
+
+		for (int i = 0; i < rows; i++) {
+			assertTrue(values[i] >= 0 && values[i] < 1);
+			sum += values[i];
+		}
+
+		assertEquals(0.5, sum / rows, 0.01);
+	}
+
+	@Test
+	public void testBounds() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+
+		String[] exprs = { "x+y*z", "-x^2-(y-z)/2", "x/y", "x^y", "(x+2)^y", "x^3-x^-2", "y^0.5",
+			"sin(x)*cos(y)-tan(z)", "-sin(3*x+y)", "asin(x)+acos(y)+atan(z)", "sinh(x)-cosh(y)*tanh(z)",
+			"asinh(x)+acosh(y)+atanh(z)", "exp(x)+ln(y)+lg(z)+log(x)+log(x,y)", "sqrt(y)", "abs(x)-sign(y)",
+			"ceil(x)+floor(y)+round(z)", "fact(y)+combin(y,z)", "min(x,y,z)*max(x,-y)", "sum(x,y,z)-avg(x,z)",
+			"mod(x,y)", "mod(z,x)", "pow(x,2)+pi()*e()", "x*rand()", "-rand()" };
+
+		double[][] widths = { { 0, 0.1, 0.1 }, { 0.5, 2, 0.01 }, { 3, 0.3, 7 }, { 20, 40, 1 } };
+		Random rnd = new Random(7);
+		double[] min = new double[3];
+		double[] max = new double[3];
+		double[] bounds = new double[2];
+		double[] v = new double[3];
+
+		for (String s : exprs) {
+			BoundExpression b = BoundExpression.bind(ExpressionTree.parse(s), new String[] { "x", "y", "z" }, fm);
+			int known = 0;
+
+			for (int trial = 0; trial < 400; trial++) {
+				double[] w = widths[trial % widths.length];
+
+				for (int j = 0; j < 3; j++) {
+					min[j] = (rnd.nextDouble() - 0.5) * 4 * (j + 1);
+					max[j] = min[j] + w[j] * rnd.nextDouble();
+				}
+
+				b.evalBounds(min, max, bounds);
+
+				if (Double.isNaN(bounds[0])) {
+					assertTrue(s, Double.isNaN(bounds[1]));
+					continue;
+				}
+
+				known++;
+
+				for (int i = 0; i < 50; i++) {
+					for (int j = 0; j < 3; j++)
+						v[j] = (i == 0 ? min[j] : i == 1 ? max[j] : min[j] + (max[j] - min[j]) * rnd.nextDouble());
+
+					double d = b.eval(v);
+					assertTrue(s + " = " + d + " not in [" + bounds[0] + ", " + bounds[1] + "]", bounds[0] <= d && d <= bounds[1]);
+				}
+			}
+
+			assertTrue(s, known > 0);
+		}
+
+		BoundExpression b = BoundExpression.bind(ExpressionTree.parse("sin(x)"), fm);
+		b.evalBounds(new double[] { 0 }, new double[] { Math.PI }, bounds);
+		assertEquals(0, bounds[0], 1e-15);
+		assertEquals(1, bounds[1], 0);
+
+		b.evalBounds(new double[] { 0.1 }, new double[] { 0.2 }, bounds);
+		assertEquals(Math.sin(0.1), bounds[0], 0);
+		assertEquals(Math.sin(0.2), bounds[1], 0);
+
+		b = BoundExpression.bind(ExpressionTree.parse("x^2-1"), null);
+		b.evalBounds(new double[] { -1 }, new double[] { 2 }, bounds);
+		assertEquals(-1, bounds[0], 0);
+		assertEquals(3, bounds[1], 0);
+
+		b = BoundExpression.bind(ExpressionTree.parse("1/x"), null);
+		b.evalBounds(new double[] { -1 }, new double[] { 1 }, bounds);
+		assertEquals(Double.NEGATIVE_INFINITY, bounds[0], 0);
+		assertEquals(Double.POSITIVE_INFINITY, bounds[1], 0);
+
+		// expressions that are NaN somewhere in [-1, 1], where they are NaN
+		String[] undefined = { "sqrt(x)", "sqrt(x)/x", "exp(sqrt(x)/x)", "atan(sqrt(x)/x)", "x*(1/x)", "1/x-1/x",
+			"sum(1/x,-1/x)", "pow(1+x*x,1/x)" };
+		double[] at = { -0.5, -0.5, -0.5, -0.5, 0, 0, 0, 0 };
+
+		for (int i = 0; i < undefined.length; i++) {
+			String s = undefined[i];
+			b = BoundExpression.bind(ExpressionTree.parse(s), fm);
+			assertTrue(s, Double.isNaN(b.eval(new double[] { at[i] })));
+			b.evalBounds(new double[] { -1 }, new double[] { 1 }, bounds);
+			assertTrue(s, Double.isNaN(bounds[0]));
+			assertTrue(s, Double.isNaN(bounds[1]));
+		}
+
+		fm.setFunction("f", new SinFunction() {});
+		b = BoundExpression.bind(ExpressionTree.parse("f(x)"), fm);
+		b.evalBounds(new double[] { 0 }, new double[] { 1 }, bounds);
+		assertTrue(Double.isNaN(bounds[0]));
+
+		try {
+			b.evalBounds(new double[] { 1 }, new double[] { 0 }, bounds);
+			fail();
+		}
+		catch (IllegalArgumentException e) {}
+	}
+
+	@Test
+	public void testRecursive() throws Exception {
+		final FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		final BoundExpression[] x = new BoundExpression[1];
+
+		// f(n) evaluates the bound expression that contains it, and a tree that uses the same argument stack
+		fm.setFunction("f", new Function() {
+			public double of(double[] d, int numParam) {
+				if (d[0] <= 0) return 0;
+				return x[0].eval(new double[] { d[0] });
+			}
+
+			public boolean acceptNumParam(int numParam) {
+				return numParam == 1;
+			}
+		});
+
+		final Expression tree = ExpressionTree.parse("sum(n, f(n-1))");
+		x[0] = BoundExpression.bind(tree, fm);
+		assertEquals(21, x[0].eval(new double[] { 6 }), 0);
+
+		VarMap vm = new VarMap();
+		vm.setValue("n", 6);
+		assertEquals(21, tree.eval(vm, fm), 0);
+
+		double[][] columns = { { 6, 3, 0 } };
+		double[] results = new double[3];
+		x[0].eval(columns, results);
+		assertArrayEquals(new double[] { 21, 6, 0 }, results, 0);
+	}
+
+	@Test
+	public void testSlots() throws Exception {
+		BoundExpression b = BoundExpression.bind(ExpressionTree.parse("b*2+a"), null);
+		assertArrayEquals(new String[] { "b", "a" }, b.getVariableNames());
+		assertEquals(0, b.getSlot("b"));
+		assertEquals(1, b.getSlot("a"));
+		assertEquals(-1, b.getSlot("c"));
+		assertEquals(7, b.eval(new double[] { 3, 1 }), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingFuncMap() throws Exception {
+		BoundExpression.bind(ExpressionTree.parse("sin(x)"), null);
+	}
+}
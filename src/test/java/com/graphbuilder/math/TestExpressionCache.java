@@ -0,0 +1,109 @@
+package com.graphbuilder.math;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+
+public class TestExpressionCache {
+
+	@Test
+	public void testParse() throws Exception {
+		ExpressionCache cache = new ExpressionCache(10);
+		String s = "-x^2+f(y, -g(1.5), z)/3-w";
+
+		Expression a = cache.parse(s);
+		Expression b = cache.parse(s);
+
+		assertNotSame(a, b);
+		assertEquals(ExpressionTree.parse(s).toString(), a.toString());
+		assertEquals(a.toString(), b.toString());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.size());
+
+		// modifying a returned tree does not affect the cache
+		((OpNode) a).setRightChild(new ValNode(7));
+		assertEquals(b.toString(), cache.parse(s).toString());
+
+		assertNull(cache.parse("  "));
+		assertEquals(1, cache.size());
+
+		try {
+			cache.parse("x+");
+			fail();
+		}
+		catch (ExpressionParseException e) {}
+
+		assertEquals(1, cache.size());
+		assertTrue(cache.getMemoryUsage() > 0);
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getMemoryUsage());
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		ExpressionCache cache = new ExpressionCache(2);
+		cache.parse("a");
+		cache.parse("b");
+		cache.parse("a");
+		cache.parse("c");
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+
+		cache.parse("a");
+		assertEquals(2, cache.getHitCount());
+		cache.parse("b");
+		assertEquals(2, cache.getHitCount());
+
+		ExpressionCache small = new ExpressionCache(100, 1000);
+
+		for (int i = 0; i < 50; i++)
+			small.parse("x" + i + "*sin(y)+z");
+
+		assertTrue(small.getMemoryUsage() <= 1000);
+		assertTrue(small.size() < 50);
+		assertEquals(50 - small.size(), small.getEvictionCount());
+	}
+
+	@Test
+	public void testThreads() throws Exception {
+		final ExpressionCache cache = new ExpressionCache(16);
+		final FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		final boolean[] ok = { true };
+		Thread[] threads = new Thread[4];
+
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < 2000; i++) {
+						int k = i % 20;
+						VarMap vm = new VarMap();
+						vm.setValue("x", k);
+						double d = cache.parse("x*" + k + "+max(x, 1)").eval(vm, fm);
+
+						if (d != k * k + Math.max(k, 1)) {
+							synchronized (ok) {
+								ok[0] = false;
+							}
+						}
+					}
+				}
+			};
+		}
+
+		for (Thread t : threads)
+			t.start();
+
+		for (Thread t : threads)
+			t.join();
+
+		assertTrue(ok[0]);
+		assertEquals(8000, cache.getHitCount() + cache.getMissCount());
+		assertEquals(16, cache.size());
+	}
+}
@@ -0,0 +1,78 @@
+package com.graphbuilder.math;
+
+import org.junit.*;
+
+import com.graphbuilder.math.func.Function;
+
+import static org.junit.Assert.*;
+
+
+public class TestExpressionCompiler {
+
+	private static final String[] EXPRESSIONS = {
+		"1", "-x", "x+y*z", "(x-y)/z", "x^2+y^-0.5", "-sin(x)*cos(y)+tan(z/7)", "sqrt(abs(y))", "exp(x)-ln(z)",
+		"log(z)+lg(z)+log(z,3)", "ceil(y)+floor(-y)", "pow(z,x)", "mod(z*11,3)", "e()*pi()", "asin(x/4)+acos(x/4)+atan(y)",
+		"sinh(x)+cosh(y)+tanh(z)+asinh(x)+acosh(z)+atanh(x/4)", "min(x,y,z)-max(x,y)+max()+min()", "avg(x,y,z)+sum(x,y,z)",
+		"round(y*3)+sign(-y)+fact(z)+combin(6,2)", "-pi()-2*-x", "x*1e300*1e300"
+	};
+
+	@Test
+	public void testEval() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		String[] names = { "x", "y", "z" };
+
+		for (String s : EXPRESSIONS) {
+			Expression x = ExpressionTree.parse(s);
+			Evaluator e = ExpressionCompiler.compile(x, names, fm);
+
+			for (int i = 0; i < 20; i++) {
+				double[] v = { i * 0.2 - 2, i * 1.3 - 9.1, i * 0.5 + 1 };
+				VarMap vm = new VarMap();
+				vm.setValue("x", v[0]);
+				vm.setValue("y", v[1]);
+				vm.setValue("z", v[2]);
+
+				double expected = x.eval(vm, fm);
+				assertEquals(s, Double.doubleToLongBits(expected), Double.doubleToLongBits(e.eval(v)));
+			}
+		}
+	}
+
+	@Test
+	public void testUserFunction() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		fm.setFunction("sin", new Function() {
+			public double of(double[] d, int numParam) {
+				return d[0] + 100;
+			}
+
+			public boolean acceptNumParam(int numParam) {
+				return numParam == 1;
+			}
+		});
+
+		Expression x = ExpressionTree.parse("sin(a)*2");
+		Evaluator e = ExpressionCompiler.compile(x, fm);
+		assertEquals(202, e.eval(new double[] { 1 }), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnboundVariable() throws Exception {
+		ExpressionCompiler.compile(ExpressionTree.parse("a+b"), new String[] { "a" }, null);
+	}
+
+	@Test
+	public void testLarge() throws Exception {
+		StringBuffer sb = new StringBuffer("0");
+		for (int i = 0; i < 1000; i++)
+			sb.append("+x*" + i);
+
+		Expression x = ExpressionTree.parse(sb.toString());
+		VarMap vm = new VarMap();
+		vm.setValue("x", 0.5);
+
+		assertEquals(x.eval(vm, null), ExpressionCompiler.compile(x, null).eval(new double[] { 0.5 }), 0);
+	}
+}
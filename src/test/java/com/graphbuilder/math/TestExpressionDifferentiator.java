@@ -0,0 +1,94 @@
+package com.graphbuilder.math;
+
+import com.graphbuilder.math.func.*;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+
+public class TestExpressionDifferentiator {
+
+	private static double eval(Expression x, FuncMap fm, double a, double b) {
+		VarMap vm = new VarMap();
+		vm.setValue("x", a);
+		vm.setValue("y", b);
+		return x.eval(vm, fm);
+	}
+
+	@Test
+	public void testDerivatives() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+
+		String[] exprs = { "3*x^2-2*x+7", "x*y/(1+x)", "-x^y", "y^x", "x^x", "2^-x", "sin(x)*cos(y*x)", "-tan(x/4)",
+			"asin(x/3)+acos(x/4)+atan(x)", "sinh(x)-cosh(x)+tanh(x)", "asinh(x)+acosh(x+2)+atanh(x/4)",
+			"sqrt(x)+exp(-x)+ln(x)+lg(x)+log(x)", "log(x, y)+log(y+1, x+2)", "abs(x-1)", "pow(x, 3)+pow(y, x)",
+			"sum(x, x^2, y)+avg(x, 2*x)", "mod(x*y, y)+mod(x*y, x+2)", "floor(x)*y+round(x)+max(y, 1)", "-f(y)*x" };
+
+		fm.setFunction("f", new SinFunction() {});
+
+		for (String s : exprs) {
+			Expression x = ExpressionTree.parse(s);
+			Expression dx = ExpressionDifferentiator.differentiate(x, "x", fm);
+
+			for (int i = 1; i < 8; i++) {
+				double a = 0.37 * i + 0.11;
+				double b = 0.53 * i;
+				double h = 1e-6;
+				double expected = (eval(x, fm, a + h, b) - eval(x, fm, a - h, b)) / (2 * h);
+				assertEquals(s + " -> " + dx, expected, eval(dx, fm, a, b), 1e-5 * Math.max(1, Math.abs(expected)));
+			}
+		}
+	}
+
+	@Test
+	public void testSimplified() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+
+		assertEquals("(3.0*(2.0*x))", ExpressionDifferentiator.differentiate(ExpressionTree.parse("3*x^2+y"), "x", fm).toString());
+		assertEquals("0.0", ExpressionDifferentiator.differentiate(ExpressionTree.parse("y*sin(y)"), "x", fm).toString());
+		assertEquals("(-1.0)", "(" + ExpressionDifferentiator.differentiate(ExpressionTree.parse("-x"), "x", null) + ")");
+		assertEquals("cos(x)", ExpressionDifferentiator.differentiate(ExpressionTree.parse("sin(x)"), "x", fm).toString());
+	}
+
+	@Test
+	public void testNegatedStepFunctions() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+
+		Expression dx = ExpressionDifferentiator.differentiate(ExpressionTree.parse("-floor(x)"), "x", fm);
+		assertEquals(0, eval(dx, fm, 1.5, 0), 0);
+
+		dx = ExpressionDifferentiator.differentiate(ExpressionTree.parse("-sign(x)+x"), "x", fm);
+		assertEquals(1, eval(dx, fm, 1.5, 0), 0);
+		assertEquals(1, eval(dx, fm, -2.5, 0), 0);
+	}
+
+	@Test
+	public void testErrors() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		fm.setFunction("f", new SinFunction() {});
+
+		String[] exprs = { "max(x, 1)", "f(x)", "rand()*x+min(x)" };
+
+		for (String s : exprs) {
+			try {
+				ExpressionDifferentiator.differentiate(ExpressionTree.parse(s), "x", fm);
+				fail(s);
+			}
+			catch (IllegalArgumentException e) {}
+		}
+
+		FuncMap small = new FuncMap();
+		small.setFunction("sin", new SinFunction());
+
+		try {
+			ExpressionDifferentiator.differentiate(ExpressionTree.parse("sin(x)"), "x", small);
+			fail();
+		}
+		catch (IllegalArgumentException e) {}
+	}
+}
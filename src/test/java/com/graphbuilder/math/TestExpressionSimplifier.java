@@ -0,0 +1,80 @@
+package com.graphbuilder.math;
+
+import com.graphbuilder.math.func.*;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+
+public class TestExpressionSimplifier {
+
+	private static String simplify(String s, FuncMap f) {
+		return ExpressionSimplifier.simplify(ExpressionTree.parse(s), f).toString();
+	}
+
+	@Test
+	public void testSimplify() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+
+		assertEquals("(16.0*x)", simplify("2^4*x + 0", fm));
+		assertEquals("x", simplify("x*1/1-0+0", fm));
+		assertEquals("(x*x)", simplify("x^2", fm));
+		assertEquals("1.0", simplify("sin(x)^0", fm));
+		assertEquals("(-x)", simplify("x*-1", fm));
+		assertEquals("(x-y)", simplify("x+-y", fm));
+		assertEquals("(x+2.0)", simplify("x--2", fm));
+		assertEquals("(x/y)", simplify("-x/-y", fm));
+		assertEquals(String.valueOf(-Math.PI), simplify("-pi()", fm));
+		assertEquals("(x*" + Math.E * 2 + ")", simplify("x*(e()*2)", fm));
+		assertEquals("(x+rand())", simplify("x+rand()", fm));
+		assertEquals("(x+pi())", simplify("x+pi()", null));
+	}
+
+	@Test
+	public void testUserFunctions() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.setFunction("pi", new RandFunction());
+		fm.setFunction("f", new SinFunction() {});
+		assertEquals("(pi()+f(1.0))", simplify("pi()+f(1)", fm));
+	}
+
+	@Test
+	public void testEval() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+
+		String[] exprs = { "x^2*y^1+3*4-x/-1", "-x*-y+(2-2)*z", "max(x,y,2^3)-combin(5,2)*-z", "-x^-2/(y+0)", "log(x^2,2)-abs(-3)" };
+
+		for (String s : exprs) {
+			Expression x = ExpressionTree.parse(s);
+			String before = x.toString();
+			Expression y = ExpressionSimplifier.simplify(x, fm);
+			assertEquals(before, x.toString());
+
+			for (int i = 0; i < 10; i++) {
+				VarMap vm = new VarMap();
+				vm.setValue("x", i * 0.7 - 3);
+				vm.setValue("y", i * 1.1 + 0.5);
+				vm.setValue("z", 2 - i);
+				assertEquals(s, x.eval(vm, fm), y.eval(vm, fm), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testErrors() throws Exception {
+		try {
+			ExpressionSimplifier.simplify(null);
+			fail();
+		}
+		catch (IllegalArgumentException e) {}
+
+		try {
+			simplify("x+g(1)", new FuncMap());
+			fail();
+		}
+		catch (RuntimeException e) {}
+	}
+}
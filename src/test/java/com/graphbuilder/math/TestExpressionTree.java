@@ -0,0 +1,91 @@
+package com.graphbuilder.math;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+
+public class TestExpressionTree {
+
+	@Test
+	public void testPrecedence() throws Exception {
+		assertEquals("((a-b)+((c*((d^e)^f))/g))", ExpressionTree.parse("a-b+c*d^e^f/g").toString());
+		assertEquals("(-2.0^2.0)", ExpressionTree.parse("-2^2").toString());
+		assertEquals("((a/(-b))/c)", ExpressionTree.parse("+a/-b/+c").toString());
+		assertEquals("f(g(x, y), z)", ExpressionTree.parse("f(g(x,y),z)").toString());
+		assertEquals("pi()", ExpressionTree.parse("pi( )").toString());
+		assertEquals("(2.0*(x+1.0))", ExpressionTree.parse(new StringBuilder("2 * (x + 1)")).toString());
+		assertNull(ExpressionTree.parse(" \t"));
+	}
+
+	private static void assertError(String s, int index, String descrip) {
+		try {
+			ExpressionTree.parse(s);
+			fail(s);
+		}
+		catch (ExpressionParseException e) {
+			assertEquals(s, descrip, e.getDescription());
+			assertEquals(s, index, e.getIndex());
+		}
+	}
+
+	@Test
+	public void testErrors() throws Exception {
+		assertError(null, -1, "Expression string cannot be null.");
+		assertError("a+(b", 4, "Incomplete expression.");
+		assertError("a+b)", 3, "Missing open bracket.");
+		assertError("2x", 1, "Expected operator or close bracket but found: x");
+		assertError("1e*", 2, "Expected digit, plus sign or minus sign but found: *");
+		assertError("f(a,,b)", 4, "Incomplete function.");
+		assertError("f(x,)", 4, "Incomplete function.");
+		assertError("f(a", 0, "Missing function close bracket.");
+		assertError("-(a)", 1, "Open bracket found after negate.");
+		assertError("f(a, 1+)", 7, "Incomplete expression.");
+
+		// the index is relative to the enclosing parameter
+		assertError("f(a,g(b,-(c)))", 1, "Open bracket found after negate.");
+		assertError("f(a,g(b, h(c,)))", 9, "Incomplete function.");
+	}
+
+	@Test
+	public void testLong() throws Exception {
+		int n = 100000;
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0; i < n; i++) {
+			if (i > 0) sb.append('+');
+			sb.append("x*2");
+		}
+
+		Expression x = ExpressionTree.parse(sb.toString());
+		int count = 1;
+
+		while (x instanceof AddNode) {
+			assertTrue(((OpNode) x).getRightChild() instanceof MultNode);
+			x = ((OpNode) x).getLeftChild();
+			count++;
+		}
+
+		assertEquals(n, count);
+
+		sb.setLength(0);
+
+		for (int i = 0; i < n; i++)
+			sb.append(i % 2 == 0 ? "f(1, (" : "g(");
+
+		sb.append("y");
+
+		for (int i = 0; i < n; i++)
+			sb.append(i % 2 == 0 ? "))" : ")");
+
+		x = ExpressionTree.parse(sb.toString());
+
+		for (int i = 0; i < n; i++) {
+			FuncNode f = (FuncNode) x;
+			assertEquals(i % 2 == 0 ? "f" : "g", f.getName());
+			x = f.child(f.numChildren() - 1);
+		}
+
+		assertEquals("y", ((VarNode) x).getName());
+	}
+}
@@ -0,0 +1,105 @@
+package com.graphbuilder.math;
+
+import com.graphbuilder.math.func.*;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+
+public class TestFuncMap {
+
+	@Test
+	public void testLookup() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+
+		assertTrue(fm.getFunction("SiN", 1) instanceof SinFunction);
+		assertTrue(fm.getFunction("LOG", 2) instanceof LogFunction);
+		assertSame(FuncMap.getDefaultFunctions().getFunction("rand", 0), fm.getFunction("RAND", 0));
+
+		try {
+			fm.getFunction("sin", 2);
+			fail();
+		}
+		catch (RuntimeException e) {
+			assertEquals("function not found: sin 2", e.getMessage());
+		}
+
+		FuncMap cs = new FuncMap(true);
+		cs.loadDefaultFunctions();
+		assertTrue(cs.getFunction("sin", 1) instanceof SinFunction);
+
+		try {
+			cs.getFunction("Sin", 1);
+			fail();
+		}
+		catch (RuntimeException e) {}
+	}
+
+	@Test
+	public void testCopyOnWrite() throws Exception {
+		FuncMap a = new FuncMap();
+		a.loadDefaultFunctions();
+		FuncMap b = new FuncMap();
+		b.loadDefaultFunctions();
+
+		Function f = new SumFunction();
+		a.setFunction("SIN", f);
+		a.setFunction("twice", f);
+		b.remove("cos");
+
+		assertSame(f, a.getFunction("sin", 1));
+		assertTrue(a.getFunction("cos", 1) instanceof CosFunction);
+		assertTrue(b.getFunction("sin", 1) instanceof SinFunction);
+		assertTrue(FuncMap.getDefaultFunctions().getFunction("cos", 1) instanceof CosFunction);
+		assertEquals(FuncMap.getDefaultFunctions().getFunctionNames().length + 1, a.getFunctionNames().length);
+		assertEquals(FuncMap.getDefaultFunctions().getFunctionNames().length - 1, b.getFunctionNames().length);
+
+		try {
+			FuncMap.getDefaultFunctions().setFunction("sin", f);
+			fail();
+		}
+		catch (UnsupportedOperationException e) {}
+
+		try {
+			FuncMap.getDefaultFunctions().remove("sin");
+			fail();
+		}
+		catch (UnsupportedOperationException e) {}
+	}
+
+	@Test
+	public void testRemove() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.setFunction("a", new SinFunction());
+		fm.setFunction("b", new CosFunction());
+		fm.setFunction("c", new TanFunction());
+		fm.remove("B");
+		fm.remove("d");
+
+		assertArrayEquals(new String[] { "a", "c" }, fm.getFunctionNames());
+		assertTrue(fm.getFunction("c", 1) instanceof TanFunction);
+
+		fm.setFunction("b", new CosFunction());
+		assertArrayEquals(new String[] { "a", "c", "b" }, fm.getFunctionNames());
+	}
+
+	@Test
+	public void testFuncNodeBinding() throws Exception {
+		FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		Expression x = ExpressionTree.parse("f(2)+abs(-3)");
+		fm.setFunction("f", new SqrtFunction());
+
+		assertEquals(Math.sqrt(2) + 3, x.eval(null, fm), 0);
+
+		fm.setFunction("f", new ExpFunction());
+		assertEquals(Math.exp(2) + 3, x.eval(null, fm), 0);
+
+		FuncMap other = new FuncMap();
+		other.setFunction("f", new SqrtFunction());
+		other.setFunction("abs", new SqrtFunction());
+		assertEquals(Math.sqrt(2) + Math.sqrt(-3), x.eval(null, other), 0);
+	}
+}
@@ -0,0 +1,75 @@
+package com.graphbuilder.math;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.graphbuilder.math.func.*;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+
+public class TestFuncNode {
+
+	@Test
+	public void testRecursive() throws Exception {
+		final FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		final Expression x = ExpressionTree.parse("sum(n, f(n-1))");
+
+		// f(n) evaluates the tree that contains it, so the first argument of sum must not be overwritten
+		fm.setFunction("f", new Function() {
+			public double of(double[] d, int numParam) {
+				if (d[0] <= 0) return 0;
+				VarMap vm = new VarMap();
+				vm.setValue("n", d[0]);
+				return x.eval(vm, fm);
+			}
+
+			public boolean acceptNumParam(int numParam) {
+				return numParam == 1;
+			}
+		});
+
+		VarMap vm = new VarMap();
+		vm.setValue("n", 6);
+		assertEquals(21, x.eval(vm, fm), 0);
+	}
+
+	@Test
+	public void testThreads() throws Exception {
+		final FuncMap fm = new FuncMap();
+		fm.loadDefaultFunctions();
+		final Expression x = ExpressionTree.parse("sum(a, max(a, 2*a, b), min(b, a*3), avg(a, b, a, b)) - log(abs(b)+1, 2)");
+		final AtomicInteger failures = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+
+		for (int t = 0; t < threads.length; t++) {
+			final int id = t;
+			threads[t] = new Thread() {
+				public void run() {
+					VarMap vm = new VarMap();
+
+					for (int i = 0; i < 20000; i++) {
+						double a = id * 1000 + i;
+						double b = -i * 0.5;
+						vm.setValue("a", a);
+						vm.setValue("b", b);
+						double expected = a + Math.max(2 * a, b) + Math.min(b, a * 3) + (a + b + a + b) / 4 - Math.log(Math.abs(b) + 1) / Math.log(2);
+
+						if (x.eval(vm, fm) != expected)
+							failures.incrementAndGet();
+					}
+				}
+			};
+		}
+
+		for (Thread t : threads)
+			t.start();
+
+		for (Thread t : threads)
+			t.join();
+
+		assertEquals(0, failures.get());
+	}
+}